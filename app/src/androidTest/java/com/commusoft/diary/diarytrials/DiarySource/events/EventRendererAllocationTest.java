@@ -0,0 +1,145 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.View;
+
+import com.commusoft.diary.diarytrials.DiarySource.CalendarCell;
+import com.commusoft.diary.diarytrials.DiarySource.CalendarDayCell;
+import com.commusoft.diary.diarytrials.DiarySource.CalendarFragment;
+import com.commusoft.diary.diarytrials.DiarySource.CalendarRow;
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+import com.commusoft.diary.diarytrials.DiarySource.RadCalendarView;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Checks that {@link EventRenderer} draws the events of a populated month without allocating memory
+ * once its caches are warm, in each of the render modes.
+ */
+public class EventRendererAllocationTest extends InstrumentationTestCase {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1500;
+    private static final int WARM_UP_FRAMES = 3;
+    private static final int MEASURED_FRAMES = 20;
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    private static final String[] TITLES = {
+            "Boiler service",
+            "Gas safety inspection at the flats on the corner of the High Street",
+            "Annual maintenance",
+            "Replace the radiator valves in the kitchen and both bedrooms",
+            "Quote",
+            "Emergency call out"
+    };
+
+    private RadCalendarView calendarView;
+    private final List<CalendarDayCell> cells = new ArrayList<CalendarDayCell>();
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (this.bitmap != null) {
+            this.bitmap.recycle();
+        }
+        super.tearDown();
+    }
+
+    @UiThreadTest
+    public void testShapeAndTextRenderingDoesNotAllocate() {
+        assertRenderingDoesNotAllocate(EventRenderMode.Shape_And_Text);
+    }
+
+    @UiThreadTest
+    public void testTextRenderingDoesNotAllocate() {
+        assertRenderingDoesNotAllocate(EventRenderMode.Text);
+    }
+
+    @UiThreadTest
+    public void testShapeRenderingDoesNotAllocate() {
+        assertRenderingDoesNotAllocate(EventRenderMode.Shape);
+    }
+
+    private void assertRenderingDoesNotAllocate(EventRenderMode renderMode) {
+        createPopulatedMonth();
+        EventRenderer renderer = this.calendarView.getEventAdapter().getRenderer();
+        renderer.setEventRenderMode(renderMode);
+
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            renderEvents(renderer);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < MEASURED_FRAMES; i++) {
+                renderEvents(renderer);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+
+        assertEquals(renderMode + " allocations", 0, Debug.getThreadAllocCount());
+    }
+
+    private void renderEvents(EventRenderer renderer) {
+        for (int i = 0, count = this.cells.size(); i < count; i++) {
+            renderer.renderEvents(this.canvas, this.cells.get(i));
+        }
+    }
+
+    /**
+     * Lays out a calendar which displays a month with up to eight events per day, some of them all day
+     * events and most of them too long for their cells, and collects the cells which have events.
+     */
+    private void createPopulatedMonth() {
+        this.calendarView = new RadCalendarView(getInstrumentation().getTargetContext());
+        EpochDayCalendar dateEngine = this.calendarView.getDateEngine();
+        long firstDay = EpochDayCalendar.toEpochDay(2015, Calendar.MARCH, 1);
+        this.calendarView.setDisplayDate(dateEngine.getDayStart(firstDay));
+
+        List<Event> events = new ArrayList<Event>();
+        for (int day = 0; day < 31; day++) {
+            long dayStart = dateEngine.getDayStart(firstDay + day);
+            for (int i = 0; i < day % 9; i++) {
+                long start = dayStart + (8 + i) * MILLIS_PER_HOUR;
+                DiaryJob job = new DiaryJob(TITLES[(day + i) % TITLES.length], start, start + MILLIS_PER_HOUR, day * 10 + i);
+                job.setEventColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+                job.setAllDay(i == 3);
+                events.add(job);
+            }
+        }
+        this.calendarView.getEventAdapter().setEvents(events);
+
+        this.calendarView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        this.calendarView.layout(0, 0, WIDTH, HEIGHT);
+
+        this.cells.clear();
+        CalendarFragment fragment = this.calendarView.getScrollManager().currentFragment();
+        for (CalendarRow row : fragment.rows()) {
+            for (int i = 0; i < row.cellsCount(); i++) {
+                CalendarCell cell = row.getCell(i);
+                if (cell instanceof CalendarDayCell) {
+                    List<Event> cellEvents = ((CalendarDayCell) cell).getEvents();
+                    if (cellEvents != null && cellEvents.size() > 0) {
+                        this.cells.add((CalendarDayCell) cell);
+                    }
+                }
+            }
+        }
+        assertTrue("the month should have cells with events", this.cells.size() > 20);
+
+        this.bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        this.canvas = new Canvas(this.bitmap);
+    }
+}
@@ -275,10 +275,12 @@ public class CalendarAdapter {
             @Override
             public void apply(CalendarCell argument) {
                 argument.updateTypeFace();
+                if (argument.isToday())
+                    argument.invalidate();
             }
         });
 
-        this.owner.invalidate();
+        this.owner.invalidateFragmentSnapshots();
     }
 
     /**
@@ -356,10 +358,12 @@ public class CalendarAdapter {
             @Override
             public void apply(CalendarCell argument) {
                 argument.updateTextColor();
+                if (argument.isToday())
+                    argument.invalidate();
             }
         });
 
-        this.owner.invalidate();
+        this.owner.invalidateFragmentSnapshots();
     }
 
     /**
@@ -404,6 +408,7 @@ public class CalendarAdapter {
 
         applyStyle(style);
         this.style = style;
+        this.owner.invalidateFragmentSnapshots();
     }
 
     /**
@@ -574,10 +579,12 @@ public class CalendarAdapter {
             @Override
             public void apply(CalendarCell argument) {
                 argument.updateBackgroundColor();
+                if (argument.isToday())
+                    argument.invalidate();
             }
         });
 
-        this.owner.invalidate();
+        this.owner.invalidateFragmentSnapshots();
     }
 
     /**
@@ -1820,16 +1827,18 @@ public class CalendarAdapter {
      * @param includeWeekNumber a value which indicates whether this cell will also contain the number of the week
      */
     public void updateDateCell(CalendarDayCell convertCell, Long date, List<Event> eventList, boolean includeWeekNumber) {
-        this.workCalendar.setTimeInMillis(date);
-        convertCell.setText(dateValues.get(this.workCalendar.get(Calendar.DAY_OF_MONTH)));
+        EpochDayCalendar dateEngine = this.owner.getDateEngine();
+        long day = dateEngine.toEpochDay(date);
+        int dayOfMonth = EpochDayCalendar.getDayOfMonth(day);
+        convertCell.setText(dateValues.get(dayOfMonth));
         convertCell.setDate(date);
 
-        convertCell.setAsToday(this.workCalendar.get(Calendar.DAY_OF_MONTH) == this.todayDay && this.workCalendar.get(Calendar.MONTH) == this.todayMonth && this.workCalendar.get(Calendar.YEAR) == this.todayYear);
+        convertCell.setAsToday(dayOfMonth == this.todayDay && EpochDayCalendar.getMonth(day) == this.todayMonth && EpochDayCalendar.getYear(day) == this.todayYear);
 
         convertCell.setEvents(eventList);
 
         if (includeWeekNumber) {
-            convertCell.setSecondaryText(String.valueOf(this.workCalendar.get(Calendar.WEEK_OF_YEAR)));
+            convertCell.setSecondaryText(String.valueOf(dateEngine.getWeekOfYear(day)));
         }
     }
 
@@ -1841,14 +1850,14 @@ public class CalendarAdapter {
      * @param date        the date that will be represented by this cell
      */
     public void updateCalendarMonthCell(CalendarMonthCell convertCell, long date) {
-        long monthDate = CalendarTools.getDateStart(date);
-        convertCell.setDate(monthDate);
-
-        this.workCalendar.setTimeInMillis(monthDate);
+        EpochDayCalendar dateEngine = this.owner.getDateEngine();
+        long day = dateEngine.toEpochDay(date);
+        convertCell.setDate(dateEngine.getDayStart(day));
 
-        convertCell.setMonthName(getMonthNameCached(this.workCalendar.get(Calendar.MONTH)));
+        int month = EpochDayCalendar.getMonth(day);
+        convertCell.setMonthName(getMonthNameCached(month));
 
-        convertCell.setAsToday(workCalendar.get(Calendar.YEAR) == todayYear && workCalendar.get(Calendar.MONTH) == todayMonth);
+        convertCell.setAsToday(EpochDayCalendar.getYear(day) == todayYear && month == todayMonth);
     }
 
     protected String getMonthNameCached(int monthIndex) {
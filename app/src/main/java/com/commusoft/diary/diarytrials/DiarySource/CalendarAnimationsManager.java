@@ -438,6 +438,17 @@ public class CalendarAnimationsManager {
         }
     }
 
+    /**
+     * States whether the fragments are currently being moved by a date change animation, a fling or a snap.
+     *
+     * @return <code>true</code> if the fragments are being moved, <code>false</code> otherwise.
+     */
+    public boolean isScrollAnimationInProgress() {
+        return this.scrollVelocityX != 0 || this.scrollVelocityY != 0 ||
+                this.flingVelocityX != 0 || this.flingVelocityY != 0 ||
+                this.currentSnapOffsetX != 0 || this.currentSnapOffsetY != 0;
+    }
+
     /**
      * States whether an animation is currently being processed by the manager.
      *
@@ -8,6 +8,8 @@ import android.graphics.Typeface;
 
 import com.commusoft.diary.diarytrials.DiarySource.events.Event;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -18,6 +20,13 @@ public class CalendarDayCell extends CalendarCell {
     private static final int SELECTABLE_ENABLED_ALPHA = 255;
     private static final int SELECTABLE_DISABLED_ALPHA = 76;
 
+    private static final Comparator<Event> EVENT_START_TIME_COMPARATOR = new Comparator<Event>() {
+        @Override
+        public int compare(Event event, Event event2) {
+            return (event.getStartTime() < event2.getStartTime()) ? -1 : (event.getStartTime() > event2.getStartTime()) ? 1 : 0;
+        }
+    };
+
     static int selectedCellBackgroundColor;
     static int todayCellBackgroundColor;
     static Typeface todayTypeFace;
@@ -41,6 +50,7 @@ public class CalendarDayCell extends CalendarCell {
     private int secondaryTextPosition;
 
     private List<Event> events;
+    private boolean eventsSortedByStartTime;
 
     /**
      * Initializes a new instance of the {@link com.commusoft.diary.diarytrials.DiarySource.CalendarDayCell} class.
@@ -187,6 +197,22 @@ public class CalendarDayCell extends CalendarCell {
      */
     public void setEvents(List<Event> events) {
         this.events = events;
+        this.eventsSortedByStartTime = false;
+    }
+
+    /**
+     * Gets the events related for the date presented by the current CalendarCell sorted by their start time.
+     * The events are sorted in place only the first time this method is called after they are set.
+     *
+     * @return the events for the current cell sorted by their start time
+     */
+    public List<Event> getEventsSortedByStartTime() {
+        if (!this.eventsSortedByStartTime && this.events != null) {
+            Collections.sort(this.events, EVENT_START_TIME_COMPARATOR);
+            this.eventsSortedByStartTime = true;
+        }
+
+        return this.events;
     }
 
     /**
@@ -211,6 +237,7 @@ public class CalendarDayCell extends CalendarCell {
             this.setHasDecoration(value);
             updateBackgroundColor();
             updateCustomizationRule();
+            invalidate();
         }
     }
 
@@ -322,6 +349,8 @@ public class CalendarDayCell extends CalendarCell {
     void setHasDecoration(boolean value) {
         if (this.hasDecoration != value) {
             this.hasDecoration = value;
+            if (this.owner.getCellDecorationsLayer() != null)
+                this.owner.getCellDecorationsLayer().invalidate();
         }
     }
 
@@ -375,7 +404,15 @@ public class CalendarDayCell extends CalendarCell {
      */
     protected void drawEvents(Canvas canvas) {
         if (this.events != null && this.events.size() > 0) {
+            FrameProfiler profiler = this.owner.getFrameProfiler();
+            long phaseStart = profiler != null ? profiler.now() : 0;
+
             this.owner.getEventAdapter().getRenderer().renderEvents(canvas, this);
+
+            if (profiler != null) {
+                profiler.endNestedPhase(RadCalendarView.PROFILER_PHASE_EVENTS, phaseStart);
+                profiler.add(RadCalendarView.PROFILER_COUNTER_EVENTS_DRAWN, this.events.size());
+            }
         }
     }
 
@@ -240,6 +240,39 @@ public abstract class CalendarElement {
         updateBackgroundColor();
     }
 
+    /**
+     * Marks the area of the element as damaged, so that only this area of the owning calendar is redrawn
+     * instead of the whole calendar.
+     */
+    public void invalidate() {
+        int offsetX = 0;
+        int offsetY = 0;
+        for (CalendarElement element = this.parent; element != null; element = element.parent) {
+            offsetX += element.getChildrenOffsetX();
+            offsetY += element.getChildrenOffsetY();
+        }
+
+        this.owner.invalidateRegion(this.left + offsetX, this.top + offsetY, this.right + offsetX, this.bottom + offsetY);
+    }
+
+    /**
+     * Gets the offset along the x axis, relative to their arranged position, at which the children of the element are drawn.
+     *
+     * @return the offset of the children along the x axis.
+     */
+    protected int getChildrenOffsetX() {
+        return 0;
+    }
+
+    /**
+     * Gets the offset along the y axis, relative to their arranged position, at which the children of the element are drawn.
+     *
+     * @return the offset of the children along the y axis.
+     */
+    protected int getChildrenOffsetY() {
+        return 0;
+    }
+
     /**
      * Gets the current parent element, that holds this element.
      *
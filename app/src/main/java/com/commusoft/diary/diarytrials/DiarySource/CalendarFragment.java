@@ -1,5 +1,6 @@
 package com.commusoft.diary.diarytrials.DiarySource;
 
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 
@@ -28,6 +29,18 @@ public class CalendarFragment extends CalendarElement {
     private int lastRowWithCurrentDateCellsIndex;
     private CalendarDisplayMode displayMode;
     private boolean currentFragment;
+    private final Canvas snapshotCanvas = new Canvas();
+    private Bitmap snapshot;
+    private int snapshotGeneration;
+    private CellDecorationsLayer decoratedLayer;
+    private int decorationsGeneration;
+    private float[] gridLinePoints = new float[0];
+    private float[] gridLineScratch = new float[0];
+    private int[] gridLineAlphas = new int[0];
+    private int[] gridLineRunAlphas = new int[0];
+    private int[] gridLineRunEnds = new int[0];
+    private int gridLineRunsCount;
+    private boolean gridLinesValid;
 
     /**
      * Creates a new instance of the {@link com.telerik.widget.calendar.CalendarFragment} class.
@@ -67,6 +80,10 @@ public class CalendarFragment extends CalendarElement {
     protected void onAlphaChanged() {
         for (CalendarRow row : this.rows)
             row.setAlpha(this.alpha);
+
+        this.gridLinesValid = false;
+        if (this.owner != null)
+            this.owner.invalidateFragmentSnapshots();
     }
 
     /**
@@ -203,10 +220,13 @@ public class CalendarFragment extends CalendarElement {
 
         this.virtualXPosition = left;
         this.virtualYPosition = top;
+        this.owner.invalidateFragmentSnapshots();
+        this.owner.getCellDecorationsLayer().invalidate();
     }
 
     @Override
     protected void onArrange() {
+        this.gridLinesValid = false;
         this.rowHeight = this.getHeight() / this.rows.size();
 
         int top = getTop();
@@ -244,20 +264,22 @@ public class CalendarFragment extends CalendarElement {
      *                        post render can handle it.
      */
     public void render(Canvas canvas, boolean drawDecorations) {
-        canvas.save(Canvas.MATRIX_SAVE_FLAG);
-        canvas.translate((float) -(this.getLeft() - this.virtualXPosition),
-                (float) -(this.getTop() - this.virtualYPosition));
+        if (!drawSnapshot(canvas)) {
+            canvas.save(Canvas.MATRIX_SAVE_FLAG);
+            canvas.translate((float) -(this.getLeft() - this.virtualXPosition),
+                    (float) -(this.getTop() - this.virtualYPosition));
 
-        drawRows(canvas);
+            drawRows(canvas);
 
-        if (this.owner.getShowGridLines())
-            drawGridLines(canvas);
+            if (this.owner.getShowGridLines())
+                drawGridLines(canvas);
 
-        canvas.restore();
+            canvas.restore();
+        }
 
         if (drawDecorations) {
             postRender(canvas);
-            this.owner.getCellDecorationsLayer().renderLayer(this.id, canvas);
+            drawDecorations(canvas);
         }
     }
 
@@ -282,10 +304,20 @@ public class CalendarFragment extends CalendarElement {
     public void postRender(Canvas canvas, boolean drawDecorations) {
         if (drawDecorations) {
             postRender(canvas);
-            this.owner.getCellDecorationsLayer().renderLayer(this.id, canvas);
+            drawDecorations(canvas);
         }
     }
 
+    @Override
+    protected int getChildrenOffsetX() {
+        return this.virtualXPosition - this.getLeft();
+    }
+
+    @Override
+    protected int getChildrenOffsetY() {
+        return this.virtualYPosition - this.getTop();
+    }
+
     @Override
     public void translate(int offsetX, int offsetY) {
         this.virtualXPosition += offsetX;
@@ -296,6 +328,9 @@ public class CalendarFragment extends CalendarElement {
      * Used to trim the cells before and after the ones that are in the same range as the current display date of the fragment. These cells' visibility level will be set to Invisible.
      */
     public void trim() {
+        this.owner.getCellDecorationsLayer().invalidate();
+        this.gridLinesValid = false;
+
         long firstDate = CalendarTools.getFirstDateInMonth(this.displayDate);
         long lastDate = CalendarTools.getLastDateInMonth(this.displayDate);
 
@@ -350,6 +385,60 @@ public class CalendarFragment extends CalendarElement {
         }
     }
 
+    /**
+     * Draws the rows and the grid lines of the fragment from its snapshot while the fragments are being moved.
+     * The snapshot is rasterised again if it is outdated.
+     *
+     * @param canvas the current canvas.
+     * @return <code>true</code> if the snapshot was drawn, <code>false</code> if the fragment should be rendered directly.
+     */
+    protected boolean drawSnapshot(Canvas canvas) {
+        FragmentSnapshotCache snapshotCache = this.owner.getSnapshotCache();
+        if (!snapshotCache.isActive()) {
+            releaseSnapshot();
+            return false;
+        }
+
+        if (this.snapshot == null || this.snapshot.getWidth() != this.getWidth() || this.snapshot.getHeight() != this.getHeight()) {
+            releaseSnapshot();
+            this.snapshot = snapshotCache.acquire(this.getWidth(), this.getHeight());
+            if (this.snapshot == null) {
+                return false;
+            }
+
+            this.snapshotCanvas.setBitmap(this.snapshot);
+            this.snapshotGeneration = snapshotCache.getGeneration() - 1;
+        }
+
+        if (this.snapshotGeneration != snapshotCache.getGeneration()) {
+            this.snapshot.eraseColor(Color.TRANSPARENT);
+            this.snapshotCanvas.save(Canvas.MATRIX_SAVE_FLAG);
+            this.snapshotCanvas.translate(-this.getLeft(), -this.getTop());
+
+            drawRows(this.snapshotCanvas);
+
+            if (this.owner.getShowGridLines())
+                drawGridLines(this.snapshotCanvas);
+
+            this.snapshotCanvas.restore();
+            this.snapshotGeneration = snapshotCache.getGeneration();
+        }
+
+        canvas.drawBitmap(this.snapshot, this.virtualXPosition, this.virtualYPosition, null);
+        return true;
+    }
+
+    /**
+     * Returns the snapshot of the fragment to the snapshot cache of the owner.
+     */
+    public void releaseSnapshot() {
+        if (this.snapshot != null) {
+            this.snapshotCanvas.setBitmap(null);
+            this.owner.getSnapshotCache().release(this.snapshot);
+            this.snapshot = null;
+        }
+    }
+
     /**
      * Resets the current fragment instance. Used when switching between different display modes. It will use the current display mode of the current calendar view instance.
      */
@@ -393,33 +482,74 @@ public class CalendarFragment extends CalendarElement {
 
     /**
      * Used to update the decorations for the cells of the current fragment instance, so that they are ready for rendering.
+     * The decorations are only computed again after the generation of the decorations layer has changed.
      */
     public void updateDecorations() {
+        CellDecorationsLayer decorationsLayer = this.owner.getCellDecorationsLayer();
+        if (this.decoratedLayer == decorationsLayer && this.decorationsGeneration == decorationsLayer.getGeneration())
+            return;
+
+        decorationsLayer.clearDecorations(this.id);
         prepareDecorations();
+
+        this.decoratedLayer = decorationsLayer;
+        this.decorationsGeneration = decorationsLayer.getGeneration();
     }
 
     /**
-     * Used to draw the grid lines for the current fragment instance.
+     * Marks the grid lines of the current fragment instance as outdated, so that they are computed again before they are drawn.
+     * Should be called when the visibility of the cells is changed.
+     */
+    public void invalidateGridLines() {
+        this.gridLinesValid = false;
+    }
+
+    /**
+     * Used to draw the grid lines for the current fragment instance. The lines are computed once after the fragment has been
+     * arranged or its cells have changed and are drawn with a single call for each alpha level.
      *
      * @param canvas the current canvas.
      */
     protected void drawGridLines(Canvas canvas) {
-        CalendarRow row;
+        if (!this.gridLinesValid)
+            updateGridLines();
+
         GridLinesLayer renderer = this.owner.getGridLinesLayer();
+        int start = 0;
+        for (int i = 0; i < this.gridLineRunsCount; i++) {
+            int end = this.gridLineRunEnds[i];
+            renderer.drawLines(this.gridLinePoints, start, end - start, canvas, this.gridLineRunAlphas[i]);
+            start = end;
+        }
+    }
+
+    private void updateGridLines() {
+        int maxLinesCount = 1;
+        for (int i = 0, len = this.rows.size(); i < len; i++)
+            maxLinesCount += this.rows.get(i).cellsCount() + 2;
 
-        row = this.rows().get(0);
-        renderer.drawLine((float) row.getLeft(), (float) row.getTop(), (float) row.getRight(), (float) row.getTop(), canvas, row.getAlpha());
+        if (this.gridLineAlphas.length < maxLinesCount) {
+            this.gridLineAlphas = new int[maxLinesCount];
+            this.gridLineRunAlphas = new int[maxLinesCount];
+            this.gridLineRunEnds = new int[maxLinesCount];
+            this.gridLinePoints = new float[maxLinesCount * 4];
+            this.gridLineScratch = new float[maxLinesCount * 4];
+        }
+        float[] lines = this.gridLineScratch;
+
+        CalendarRow row = this.rows().get(0);
+        int linesCount = addGridLine(lines, 0, row.getLeft(), row.getTop(), row.getRight(), row.getTop(), row.getAlpha());
 
         for (int i = 0, len = this.rows.size(); i < len; i++) {
             row = this.rows().get(i);
-            renderer.drawLine((float) row.getLeft(), (float) row.getBottom(), (float) row.getRight(), (float) row.getBottom(), canvas, row.getAlpha());
+            linesCount = addGridLine(lines, linesCount, row.getLeft(), row.getBottom(), row.getRight(), row.getBottom(), row.getAlpha());
 
             CalendarCell cell;
             int firstVisibleCellIndex = 0;
             for (int j = 0, cellsCount = row.cellsCount(); j < cellsCount; j++) {
                 cell = row.getCell(j);
                 if (cell.getVisibility() == ElementVisibility.Visible) {
-                    renderer.drawLine((float) cell.getLeft(), (float) cell.getTop(), (float) cell.getLeft(), (float) cell.getBottom(), canvas, cell.getAlpha());
+                    linesCount = addGridLine(lines, linesCount, cell.getLeft(), cell.getTop(), cell.getLeft(), cell.getBottom(), cell.getAlpha());
                     firstVisibleCellIndex = j;
                     break;
                 }
@@ -430,24 +560,78 @@ public class CalendarFragment extends CalendarElement {
                 if (cell.getVisibility() != ElementVisibility.Visible)
                     continue;
 
-                renderer.drawLine((float) cell.getRight(), (float) cell.getTop(), (float) cell.getRight(), (float) cell.getBottom(), canvas, cell.getAlpha());
+                linesCount = addGridLine(lines, linesCount, cell.getRight(), cell.getTop(), cell.getRight(), cell.getBottom(), cell.getAlpha());
+            }
+        }
+
+        // Groups the lines by alpha, so that each alpha level is drawn with a single call.
+        this.gridLineRunsCount = 0;
+        int groupedCount = 0;
+        while (groupedCount < linesCount) {
+            int alpha = -1;
+            for (int i = 0; i < linesCount; i++) {
+                if (this.gridLineAlphas[i] < 0)
+                    continue;
+
+                if (alpha == -1)
+                    alpha = this.gridLineAlphas[i];
+
+                if (this.gridLineAlphas[i] == alpha) {
+                    System.arraycopy(lines, i * 4, this.gridLinePoints, groupedCount * 4, 4);
+                    this.gridLineAlphas[i] = -1;
+                    groupedCount++;
+                }
             }
+
+            this.gridLineRunAlphas[this.gridLineRunsCount] = alpha;
+            this.gridLineRunEnds[this.gridLineRunsCount] = groupedCount * 4;
+            this.gridLineRunsCount++;
         }
+
+        this.gridLinesValid = true;
+    }
+
+    private int addGridLine(float[] lines, int index, int startX, int startY, int endX, int endY, int alpha) {
+        int offset = index * 4;
+        lines[offset] = startX;
+        lines[offset + 1] = startY;
+        lines[offset + 2] = endX;
+        lines[offset + 3] = endY;
+        this.gridLineAlphas[index] = alpha;
+
+        return index + 1;
     }
 
     /**
-     * Used to update the decoration of a given cell.
+     * Used to draw the decorations of the cells of the current fragment instance at its virtual position.
+     * Nothing is drawn if the decorations have not been updated since the cells or their layout have changed.
+     *
+     * @param canvas the current canvas.
+     */
+    protected void drawDecorations(Canvas canvas) {
+        CellDecorationsLayer decorationsLayer = this.owner.getCellDecorationsLayer();
+        if (!this.owner.getShowCellDecorations() || this.owner.getDisplayMode() == CalendarDisplayMode.Year ||
+                this.decoratedLayer != decorationsLayer || this.decorationsGeneration != decorationsLayer.getGeneration())
+            return;
+
+        canvas.save(Canvas.MATRIX_SAVE_FLAG);
+        canvas.translate((float) -(this.getLeft() - this.virtualXPosition),
+                (float) -(this.getTop() - this.virtualYPosition));
+
+        decorationsLayer.renderLayer(this.id, canvas);
+
+        canvas.restore();
+    }
+
+    /**
+     * Used to update the decoration of a given cell. The decoration is stored with the arranged bounds of the cell,
+     * since the virtual position of the fragment is applied when the decorations are drawn.
      *
      * @param cell     the cell to which the decoration update will be performed.
      * @param renderer the decorations renderer that will store the decoration and later on render it.
      */
     protected void updateDecorationForCell(CalendarCell cell, CellDecorationsLayer renderer) {
-        renderer.addDecorationForCell(
-                this.id,
-                (cell.getLeft() + this.virtualXPosition - this.getLeft()),
-                (cell.getTop() + this.virtualYPosition - this.getTop()),
-                (cell.getRight() + this.virtualXPosition - this.getLeft()),
-                (cell.getBottom() + this.virtualYPosition - this.getTop()));
+        renderer.addDecorationForCell(this.id, cell.getLeft(), cell.getTop(), cell.getRight(), cell.getBottom());
     }
 
     /**
@@ -455,6 +639,7 @@ public class CalendarFragment extends CalendarElement {
      */
     protected void init() {
         this.rows.clear();
+        this.gridLinesValid = false;
         CalendarAdapter adapter = this.owner.getAdapter();
 
         if (this.owner.getDisplayMode() == CalendarDisplayMode.Month) {
@@ -507,6 +692,9 @@ public class CalendarFragment extends CalendarElement {
         } else {
             throw new RuntimeException("unsupported display mode");
         }
+
+        for (CalendarRow row : this.rows)
+            row.setParent(this);
     }
 
     /**
@@ -516,6 +704,9 @@ public class CalendarFragment extends CalendarElement {
      */
     protected void drawRows(Canvas canvas) {
         for (CalendarElement element : this.rows) {
+            if (canvas.quickReject(element.getLeft(), element.getTop(), element.getRight(), element.getBottom(), Canvas.EdgeType.AA))
+                continue;
+
             element.render(canvas); // TODO optimize (hide invisible rows at some point, maybe after scroll);
         }
     }
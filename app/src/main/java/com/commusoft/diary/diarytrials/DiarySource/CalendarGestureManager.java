@@ -103,6 +103,15 @@ public class CalendarGestureManager {
         return this.scrollManager;
     }
 
+    /**
+     * States whether the fragments are currently being scrolled by a gesture.
+     *
+     * @return <code>true</code> if a scroll gesture is in progress, <code>false</code> otherwise.
+     */
+    public boolean isScrollInProgress() {
+        return this.isScrollInProgress;
+    }
+
     void setScrollManager(CalendarScrollManager scrollManager) {
         this.scrollManager = scrollManager;
     }
@@ -359,7 +368,6 @@ public class CalendarGestureManager {
                     this.firstPressedCell = cell;
                     this.selectionManager.setSelectedRange(new DateRange(firstPressedCell.getDate(), firstPressedCell.getDate()));
                 }
-                this.owner.invalidate();
             }
 
             return true;
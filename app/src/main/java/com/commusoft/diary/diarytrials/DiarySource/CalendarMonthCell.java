@@ -1,5 +1,6 @@
 package com.commusoft.diary.diarytrials.DiarySource;
 
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
@@ -169,6 +170,7 @@ public class CalendarMonthCell extends CalendarCell {
     protected int numberOfDays;
     private int currentDayNameColor;
     private int currentDateTextColor;
+    private final Canvas thumbnailCanvas = new Canvas();
 
     /**
      * Creates an instance of the {@link com.telerik.widget.calendar.CalendarMonthCell} class.
@@ -716,8 +718,8 @@ public class CalendarMonthCell extends CalendarCell {
     public void setDate(long date) {
         super.setDate(date);
 
-        workCalendar.setTimeInMillis(date);
-        this.numberOfDays = workCalendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+        long day = this.owner.getDateEngine().toEpochDay(date);
+        this.numberOfDays = EpochDayCalendar.getDaysInMonth(EpochDayCalendar.getYear(day), EpochDayCalendar.getMonth(day));
 
         updateElements();
     }
@@ -747,16 +749,17 @@ public class CalendarMonthCell extends CalendarCell {
         if (this.dateValues.size() == 0 || this.horizontalSlot == 0 || this.verticalSlot == 0)
             return;
 
-        workCalendar.setTimeInMillis(this.getDate());
-        workCalendar.set(Calendar.DAY_OF_WEEK, workCalendar.getFirstDayOfWeek());
+        EpochDayCalendar dateEngine = this.owner.getDateEngine();
+        long day = dateEngine.toEpochDay(this.getDate());
+        long weekDay = dateEngine.getFirstDayOfWeek(day);
 
-        for (int i = 0, len = CalendarTools.DAYS_IN_A_WEEK; i < len; i++, workCalendar.add(Calendar.DAY_OF_WEEK, 1)) {
+        for (int i = 0, len = CalendarTools.DAYS_IN_A_WEEK; i < len; i++, weekDay++) {
             MonthCellElement element = this.elements.get(i);
             element.text = this.daysOfWeek.get(i);
 
             Function<Long, Integer> dateToColor = this.owner.getDateToColor();
             if (dateToColor != null) {
-                Integer color = dateToColor.apply(workCalendar.getTimeInMillis());
+                Integer color = dateToColor.apply(dateEngine.getDayStart(weekDay));
                 if (color != null) {
                     element.color = color;
                 } else {
@@ -772,27 +775,25 @@ public class CalendarMonthCell extends CalendarCell {
 
         int value = 1;
 
-        workCalendar.setTimeInMillis(this.getDate());
-        int difference = workCalendar.get(Calendar.DAY_OF_WEEK) - workCalendar.getFirstDayOfWeek();
+        int difference = EpochDayCalendar.getDayOfWeek(day) - dateEngine.getFirstDayOfWeek();
         if (difference < 0) {
             difference += CalendarTools.DAYS_IN_A_WEEK;
         }
 
         value -= difference;
 
-        workCalendar.set(Calendar.DAY_OF_MONTH, 1);
+        long firstDayOfMonth = EpochDayCalendar.getFirstDayOfMonth(day);
 
         for (int i = 0, row = 0; row < CalendarTools.WEEKS_IN_A_MONTH; row++) {
             for (int column = 0; column < CalendarTools.DAYS_IN_A_WEEK; column++) {
                 MonthCellDateElement element = this.dateElements.get(i++);
                 element.dayOfMonth = value;
                 if (1 <= value && value <= this.numberOfDays) {
-                    workCalendar.set(Calendar.DAY_OF_MONTH, value);
                     element.text = this.dateValues.get(value);
                     Rect dateBounds = element.text.length() == 1 ? this.dateBoundsOneSymbol : this.dateBoundsTwoSymbols;
 
                     if (this.owner.getDateToColor() != null) {
-                        Integer color = this.owner.getDateToColor().apply(workCalendar.getTimeInMillis());
+                        Integer color = this.owner.getDateToColor().apply(dateEngine.getDayStart(firstDayOfMonth + value - 1));
                         if (color != null) {
                             element.color = color;
                         } else
@@ -832,9 +833,103 @@ public class CalendarMonthCell extends CalendarCell {
 
         super.render(canvas);
 
-        renderMonthName(canvas);
-        renderDayNames(canvas);
-        renderDates(canvas);
+        if (!renderThumbnail(canvas)) {
+            renderMonthName(canvas);
+            renderDayNames(canvas);
+            renderDates(canvas);
+        }
+    }
+
+    /**
+     * Used to render the month name, the day names and the dates from a thumbnail cached by the owner.
+     * The thumbnail is rendered first if the cache does not contain a thumbnail with the same content.
+     *
+     * @param canvas the current canvas.
+     * @return <code>true</code> if the thumbnail was drawn, <code>false</code> if the cell should be rendered directly.
+     */
+    protected boolean renderThumbnail(Canvas canvas) {
+        MonthThumbnailCache thumbnailCache = this.owner.getMonthThumbnailCache();
+        int width = this.getWidth();
+        int height = this.getHeight();
+        if (thumbnailCache.getMaxBytes() == 0 || width <= 0 || height <= 0) {
+            return false;
+        }
+
+        long day = this.owner.getDateEngine().toEpochDay(this.getDate());
+        int year = EpochDayCalendar.getYear(day);
+        int month = EpochDayCalendar.getMonth(day);
+        long fingerprint = calculateThumbnailFingerprint();
+
+        Bitmap thumbnail = thumbnailCache.get(year, month, width, height, fingerprint);
+        if (thumbnail == null) {
+            thumbnail = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            this.thumbnailCanvas.setBitmap(thumbnail);
+            this.thumbnailCanvas.save(Canvas.MATRIX_SAVE_FLAG);
+            this.thumbnailCanvas.translate(-this.getLeft(), -this.getTop());
+
+            renderMonthName(this.thumbnailCanvas);
+            renderDayNames(this.thumbnailCanvas);
+            renderDates(this.thumbnailCanvas);
+
+            this.thumbnailCanvas.restore();
+            this.thumbnailCanvas.setBitmap(null);
+            thumbnailCache.put(year, month, width, height, fingerprint, thumbnail);
+        }
+
+        canvas.drawBitmap(thumbnail, this.getLeft(), this.getTop(), null);
+        return true;
+    }
+
+    /**
+     * Calculates a fingerprint of everything that is drawn by {@link #renderMonthName(android.graphics.Canvas)},
+     * {@link #renderDayNames(android.graphics.Canvas)} and {@link #renderDates(android.graphics.Canvas)}. The positions
+     * are taken relative to the cell, so that cells at different places can share a thumbnail.
+     *
+     * @return the fingerprint of the content of the cell.
+     */
+    protected long calculateThumbnailFingerprint() {
+        int left = this.getLeft();
+        int top = this.getTop();
+
+        long hash = this.monthName != null ? this.monthName.hashCode() : 0;
+        hash = 31 * hash + (this.monthNamePositionX - left);
+        hash = 31 * hash + (this.monthNamePositionY - top);
+        hash = 31 * hash + this.monthNamePaint.getColor();
+        hash = 31 * hash + calculatePaintFingerprint(this.monthNamePaint);
+        hash = 31 * hash + calculatePaintFingerprint(this.dayNamesPaint);
+        hash = 31 * hash + calculatePaintFingerprint(this.datePaint);
+
+        for (MonthCellElement element : this.elements) {
+            hash = 31 * hash + element.text.hashCode();
+            hash = 31 * hash + element.color;
+            hash = 31 * hash + (element.x - left);
+            hash = 31 * hash + (element.y - top);
+        }
+
+        for (MonthCellDateElement element : this.dateElements) {
+            hash = 31 * hash + element.text.hashCode();
+            hash = 31 * hash + element.color;
+            hash = 31 * hash + (element.x - left);
+            hash = 31 * hash + (element.y - top);
+            if (isDrawingToday(element.dayOfMonth)) {
+                hash = 31 * hash + todayBackgroundColor;
+                hash = 31 * hash + todayTextColor;
+                hash = 31 * hash + System.identityHashCode(todayTypeFace);
+                hash = 31 * hash + calculatePaintFingerprint(todayPaint);
+                hash = 31 * hash + (int) Math.min(this.horizontalSlot, this.verticalSlot);
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * The color of the paints of the elements is set from the elements themselves while rendering, so it is not included.
+     */
+    private static long calculatePaintFingerprint(Paint paint) {
+        long hash = Float.floatToIntBits(paint.getTextSize());
+        hash = 31 * hash + System.identityHashCode(paint.getTypeface());
+        return hash;
     }
 
     /**
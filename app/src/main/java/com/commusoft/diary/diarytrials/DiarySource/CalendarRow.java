@@ -43,6 +43,7 @@ public class CalendarRow extends CalendarElement {
     public void addCell(CalendarCell cell) {
         this.cells.add(cell);
         cell.setRow(this);
+        cell.setParent(this);
     }
 
     /**
@@ -95,9 +96,17 @@ public class CalendarRow extends CalendarElement {
     public void render(Canvas canvas) {
         //super.render(canvas);
 
+        int drawnCellsCount = 0;
         for (CalendarCell cell : this.cells)
-            if (cell.getVisibility() == ElementVisibility.Visible)
+            if (cell.getVisibility() == ElementVisibility.Visible &&
+                    !canvas.quickReject(cell.getLeft(), cell.getTop(), cell.getRight(), cell.getBottom(), Canvas.EdgeType.AA)) {
                 cell.render(canvas);
+                drawnCellsCount++;
+            }
+
+        FrameProfiler profiler = this.owner.getFrameProfiler();
+        if (profiler != null)
+            profiler.add(RadCalendarView.PROFILER_COUNTER_CELLS_DRAWN, drawnCellsCount);
     }
 
     @Override
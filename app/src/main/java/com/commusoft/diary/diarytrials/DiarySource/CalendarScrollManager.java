@@ -169,6 +169,8 @@ public class CalendarScrollManager extends CalendarElement {
 
     @Override
     public void render(Canvas canvas) {
+        updateSnapshotsState();
+
         if (this.scrollMode == ScrollMode.Overlap) {
             if (fragmentIsVisible(this.currentFragment))
                 this.currentFragment.render(canvas, true);
@@ -215,6 +217,38 @@ public class CalendarScrollManager extends CalendarElement {
         }
     }
 
+    /**
+     * Marks the grid lines of all fragments as outdated, so that they are computed again before they are drawn.
+     */
+    public void invalidateGridLines() {
+        this.previousFragment.invalidateGridLines();
+        this.currentFragment.invalidateGridLines();
+        this.nextFragment.invalidateGridLines();
+    }
+
+    /**
+     * Returns the snapshots of all fragments to the snapshot cache of the owner.
+     */
+    public void releaseSnapshots() {
+        this.previousFragment.releaseSnapshot();
+        this.currentFragment.releaseSnapshot();
+        this.nextFragment.releaseSnapshot();
+    }
+
+    /**
+     * Draws the fragments from their snapshots while a gesture or an animation moves them and releases the
+     * snapshots once the fragments have stopped.
+     */
+    private void updateSnapshotsState() {
+        FragmentSnapshotCache snapshotCache = this.owner.getSnapshotCache();
+        boolean wasActive = snapshotCache.isActive();
+        snapshotCache.setActive(this.owner.getGestureManager().isScrollInProgress() ||
+                this.owner.getAnimationsManager().isScrollAnimationInProgress());
+
+        if (wasActive && !snapshotCache.isActive())
+            releaseSnapshots();
+    }
+
     /**
      * Returns a collection of cells that are located at a specific coordinates. The reason it is a collection
      * is because in some scroll modes there is overlapping of the fragments and there are invisible cells at the same location as visible ones.
@@ -695,6 +729,29 @@ public class CalendarScrollManager extends CalendarElement {
         }
     }
 
+    /**
+     * Used to rotate the fragments when the display date of the owner has moved by one period without
+     * scrolling, so that the fragment which already displays the new period becomes the current one.
+     * The new current fragment takes the place of the old one and the others are snapped around it
+     * after the date change.
+     *
+     * @param forward <code>true</code> if the date has increased, <code>false</code> if it has decreased.
+     */
+    public void shiftFragments(boolean forward) {
+        int virtualXPosition = this.currentFragment.getVirtualXPosition();
+        int virtualYPosition = this.currentFragment.getVirtualYPosition();
+
+        if (forward) {
+            shiftFragmentsForward();
+        } else {
+            shiftFragmentsBackward();
+        }
+
+        this.currentFragment.setVirtualXPosition(virtualXPosition);
+        this.currentFragment.setVirtualYPosition(virtualYPosition);
+        updateCurrentFragmentState();
+    }
+
     /**
      * Used to rearrange the fragments after decreasing the date so that they are ready to be scrolled again.
      */
@@ -728,6 +785,9 @@ public class CalendarScrollManager extends CalendarElement {
     private void init() {
         CalendarAdapter adapter = this.owner.getAdapter();
 
+        if (this.currentFragment != null)
+            releaseSnapshots();
+
         this.previousFragment = adapter.generateFragment();
         this.currentFragment = adapter.generateFragment();
         this.nextFragment = adapter.generateFragment();
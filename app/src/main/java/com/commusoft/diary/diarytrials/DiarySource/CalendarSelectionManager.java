@@ -1,13 +1,17 @@
 package com.commusoft.diary.diarytrials.DiarySource;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Hashtable;
 import java.util.List;
 
 
 /**
  * Class responsible for handling the selection of dates corresponding to invoked gestures.
+ * The selected dates are kept in a {@link DayIntervalSet}, so a range of any length takes a single
+ * interval. This replaced the <code>protected List&lt;Long&gt; selectedDates</code> field, the
+ * <code>setSelection(List&lt;Long&gt;, SelectionContext)</code> method and the
+ * <code>getDateRangeList(long, long)</code> method, which subclasses can no longer use. Subclasses should
+ * use {@link #selectedDays}, {@link #setSelection(DayIntervalSet)} and
+ * {@link #addSelectableRange(DayIntervalSet, long, long)} instead.
  */
 public class CalendarSelectionManager {
 
@@ -28,9 +32,9 @@ public class CalendarSelectionManager {
      */
     protected RadCalendarView.OnSelectedDatesChangedListener onSelectedDatesChangedListener;
     /**
-     * The current collection of selected dates.
+     * The epoch days of the currently selected dates.
      */
-    protected List<Long> selectedDates;
+    protected final DayIntervalSet selectedDays;
     /**
      * The current selected range.
      */
@@ -48,7 +52,7 @@ public class CalendarSelectionManager {
 
         this.owner = owner;
 
-        this.selectedDates = new ArrayList<Long>();
+        this.selectedDays = new DayIntervalSet();
         this.selectedCells = new ArrayList<CalendarDayCell>();
     }
 
@@ -61,12 +65,66 @@ public class CalendarSelectionManager {
     }
 
     /**
-     * Returns a list of dates that are currently selected.
+     * Returns a list of dates that are currently selected. The list is a lazy read-only view of the selection,
+     * which holds the dates in ascending order. The list used to hold the dates in the order in which they
+     * were selected, so in multiple selection mode its first date is now the earliest selected date rather
+     * than the first one that was tapped.
      *
      * @return a list of the currently selected dates
      */
     public List<Long> getSelectedDates() {
-        return selectedDates;
+        return this.selectedDays.asDateList(this.owner.getDateEngine());
+    }
+
+    /**
+     * Returns the currently selected dates as ranges of consecutive dates. The list is a lazy read-only view of the selection,
+     * which holds the ranges in ascending order.
+     *
+     * @return a list of the currently selected ranges
+     */
+    public List<DateRange> getSelectedRanges() {
+        return this.selectedDays.asRangeList(this.owner.getDateEngine());
+    }
+
+    /**
+     * Gets the bounds of the selected intervals, so that the selection can be saved without expanding it
+     * to single dates.
+     *
+     * @return the first and the last epoch day of each selected interval, in pairs
+     */
+    long[] getSelectedIntervals() {
+        long[] intervals = new long[this.selectedDays.getIntervalsCount() * 2];
+        for (int i = 0; i < this.selectedDays.getIntervalsCount(); i++) {
+            intervals[2 * i] = this.selectedDays.getIntervalFirstDay(i);
+            intervals[2 * i + 1] = this.selectedDays.getIntervalLastDay(i);
+        }
+        return intervals;
+    }
+
+    /**
+     * Selects the intervals returned by {@link #getSelectedIntervals()} along with the selected range.
+     *
+     * @param intervals     the first and the last epoch day of each interval, in pairs
+     * @param selectedRange the selected range or <code>null</code> if there is none
+     */
+    void setSelectedIntervals(long[] intervals, DateRange selectedRange) {
+        DayIntervalSet days = new DayIntervalSet();
+        for (int i = 0; i + 1 < intervals.length; i += 2) {
+            days.addRange(intervals[i], intervals[i + 1]);
+        }
+
+        this.selectedRange = selectedRange;
+        this.setSelection(days);
+    }
+
+    /**
+     * Gets a value indicating whether the provided date is currently selected.
+     *
+     * @param date the date
+     * @return <code>true</code> if the date is selected, <code>false</code> otherwise
+     */
+    public boolean isDateSelected(long date) {
+        return this.selectedDays.contains(this.owner.getDateEngine().toEpochDay(date));
     }
 
     /**
@@ -83,37 +141,29 @@ public class CalendarSelectionManager {
             return;
         }
 
+        EpochDayCalendar dateEngine = this.owner.getDateEngine();
+        DayIntervalSet days = new DayIntervalSet();
+
         if (this.selectionMode == CalendarSelectionMode.Single) {
 
-            long selectedDate = selectedDates.get(0);
-            selectedDate = CalendarTools.getDateStart(selectedDate);
-            selectedDates.clear();
-            selectedDates.add(selectedDate);
-            this.setSelection(selectedDates);
+            days.add(dateEngine.toEpochDay(selectedDates.get(0)));
+            this.setSelection(days);
 
         } else if (this.selectionMode == CalendarSelectionMode.Range) {
 
-            Long startDate = selectedDates.get(0);
-            startDate = CalendarTools.getDateStart(startDate);
-
-            Long endDate = selectedDates.get(selectedDates.size() - 1);
-            endDate = CalendarTools.getDateStart(endDate);
-
-            if (startDate < endDate) {
-                this.selectedRange = new DateRange(startDate, endDate);
-            } else {
-                this.selectedRange = new DateRange(endDate, startDate);
-            }
+            long startDay = dateEngine.toEpochDay(selectedDates.get(0));
+            long endDay = dateEngine.toEpochDay(selectedDates.get(selectedDates.size() - 1));
+            this.selectedRange = new DateRange(dateEngine.getDayStart(Math.min(startDay, endDay)),
+                    dateEngine.getDayStart(Math.max(startDay, endDay)));
 
-            List<Long> dates = this.getDateRangeList(startDate, endDate);
-            this.setSelection(dates);
+            addSelectableRange(days, startDay, endDay);
+            this.setSelection(days);
 
         } else {
-            List<Long> dates = new ArrayList<Long>();
-            for (Long selectedDate : selectedDates) {
-                dates.add(CalendarTools.getDateStart(selectedDate));
+            for (int i = 0, count = selectedDates.size(); i < count; i++) {
+                days.add(dateEngine.toEpochDay(selectedDates.get(i)));
             }
-            this.setSelection(dates);
+            this.setSelection(days);
         }
     }
 
@@ -144,12 +194,14 @@ public class CalendarSelectionManager {
             throw new IllegalStateException("Selected Range is applicable only when calendar's selection mode is Range. Use setSelectedDates(List<Long>).");
         }
         if (this.selectedRange != range) {
-            long start = CalendarTools.getDateStart(range.getStart());
-            long end = CalendarTools.getDateStart(range.getEnd());
-            this.selectedRange = new DateRange(start, end);
-
-            List<Long> dates = this.getDateRangeList(start, end);
-            this.setSelection(dates);
+            EpochDayCalendar dateEngine = this.owner.getDateEngine();
+            long startDay = dateEngine.toEpochDay(range.getStart());
+            long endDay = dateEngine.toEpochDay(range.getEnd());
+            this.selectedRange = new DateRange(dateEngine.getDayStart(startDay), dateEngine.getDayStart(endDay));
+
+            DayIntervalSet days = new DayIntervalSet();
+            addSelectableRange(days, startDay, endDay);
+            this.setSelection(days);
         }
     }
 
@@ -201,72 +253,72 @@ public class CalendarSelectionManager {
                 break;
         }
 
+        // Only the cells whose selection has changed are redrawn.
         syncSelectedCellsWithDates();
-        this.owner.invalidate();
     }
 
     /**
-     * Used to sync the selected dates with the corresponding cells.
+     * Used to sync the selected dates with the corresponding cells. Only the selected days displayed by
+     * the fragments are visited, so the cost does not depend on the length of the selection, and only the
+     * cells whose selection changes are updated.
      */
     public void syncSelectedCellsWithDates() {
-        for (CalendarDayCell cell : this.selectedCells) {
-            cell.setSelected(false);
+        this.owner.invalidateFragmentSnapshots();
+
+        DayCellIndex<CalendarDayCell> dateToCell = this.owner.dateToCell();
+        EpochDayCalendar dateEngine = this.owner.getDateEngine();
+        for (int i = this.selectedCells.size() - 1; i >= 0; i--) {
+            CalendarDayCell cell = this.selectedCells.get(i);
+            long day = dateEngine.toEpochDay(cell.getDate());
+            if (!this.selectedDays.contains(day) || getFirstVisibleCell(dateToCell, day) != cell) {
+                cell.setSelected(false);
+            }
         }
 
         this.selectedCells.clear();
+        if (dateToCell.getDaysCount() == 0)
+            return;
 
-        Hashtable<Long, List<CalendarDayCell>> dateToCell = this.owner.dateToCell();
-        for (long date : this.selectedDates) {
-            List<CalendarDayCell> cells = dateToCell.get(date);
-
-            if (cells == null || cells.size() == 0)
-                continue;
-
-            for (CalendarDayCell cell : cells) {
-                if (cell.getVisibility() == ElementVisibility.Visible) {
+        long firstDay = dateToCell.getFirstDay();
+        long lastDay = firstDay + dateToCell.getDaysCount() - 1;
+        for (int interval = this.selectedDays.findInterval(firstDay), intervalsCount = this.selectedDays.getIntervalsCount();
+             interval < intervalsCount && this.selectedDays.getIntervalFirstDay(interval) <= lastDay; interval++) {
+            long intervalLastDay = Math.min(lastDay, this.selectedDays.getIntervalLastDay(interval));
+            for (long day = Math.max(firstDay, this.selectedDays.getIntervalFirstDay(interval)); day <= intervalLastDay; day++) {
+                CalendarDayCell cell = getFirstVisibleCell(dateToCell, day);
+                if (cell != null) {
                     cell.setSelected(true);
                     this.selectedCells.add(cell);
-                    break;
                 }
             }
         }
     }
 
-    /**
-     * Selects the dates in the passed collection.
-     *
-     * @param selectedDates the collection holding the selected dates.
-     */
-    protected void setSelection(List<Long> selectedDates) {
-        setSelection(selectedDates, null);
+    private static CalendarDayCell getFirstVisibleCell(DayCellIndex<CalendarDayCell> dateToCell, long day) {
+        for (int i = 0, count = dateToCell.getCellsCount(day); i < count; i++) {
+            CalendarDayCell cell = dateToCell.getCell(day, i);
+            if (cell.getVisibility() == ElementVisibility.Visible)
+                return cell;
+        }
+
+        return null;
     }
 
     /**
-     * Selects the dates in the passed collection.
+     * Selects the days in the passed set.
      *
-     * @param selectedDates    the collection holding the selected dates.
-     * @param selectionContext the context to be passed to the selection changed listener if it is present.
+     * @param selectedDays the set holding the selected days or <code>null</code> to clear the selection.
      */
-    protected void setSelection(List<Long> selectedDates, RadCalendarView.SelectionContext selectionContext) {
-        boolean buildSelectionContext = selectionContext == null;
+    protected void setSelection(DayIntervalSet selectedDays) {
+        RadCalendarView.SelectionContext selectionContext = beginSelectionChange();
 
-        if (buildSelectionContext) {
-            selectionContext = new RadCalendarView.SelectionContext();
-            selectionContext.oldSelection = new ArrayList<Long>(this.selectedDates);
-            selectionContext.datesRemoved = new ArrayList<Long>(this.selectedDates);
-        }
-        if (selectedDates != null) {
-            this.selectedDates = selectedDates;
-            if (buildSelectionContext) {
-                selectionContext.newSelection = new ArrayList<Long>(this.selectedDates);
-                selectionContext.datesAdded = new ArrayList<Long>(this.selectedDates);
-            }
+        if (selectedDays != null) {
+            this.selectedDays.set(selectedDays);
         } else {
-            this.selectedDates.clear();
-        }
-        if (this.onSelectedDatesChangedListener != null) {
-            this.onSelectedDatesChangedListener.onSelectedDatesChanged(selectionContext);
+            this.selectedDays.clear();
         }
+
+        endSelectionChange(selectionContext);
         this.syncSelectedCellsWithDates();
     }
 
@@ -282,21 +334,15 @@ public class CalendarSelectionManager {
         for (CalendarDayCell selectedCell : this.selectedCells)
             selectedCell.setSelected(false);
 
-        RadCalendarView.SelectionContext selectionContext = new RadCalendarView.SelectionContext();
-        selectionContext.datesRemoved = new ArrayList<Long>(this.selectedDates);
-        selectionContext.oldSelection = new ArrayList<Long>(this.selectedDates);
+        RadCalendarView.SelectionContext selectionContext = beginSelectionChange();
         this.selectedCells.clear();
-        this.selectedDates.clear();
+        this.selectedDays.clear();
 
         touchedCell.setSelected(true);
         this.selectedCells.add(touchedCell);
-        this.selectedDates.add(touchedCell.getDate());
-        selectionContext.datesAdded = new ArrayList<Long>(this.selectedDates);
-        selectionContext.newSelection = new ArrayList<Long>(this.selectedDates);
-
-        if (this.onSelectedDatesChangedListener != null)
-            this.onSelectedDatesChangedListener.onSelectedDatesChanged(selectionContext);
+        this.selectedDays.add(this.owner.getDateEngine().toEpochDay(touchedCell.getDate()));
 
+        endSelectionChange(selectionContext);
     }
 
     /**
@@ -305,30 +351,20 @@ public class CalendarSelectionManager {
      * @param touchedCell the cell that was affected by the gesture
      */
     protected void handleTouchForMultipleSelection(CalendarDayCell touchedCell) {
-        List<Long> datesWithChangedSelection = new ArrayList<Long>();
-        datesWithChangedSelection.add(touchedCell.getDate());
-
-        RadCalendarView.SelectionContext selectionContext = new RadCalendarView.SelectionContext();
-        selectionContext.oldSelection = new ArrayList<Long>(this.selectedDates);
+        RadCalendarView.SelectionContext selectionContext = beginSelectionChange();
+        long touchedDay = this.owner.getDateEngine().toEpochDay(touchedCell.getDate());
 
         if (touchedCell.isSelected()) {
             touchedCell.setSelected(false);
             this.selectedCells.remove(touchedCell);
-            this.selectedDates.remove(touchedCell.getDate());
-            selectionContext.datesRemoved = datesWithChangedSelection;
+            this.selectedDays.remove(touchedDay);
         } else {
             touchedCell.setSelected(true);
             this.selectedCells.add(touchedCell);
-            if (!selectedDates.contains(touchedCell.getDate()))
-                this.selectedDates.add(touchedCell.getDate());
-            selectionContext.datesAdded = datesWithChangedSelection;
+            this.selectedDays.add(touchedDay);
         }
 
-        selectionContext.newSelection = new ArrayList<Long>(this.selectedDates);
-
-        if (this.onSelectedDatesChangedListener != null) {
-            this.onSelectedDatesChangedListener.onSelectedDatesChanged(selectionContext);
-        }
+        endSelectionChange(selectionContext);
     }
 
     /**
@@ -337,88 +373,107 @@ public class CalendarSelectionManager {
      * @param touchedCell the cell that was affected by the gesture
      */
     protected void handleTouchForRangeSelection(CalendarDayCell touchedCell) {
-        int selectedDatesSize = this.selectedDates.size();
-
-        RadCalendarView.SelectionContext selectionContext = new RadCalendarView.SelectionContext();
+        EpochDayCalendar dateEngine = this.owner.getDateEngine();
+        long touchedDay = dateEngine.toEpochDay(touchedCell.getDate());
 
-        if (selectedDatesSize != 1) {
-            if (selectedDatesSize > 1) {
+        if (this.selectedDays.getDaysCount() != 1) {
+            RadCalendarView.SelectionContext selectionContext = beginSelectionChange();
+            if (!this.selectedDays.isEmpty()) {
                 for (CalendarDayCell cell : this.selectedCells) {
                     cell.setSelected(false);
                 }
-                selectionContext.oldSelection = new ArrayList<Long>(this.selectedDates);
-                selectionContext.datesRemoved = new ArrayList<Long>(this.selectedDates);
                 this.selectedCells.clear();
-                this.selectedDates.clear();
+                this.selectedDays.clear();
             }
             touchedCell.setSelected(true);
             this.selectedCells.add(touchedCell);
-            this.selectedDates.add(touchedCell.getDate());
-            selectionContext.datesAdded = new ArrayList<Long>(this.selectedDates);
-            selectionContext.newSelection = new ArrayList<Long>(this.selectedDates);
-            this.selectedRange = new DateRange(this.selectedDates.get(0), this.selectedDates.get(0));
-            if (this.onSelectedDatesChangedListener != null)
-                this.onSelectedDatesChangedListener.onSelectedDatesChanged(selectionContext);
+            this.selectedDays.add(touchedDay);
+            this.selectedRange = new DateRange(dateEngine.getDayStart(touchedDay), dateEngine.getDayStart(touchedDay));
+            endSelectionChange(selectionContext);
         } else {
-            selectionContext.oldSelection = new ArrayList<Long>(this.selectedDates);
-            Long selectedDate = this.selectedDates.get(0);
-            Long touchedDate = touchedCell.getDate();
-            if (selectedDate.equals(touchedDate)) {
+            long selectedDay = this.selectedDays.getDay(0);
+            if (selectedDay == touchedDay) {
                 return;
             }
-            if (selectedDate < touchedDate) {
-                this.selectedRange = new DateRange(selectedDate, touchedDate);
-            } else {
-                this.selectedRange = new DateRange(touchedDate, selectedDate);
-            }
 
-            List<Long> dates = this.getDateRangeList(selectedDate, touchedDate);
-            selectionContext.datesAdded = new ArrayList<Long>(dates).subList(1, dates.size());
-            selectionContext.newSelection = new ArrayList<Long>(dates);
-            this.setSelection(dates, selectionContext);
+            this.selectedRange = new DateRange(dateEngine.getDayStart(Math.min(selectedDay, touchedDay)),
+                    dateEngine.getDayStart(Math.max(selectedDay, touchedDay)));
+
+            DayIntervalSet days = new DayIntervalSet();
+            addSelectableRange(days, selectedDay, touchedDay);
+            this.setSelection(days);
         }
     }
 
     /**
-     * Gets a date range list according to the passed start and end values.
+     * Adds to a set the days from the start day towards the end day, which precede the first
+     * displayed day that has a cell which is not selectable.
      *
-     * @param start the start of the range.
-     * @param end   the end of the range.
-     * @return the range list.
+     * @param days     the set to which the days are added.
+     * @param startDay the day from which the range starts, it may be after the end day.
+     * @param endDay   the day at which the range ends.
      */
-    protected final List<Long> getDateRangeList(long start, long end) {
-        List<Long> dateRange = new ArrayList<Long>();
-        Calendar calendar = this.owner.getCalendar();
+    protected final void addSelectableRange(DayIntervalSet days, long startDay, long endDay) {
+        DayCellIndex<CalendarDayCell> dateToCell = this.owner.dateToCell();
+        int step = startDay <= endDay ? 1 : -1;
+        long borderDay = endDay + step;
+
+        // Only the displayed days may have cells which are not selectable.
+        if (dateToCell.getDaysCount() > 0) {
+            long firstIndexedDay = dateToCell.getFirstDay();
+            long lastIndexedDay = firstIndexedDay + dateToCell.getDaysCount() - 1;
+            long from = step > 0 ? Math.max(startDay, firstIndexedDay) : Math.min(startDay, lastIndexedDay);
+            long to = step > 0 ? Math.min(endDay, lastIndexedDay) : Math.max(endDay, firstIndexedDay);
+
+            for (long day = from; step > 0 ? day <= to : day >= to; day += step) {
+                if (hasUnselectableCell(dateToCell, day)) {
+                    borderDay = day;
+                    break;
+                }
+            }
+        }
 
-        boolean borderReached = false;
-        boolean increase = start < end;
-        calendar.setTimeInMillis(start);
+        if (borderDay != startDay) {
+            long lastDay = borderDay - step;
+            days.addRange(Math.min(startDay, lastDay), Math.max(startDay, lastDay));
+        }
+    }
 
-        while (true) {
-            List<CalendarDayCell> cells = this.owner.dateToCell().get(calendar.getTimeInMillis());
-            if (cells != null && cells.size() > 0) {
+    private static boolean hasUnselectableCell(DayCellIndex<CalendarDayCell> dateToCell, long day) {
+        for (int i = 0, count = dateToCell.getCellsCount(day); i < count; i++) {
+            if (!dateToCell.getCell(day, i).isSelectable())
+                return true;
+        }
 
-                for (CalendarDayCell cell : cells) {
-                    if (!cell.isSelectable())
-                        borderReached = true;
-                }
-            }
+        return false;
+    }
 
-            if (borderReached)
-                break;
+    /**
+     * Captures the current selection before it is changed, if there is a listener to be notified.
+     *
+     * @return the context of the change or <code>null</code> if there is no listener.
+     */
+    private RadCalendarView.SelectionContext beginSelectionChange() {
+        if (this.onSelectedDatesChangedListener == null)
+            return null;
 
-            dateRange.add(calendar.getTimeInMillis());
-            calendar.add(Calendar.DATE, increase ? 1 : -1);
+        RadCalendarView.SelectionContext selectionContext = new RadCalendarView.SelectionContext(this.owner.getDateEngine());
+        selectionContext.oldSelection.set(this.selectedDays);
+        return selectionContext;
+    }
 
-            if (increase) {
-                if (calendar.getTimeInMillis() > end)
-                    break;
-            } else {
-                if (calendar.getTimeInMillis() < end)
-                    break;
-            }
-        }
+    /**
+     * Computes the days added to and removed from the selection and notifies the listener.
+     *
+     * @param selectionContext the context returned by {@link #beginSelectionChange()}.
+     */
+    private void endSelectionChange(RadCalendarView.SelectionContext selectionContext) {
+        if (selectionContext == null || this.onSelectedDatesChangedListener == null)
+            return;
 
-        return dateRange;
+        selectionContext.newSelection.set(this.selectedDays);
+        selectionContext.datesAdded.setDifference(selectionContext.newSelection, selectionContext.oldSelection);
+        selectionContext.datesRemoved.setDifference(selectionContext.oldSelection, selectionContext.newSelection);
+        this.onSelectedDatesChangedListener.onSelectedDatesChanged(selectionContext);
     }
 }
@@ -4,12 +4,13 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.util.SparseArray;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Represents a layer which draws decoration lines over the lines
- * drawn by {@link GridLinesLayer}.
+ * drawn by {@link GridLinesLayer}. The border segments of the decorated cells are kept per layer in
+ * packed arrays and a segment shared by two decorated cells of the same layer is dropped, so that
+ * adjacent decorated cells are outlined together. The decorations stay until they are toggled or cleared;
+ * the {@link #getGeneration()} is changed whenever the decorated cells or their layout change, so that the
+ * fragments know when to recompute them.
  */
 public class CellDecorationsLayer {
 
@@ -18,10 +19,10 @@ public class CellDecorationsLayer {
      */
     protected final RadCalendarView owner;
     private final Paint paint;
-    private final SparseArray<List<LineSegment>> categorizedLineSegments = new SparseArray<List<LineSegment>>();
-    private final List<LineSegment> decorationSegments = new ArrayList<LineSegment>();
+    private final SparseArray<DecorationLayer> layers = new SparseArray<DecorationLayer>();
     private float strokeWidth;
     private int halfStrokeWidth;
+    private int generation;
 
     /**
      * Creates an instance of the {@link CellDecorationsLayer} class.
@@ -81,10 +82,37 @@ public class CellDecorationsLayer {
      * Removes the decorations for all cells that are currently decorated.
      */
     public void clearDecorations() {
-        this.decorationSegments.clear();
-        for (int i = 0, len = this.categorizedLineSegments.size(); i < len; i++) {
-            this.categorizedLineSegments.valueAt(i).clear();
-        }
+        this.layers.clear();
+        this.generation++;
+    }
+
+    /**
+     * Removes the decorations stored in the layer with the provided id.
+     *
+     * @param layerId the id of the layer.
+     */
+    public void clearDecorations(int layerId) {
+        DecorationLayer layer = this.layers.get(layerId);
+        if (layer != null)
+            layer.clear();
+    }
+
+    /**
+     * Gets the current generation of the decorations. The decorations computed for the cells are valid as long as the
+     * generation is not changed.
+     *
+     * @return the current generation.
+     */
+    public int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Marks the decorations computed for the cells as outdated, so that they are computed again before the next render.
+     * Should be called when the decorated cells, their visibility or their layout are changed.
+     */
+    public void invalidate() {
+        this.generation++;
     }
 
     /**
@@ -130,10 +158,12 @@ public class CellDecorationsLayer {
             this.strokeWidth = value;
             this.halfStrokeWidth = (int) (value / 2);
             this.paint.setStrokeWidth(value);
+            this.generation++;
             this.owner.invalidate();
         }
     }
 
+
     /**
      * Used to render the current decorations.
      *
@@ -150,93 +180,24 @@ public class CellDecorationsLayer {
      * @param canvas  the current canvas.
      */
     public void renderLayer(int layerId, Canvas canvas) {
-        List<LineSegment> segmentsForLayer = this.categorizedLineSegments.get(layerId);
+        DecorationLayer layer = this.layers.get(layerId);
 
-        if (segmentsForLayer == null)
+        if (layer == null || layer.getSegmentsCount() == 0)
             return;
 
-        for (LineSegment segment : segmentsForLayer)
-            canvas.drawLine(segment.startX, segment.startY, segment.endX, segment.endY, this.paint);
+        canvas.drawLines(layer.getPoints(), 0, layer.getSegmentsCount() * DecorationLayer.POINTS_PER_SEGMENT, this.paint);
     }
 
     private void changeDecorationForCell(int layerId, int left, int top, int right, int bottom) {
-        LineSegment leftBorder = new LineSegment(left, top - this.halfStrokeWidth, left, bottom + this.halfStrokeWidth);
-        LineSegment topBorder = new LineSegment(left, top, right, top);
-        LineSegment rightBorder = new LineSegment(right, top - halfStrokeWidth, right, bottom + this.halfStrokeWidth);
-        LineSegment bottomBorder = new LineSegment(left, bottom, right, bottom);
-
-        handleSegmentDecorationChange(layerId, leftBorder);
-        handleSegmentDecorationChange(layerId, topBorder);
-        handleSegmentDecorationChange(layerId, rightBorder);
-        handleSegmentDecorationChange(layerId, bottomBorder);
-    }
-
-    private void handleSegmentDecorationChange(int id, LineSegment segment) {
-        List<LineSegment> lineSegmentsForId = this.categorizedLineSegments.get(id);
-        if (lineSegmentsForId == null) {
-            lineSegmentsForId = new ArrayList<LineSegment>();
-            this.categorizedLineSegments.put(id, lineSegmentsForId);
-        }
-
-        if (this.decorationSegments.contains(segment)) {
-            this.decorationSegments.remove(segment);
-            if ((this.owner.getScrollMode() != ScrollMode.Overlap && this.owner.getScrollMode() != ScrollMode.Stack))
-                removeSegmentFromAllLayers(segment);
-            else {
-                removeSegmentForLayer(segment, id);
-            }
-        } else {
-            this.decorationSegments.add(segment);
-            lineSegmentsForId.add(segment);
-        }
-    }
-
-    private void removeSegmentForLayer(LineSegment segment, int id) {
-        List<LineSegment> layer = this.categorizedLineSegments.get(id);
-        if (layer != null)
-            layer.remove(segment);
-    }
-
-    private void removeSegmentFromAllLayers(LineSegment segment) {
-        for (int i = 0, len = this.categorizedLineSegments.size(); i < len; i++) {
-            this.categorizedLineSegments.valueAt(i).remove(segment);
+        DecorationLayer layer = this.layers.get(layerId);
+        if (layer == null) {
+            layer = new DecorationLayer();
+            this.layers.put(layerId, layer);
         }
-    }
-
-    private class LineSegment {
 
-        private final int startX;
-        private final int endX;
-        private final int startY;
-        private final int endY;
-
-        LineSegment(int startX, int startY, int endX, int endY) {
-            this.startX = startX;
-            this.startY = startY;
-            this.endX = endX;
-            this.endY = endY;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (o == null)
-                return false;
-            if (o == this)
-                return true;
-            if (!(o instanceof LineSegment))
-                return false;
-
-            LineSegment second = (LineSegment) o;
-            return startX == second.startX &&
-                    startY == second.startY &&
-                    endX == second.endX &&
-                    endY == second.endY;
-        }
-
-        @Override
-        public int hashCode() {
-            String result = String.format("%d.%d.%d.%d", startX, startY, endX, endY);
-            return result.hashCode();
-        }
+        layer.toggleVerticalSegment(left, top - this.halfStrokeWidth, bottom + this.halfStrokeWidth);
+        layer.toggleHorizontalSegment(top, left, right);
+        layer.toggleVerticalSegment(right, top - this.halfStrokeWidth, bottom + this.halfStrokeWidth);
+        layer.toggleHorizontalSegment(bottom, left, right);
     }
 }
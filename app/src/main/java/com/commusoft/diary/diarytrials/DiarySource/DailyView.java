@@ -16,6 +16,10 @@ import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.view.GestureDetector;
 import android.view.HapticFeedbackConstants;
@@ -27,13 +31,17 @@ import android.widget.Scroller;
 
 import com.commusoft.diary.diarytrials.R;
 import com.commusoft.diary.diarytrials.DiarySource.events.DiaryJob;
+import com.commusoft.diary.diarytrials.DiarySource.events.EventStore;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Created by Raquib-ul-Alam Kanak on 7/21/2014.
@@ -45,6 +53,23 @@ public class DailyView extends View {
     public static final int LENGTH_SHORT = 1;
     @Deprecated
     public static final int LENGTH_LONG = 2;
+    // Phases and counters of the frame profiler.
+    public static final int PROFILER_PHASE_FETCH_EVENTS = 0;
+    public static final int PROFILER_PHASE_DAYS = 1;
+    public static final int PROFILER_PHASE_EVENTS = 2;
+    public static final int PROFILER_PHASE_HEADER_ROW = 3;
+    public static final int PROFILER_PHASE_TIME_COLUMN = 4;
+    public static final int PROFILER_COUNTER_EVENTS_DRAWN = 0;
+    public static final int PROFILER_COUNTER_EVENTS_LAID_OUT = 1;
+    private static final String TAG = "DailyView";
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int DEFAULT_PREFETCH_RADIUS = 1;
+    private static final int DEFAULT_MAX_RESIDENT_MONTHS = 6;
+    private static final int DEFAULT_TEXT_LAYOUT_CACHE_CAPACITY = 256;
+    private static final long MONTH_LOAD_RETRY_DELAY = 1000;
+    private static final long MAX_MONTH_LOAD_RETRY_DELAY = 60 * 1000;
+    private static final String[] PROFILER_PHASE_NAMES = new String[]{"fetch events", "days", "events", "header row", "time column"};
+    private static final String[] PROFILER_COUNTER_NAMES = new String[]{"events drawn", "events laid out"};
     private final Context mContext;
     private Calendar mToday;
     private Calendar mStartDate;
@@ -66,12 +91,40 @@ public class DailyView extends View {
     private Paint mTodayHeaderTextPaint;
     private Paint mEventBackgroundPaint;
     private float mHeaderColumnWidth;
-    private List<EventRect> mEventRects;
+    private final MonthSegmentCache<MonthEvents> mMonthSegments = new MonthSegmentCache<MonthEvents>(DEFAULT_MAX_RESIDENT_MONTHS) {
+        @Override
+        protected void onEvicted(int monthKey, MonthEvents segment) {
+            removeMonthSegment(segment);
+        }
+    };
+    private final ResidentMonthEvents mResidentMonths = new ResidentMonthEvents();
+    private final List<DiaryJob> mDayEvents = new ArrayList<DiaryJob>();
+    private final LongSparseArray<DaySegments> mDaySegments = new LongSparseArray<DaySegments>();
+    private int mFirstRequiredMonthKey = Integer.MIN_VALUE;
+    private int mLastRequiredMonthKey = Integer.MIN_VALUE;
+    private int mFirstPredictedMonthKey = Integer.MIN_VALUE;
+    private int mLastPredictedMonthKey = Integer.MIN_VALUE;
+    private long mMonthFetchCount;
+    private FrameProfiler mFrameProfiler;
+    private long[] mDrawnDays = new long[0];
+    private int mDrawnDaysCount;
+    private TimeZone mTimeZone;
+    private final EventOverlapLayout mOverlapLayout = new EventOverlapLayout();
+    private final EventTextLayoutCache mTextLayoutCache = new EventTextLayoutCache(DEFAULT_TEXT_LAYOUT_CACHE_CAPACITY);
+    private long[] mLayoutStarts = new long[0];
+    private long[] mLayoutEnds = new long[0];
+    private DiaryJob[] mLayoutEvents = new DiaryJob[0];
+    private final RectF mDrawnEventRect = new RectF();
     private TextPaint mEventTextPaint;
     private Paint mHeaderColumnBackgroundPaint;
     private Scroller mStickyScroller;
-    private int mFetchedMonths[] = new int[3];
     private boolean mRefreshEvents = false;
+    private Executor mMonthLoadExecutor;
+    private ExecutorService mDefaultMonthLoadExecutor;
+    private final SparseBooleanArray mLoadingMonths = new SparseBooleanArray();
+    private final SparseIntArray mMonthLoadFailures = new SparseIntArray();
+    private int mLoadGeneration;
+    private Paint mLoadingDayBackgroundPaint;
     private float mDistanceY = 0;
     private float mDistanceX = 0;
     private Direction mCurrentFlingDirection = Direction.NONE;
@@ -87,6 +140,7 @@ public class DailyView extends View {
     private int mHeaderRowPadding = 10;
     private int mHeaderRowBackgroundColor = Color.WHITE;
     private int mDayBackgroundColor = Color.rgb(245, 245, 245);
+    private int mLoadingDayBackgroundColor = Color.rgb(230, 230, 230);
     private int mHourSeparatorColor = Color.rgb(230, 230, 230);
     private int mTodayBackgroundColor = Color.rgb(239, 247, 254);
     private int mHourSeparatorHeight = 2;
@@ -101,6 +155,7 @@ public class DailyView extends View {
     private int mOverlappingEventGap = 0;
     private int mEventMarginVertical = 0;
     private float mXScrollingSpeed = 1f;
+    private int mPrefetchRadius = DEFAULT_PREFETCH_RADIUS;
     private Calendar mFirstVisibleDay;
     private Calendar mLastVisibleDay;
 
@@ -108,6 +163,9 @@ public class DailyView extends View {
     private EventClickListener mEventClickListener;
     private EventLongPressListener mEventLongPressListener;
     private MonthChangeListener mMonthChangeListener;
+    private AsyncMonthLoader mAsyncMonthLoader;
+    private EventStore mEventStore;
+    private final EventStore.Cursor mEventStoreCursor = new EventStore.Cursor();
     private EmptyViewClickListener mEmptyViewClickListener;
     private EmptyViewLongPressListener mEmptyViewLongPressListener;
     private DateTimeInterpreter mDateTimeInterpreter;
@@ -146,6 +204,7 @@ public class DailyView extends View {
 
             if (mCurrentFlingDirection == Direction.HORIZONTAL){
                 mScroller.fling((int) mCurrentOrigin.x, 0, (int) (velocityX * mXScrollingSpeed), 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 0);
+                prefetchMonthsAt(mScroller.getFinalX());
             }
             else if (mCurrentFlingDirection == Direction.VERTICAL){
                 mScroller.fling(0, (int) mCurrentOrigin.y, 0, (int) velocityY, 0, 0, (int) -(mHourHeight * 24 + mHeaderTextHeight + mHeaderRowPadding * 2 - getHeight()), 0);
@@ -159,15 +218,13 @@ public class DailyView extends View {
         @Override
         public boolean onSingleTapConfirmed(MotionEvent e) {
             // If the tap was on an event then trigger the callback.
-            if (mEventRects != null && mEventClickListener != null) {
-                List<EventRect> reversedEventRects = mEventRects;
-                Collections.reverse(reversedEventRects);
-                for (EventRect event : reversedEventRects) {
-                    if (event.rectF != null && e.getX() > event.rectF.left && e.getX() < event.rectF.right && e.getY() > event.rectF.top && e.getY() < event.rectF.bottom) {
-                        mEventClickListener.onEventClick(event.originalEvent, event.rectF);
-                        playSoundEffect(SoundEffectConstants.CLICK);
-                        return super.onSingleTapConfirmed(e);
-                    }
+            if (mEventClickListener != null) {
+                RectF eventRect = new RectF();
+                DiaryJob event = findDrawnEvent(e.getX(), e.getY(), eventRect);
+                if (event != null) {
+                    mEventClickListener.onEventClick(event, eventRect);
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    return super.onSingleTapConfirmed(e);
                 }
             }
 
@@ -187,15 +244,13 @@ public class DailyView extends View {
         public void onLongPress(MotionEvent e) {
             super.onLongPress(e);
 
-            if (mEventLongPressListener != null && mEventRects != null) {
-                List<EventRect> reversedEventRects = mEventRects;
-                Collections.reverse(reversedEventRects);
-                for (EventRect event : reversedEventRects) {
-                    if (event.rectF != null && e.getX() > event.rectF.left && e.getX() < event.rectF.right && e.getY() > event.rectF.top && e.getY() < event.rectF.bottom) {
-                        mEventLongPressListener.onEventLongPress(event.originalEvent, event.rectF);
-                        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
-                        return;
-                    }
+            if (mEventLongPressListener != null) {
+                RectF eventRect = new RectF();
+                DiaryJob event = findDrawnEvent(e.getX(), e.getY(), eventRect);
+                if (event != null) {
+                    mEventLongPressListener.onEventLongPress(event, eventRect);
+                    performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+                    return;
                 }
             }
 
@@ -266,6 +321,7 @@ public class DailyView extends View {
         mToday.set(Calendar.HOUR_OF_DAY, 0);
         mToday.set(Calendar.MINUTE, 0);
         mToday.set(Calendar.SECOND, 0);
+        mTimeZone = mToday.getTimeZone();
 
         // Scrolling initialization.
         mGestureDetector = new GestureDetectorCompat(mContext, mGestureListener);
@@ -300,6 +356,10 @@ public class DailyView extends View {
         mDayBackgroundPaint = new Paint();
         mDayBackgroundPaint.setColor(mDayBackgroundColor);
 
+        // Prepare the background paint of the days whose events are still loading.
+        mLoadingDayBackgroundPaint = new Paint();
+        mLoadingDayBackgroundPaint.setColor(mLoadingDayBackgroundColor);
+
         // Prepare hour separator color paint.
         mHourSeparatorPaint = new Paint();
         mHourSeparatorPaint.setStyle(Paint.Style.STROKE);
@@ -336,14 +396,35 @@ public class DailyView extends View {
         mDefaultEventColor = Color.parseColor("#9fc6e7");
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        // Drop the loads which are still running and load the events again when attached.
+        if (mLoadingMonths.size() > 0) {
+            mLoadingMonths.clear();
+            mLoadGeneration++;
+            mRefreshEvents = true;
+        }
+        if (mDefaultMonthLoadExecutor != null) {
+            mDefaultMonthLoadExecutor.shutdown();
+            mDefaultMonthLoadExecutor = null;
+        }
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        // Profile the frame only if the profiling is enabled.
+        FrameProfiler profiler = mFrameProfiler;
+        long frameStart = profiler != null ? profiler.beginFrame() : 0;
+
         // Draw the header row.
         drawHeaderRowAndEvents(canvas);
 
         // Draw the time column and all the axes/separators.
+        long phaseStart = profiler != null ? profiler.now() : 0;
         drawTimeColumnAndAxes(canvas);
 
         // Hide everything in the first cell (top left corner).
@@ -351,6 +432,11 @@ public class DailyView extends View {
 
         // Hide anything that is in the bottom margin of the header row.
         canvas.drawRect(mHeaderColumnWidth, mHeaderTextHeight + mHeaderRowPadding * 2, getWidth(), mHeaderRowPadding * 2 + mHeaderTextHeight + mHeaderMarginBottom + mTimeTextHeight/2 - mHourSeparatorHeight / 2, mHeaderColumnBackgroundPaint);
+
+        if (profiler != null) {
+            profiler.endPhase(PROFILER_PHASE_TIME_COLUMN, phaseStart);
+            profiler.endFrame(frameStart);
+        }
     }
 
     private void drawTimeColumnAndAxes(Canvas canvas) {
@@ -376,6 +462,9 @@ public class DailyView extends View {
     }
 
     private void drawHeaderRowAndEvents(Canvas canvas) {
+        FrameProfiler profiler = mFrameProfiler;
+        long phaseStart = profiler != null ? profiler.now() : 0;
+
         // Calculate the available width for each day.
         mHeaderColumnWidth = mTimeTextWidth + mHeaderColumnPadding *2;
         mWidthPerDay = getWidth() - mHeaderColumnWidth - mColumnGap * (mNumberOfVisibleDays - 1);
@@ -408,15 +497,24 @@ public class DailyView extends View {
         float[] hourLines = new float[lineCount * 4];
 
         // Clear the cache for event rectangles.
-        if (mEventRects != null) {
-            for (EventRect eventRect: mEventRects) {
-                eventRect.rectF = null;
-            }
-        }
+        clearDrawnEventRects();
 
         // Iterate through each day.
         mFirstVisibleDay = (Calendar) mToday.clone();
         mFirstVisibleDay.add(Calendar.DATE, leftDaysWithGaps);
+
+        // Get more events if necessary. We want to keep the events of the visible months and
+        // the months around them.
+        Calendar lastDay = (Calendar) mFirstVisibleDay.clone();
+        lastDay.add(Calendar.DATE, mNumberOfVisibleDays);
+        int firstMonthKey = getMonthKey(mFirstVisibleDay) - mPrefetchRadius;
+        int lastMonthKey = getMonthKey(lastDay) + mPrefetchRadius;
+        if (mRefreshEvents || firstMonthKey != mFirstRequiredMonthKey || lastMonthKey != mLastRequiredMonthKey) {
+            if (profiler != null) phaseStart = profiler.endPhase(PROFILER_PHASE_DAYS, phaseStart);
+            getMoreEvents(firstMonthKey, lastMonthKey);
+            mRefreshEvents = false;
+            if (profiler != null) phaseStart = profiler.endPhase(PROFILER_PHASE_FETCH_EVENTS, phaseStart);
+        }
         for (int dayNumber = leftDaysWithGaps + 1;
              dayNumber <= leftDaysWithGaps + mNumberOfVisibleDays + 1;
              dayNumber++) {
@@ -428,17 +526,13 @@ public class DailyView extends View {
             mLastVisibleDay.add(Calendar.DATE, dayNumber - 2);
             boolean sameDay = isSameDay(day, mToday);
 
-            // Get more events if necessary. We want to store the events 3 months beforehand. Get
-            // events only when it is the first iteration of the loop.
-            if (mEventRects == null || mRefreshEvents || (dayNumber == leftDaysWithGaps + 1 && mFetchedMonths[1] != day.get(Calendar.MONTH)+1 && day.get(Calendar.DAY_OF_MONTH) == 15)) {
-                getMoreEvents(day);
-                mRefreshEvents = false;
-            }
-
-            // Draw background color for each day.
+            // Draw background color for each day. Days whose events are still loading get a placeholder background.
             float start =  (startPixel < mHeaderColumnWidth ? mHeaderColumnWidth : startPixel);
+            Paint dayBackgroundPaint = sameDay ? mTodayBackgroundPaint : mDayBackgroundPaint;
+            if (mLoadingMonths.size() > 0 && isMonthLoading(day.get(Calendar.YEAR), day.get(Calendar.MONTH) + 1))
+                dayBackgroundPaint = mLoadingDayBackgroundPaint;
             if (mWidthPerDay + startPixel - start> 0)
-                canvas.drawRect(start, mHeaderTextHeight + mHeaderRowPadding * 2 + mTimeTextHeight/2 + mHeaderMarginBottom, startPixel + mWidthPerDay, getHeight(), sameDay ? mTodayBackgroundPaint : mDayBackgroundPaint);
+                canvas.drawRect(start, mHeaderTextHeight + mHeaderRowPadding * 2 + mTimeTextHeight/2 + mHeaderMarginBottom, startPixel + mWidthPerDay, getHeight(), dayBackgroundPaint);
 
             // Prepare the separator lines for hours.
             int i = 0;
@@ -457,12 +551,20 @@ public class DailyView extends View {
             canvas.drawLines(hourLines, mHourSeparatorPaint);
 
             // Draw the events.
-            drawEvents(day, startPixel, canvas);
+            if (profiler != null) phaseStart = profiler.endPhase(PROFILER_PHASE_DAYS, phaseStart);
+            drawEvents(getDayKey(day.getTimeInMillis()), startPixel, canvas);
+            if (profiler != null) phaseStart = profiler.endPhase(PROFILER_PHASE_EVENTS, phaseStart);
 
             // In the next iteration, start from the next day.
             startPixel += mWidthPerDay + mColumnGap;
         }
 
+        // Forget the segments of the days which scrolled out of view.
+        long firstVisibleDayKey = getDayKey(mFirstVisibleDay.getTimeInMillis());
+        trimDaySegments(firstVisibleDayKey, firstVisibleDayKey + mNumberOfVisibleDays);
+
+        if (profiler != null) phaseStart = profiler.endPhase(PROFILER_PHASE_DAYS, phaseStart);
+
         // Draw the header background.
         canvas.drawRect(0, 0, getWidth(), mHeaderTextHeight + mHeaderRowPadding * 2, mHeaderBackgroundPaint);
 
@@ -482,6 +584,7 @@ public class DailyView extends View {
             startPixel += mWidthPerDay + mColumnGap;
         }
 
+        if (profiler != null) profiler.endPhase(PROFILER_PHASE_HEADER_ROW, phaseStart);
     }
 
     /**
@@ -517,83 +620,137 @@ public class DailyView extends View {
 
     /**
      * Draw all the events of a particular day.
-     * @param date The day.
+     * @param day The day as number of days since the epoch in the local time zone.
      * @param startFromPixel The left position of the day area. The events will never go any left from this value.
      * @param canvas The canvas to draw upon.
      */
-    private void drawEvents(Calendar date, float startFromPixel, Canvas canvas) {
-        if (mEventRects != null && mEventRects.size() > 0) {
-            for (int i = 0; i < mEventRects.size(); i++) {
-                if (isSameDay(mEventRects.get(i).event.getCalendarDate(mEventRects.get(i).event.getStartTime()), date)) {
-
-                    // Calculate top.
-                    float top = mHourHeight * 24 * mEventRects.get(i).top / 1440 + mCurrentOrigin.y + mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2 + mEventMarginVertical;
-                    float originalTop = top;
-                    if (top < mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2)
-                        top = mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2;
-
-                    // Calculate bottom.
-                    float bottom = mEventRects.get(i).bottom;
-                    bottom = mHourHeight * 24 * bottom / 1440 + mCurrentOrigin.y + mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2 - mEventMarginVertical;
-
-                    // Calculate left and right.
-                    float left = startFromPixel + mEventRects.get(i).left * mWidthPerDay;
-                    if (left < startFromPixel)
-                        left += mOverlappingEventGap;
-                    float originalLeft = left;
-                    float right = left + mEventRects.get(i).width * mWidthPerDay;
-                    if (right < startFromPixel + mWidthPerDay)
-                        right -= mOverlappingEventGap;
-                    if (left < mHeaderColumnWidth) left = mHeaderColumnWidth;
-
-                    // Draw the event and the event name on top of it.
-                    RectF eventRectF = new RectF(left, top, right, bottom);
-                    if (bottom > mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2 && left < right &&
-                            eventRectF.right > mHeaderColumnWidth &&
-                            eventRectF.left < getWidth() &&
-                            eventRectF.bottom > mHeaderTextHeight + mHeaderRowPadding * 2 + mTimeTextHeight / 2 + mHeaderMarginBottom &&
-                            eventRectF.top < getHeight() &&
-                            left < right
-                            ) {
-                        mEventRects.get(i).rectF = eventRectF;
-                        mEventBackgroundPaint.setColor(mEventRects.get(i).event.getEventColor() == 0 ? mDefaultEventColor : mEventRects.get(i).event.getEventColor());
-                        canvas.drawRect(mEventRects.get(i).rectF, mEventBackgroundPaint);
-                        drawText(mEventRects.get(i).event.getTitle(), mEventRects.get(i).rectF, canvas, originalTop, originalLeft);
-                    }
-                    else
-                        mEventRects.get(i).rectF = null;
+    private void drawEvents(long day, float startFromPixel, Canvas canvas) {
+        DaySegments segments = getDaySegments(day);
+        if (segments.count == 0)
+            return;
+
+        rememberDrawnDay(day);
+        int drawnEventsCount = 0;
+        for (int i = 0; i < segments.count; i++) {
+
+            // Calculate top.
+            float top = mHourHeight * 24 * segments.startMinutes[i] / 1440f + mCurrentOrigin.y + mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2 + mEventMarginVertical;
+            float originalTop = top;
+            if (top < mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2)
+                top = mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2;
+
+            // Calculate bottom.
+            float bottom = mHourHeight * 24 * segments.endMinutes[i] / 1440f + mCurrentOrigin.y + mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2 - mEventMarginVertical;
+
+            // Calculate left and right.
+            float left = startFromPixel + segments.lefts[i] * mWidthPerDay;
+            if (left < startFromPixel)
+                left += mOverlappingEventGap;
+            float originalLeft = left;
+            float right = left + segments.widths[i] * mWidthPerDay;
+            if (right < startFromPixel + mWidthPerDay)
+                right -= mOverlappingEventGap;
+            if (left < mHeaderColumnWidth) left = mHeaderColumnWidth;
+
+            // Draw the event and the event name on top of it.
+            if (bottom > mHeaderTextHeight + mHeaderRowPadding * 2 + mHeaderMarginBottom + mTimeTextHeight/2 && left < right &&
+                    right > mHeaderColumnWidth &&
+                    left < getWidth() &&
+                    bottom > mHeaderTextHeight + mHeaderRowPadding * 2 + mTimeTextHeight / 2 + mHeaderMarginBottom &&
+                    top < getHeight() &&
+                    left < right
+                    ) {
+                DiaryJob event = segments.events[i];
+                segments.setDrawnBounds(i, left, top, right, bottom);
+                mDrawnEventRect.set(left, top, right, bottom);
+                mEventBackgroundPaint.setColor(event.getEventColor() == 0 ? mDefaultEventColor : event.getEventColor());
+                canvas.drawRect(mDrawnEventRect, mEventBackgroundPaint);
+                drawText(event, mDrawnEventRect, canvas, originalTop, originalLeft);
+                drawnEventsCount++;
+            }
+            else
+                segments.drawn[i] = false;
+        }
+        if (mFrameProfiler != null) mFrameProfiler.add(PROFILER_COUNTER_EVENTS_DRAWN, drawnEventsCount);
+    }
+
+    /**
+     * Remembers that the events of a day were drawn, so that their rectangles can be cleared
+     * before the next frame without iterating through all cached events.
+     * @param day The day as number of days since the epoch in the local time zone.
+     */
+    private void rememberDrawnDay(long day) {
+        if (mDrawnDaysCount == mDrawnDays.length) {
+            long[] drawnDays = new long[Math.max(mNumberOfVisibleDays + 1, mDrawnDays.length * 2)];
+            System.arraycopy(mDrawnDays, 0, drawnDays, 0, mDrawnDaysCount);
+            mDrawnDays = drawnDays;
+        }
+        mDrawnDays[mDrawnDaysCount++] = day;
+    }
+
+    /**
+     * Clears the rectangles of the events that were drawn in the previous frame.
+     */
+    private void clearDrawnEventRects() {
+        for (int i = 0; i < mDrawnDaysCount; i++) {
+            DaySegments segments = mDaySegments.get(mDrawnDays[i]);
+            if (segments != null)
+                Arrays.fill(segments.drawn, false);
+        }
+        mDrawnDaysCount = 0;
+    }
+
+    /**
+     * Finds the event drawn at a point. Events drawn later are on top, so they are checked first.
+     * @param x The x position of the point.
+     * @param y The y position of the point.
+     * @param eventRect The rectangle which receives the bounds of the found event.
+     * @return The event or null if there is no event at this point.
+     */
+    private DiaryJob findDrawnEvent(float x, float y, RectF eventRect) {
+        for (int i = mDrawnDaysCount - 1; i >= 0; i--) {
+            DaySegments segments = mDaySegments.get(mDrawnDays[i]);
+            if (segments == null)
+                continue;
+
+            for (int j = segments.count - 1; j >= 0; j--) {
+                if (!segments.drawn[j])
+                    continue;
+
+                float[] bounds = segments.drawnBounds;
+                if (x > bounds[j * 4] && x < bounds[j * 4 + 2] && y > bounds[j * 4 + 1] && y < bounds[j * 4 + 3]) {
+                    eventRect.set(bounds[j * 4], bounds[j * 4 + 1], bounds[j * 4 + 2], bounds[j * 4 + 3]);
+                    return segments.events[j];
                 }
             }
         }
+        return null;
     }
 
 
     /**
      * Draw the name of the event on top of the event rectangle.
-     * @param text The text to draw.
+     * @param event The event whose name is to be drawn.
      * @param rect The rectangle on which the text is to be drawn.
      * @param canvas The canvas to draw upon.
      * @param originalTop The original top position of the rectangle. The rectangle may have some of its portion outside of the visible area.
      * @param originalLeft The original left position of the rectangle. The rectangle may have some of its portion outside of the visible area.
      */
-    private void drawText(String text, RectF rect, Canvas canvas, float originalTop, float originalLeft) {
+    private void drawText(DiaryJob event, RectF rect, Canvas canvas, float originalTop, float originalLeft) {
         if (rect.right - rect.left - mEventPadding * 2 < 0) return;
 
         // Get text dimensions
-        StaticLayout textLayout = new StaticLayout(text, mEventTextPaint, (int) (rect.right - originalLeft - mEventPadding * 2), Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+        int width = (int) (rect.right - originalLeft - mEventPadding * 2);
+        int availableHeight = (int) (rect.bottom - originalTop - mEventPadding * 2);
+        StaticLayout textLayout = getEventTextLayout(event, width, availableHeight, EventTextLayoutCache.VARIANT_FULL);
 
         // Crop height
-        int availableHeight = (int) (rect.bottom - originalTop - mEventPadding * 2);
         int lineHeight = textLayout.getHeight() / textLayout.getLineCount();
         if (lineHeight < availableHeight && textLayout.getHeight() > rect.height() - mEventPadding * 2) {
-            int lineCount = textLayout.getLineCount();
-            int availableLineCount = (int) Math.floor(lineCount * availableHeight / textLayout.getHeight());
-            float widthAvailable = (rect.right - originalLeft - mEventPadding * 2) * availableLineCount;
-            textLayout = new StaticLayout(TextUtils.ellipsize(text, mEventTextPaint, widthAvailable, TextUtils.TruncateAt.END), mEventTextPaint, (int) (rect.right - originalLeft - mEventPadding * 2), Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+            textLayout = getEventTextLayout(event, width, availableHeight, EventTextLayoutCache.VARIANT_ELLIPSIZED_LINES);
         }
         else if (lineHeight >= availableHeight) {
-            int width = (int) (rect.right - originalLeft - mEventPadding * 2);
-            textLayout = new StaticLayout(TextUtils.ellipsize(text, mEventTextPaint, width, TextUtils.TruncateAt.END), mEventTextPaint, width, Layout.Alignment.ALIGN_NORMAL, 1.0f, 1.0f, false);
+            textLayout = getEventTextLayout(event, width, availableHeight, EventTextLayoutCache.VARIANT_SINGLE_LINE);
         }
 
         // Draw text
@@ -603,270 +760,425 @@ public class DailyView extends View {
         canvas.restore();
     }
 
-
     /**
-     * A class to hold reference to the events and their visual representation. An EventRect is
-     * actually the rectangle that is drawn on the calendar for a given event. There may be more
-     * than one rectangle for a single event (an event that expands more than one day). In that
-     * case two instances of the EventRect will be used for a single event. The given event will be
-     * stored in "originalEvent". But the event that corresponds to rectangle the rectangle
-     * instance will be stored in "event".
+     * Gets the layout of the name of an event from the cache, creating it if it is not cached.
+     * @param event The event whose name is laid out.
+     * @param width The width in which the name is laid out.
+     * @param availableHeight The height in which the name should fit.
+     * @param variant The way the name is shortened.
+     * @return The layout of the name.
      */
-    private class EventRect {
-        public DiaryJob event;
-        public DiaryJob originalEvent;
-        public RectF rectF;
-        public float left;
-        public float width;
-        public float top;
-        public float bottom;
-
-        /**
-         * Create a new instance of event rect. An EventRect is actually the rectangle that is drawn
-         * on the calendar for a given event. There may be more than one rectangle for a single
-         * event (an event that expands more than one day). In that case two instances of the
-         * EventRect will be used for a single event. The given event will be stored in
-         * "originalEvent". But the event that corresponds to rectangle the rectangle instance will
-         * be stored in "event".
-         * @param event Represents the event which this instance of rectangle represents.
-         * @param originalEvent The original event that was passed by the user.
-         * @param rectF The rectangle.
-         */
-        public EventRect(DiaryJob event, DiaryJob originalEvent, RectF rectF) {
-            this.event = event;
-            this.rectF = rectF;
-            this.originalEvent = originalEvent;
+    private StaticLayout getEventTextLayout(DiaryJob event, int width, int availableHeight, int variant) {
+        String text = event.getTitle();
+        float textSize = mEventTextPaint.getTextSize();
+        StaticLayout textLayout = mTextLayoutCache.get(event.getId(), text, width, availableHeight, textSize, variant);
+        if (textLayout != null)
+            return textLayout;
+
+        if (variant == EventTextLayoutCache.VARIANT_FULL) {
+            textLayout = new StaticLayout(text, mEventTextPaint, width, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+        }
+        else if (variant == EventTextLayoutCache.VARIANT_ELLIPSIZED_LINES) {
+            StaticLayout fullLayout = getEventTextLayout(event, width, availableHeight, EventTextLayoutCache.VARIANT_FULL);
+            int lineCount = fullLayout.getLineCount();
+            int availableLineCount = (int) Math.floor(lineCount * availableHeight / fullLayout.getHeight());
+            float widthAvailable = width * availableLineCount;
+            textLayout = new StaticLayout(TextUtils.ellipsize(text, mEventTextPaint, widthAvailable, TextUtils.TruncateAt.END), mEventTextPaint, width, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
         }
+        else {
+            textLayout = new StaticLayout(TextUtils.ellipsize(text, mEventTextPaint, width, TextUtils.TruncateAt.END), mEventTextPaint, width, Layout.Alignment.ALIGN_NORMAL, 1.0f, 1.0f, false);
+        }
+
+        mTextLayoutCache.put(event.getId(), text, width, availableHeight, textSize, variant, textLayout);
+        return textLayout;
     }
 
 
     /**
-     * Gets more events of one/more month(s) if necessary. This method is called when the user is
-     * scrolling the week view. The week view stores the events of three months: the visible month,
-     * the previous month, the next month.
-     * @param day The day where the user is currently is.
+     * The segments of the events drawn on a day and their positions. An event which spans several days
+     * has a segment on each of them, which refers to the event instead of copying it. The segment with
+     * index i covers the minutes between startMinutes[i] and endMinutes[i] of the day and the segments
+     * are kept in the order in which they are drawn.
      */
-    private void getMoreEvents(Calendar day) {
+    private static class DaySegments {
+        public final int count;
+        public final DiaryJob[] events;
+        public final int[] startMinutes;
+        public final int[] endMinutes;
+        public final float[] lefts;
+        public final float[] widths;
+        public final float[] drawnBounds;
+        public final boolean[] drawn;
+
+        public DaySegments(int count) {
+            this.count = count;
+            this.events = new DiaryJob[count];
+            this.startMinutes = new int[count];
+            this.endMinutes = new int[count];
+            this.lefts = new float[count];
+            this.widths = new float[count];
+            this.drawnBounds = new float[count * 4];
+            this.drawn = new boolean[count];
+        }
+
+        public void setDrawnBounds(int segment, float left, float top, float right, float bottom) {
+            drawnBounds[segment * 4] = left;
+            drawnBounds[segment * 4 + 1] = top;
+            drawnBounds[segment * 4 + 2] = right;
+            drawnBounds[segment * 4 + 3] = bottom;
+            drawn[segment] = true;
+        }
+    }
 
-        // Delete all events if its not current month +- 1.
-        deleteFarMonths(day);
 
-        // Get more events if the month is changed.
-        if (mEventRects == null)
-            mEventRects = new ArrayList<EventRect>();
-        if (mMonthChangeListener == null && !isInEditMode())
-            throw new IllegalStateException("You must provide a MonthChangeListener");
+    /**
+     * Gets the events of the months in a range if they are not cached yet. This method is called
+     * when the user is scrolling the week view. The months in the range become the most recently
+     * used ones, so they are the last to be evicted from the cache.
+     * @param firstMonthKey The key of the first month of the range.
+     * @param lastMonthKey The key of the last month of the range.
+     */
+    private void getMoreEvents(int firstMonthKey, int lastMonthKey) {
+        if (mMonthChangeListener == null && mAsyncMonthLoader == null && mEventStore == null && !isInEditMode())
+            throw new IllegalStateException("You must provide a MonthChangeListener, an AsyncMonthLoader or an EventStore");
 
-        // If a refresh was requested then reset some variables.
+        // If a refresh was requested then forget all cached events. The results of the loads that
+        // are still running will be ignored.
         if (mRefreshEvents) {
-            mEventRects.clear();
-            mFetchedMonths = new int[3];
+            clearEventCache();
+            mLoadingMonths.clear();
+            mMonthLoadFailures.clear();
+            mLoadGeneration++;
         }
 
-        // Get events of previous month.
-        int previousMonth = (day.get(Calendar.MONTH) == 0?12:day.get(Calendar.MONTH));
-        int nextMonth = (day.get(Calendar.MONTH)+2 == 13 ?1:day.get(Calendar.MONTH)+2);
-        int[] lastFetchedMonth = mFetchedMonths.clone();
-        if (mFetchedMonths[0] < 1 || mFetchedMonths[0] != previousMonth || mRefreshEvents) {
-            if (!containsValue(lastFetchedMonth, previousMonth) && !isInEditMode()){
-                List<DiaryJob> events = mMonthChangeListener.onMonthChange((previousMonth==12)?day.get(Calendar.YEAR)-1:day.get(Calendar.YEAR), previousMonth);
-                sortEvents(events);
-                for (DiaryJob event: events) {
-                    cacheEvent(event);
-                }
-            }
-            mFetchedMonths[0] = previousMonth;
-        }
+        mFirstRequiredMonthKey = firstMonthKey;
+        mLastRequiredMonthKey = lastMonthKey;
+        if (isInEditMode())
+            return;
 
-        // Get events of this month.
-        if (mFetchedMonths[1] < 1 || mFetchedMonths[1] != day.get(Calendar.MONTH)+1 || mRefreshEvents) {
-            if (!containsValue(lastFetchedMonth, day.get(Calendar.MONTH)+1) && !isInEditMode()) {
-                List<DiaryJob> events = mMonthChangeListener.onMonthChange(day.get(Calendar.YEAR), day.get(Calendar.MONTH) + 1);
-                sortEvents(events);
-                for (DiaryJob event : events) {
-                    cacheEvent(event);
-                }
-            }
-            mFetchedMonths[1] = day.get(Calendar.MONTH)+1;
+        for (int monthKey = firstMonthKey; monthKey <= lastMonthKey; monthKey++) {
+            if (mMonthSegments.get(monthKey) == null)
+                loadMonth(monthKey / 12, monthKey % 12 + 1);
         }
+    }
 
-        // Get events of next month.
-        if (mFetchedMonths[2] < 1 || mFetchedMonths[2] != nextMonth || mRefreshEvents) {
-            if (!containsValue(lastFetchedMonth, nextMonth) && !isInEditMode()) {
-                List<DiaryJob> events = mMonthChangeListener.onMonthChange(nextMonth == 1 ? day.get(Calendar.YEAR) + 1 : day.get(Calendar.YEAR), nextMonth);
-                sortEvents(events);
-                for (DiaryJob event : events) {
-                    cacheEvent(event);
-                }
-            }
-            mFetchedMonths[2] = nextMonth;
+    /**
+     * Loads the events of a month. If an {@link EventStore} is set the events are found in the store.
+     * If an {@link AsyncMonthLoader} is set the events are loaded in the background and merged when
+     * they are ready, otherwise the {@link MonthChangeListener} is asked for them immediately.
+     * @param year The year of the month.
+     * @param month The month, starting from 1.
+     */
+    private void loadMonth(int year, int month) {
+        if (mEventStore != null) {
+            mMonthFetchCount++;
+            int monthKey = getMonthKey(year, month);
+            addMonthSegment(monthKey, MonthEvents.create(monthKey, getStoredEvents(monthKey), mTimeZone));
+            return;
         }
 
-        // Prepare to calculate positions of each events.
-        ArrayList<EventRect> tempEvents = new ArrayList<EventRect>(mEventRects);
-        mEventRects = new ArrayList<EventRect>();
-        Calendar dayCounter = (Calendar) day.clone();
-        dayCounter.add(Calendar.MONTH, -1);
-        dayCounter.set(Calendar.DAY_OF_MONTH, 1);
-        Calendar maxDay = (Calendar) day.clone();
-        maxDay.add(Calendar.MONTH, 1);
-        maxDay.set(Calendar.DAY_OF_MONTH, maxDay.getActualMaximum(Calendar.DAY_OF_MONTH));
-
-        // Iterate through each day to calculate the position of the events.
-        while (dayCounter.getTimeInMillis() <= maxDay.getTimeInMillis()) {
-            ArrayList<EventRect> eventRects = new ArrayList<EventRect>();
-            for (EventRect eventRect : tempEvents) {
-                if (isSameDay(eventRect.event.getCalendarDate(eventRect.event.getStartTime()), dayCounter))
-                    eventRects.add(eventRect);
-            }
-
-            computePositionOfEvents(eventRects);
-            dayCounter.add(Calendar.DATE, 1);
+        if (mAsyncMonthLoader != null) {
+            loadMonthAsync(year, month);
+            return;
         }
+
+        mMonthFetchCount++;
+        int monthKey = getMonthKey(year, month);
+        addMonthSegment(monthKey, MonthEvents.create(monthKey, mMonthChangeListener.onMonthChange(year, month), mTimeZone));
     }
 
     /**
-     * Cache the event for smooth scrolling functionality.
-     * @param event The event to cache.
+     * Gets views of the events of the event store which overlap a month. The events which started in an
+     * earlier month are displayed from the earliest resident month they overlap, so a long job is drawn
+     * even if the month in which it starts is not cached.
+     * @param monthKey The key of the month.
+     * @return The events of the month.
      */
-    private void cacheEvent(DiaryJob event) {
-        if (!isSameDay(event.getCalendarDate(event.getStartTime()), event.getCalendarDate(event.getEndTime()))) {
-            Calendar endTime = (Calendar) event.getCalendarDate(event.getStartTime()).clone();
-            endTime.set(Calendar.HOUR_OF_DAY, 23);
-            endTime.set(Calendar.MINUTE, 59);
-            Calendar startTime = (Calendar)  event.getCalendarDate(event.getEndTime()).clone();
-            startTime.set(Calendar.HOUR_OF_DAY, 0);
-            startTime.set(Calendar.MINUTE, 0);
-            DiaryJob event1 = new DiaryJob(event.getTitle(), event.getStartTime(), endTime.getTimeInMillis(),event.getId());
-            event1.setEventColor(event.getEventColor());
-            DiaryJob event2 = new DiaryJob( event.getTitle(), startTime.getTimeInMillis(), event.getEndTime(),event.getId());
-            event2.setEventColor(event.getEventColor());
-            mEventRects.add(new EventRect(event1, event, null));
-            mEventRects.add(new EventRect(event2, event, null));
-        }
-        else
-            mEventRects.add(new EventRect(event, event, null));
+    private List<DiaryJob> getStoredEvents(int monthKey) {
+        long monthStart = MonthEvents.getMonthStart(monthKey, mTimeZone);
+        long monthEnd = MonthEvents.getMonthStart(monthKey + 1, mTimeZone);
+        mEventStore.query(monthStart, monthEnd, mEventStoreCursor);
+        List<DiaryJob> events = new ArrayList<DiaryJob>(mEventStoreCursor.getCount());
+        while (mEventStoreCursor.moveToNext())
+            events.add(mEventStoreCursor.getEvent());
+        return events;
     }
 
     /**
-     * Sorts the events in ascending order.
-     * @param events The events to be sorted.
+     * Loads the events of a month on the month load executor, unless they are already being loaded.
+     * @param year The year of the month.
+     * @param month The month, starting from 1.
      */
-    private void sortEvents(List<DiaryJob> events) {
-        Collections.sort(events, new Comparator<DiaryJob>() {
+    private void loadMonthAsync(final int year, final int month) {
+        final int monthKey = getMonthKey(year, month);
+        if (mLoadingMonths.get(monthKey))
+            return;
+
+        mLoadingMonths.put(monthKey, true);
+        mMonthFetchCount++;
+        final int generation = mLoadGeneration;
+        final AsyncMonthLoader loader = mAsyncMonthLoader;
+        final TimeZone timeZone = mTimeZone;
+        getActiveMonthLoadExecutor().execute(new Runnable() {
             @Override
-            public int compare(DiaryJob event1, DiaryJob event2) {
-                long start1 = event1.getStartTime();
-                long start2 = event2.getStartTime();
-                int comparator = start1 > start2 ? 1 : (start1 < start2 ? -1 : 0);
-                if (comparator == 0) {
-                    long end1 = event1.getEndTime();
-                    long end2 = event2.getEndTime();
-                    comparator = end1 > end2 ? 1 : (end1 < end2 ? -1 : 0);
+            public void run() {
+                // The events are sorted and their days are found here, so that the main thread only
+                // caches the result.
+                MonthEvents segment = null;
+                try {
+                    segment = MonthEvents.create(monthKey, loader.loadMonth(year, month), timeZone);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Could not load the events of month " + month + " of " + year, e);
                 }
-                return comparator;
+
+                final MonthEvents loadedSegment = segment;
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onMonthLoaded(generation, year, month, loadedSegment);
+                    }
+                });
             }
         });
     }
 
     /**
-     * Calculates the left and right positions of each events. This comes handy specially if events
-     * are overlapping.
-     * @param eventRects The events along with their wrapper class.
+     * Merges the events of a month which were loaded in the background. Called on the main thread.
+     * If the load failed the month is not cached and it is loaded again if it is still needed after
+     * a delay which doubles with each failure of the month.
+     * @param generation The load generation at the time when the load was requested.
+     * @param year The year of the month.
+     * @param month The month, starting from 1.
+     * @param segment The loaded events or null if the load failed.
      */
-    private void computePositionOfEvents(List<EventRect> eventRects) {
-        // Make "collision groups" for all events that collide with others.
-        List<List<EventRect>> collisionGroups = new ArrayList<List<EventRect>>();
-        for (EventRect eventRect : eventRects) {
-            boolean isPlaced = false;
-            outerLoop:
-            for (List<EventRect> collisionGroup : collisionGroups) {
-                for (EventRect groupEvent : collisionGroup) {
-                    if (isEventsCollide(groupEvent.event, eventRect.event)) {
-                        collisionGroup.add(eventRect);
-                        isPlaced = true;
-                        break outerLoop;
-                    }
+    private void onMonthLoaded(final int generation, int year, int month, MonthEvents segment) {
+        // The events were refreshed while loading, so the result is stale.
+        if (generation != mLoadGeneration)
+            return;
+
+        final int monthKey = getMonthKey(year, month);
+        if (segment == null) {
+            // The month stays in the loading state until the delay passes, so that scrolling back and
+            // forth does not load it again in the meantime.
+            int failures = mMonthLoadFailures.get(monthKey) + 1;
+            mMonthLoadFailures.put(monthKey, failures);
+            long delay = Math.min(MONTH_LOAD_RETRY_DELAY << Math.min(failures - 1, 16), MAX_MONTH_LOAD_RETRY_DELAY);
+            postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation != mLoadGeneration)
+                        return;
+
+                    mLoadingMonths.delete(monthKey);
+                    if (mAsyncMonthLoader != null && isMonthNeeded(monthKey) && !mMonthSegments.contains(monthKey))
+                        loadMonthAsync(monthKey / 12, monthKey % 12 + 1);
+                    invalidate();
                 }
-            }
-            if (!isPlaced) {
-                List<EventRect> newGroup = new ArrayList<EventRect>();
-                newGroup.add(eventRect);
-                collisionGroups.add(newGroup);
-            }
+            }, delay);
+            return;
         }
 
-        for (List<EventRect> collisionGroup : collisionGroups) {
-            expandEventsToMaxWidth(collisionGroup);
-        }
+        mLoadingMonths.delete(monthKey);
+        mMonthLoadFailures.delete(monthKey);
+
+        // The user scrolled away from the month while it was loading and the month is not
+        // where the current fling will land.
+        if (!isMonthNeeded(monthKey))
+            return;
+
+        addMonthSegment(monthKey, segment);
+        invalidate();
     }
 
     /**
-     * Expands all the events to maximum possible width. The events will try to occupy maximum
-     * space available horizontally.
-     * @param collisionGroup The group of events which overlap with each other.
+     * Starts loading the events of the months which will be visible when the view scrolls to a
+     * horizontal origin, so that they are ready when a fling lands. The months are loaded only with
+     * an {@link AsyncMonthLoader}, because a {@link MonthChangeListener} would block the fling.
+     * The prefetch radius is reduced if needed, so that the loaded months never evict the months
+     * which are visible now.
+     * @param originX The horizontal origin where the view will stop.
      */
-    private void expandEventsToMaxWidth(List<EventRect> collisionGroup) {
-        // Expand the events to maximum possible width.
-        List<List<EventRect>> columns = new ArrayList<List<EventRect>>();
-        columns.add(new ArrayList<EventRect>());
-        for (EventRect eventRect : collisionGroup) {
-            boolean isPlaced = false;
-            for (List<EventRect> column : columns) {
-                if (column.size() == 0) {
-                    column.add(eventRect);
-                    isPlaced = true;
-                }
-                else if (!isEventsCollide(eventRect.event, column.get(column.size()-1).event)) {
-                    column.add(eventRect);
-                    isPlaced = true;
-                    break;
-                }
-            }
-            if (!isPlaced) {
-                List<EventRect> newColumn = new ArrayList<EventRect>();
-                newColumn.add(eventRect);
-                columns.add(newColumn);
-            }
+    private void prefetchMonthsAt(int originX) {
+        if (mAsyncMonthLoader == null || isInEditMode() || mWidthPerDay + mColumnGap <= 0)
+            return;
+
+        int leftDays = (int) -(Math.ceil(originX / (mWidthPerDay + mColumnGap)));
+        Calendar firstDay = (Calendar) mToday.clone();
+        firstDay.add(Calendar.DATE, leftDays);
+        Calendar lastDay = (Calendar) firstDay.clone();
+        lastDay.add(Calendar.DATE, mNumberOfVisibleDays);
+        int firstMonthKey = getMonthKey(firstDay);
+        int lastMonthKey = getMonthKey(lastDay);
+
+        int availableMonths = mMonthSegments.getMaxSize() - (mLastRequiredMonthKey - mFirstRequiredMonthKey + 1);
+        int radius = mPrefetchRadius;
+        while (radius > 0 && lastMonthKey - firstMonthKey + 1 + 2 * radius > availableMonths)
+            radius--;
+        if (lastMonthKey - firstMonthKey + 1 > availableMonths)
+            return;
+
+        mFirstPredictedMonthKey = firstMonthKey - radius;
+        mLastPredictedMonthKey = lastMonthKey + radius;
+        for (int monthKey = mFirstPredictedMonthKey; monthKey <= mLastPredictedMonthKey; monthKey++) {
+            boolean isRequired = monthKey >= mFirstRequiredMonthKey && monthKey <= mLastRequiredMonthKey;
+            if (!isRequired && !mMonthSegments.contains(monthKey))
+                loadMonthAsync(monthKey / 12, monthKey % 12 + 1);
         }
+    }
 
+    /**
+     * Checks if the events of a month are needed, because the month is visible, next to a visible month
+     * or where the current fling will land.
+     * @param monthKey The key of the month.
+     * @return True if the month is needed.
+     */
+    private boolean isMonthNeeded(int monthKey) {
+        boolean isRequired = monthKey >= mFirstRequiredMonthKey && monthKey <= mLastRequiredMonthKey;
+        boolean isPredicted = monthKey >= mFirstPredictedMonthKey && monthKey <= mLastPredictedMonthKey;
+        return isRequired || isPredicted;
+    }
 
-        // Calculate left and right position for all the events.
-        int maxRowCount = columns.get(0).size();
-        for (int i = 0; i < maxRowCount; i++) {
-            // Set the left and right values of the event.
-            float j = 0;
-            for (List<EventRect> column : columns) {
-                if (column.size() >= i+1) {
-                    EventRect eventRect = column.get(i);
-                    eventRect.width = 1f / columns.size();
-                    eventRect.left = j / columns.size();
+    /**
+     * Checks if the events of a month are being loaded in the background.
+     * @param year The year of the month.
+     * @param month The month, starting from 1.
+     * @return True if the month is being loaded.
+     */
+    private boolean isMonthLoading(int year, int month) {
+        return mLoadingMonths.get(getMonthKey(year, month));
+    }
 
+    private Executor getActiveMonthLoadExecutor() {
+        if (mMonthLoadExecutor != null)
+            return mMonthLoadExecutor;
 
-                    eventRect.top = eventRect.event.getCalendarDate(eventRect.event.getStartTime()).get(Calendar.HOUR_OF_DAY) * 60 + eventRect.event.getCalendarDate(eventRect.event.getStartTime()).get(Calendar.MINUTE);
-                    eventRect.bottom = eventRect.event.getCalendarDate(eventRect.event.getEndTime()).get(Calendar.HOUR_OF_DAY) * 60 + eventRect.event.getCalendarDate(eventRect.event.getEndTime()).get(Calendar.MINUTE);
-                    mEventRects.add(eventRect);
-                }
-                j++;
-            }
+        if (mDefaultMonthLoadExecutor == null)
+            mDefaultMonthLoadExecutor = Executors.newSingleThreadExecutor();
+        return mDefaultMonthLoadExecutor;
+    }
+
+    /**
+     * Caches the events of a month as a segment and forgets the segments of the days on which they are
+     * displayed, so that these days are laid out again when they are drawn. The least recently used
+     * months are evicted if there are too many cached months.
+     * @param monthKey The key of the month.
+     * @param segment The events of the month.
+     */
+    private void addMonthSegment(int monthKey, MonthEvents segment) {
+        mResidentMonths.add(segment);
+        mMonthSegments.put(monthKey, segment);
+        invalidateDaySegments(segment.firstDay, segment.lastDay);
+    }
+
+    /**
+     * Removes the events of an evicted month from the days they belong to.
+     * @param segment The events of the month.
+     */
+    private void removeMonthSegment(MonthEvents segment) {
+        mResidentMonths.remove(segment);
+        invalidateDaySegments(segment.firstDay, segment.lastDay);
+    }
+
+    /**
+     * Forgets the segments of the days in a range.
+     * @param firstDay The first day of the range.
+     * @param lastDay The last day of the range.
+     */
+    private void invalidateDaySegments(long firstDay, long lastDay) {
+        for (int i = mDaySegments.size() - 1; i >= 0; i--) {
+            long day = mDaySegments.keyAt(i);
+            if (day >= firstDay && day <= lastDay)
+                mDaySegments.removeAt(i);
+        }
+    }
+
+    /**
+     * Forgets the segments of the days outside the visible ones, so that long events and scrolling
+     * over many days do not keep segments of days which are not drawn.
+     * @param firstDay The first visible day.
+     * @param lastDay The last visible day.
+     */
+    private void trimDaySegments(long firstDay, long lastDay) {
+        for (int i = mDaySegments.size() - 1; i >= 0; i--) {
+            long day = mDaySegments.keyAt(i);
+            if (day < firstDay || day > lastDay)
+                mDaySegments.removeAt(i);
         }
     }
 
+    /**
+     * Forgets all cached events.
+     */
+    private void clearEventCache() {
+        mMonthSegments.clear();
+        mResidentMonths.clear();
+        mTextLayoutCache.clear();
+        mDaySegments.clear();
+        mDrawnDaysCount = 0;
+        mFirstRequiredMonthKey = Integer.MIN_VALUE;
+        mLastRequiredMonthKey = Integer.MIN_VALUE;
+        mFirstPredictedMonthKey = Integer.MIN_VALUE;
+        mLastPredictedMonthKey = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Gets the segments of the events drawn on a day, laying them out if the day was not drawn yet.
+     * @param day The day as number of days since the epoch in the local time zone.
+     * @return The segments of the day.
+     */
+    private DaySegments getDaySegments(long day) {
+        DaySegments segments = mDaySegments.get(day);
+        if (segments == null) {
+            segments = computeDaySegments(day);
+            mDaySegments.put(day, segments);
+        }
+        return segments;
+    }
 
     /**
-     * Checks if two events overlap.
-     * @param event1 The first event.
-     * @param event2 The second event.
-     * @return true if the events overlap.
+     * Finds the events of the cached months which are displayed on a day and calculates the left and
+     * right positions of their segments. This comes handy specially if events are overlapping.
+     * @param day The day as number of days since the epoch in the local time zone.
+     * @return The segments of the day in the order in which they should be drawn.
      */
-    private boolean isEventsCollide(DiaryJob event1, DiaryJob event2) {
-        long start1 = event1.getStartTime();
-        long end1 = event1.getEndTime();
-        long start2 = event2.getStartTime();
-        long end2 = event2.getEndTime();
-        return !((start1 >= end2) || (end1 <= start2));
+    private DaySegments computeDaySegments(long day) {
+        mResidentMonths.collectEvents(day, mDayEvents);
+        int count = mDayEvents.size();
+        ensureLayoutCapacity(count);
+        for (int i = 0; i < count; i++) {
+            DiaryJob event = mDayEvents.get(i);
+            mLayoutEvents[i] = event;
+            mLayoutStarts[i] = getDayKey(event.getStartTime()) == day ? getMinuteOfDay(event.getStartTime()) : 0;
+            mLayoutEnds[i] = getDayKey(event.getEndTime()) == day ? getMinuteOfDay(event.getEndTime()) : 1440;
+        }
+        mDayEvents.clear();
+
+        // Events which overlap share the width of the day, each one in the first free column.
+        mOverlapLayout.layout(mLayoutStarts, mLayoutEnds, count);
+        DaySegments segments = new DaySegments(count);
+        for (int i = 0; i < count; i++) {
+            int index = mOverlapLayout.getEventAt(i);
+            int columnsCount = mOverlapLayout.getColumnsCount(index);
+            segments.events[i] = mLayoutEvents[index];
+            segments.startMinutes[i] = (int) mLayoutStarts[index];
+            segments.endMinutes[i] = (int) mLayoutEnds[index];
+            segments.widths[i] = 1f / columnsCount;
+            segments.lefts[i] = (float) mOverlapLayout.getColumn(index) / columnsCount;
+        }
+        Arrays.fill(mLayoutEvents, 0, count, null);
+        if (mFrameProfiler != null) mFrameProfiler.add(PROFILER_COUNTER_EVENTS_LAID_OUT, count);
+        return segments;
     }
 
+    private void ensureLayoutCapacity(int capacity) {
+        if (mLayoutStarts.length >= capacity)
+            return;
+
+        int newCapacity = Math.max(capacity, mLayoutStarts.length * 2);
+        mLayoutStarts = Arrays.copyOf(mLayoutStarts, newCapacity);
+        mLayoutEnds = Arrays.copyOf(mLayoutEnds, newCapacity);
+        mLayoutEvents = Arrays.copyOf(mLayoutEvents, newCapacity);
+    }
 
     /**
      * Checks if time1 occurs after (or at the same time) time2.
@@ -878,38 +1190,6 @@ public class DailyView extends View {
         return !(time1 == null || time2 == null) && time1.getTimeInMillis() >= time2.getTimeInMillis();
     }
 
-    /**
-     * Deletes the events of the months that are too far away from the current month.
-     * @param currentDay The current day.
-     */
-    private void deleteFarMonths(Calendar currentDay) {
-
-        if (mEventRects == null) return;
-
-        Calendar nextMonth = (Calendar) currentDay.clone();
-        nextMonth.add(Calendar.MONTH, 1);
-        nextMonth.set(Calendar.DAY_OF_MONTH, nextMonth.getActualMaximum(Calendar.DAY_OF_MONTH));
-        nextMonth.set(Calendar.HOUR_OF_DAY, 12);
-        nextMonth.set(Calendar.MINUTE, 59);
-        nextMonth.set(Calendar.SECOND, 59);
-
-        Calendar prevMonth = (Calendar) currentDay.clone();
-        prevMonth.add(Calendar.MONTH, -1);
-        prevMonth.set(Calendar.DAY_OF_MONTH, 1);
-        prevMonth.set(Calendar.HOUR_OF_DAY, 0);
-        prevMonth.set(Calendar.MINUTE, 0);
-        prevMonth.set(Calendar.SECOND, 0);
-
-        List<EventRect> newEvents = new ArrayList<EventRect>();
-        for (EventRect eventRect : mEventRects) {
-            boolean isFarMonth = eventRect.event.getStartTime() > nextMonth.getTimeInMillis() || eventRect.event.getEndTime() < prevMonth.getTimeInMillis();
-            if (!isFarMonth) newEvents.add(eventRect);
-        }
-        mEventRects.clear();
-        mEventRects.addAll(newEvents);
-    }
-
-
     /////////////////////////////////////////////////////////////////
     //
     //      Functions related to setting and getting the properties.
@@ -932,6 +1212,140 @@ public class DailyView extends View {
         this.mMonthChangeListener = monthChangeListener;
     }
 
+    public AsyncMonthLoader getAsyncMonthLoader() {
+        return mAsyncMonthLoader;
+    }
+
+    public EventStore getEventStore() {
+        return mEventStore;
+    }
+
+    /**
+     * Sets a store which holds all events. When it is set the events of each month are found in the
+     * store, the {@link MonthChangeListener} and the {@link AsyncMonthLoader} are not used and the
+     * events are drawn from lightweight views of the store's rows. Call {@link #notifyDatasetChanged()}
+     * after changing the events of the store.
+     * @param eventStore The store or null to load the events with the listener or the loader.
+     */
+    public void setEventStore(EventStore eventStore) {
+        this.mEventStore = eventStore;
+        mRefreshEvents = true;
+        invalidate();
+    }
+
+    /**
+     * Sets a loader which provides the events of each month in the background. When it is set the
+     * {@link MonthChangeListener} is not used and the days of the months which are still loading are
+     * drawn with the loading day background color.
+     * @param asyncMonthLoader The loader or null to load the events with the {@link MonthChangeListener}.
+     */
+    public void setAsyncMonthLoader(AsyncMonthLoader asyncMonthLoader) {
+        this.mAsyncMonthLoader = asyncMonthLoader;
+        mRefreshEvents = true;
+        invalidate();
+    }
+
+    public int getPrefetchRadius() {
+        return mPrefetchRadius;
+    }
+
+    /**
+     * Sets how many months before the first and after the last visible month are loaded in advance.
+     * @param prefetchRadius The number of months, 1 by default.
+     */
+    public void setPrefetchRadius(int prefetchRadius) {
+        if (prefetchRadius < 0)
+            throw new IllegalArgumentException("The prefetch radius cannot be negative.");
+        if (2 * prefetchRadius + 2 > mMonthSegments.getMaxSize())
+            throw new IllegalArgumentException("The prefetch radius needs more months than the max number of resident months.");
+
+        mPrefetchRadius = prefetchRadius;
+        invalidate();
+    }
+
+    public int getMaxResidentMonths() {
+        return mMonthSegments.getMaxSize();
+    }
+
+    /**
+     * Sets how many months of events are kept in memory. When there are more months, the least
+     * recently used ones are evicted. The value must fit the two months which may be visible at
+     * the same time along with the prefetched months around them.
+     * @param maxResidentMonths The max number of months, 6 by default.
+     */
+    public void setMaxResidentMonths(int maxResidentMonths) {
+        if (maxResidentMonths < 2 * mPrefetchRadius + 2)
+            throw new IllegalArgumentException("The max number of resident months cannot be less than the visible and the prefetched months.");
+
+        mMonthSegments.setMaxSize(maxResidentMonths);
+        invalidate();
+    }
+
+    /**
+     * Gets how many times the events of a needed month were already cached.
+     * @return The number of cache hits.
+     */
+    public long getMonthCacheHitCount() {
+        return mMonthSegments.getHitCount();
+    }
+
+    /**
+     * Gets how many times the events of a month were requested from the MonthChangeListener or the AsyncMonthLoader.
+     * @return The number of fetched months.
+     */
+    public long getMonthFetchCount() {
+        return mMonthFetchCount;
+    }
+
+    /**
+     * Gets how many months were evicted from the cache to make room for other months.
+     * @return The number of evicted months.
+     */
+    public long getMonthEvictionCount() {
+        return mMonthSegments.getEvictionCount();
+    }
+
+    /**
+     * Gets whether the time spent in the phases of each frame is measured.
+     * @return True if the frames are profiled.
+     */
+    public boolean isFrameProfilingEnabled() {
+        return mFrameProfiler != null;
+    }
+
+    /**
+     * Sets whether the time spent in the phases of each frame is measured. The phases and the counters
+     * are identified by the PROFILER_PHASE_ and PROFILER_COUNTER_ constants of this class. Events laid out
+     * between two frames are counted in the next frame. Disabling the profiling discards the recorded statistics.
+     * @param enabled True to profile the frames.
+     */
+    public void setFrameProfilingEnabled(boolean enabled) {
+        if (enabled == (mFrameProfiler != null))
+            return;
+        mFrameProfiler = enabled ? new FrameProfiler(PROFILER_PHASE_NAMES, PROFILER_COUNTER_NAMES) : null;
+    }
+
+    /**
+     * Gets the profiler which measures the frames of the view.
+     * @return The profiler or null if the profiling is disabled.
+     */
+    public FrameProfiler getFrameProfiler() {
+        return mFrameProfiler;
+    }
+
+    public Executor getMonthLoadExecutor() {
+        return mMonthLoadExecutor;
+    }
+
+    /**
+     * Sets the executor on which the {@link AsyncMonthLoader} is called. If it is not set the
+     * events are loaded on a single background thread owned by the view.
+     * @param monthLoadExecutor The executor or null to use the default one.
+     */
+    public void setMonthLoadExecutor(Executor monthLoadExecutor) {
+        this.mMonthLoadExecutor = monthLoadExecutor;
+    }
+
     public EventLongPressListener getEventLongPressListener() {
         return mEventLongPressListener;
     }
@@ -1114,6 +1528,16 @@ public class DailyView extends View {
         invalidate();
     }
 
+    public int getLoadingDayBackgroundColor() {
+        return mLoadingDayBackgroundColor;
+    }
+
+    public void setLoadingDayBackgroundColor(int loadingDayBackgroundColor) {
+        mLoadingDayBackgroundColor = loadingDayBackgroundColor;
+        mLoadingDayBackgroundPaint.setColor(loadingDayBackgroundColor);
+        invalidate();
+    }
+
     public int getHourSeparatorColor() {
         return mHourSeparatorColor;
     }
@@ -1157,9 +1581,22 @@ public class DailyView extends View {
     public void setEventTextSize(int eventTextSize) {
         mEventTextSize = eventTextSize;
         mEventTextPaint.setTextSize(mEventTextSize);
+        mTextLayoutCache.clear();
         invalidate();
     }
 
+    public int getTextLayoutCacheCapacity() {
+        return mTextLayoutCache.getCapacity();
+    }
+
+    /**
+     * Sets how many layouts of event names are kept between frames.
+     * @param capacity The max number of cached layouts, 256 by default. Zero disables the cache.
+     */
+    public void setTextLayoutCacheCapacity(int capacity) {
+        mTextLayoutCache.setCapacity(capacity);
+    }
+
     public int getEventTextColor() {
         return mEventTextColor;
     }
@@ -1316,6 +1753,7 @@ public class DailyView extends View {
                     leftDays++;
                 int nearestOrigin = (int) (mCurrentOrigin.x - leftDays * (mWidthPerDay+mColumnGap));
                 mStickyScroller.startScroll((int) mCurrentOrigin.x, 0, - nearestOrigin, 0);
+                prefetchMonthsAt(mStickyScroller.getFinalX());
                 ViewCompat.postInvalidateOnAnimation(DailyView.this);
             }
             else {
@@ -1407,10 +1845,24 @@ public class DailyView extends View {
         public void onEventClick(DiaryJob event, RectF eventRect);
     }
 
+    /**
+     * Provides the events of a month. The events which overlap the month should be returned, including
+     * the jobs which started in an earlier month, so that a job longer than the cached months is drawn
+     * on all of its days. A job returned for several cached months is drawn once.
+     */
     public interface MonthChangeListener {
         public List<DiaryJob> onMonthChange(int newYear, int newMonth);
     }
 
+    /**
+     * Provides the events of a month in the background. The loader is called on the month load
+     * executor and its result is merged on the main thread. Only one load runs at a time for each month.
+     * Like a {@link MonthChangeListener} the loader should return the events which overlap the month.
+     */
+    public interface AsyncMonthLoader {
+        public List<DiaryJob> loadMonth(int newYear, int newMonth);
+    }
+
     public interface EventLongPressListener {
         public void onEventLongPress(DiaryJob event, RectF eventRect);
     }
@@ -1431,17 +1883,22 @@ public class DailyView extends View {
     /////////////////////////////////////////////////////////////////
 
     /**
-     * Checks if an integer array contains a particular value.
-     * @param list The haystack.
-     * @param value The needle.
-     * @return True if the array contains the value. Otherwise returns false.
+     * Gets a key which identifies a month of a year.
+     * @param year The year.
+     * @param month The month, starting from 1.
+     * @return The key of the month.
      */
-    private boolean containsValue(int[] list, int value) {
-        for (int i = 0; i < list.length; i++){
-            if (list[i] == value)
-                return true;
-        }
-        return false;
+    private int getMonthKey(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Gets a key which identifies the month of a day.
+     * @param day The day.
+     * @return The key of the month.
+     */
+    private int getMonthKey(Calendar day) {
+        return getMonthKey(day.get(Calendar.YEAR), day.get(Calendar.MONTH) + 1);
     }
 
     /**
@@ -1454,4 +1911,25 @@ public class DailyView extends View {
         return dayOne.get(Calendar.YEAR) == dayTwo.get(Calendar.YEAR) && dayOne.get(Calendar.DAY_OF_YEAR) == dayTwo.get(Calendar.DAY_OF_YEAR);
     }
 
+    /**
+     * Gets the day that contains a time as number of days since the epoch in the local time zone.
+     * @param time The time in milliseconds.
+     * @return The number of the day.
+     */
+    private long getDayKey(long time) {
+        return MonthEvents.getDayKey(time, mTimeZone);
+    }
+
+    /**
+     * Gets the minutes passed from the start of the day that contains a time in the local time zone.
+     * @param time The time in milliseconds.
+     * @return The minute of the day.
+     */
+    private int getMinuteOfDay(long time) {
+        long localTime = (time + mTimeZone.getOffset(time)) % DAY_IN_MILLIS;
+        if (localTime < 0)
+            localTime += DAY_IN_MILLIS;
+        return (int) (localTime / 60000);
+    }
+
 }
@@ -0,0 +1,158 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import android.text.StaticLayout;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the layouts of the event titles drawn by {@link DailyView}. A layout is
+ * identified by the event, its title, the size of the space in which it is drawn, the text size
+ * and the way the title is shortened, so it is reused across frames as long as none of them change.
+ */
+class EventTextLayoutCache {
+
+    /**
+     * The whole title, wrapped in the available width.
+     */
+    static final int VARIANT_FULL = 0;
+
+    /**
+     * The title ellipsized to the lines which fit in the available height.
+     */
+    static final int VARIANT_ELLIPSIZED_LINES = 1;
+
+    /**
+     * The title ellipsized to a single line.
+     */
+    static final int VARIANT_SINGLE_LINE = 2;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final LinkedHashMap<LayoutKey, StaticLayout> entries;
+    private final LayoutKey lookupKey = new LayoutKey();
+    private int capacity;
+
+    /**
+     * Creates a new instance of the {@link com.commusoft.diary.diarytrials.DiarySource.EventTextLayoutCache} class.
+     *
+     * @param capacity the max number of layouts that will be cached
+     */
+    EventTextLayoutCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<LayoutKey, StaticLayout>(16, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LayoutKey, StaticLayout> eldest) {
+                return size() > EventTextLayoutCache.this.capacity;
+            }
+        };
+    }
+
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity should not be negative.");
+        }
+
+        this.capacity = capacity;
+        while (this.entries.size() > this.capacity) {
+            this.entries.remove(this.entries.keySet().iterator().next());
+        }
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Gets a cached layout.
+     *
+     * @param eventId  the id of the event
+     * @param title    the title of the event
+     * @param width    the width in which the title is laid out
+     * @param height   the height in which the title should fit
+     * @param textSize the size of the text
+     * @param variant  the way the title is shortened
+     * @return the layout or <code>null</code> if it is not cached
+     */
+    StaticLayout get(long eventId, String title, int width, int height, float textSize, int variant) {
+        this.lookupKey.set(eventId, title, width, height, textSize, variant);
+        return this.entries.get(this.lookupKey);
+    }
+
+    /**
+     * Caches a layout as the most recently used one.
+     *
+     * @param eventId  the id of the event
+     * @param title    the title of the event
+     * @param width    the width in which the title is laid out
+     * @param height   the height in which the title should fit
+     * @param textSize the size of the text
+     * @param variant  the way the title is shortened
+     * @param layout   the layout
+     */
+    void put(long eventId, String title, int width, int height, float textSize, int variant, StaticLayout layout) {
+        if (this.capacity == 0) {
+            return;
+        }
+
+        LayoutKey key = new LayoutKey();
+        key.set(eventId, title, width, height, textSize, variant);
+        this.entries.put(key, layout);
+    }
+
+    private static class LayoutKey {
+        private long eventId;
+        private String title;
+        private int width;
+        private int height;
+        private float textSize;
+        private int variant;
+        private int hashCode;
+
+        void set(long eventId, String title, int width, int height, float textSize, int variant) {
+            this.eventId = eventId;
+            this.title = title;
+            this.width = width;
+            this.height = height;
+            this.textSize = textSize;
+            this.variant = variant;
+
+            int result = (int) (eventId ^ (eventId >>> 32));
+            result = 31 * result + (title != null ? title.hashCode() : 0);
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + variant;
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof LayoutKey))
+                return false;
+
+            LayoutKey second = (LayoutKey) o;
+            return this.eventId == second.eventId &&
+                    this.width == second.width &&
+                    this.height == second.height &&
+                    this.textSize == second.textSize &&
+                    this.variant == second.variant &&
+                    (this.title == null ? second.title == null : this.title.equals(second.title));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
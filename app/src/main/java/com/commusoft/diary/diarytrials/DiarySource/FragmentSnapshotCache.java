@@ -0,0 +1,132 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+
+/**
+ * Holds the bitmaps in which the {@link CalendarFragment}s of a {@link RadCalendarView} are rasterised while they
+ * are scrolled, flung or snapped. The bitmaps are only handed out while their total size stays within the memory
+ * budget and released bitmaps are kept for reuse, since all fragments of a calendar have the same size.
+ * The content of a bitmap is valid as long as the generation of the cache has not changed since it was drawn.
+ */
+class FragmentSnapshotCache {
+
+    static final int DEFAULT_MEMORY_BUDGET = 12 * 1024 * 1024;
+
+    private final ArrayList<Bitmap> freeBitmaps = new ArrayList<Bitmap>();
+    private boolean enabled;
+    private boolean active;
+    private int memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private int usedBytes;
+    private int generation;
+
+    boolean isEnabled() {
+        return this.enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            this.active = false;
+        }
+    }
+
+    /**
+     * Gets a value indicating whether the fragments should currently be drawn from their snapshots.
+     *
+     * @return <code>true</code> if a gesture or an animation is moving the fragments.
+     */
+    boolean isActive() {
+        return this.active;
+    }
+
+    void setActive(boolean active) {
+        this.active = this.enabled && active;
+    }
+
+    int getMemoryBudget() {
+        return this.memoryBudget;
+    }
+
+    void setMemoryBudget(int memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("memoryBudget should not be negative.");
+        }
+
+        this.memoryBudget = memoryBudget;
+        trimFreeBitmaps();
+    }
+
+    int getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Marks the content of all snapshots as outdated, so that the fragments are rasterised again before
+     * they are drawn from a snapshot.
+     */
+    void invalidate() {
+        this.generation++;
+    }
+
+    /**
+     * Gets a bitmap with the provided size.
+     *
+     * @param width  the width of the bitmap
+     * @param height the height of the bitmap
+     * @return the bitmap or <code>null</code> if it does not fit in the memory budget
+     */
+    Bitmap acquire(int width, int height) {
+        for (int i = this.freeBitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = this.freeBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                this.freeBitmaps.remove(i);
+                return bitmap;
+            }
+        }
+
+        int bytes = width * height * 4;
+        while (this.usedBytes + bytes > this.memoryBudget && !this.freeBitmaps.isEmpty()) {
+            recycle(this.freeBitmaps.remove(this.freeBitmaps.size() - 1));
+        }
+
+        if (width <= 0 || height <= 0 || this.usedBytes + bytes > this.memoryBudget) {
+            return null;
+        }
+
+        this.usedBytes += bytes;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Returns a bitmap which is no longer used by its fragment.
+     *
+     * @param bitmap the bitmap
+     */
+    void release(Bitmap bitmap) {
+        if (this.usedBytes > this.memoryBudget) {
+            recycle(bitmap);
+        } else {
+            this.freeBitmaps.add(bitmap);
+        }
+    }
+
+    /**
+     * Recycles the bitmaps which are not used by any fragment.
+     */
+    void trimFreeBitmaps() {
+        while (!this.freeBitmaps.isEmpty()) {
+            recycle(this.freeBitmaps.remove(this.freeBitmaps.size() - 1));
+        }
+    }
+
+    private void recycle(Bitmap bitmap) {
+        this.usedBytes -= bitmap.getByteCount();
+        bitmap.recycle();
+    }
+}
@@ -95,4 +95,21 @@ public class GridLinesLayer {
         this.paint.setAlpha(alpha);
         canvas.drawLine(startX, startY, endX, endY, this.paint);
     }
+
+    /**
+     * Used to render a batch of grid lines with the same alpha on a given canvas with a single draw call.
+     *
+     * @param points the coordinates of the lines, four values for each line as expected by {@link Canvas#drawLines(float[], int, int, Paint)}.
+     * @param offset the index of the first coordinate to draw.
+     * @param count  the number of coordinates to draw.
+     * @param canvas the canvas onto which the lines will be drawn.
+     * @param alpha  the alpha of the lines.
+     */
+    public void drawLines(float[] points, int offset, int count, Canvas canvas, int alpha) {
+        if (count == 0)
+            return;
+
+        this.paint.setAlpha(alpha);
+        canvas.drawLines(points, offset, count, this.paint);
+    }
 }
@@ -0,0 +1,173 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the rendered month name, day names and dates of the {@link CalendarMonthCell}s
+ * displayed in year mode. A thumbnail is identified by its month, its size and a fingerprint of everything
+ * the cell draws, so it is reused across frames, cells and fragment rotations for as long as the style,
+ * the colors of the dates and the today marker of the month do not change.
+ */
+class MonthThumbnailCache {
+
+    static final int DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final LinkedHashMap<ThumbnailKey, Bitmap> thumbnails =
+            new LinkedHashMap<ThumbnailKey, Bitmap>(16, LOAD_FACTOR, true);
+    private final ThumbnailKey lookupKey = new ThumbnailKey();
+    private int maxBytes;
+    private int usedBytes;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Creates a new instance of the {@link com.commusoft.diary.diarytrials.DiarySource.MonthThumbnailCache} class.
+     *
+     * @param maxBytes the max number of bytes used by the cached thumbnails
+     */
+    MonthThumbnailCache(int maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    int getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    void setMaxBytes(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes should not be negative.");
+        }
+
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    int getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    long getHitCount() {
+        return this.hitCount;
+    }
+
+    long getMissCount() {
+        return this.missCount;
+    }
+
+    int size() {
+        return this.thumbnails.size();
+    }
+
+    void clear() {
+        this.thumbnails.clear();
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Gets a cached thumbnail and marks it as the most recently used one.
+     *
+     * @param year        the year of the month
+     * @param month       the month
+     * @param width       the width of the cell
+     * @param height      the height of the cell
+     * @param fingerprint the fingerprint of the content of the cell
+     * @return the thumbnail or <code>null</code> if it is not cached
+     */
+    Bitmap get(int year, int month, int width, int height, long fingerprint) {
+        this.lookupKey.set(year, month, width, height, fingerprint);
+        Bitmap thumbnail = this.thumbnails.get(this.lookupKey);
+        if (thumbnail != null) {
+            this.hitCount++;
+        } else {
+            this.missCount++;
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Caches a thumbnail as the most recently used one and evicts the least recently used thumbnails
+     * until the cache fits in its max size again. Thumbnails larger than the whole cache are not cached.
+     *
+     * @param year        the year of the month
+     * @param month       the month
+     * @param width       the width of the cell
+     * @param height      the height of the cell
+     * @param fingerprint the fingerprint of the content of the cell
+     * @param thumbnail   the thumbnail
+     */
+    void put(int year, int month, int width, int height, long fingerprint, Bitmap thumbnail) {
+        int bytes = thumbnail.getRowBytes() * thumbnail.getHeight();
+        if (bytes > this.maxBytes) {
+            return;
+        }
+
+        trimToSize(this.maxBytes - bytes);
+
+        ThumbnailKey key = new ThumbnailKey();
+        key.set(year, month, width, height, fingerprint);
+        Bitmap previous = this.thumbnails.put(key, thumbnail);
+        if (previous != null) {
+            this.usedBytes -= previous.getRowBytes() * previous.getHeight();
+        }
+        this.usedBytes += bytes;
+    }
+
+    private void trimToSize(int size) {
+        Iterator<Map.Entry<ThumbnailKey, Bitmap>> iterator = this.thumbnails.entrySet().iterator();
+        while (this.usedBytes > size && iterator.hasNext()) {
+            Bitmap eldest = iterator.next().getValue();
+            iterator.remove();
+            // The evicted bitmap may still be referenced by the last drawn frame, so it is left to the GC.
+            this.usedBytes -= eldest.getRowBytes() * eldest.getHeight();
+        }
+    }
+
+    private static class ThumbnailKey {
+        private int year;
+        private int month;
+        private int width;
+        private int height;
+        private long fingerprint;
+        private int hashCode;
+
+        void set(int year, int month, int width, int height, long fingerprint) {
+            this.year = year;
+            this.month = month;
+            this.width = width;
+            this.height = height;
+            this.fingerprint = fingerprint;
+
+            int result = year * 12 + month;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + (int) (fingerprint ^ (fingerprint >>> 32));
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof ThumbnailKey))
+                return false;
+
+            ThumbnailKey second = (ThumbnailKey) o;
+            return this.year == second.year &&
+                    this.month == second.month &&
+                    this.width == second.width &&
+                    this.height == second.height &&
+                    this.fingerprint == second.fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.commusoft.diary.diarytrials.DiarySource;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.AttributeSet;
@@ -16,6 +17,7 @@ import android.view.animation.Animation;
 import android.view.animation.Transformation;
 
 import com.commusoft.diary.diarytrials.R;
+import com.commusoft.diary.diarytrials.DiarySource.events.Event;
 import com.commusoft.diary.diarytrials.DiarySource.events.EventAdapter;
 import com.telerik.android.common.Function;
 import com.telerik.android.common.Procedure;
@@ -25,7 +27,6 @@ import com.telerik.android.common.licensing.LicensingProvider;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Locale;
 
@@ -37,6 +38,53 @@ public class RadCalendarView extends View implements
         GestureDetector.OnDoubleTapListener,
         ScaleGestureDetector.OnScaleGestureListener {
 
+    /**
+     * Phase of the frame profiler which draws the title.
+     */
+    public static final int PROFILER_PHASE_TITLE = 0;
+    /**
+     * Phase of the frame profiler which draws the animated transitions between dates and display modes.
+     */
+    public static final int PROFILER_PHASE_ANIMATIONS = 1;
+    /**
+     * Phase of the frame profiler which draws the day names.
+     */
+    public static final int PROFILER_PHASE_DAY_NAMES = 2;
+    /**
+     * Phase of the frame profiler which rebuilds the geometry of the cell decorations.
+     */
+    public static final int PROFILER_PHASE_UPDATE_DECORATIONS = 3;
+    /**
+     * Phase of the frame profiler which draws the cells and the grid lines of the fragments, apart from
+     * the events of the cells.
+     */
+    public static final int PROFILER_PHASE_FRAGMENTS = 4;
+    /**
+     * Phase of the frame profiler which runs the post render pass of the fragments.
+     */
+    public static final int PROFILER_PHASE_POST_RENDER = 5;
+    /**
+     * Phase of the frame profiler which draws the cell decorations.
+     */
+    public static final int PROFILER_PHASE_DECORATIONS = 6;
+    /**
+     * Phase of the frame profiler which draws the events of the cells. It is summed over all cells of a
+     * frame and its time is not included in the phase during which the cells are drawn.
+     */
+    public static final int PROFILER_PHASE_EVENTS = 7;
+    /**
+     * Counter of the frame profiler with the number of cells drawn.
+     */
+    public static final int PROFILER_COUNTER_CELLS_DRAWN = 0;
+    /**
+     * Counter of the frame profiler with the number of events passed to the event renderer.
+     */
+    public static final int PROFILER_COUNTER_EVENTS_DRAWN = 1;
+
+    private static final String[] PROFILER_PHASE_NAMES = new String[]{
+            "title", "animations", "day names", "update decorations", "fragments", "post render", "decorations", "events"};
+    private static final String[] PROFILER_COUNTER_NAMES = new String[]{"cells drawn", "events drawn"};
+
     // Legacy
     private static final float UPPER_PART_RATIO = 0.5f;
     private static final float LOWER_PART_RATIO = 0.8f;
@@ -45,7 +93,7 @@ public class RadCalendarView extends View implements
 
     private Locale locale;
     private Calendar calendar;
-    private Calendar workCalendar;
+    private EpochDayCalendar dateEngine;
     private boolean suspendUpdate;
     private boolean suspendArrange;
 
@@ -61,6 +109,8 @@ public class RadCalendarView extends View implements
     private CalendarTask taskToBeExecutedAfterArrangeHasPassed;
 
     private CellDecorationsLayer cellDecorationsLayer;
+    private final Rect dirtyRegion = new Rect();
+    private boolean fullInvalidationPending;
     private CalendarAdapter calendarAdapter;
     private CalendarAnimationsManager animationsManager;
     private CalendarGestureManager gestureManager;
@@ -82,7 +132,14 @@ public class RadCalendarView extends View implements
     private OnDisplayDateChangedListener onDisplayDateChangedListener;
     private OnDisplayModeChangedListener onDisplayModeChangedListener;
 
-    private Hashtable<Long, List<CalendarDayCell>> dateToCell;
+    private DayCellIndex<CalendarDayCell> dateToCell;
+    private final List<List<Event>> fragmentEvents = new ArrayList<List<Event>>();
+    private final List<List<Event>> changedDaysEvents = new ArrayList<List<Event>>();
+    private int lastRebuiltCellsCount;
+    private long rebuiltCellsCount;
+    private final FragmentSnapshotCache snapshotCache = new FragmentSnapshotCache();
+    private final MonthThumbnailCache monthThumbnailCache = new MonthThumbnailCache(MonthThumbnailCache.DEFAULT_MAX_BYTES);
+    private FrameProfiler frameProfiler;
 
     private int stateToSave;
 
@@ -341,20 +398,169 @@ public class RadCalendarView extends View implements
     }
 
     /**
-     * Holds a collection that has all the cells sorted and accessible vy date.
+     * Holds an index that has all the cells accessible by their epoch day.
      *
-     * @return the current collection of cells accessible by date.
+     * @return the current index of cells accessible by date.
+     * @see #getDateEngine()
      */
-    public Hashtable<Long, List<CalendarDayCell>> dateToCell() {
+    public DayCellIndex<CalendarDayCell> dateToCell() {
         return this.dateToCell;
     }
 
+    /**
+     * Gets the number of cells which were rebuilt by the last update of the fragments. Fragments which
+     * already display the requested period are reused and do not add to this number.
+     *
+     * @return the number of cells rebuilt by the last update.
+     */
+    public int getLastRebuiltCellsCount() {
+        return this.lastRebuiltCellsCount;
+    }
+
+    /**
+     * Gets a value indicating whether the fragments will be rasterised to bitmaps while they are scrolled,
+     * flung or snapped, so that every frame of the movement only draws the bitmaps.
+     * The default value is <code>false</code>.
+     *
+     * @return whether the fragments are drawn from snapshots while moving.
+     */
+    public boolean isFragmentSnapshotsEnabled() {
+        return this.snapshotCache.isEnabled();
+    }
+
+    /**
+     * Sets a value indicating whether the fragments will be rasterised to bitmaps while they are scrolled,
+     * flung or snapped. Changes to the data, the style or the selection during the movement cause the
+     * snapshots to be drawn again.
+     *
+     * @param enabled whether the fragments are drawn from snapshots while moving.
+     * @see #setFragmentSnapshotMemoryBudget(int)
+     */
+    public void setFragmentSnapshotsEnabled(boolean enabled) {
+        this.snapshotCache.setEnabled(enabled);
+        if (!enabled) {
+            this.scrollManager.releaseSnapshots();
+            this.snapshotCache.trimFreeBitmaps();
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Gets the max number of bytes used by the snapshots of the fragments.
+     *
+     * @return the current memory budget of the snapshots.
+     */
+    public int getFragmentSnapshotMemoryBudget() {
+        return this.snapshotCache.getMemoryBudget();
+    }
+
+    /**
+     * Sets the max number of bytes used by the snapshots of the fragments. The fragments which do not fit
+     * in the budget are rendered directly. The default value is 12 MB.
+     *
+     * @param memoryBudget the new memory budget of the snapshots.
+     */
+    public void setFragmentSnapshotMemoryBudget(int memoryBudget) {
+        this.snapshotCache.setMemoryBudget(memoryBudget);
+    }
+
+    /**
+     * Marks the snapshots of the fragments as outdated, so that they are rasterised again before they are
+     * drawn. Should be called when the content of the cells is changed during a scroll.
+     */
+    public void invalidateFragmentSnapshots() {
+        this.snapshotCache.invalidate();
+    }
+
+    FragmentSnapshotCache getSnapshotCache() {
+        return this.snapshotCache;
+    }
+
+    /**
+     * Gets the max number of bytes used by the cached thumbnails of the months displayed in year mode.
+     *
+     * @return the current size of the month thumbnail cache.
+     */
+    public int getMonthThumbnailCacheSize() {
+        return this.monthThumbnailCache.getMaxBytes();
+    }
+
+    /**
+     * Sets the max number of bytes used by the cached thumbnails of the months displayed in year mode. Each
+     * month cell is rendered once to a thumbnail which is reused until the month, the size or the content
+     * of the cell changes. The least recently used thumbnails are evicted first. Setting <code>0</code>
+     * disables the cache. The default value is 16 MB.
+     *
+     * @param maxBytes the new size of the month thumbnail cache.
+     */
+    public void setMonthThumbnailCacheSize(int maxBytes) {
+        this.monthThumbnailCache.setMaxBytes(maxBytes);
+    }
+
+    MonthThumbnailCache getMonthThumbnailCache() {
+        return this.monthThumbnailCache;
+    }
+
+    /**
+     * Gets the total number of cells which were rebuilt by updates of the fragments.
+     *
+     * @return the number of rebuilt cells.
+     */
+    public long getRebuiltCellsCount() {
+        return this.rebuiltCellsCount;
+    }
+
+    /**
+     * Gets a value indicating whether the time spent in the phases of each frame is measured.
+     * The default value is <code>false</code>.
+     *
+     * @return whether the frames are profiled.
+     */
+    public boolean isFrameProfilingEnabled() {
+        return this.frameProfiler != null;
+    }
+
+    /**
+     * Sets a value indicating whether the time spent in the phases of each frame is measured. The phases
+     * and the counters are identified by the <code>PROFILER_PHASE_</code> and <code>PROFILER_COUNTER_</code>
+     * constants of this class. Disabling the profiling discards the recorded statistics.
+     *
+     * @param enabled whether the frames are profiled.
+     * @see #getFrameProfiler()
+     */
+    public void setFrameProfilingEnabled(boolean enabled) {
+        if (enabled == (this.frameProfiler != null))
+            return;
+
+        this.frameProfiler = enabled ? new FrameProfiler(PROFILER_PHASE_NAMES, PROFILER_COUNTER_NAMES) : null;
+    }
+
+    /**
+     * Gets the profiler which measures the frames of the calendar.
+     *
+     * @return the profiler or <code>null</code> if the profiling is disabled.
+     * @see #setFrameProfilingEnabled(boolean)
+     */
+    public FrameProfiler getFrameProfiler() {
+        return this.frameProfiler;
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         LicensingProvider.verify(this.getContext());
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        this.scrollManager.releaseSnapshots();
+        this.snapshotCache.trimFreeBitmaps();
+        this.monthThumbnailCache.clear();
+    }
+
     /**
      * Returns the currently used {@link CalendarAdapter}
      * by this instance. This calendarAdapter is used for getting and updating the
@@ -556,6 +762,133 @@ public class RadCalendarView extends View implements
         invalidate();
     }
 
+    /**
+     * Notifies the instance that the events of the dates in the provided period have changed. Only the
+     * displayed cells of these dates are updated and redrawn.
+     *
+     * @param from the start of the period
+     * @param to   the end of the period, exclusive
+     */
+    public void notifyRangeChanged(long from, long to) {
+        if (from >= to) {
+            throw new IllegalArgumentException("to should be after from.");
+        }
+
+        refreshDays(this.dateEngine.toEpochDay(from), this.dateEngine.toEpochDay(to - 1), null);
+    }
+
+    /**
+     * Notifies the instance that the events of the provided epoch days have changed. The displayed cells
+     * of all days are updated with a single query to the event adapter and only these cells are redrawn.
+     *
+     * @param days the changed days
+     */
+    public void notifyDaysChanged(DayIntervalSet days) {
+        if (days == null) {
+            throw new NullPointerException("days");
+        }
+
+        if (!days.isEmpty()) {
+            refreshDays(days.getIntervalFirstDay(0), days.getIntervalLastDay(days.getIntervalsCount() - 1), days);
+        }
+    }
+
+    /**
+     * Updates the events of the displayed cells of the days between the provided days which are in the
+     * provided set, or of all of them if there is no set.
+     */
+    private void refreshDays(long firstChangedDay, long lastChangedDay, DayIntervalSet days) {
+        if (this.dateToCell.getDaysCount() == 0) {
+            return;
+        }
+
+        long firstIndexedDay = this.dateToCell.getFirstDay();
+        long firstDay = Math.max(firstChangedDay, firstIndexedDay);
+        long lastDay = Math.min(lastChangedDay, firstIndexedDay + this.dateToCell.getDaysCount() - 1);
+        if (firstDay > lastDay) {
+            return;
+        }
+
+        boolean hasEvents = this.eventAdapter.hasEvents();
+        if (hasEvents) {
+            this.eventAdapter.getEventsForRange(this.dateEngine.getDayStart(firstDay),
+                    this.dateEngine.getDayStart(lastDay + 1), this.changedDaysEvents);
+        }
+
+        boolean cellsChanged = false;
+        for (long day = firstDay; day <= lastDay; day++) {
+            if (days != null && !days.contains(day)) {
+                continue;
+            }
+
+            for (int i = 0, count = this.dateToCell.getCellsCount(day); i < count; i++) {
+                CalendarDayCell cell = this.dateToCell.getCell(day, i);
+                if (hasEvents) {
+                    List<Event> dayEvents = this.changedDaysEvents.get((int) (day - firstDay));
+                    List<Event> cellEvents = cell.getEvents();
+                    if (cellEvents == null) {
+                        cellEvents = new ArrayList<Event>(dayEvents.size());
+                    } else {
+                        cellEvents.clear();
+                    }
+                    cellEvents.addAll(dayEvents);
+                    cell.setEvents(cellEvents);
+                } else {
+                    cell.setEvents(null);
+                }
+
+                cell.invalidate();
+                cellsChanged = true;
+            }
+        }
+
+        for (int i = 0, count = this.changedDaysEvents.size(); i < count; i++) {
+            this.changedDaysEvents.get(i).clear();
+        }
+
+        if (cellsChanged) {
+            this.snapshotCache.invalidate();
+        }
+    }
+
+    /**
+     * Notifies the instance that an event was added to the event adapter.
+     *
+     * @param event the added event
+     */
+    public void notifyEventInserted(Event event) {
+        notifyEventRangeChanged(event);
+    }
+
+    /**
+     * Notifies the instance that an event was removed from the event adapter.
+     *
+     * @param event the removed event
+     */
+    public void notifyEventRemoved(Event event) {
+        notifyEventRangeChanged(event);
+    }
+
+    /**
+     * Notifies the instance that the title, the color or another property of an event which does not
+     * move it to other dates has changed. If the dates of the event change the previous and the new
+     * periods of the event should be passed to {@link #notifyRangeChanged(long, long)} instead.
+     *
+     * @param event the changed event
+     */
+    public void notifyEventChanged(Event event) {
+        notifyEventRangeChanged(event);
+    }
+
+    private void notifyEventRangeChanged(Event event) {
+        if (event == null) {
+            throw new NullPointerException("event");
+        }
+
+        // All day events are displayed only for the date on which they start.
+        notifyRangeChanged(event.getStartTime(), event.isAllDay() ? event.getStartTime() + 1 : event.getEndTime());
+    }
+
     @Override
     protected Parcelable onSaveInstanceState() {
         Bundle bundle = new Bundle();
@@ -568,13 +901,15 @@ public class RadCalendarView extends View implements
 
         bundle.putLong("displayDate", this.displayDate);
 
-        List<Long> selectedDates = this.gestureManager.getSelectionManager().getSelectedDates();
-        if (selectedDates != null && selectedDates.size() > 0) {
-            long list[] = new long[selectedDates.size()];
-            for (int i = 0; i < selectedDates.size(); i++) {
-                list[i] = selectedDates.get(i);
-            }
-            bundle.putLongArray("selectedDates", list);
+        // The selection is saved as the bounds of its intervals, so a long range takes two values.
+        CalendarSelectionManager selectionManager = this.gestureManager.getSelectionManager();
+        long[] selectedIntervals = selectionManager.getSelectedIntervals();
+        if (selectedIntervals.length > 0) {
+            bundle.putLongArray("selectedIntervals", selectedIntervals);
+        }
+        DateRange selectedRange = selectionManager.selectedRange;
+        if (selectedRange != null) {
+            bundle.putLongArray("selectedRange", new long[]{selectedRange.getStart(), selectedRange.getEnd()});
         }
 
         return bundle;
@@ -586,15 +921,11 @@ public class RadCalendarView extends View implements
             final Bundle bundle = (Bundle) state;
             this.stateToSave = bundle.getInt("stateToSave");
 
-            long[] selectedDatesArray = bundle.getLongArray("selectedDates");
-            if (selectedDatesArray != null) {
-                List<Long> selectedDates = new ArrayList<Long>();
-                for (long value : selectedDatesArray) {
-                    selectedDates.add(value);
-                }
-
-                this.gestureManager.getSelectionManager().setSelectedDates(selectedDates);
-                this.gestureManager.getSelectionManager().syncSelectedCellsWithDates();
+            long[] selectedIntervals = bundle.getLongArray("selectedIntervals");
+            if (selectedIntervals != null) {
+                long[] selectedRange = bundle.getLongArray("selectedRange");
+                this.gestureManager.getSelectionManager().setSelectedIntervals(selectedIntervals,
+                        selectedRange != null ? new DateRange(selectedRange[0], selectedRange[1]) : null);
             }
 
             this.taskToBeExecutedAfterArrangeHasPassed = (new CalendarTask() {
@@ -693,6 +1024,7 @@ public class RadCalendarView extends View implements
     public void setShowGridLines(boolean showGridLines) {
         if (this.showGridLines != showGridLines) {
             this.showGridLines = showGridLines;
+            invalidateFragmentSnapshots();
             invalidate();
         }
     }
@@ -910,7 +1242,8 @@ public class RadCalendarView extends View implements
     }
 
     /**
-     * Gets the selected dates.
+     * Gets the selected dates in ascending order. Before the selection was kept as intervals of days,
+     * the dates were in the order in which they were selected.
      *
      * @return the currently selected dates.
      */
@@ -918,6 +1251,25 @@ public class RadCalendarView extends View implements
         return this.selectionManager.getSelectedDates();
     }
 
+    /**
+     * Gets the selected dates as ranges of consecutive dates.
+     *
+     * @return the currently selected ranges.
+     */
+    public List<DateRange> getSelectedRanges() {
+        return this.selectionManager.getSelectedRanges();
+    }
+
+    /**
+     * Gets a value indicating whether a date is selected.
+     *
+     * @param date the date.
+     * @return <code>true</code> if the date is selected, <code>false</code> otherwise.
+     */
+    public boolean isDateSelected(long date) {
+        return this.selectionManager.isDateSelected(date);
+    }
+
     /**
      * Sets the selected dates.
      *
@@ -1318,53 +1670,138 @@ public class RadCalendarView extends View implements
         if (this.suspendUpdate)
             return;
 
+        this.fullInvalidationPending = true;
         super.invalidate();
     }
 
+    /**
+     * Marks a region of the calendar as damaged, so that only the elements in it are redrawn. The regions
+     * damaged until the next draw are accumulated and are not tracked while the whole calendar is to be redrawn.
+     * The region is extended by the width of the grid lines and the cell decorations drawn over its edges.
+     *
+     * @param left   the left of the region.
+     * @param top    the top of the region.
+     * @param right  the right of the region.
+     * @param bottom the bottom of the region.
+     */
+    public void invalidateRegion(int left, int top, int right, int bottom) {
+        if (this.suspendUpdate || this.fullInvalidationPending)
+            return;
+
+        int margin = (int) Math.ceil(Math.max(this.gridLinesLayer.getWidth(), this.cellDecorationsLayer.getStrokeWidth()));
+        left = Math.max(left - margin, 0);
+        top = Math.max(top - margin, 0);
+        right = Math.min(right + margin, getWidth());
+        bottom = Math.min(bottom + margin, getHeight());
+        if (left >= right || top >= bottom)
+            return;
+
+        this.dirtyRegion.union(left, top, right, bottom);
+        super.invalidate(left, top, right, bottom);
+    }
+
+    /**
+     * Gets the region damaged since the last draw through {@link #invalidateRegion(int, int, int, int)}.
+     *
+     * @return the damaged region, empty if there is none or if the whole calendar is to be redrawn.
+     */
+    Rect getDirtyRegion() {
+        return this.dirtyRegion;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         if (this.suspendUpdate)
             return;
 
-        if (this.title != null && this.title.getVisibility() == ElementVisibility.Visible) {
+        this.fullInvalidationPending = false;
+        this.dirtyRegion.setEmpty();
+
+        FrameProfiler profiler = this.frameProfiler;
+        if (profiler == null) {
+            drawCalendar(canvas, null);
+            return;
+        }
+
+        long frameStart = profiler.beginFrame();
+        drawCalendar(canvas, profiler);
+        profiler.endFrame(frameStart);
+    }
+
+    /**
+     * Draws the calendar, timing its phases when a profiler is provided.
+     */
+    private void drawCalendar(Canvas canvas, FrameProfiler profiler) {
+        long phaseStart = profiler != null ? profiler.now() : 0;
+
+        if (this.title != null && this.title.getVisibility() == ElementVisibility.Visible && !isOutsideClip(canvas, this.title)) {
             drawTitle(canvas);
+            if (profiler != null)
+                phaseStart = profiler.endPhase(PROFILER_PHASE_TITLE, phaseStart);
         }
 
         if (this.animationsManager.animationInProcess()) {
             this.animationsManager.animate(canvas);
+            if (profiler != null)
+                profiler.endPhase(PROFILER_PHASE_ANIMATIONS, phaseStart);
             return;
         }
 
-        if (this.dayNames != null && this.dayNames.getVisibility() == ElementVisibility.Visible) {
+        if (this.dayNames != null && this.dayNames.getVisibility() == ElementVisibility.Visible && !isOutsideClip(canvas, this.dayNames)) {
             drawDayNames(canvas);
+            if (profiler != null)
+                phaseStart = profiler.endPhase(PROFILER_PHASE_DAY_NAMES, phaseStart);
         }
 
         canvas.clipRect(this.scrollManager.getLeft(), this.scrollManager.getTop(), this.scrollManager.getRight(), this.scrollManager.getBottom() +
                 (this.showGridLines ? this.gridLinesLayer.getWidth() / 2 : 0));
-        if (this.showCellDecorations)
+        if (this.showCellDecorations) {
             this.scrollManager.updateDecorations();
+            if (profiler != null)
+                phaseStart = profiler.endPhase(PROFILER_PHASE_UPDATE_DECORATIONS, phaseStart);
+        }
 
-        drawFragments(canvas);
+        drawFragments(canvas, profiler, phaseStart);
 
-        if (this.showCellDecorations)
+        if (this.showCellDecorations) {
+            phaseStart = profiler != null ? profiler.now() : 0;
             this.cellDecorationsLayer.render(canvas);
+            if (profiler != null)
+                profiler.endPhase(PROFILER_PHASE_DECORATIONS, phaseStart);
+        }
 
         this.animationsManager.onInvalidate();
-        this.cellDecorationsLayer.clearDecorations();
+    }
+
+    /**
+     * Gets a value indicating whether an element and the grid lines around it are outside the area which is being redrawn.
+     */
+    private boolean isOutsideClip(Canvas canvas, CalendarElement element) {
+        float margin = this.showGridLines ? this.gridLinesLayer.getWidth() : 0;
+        return canvas.quickReject(element.getLeft() - margin, element.getTop() - margin,
+                element.getRight() + margin, element.getBottom() + margin, Canvas.EdgeType.AA);
     }
 
     /**
      * Used to draw the fragments.
      *
-     * @param canvas the current canvas.
+     * @param canvas     the current canvas.
+     * @param profiler   the profiler of the frame or <code>null</code>.
+     * @param phaseStart the start time of the phase if the frame is profiled.
      */
-    private void drawFragments(Canvas canvas) {
+    private void drawFragments(Canvas canvas, FrameProfiler profiler, long phaseStart) {
         this.scrollManager.render(canvas);
 
         if (this.showGridLines)
             this.gridLinesLayer.drawLine(this.scrollManager.getLeft(), this.scrollManager.getTop(), this.scrollManager.getRight(), this.scrollManager.getTop(), canvas, this.scrollManager.getAlpha());
 
+        if (profiler != null)
+            phaseStart = profiler.endPhase(PROFILER_PHASE_FRAGMENTS, phaseStart);
+
         this.scrollManager.postRender(canvas);
+
+        if (profiler != null)
+            profiler.endPhase(PROFILER_PHASE_POST_RENDER, phaseStart);
     }
 
     /**
@@ -1650,7 +2087,7 @@ public class RadCalendarView extends View implements
             CalendarTools.setLocale(locale);
 
             this.calendar = Calendar.getInstance(this.locale);
-            this.workCalendar = Calendar.getInstance(this.locale);
+            this.dateEngine = EpochDayCalendar.from(this.calendar);
             this.calendar.setTimeInMillis(this.displayDate);
             this.calendarAdapter.setCalendar(this.calendar);
 
@@ -1670,6 +2107,16 @@ public class RadCalendarView extends View implements
         return (Calendar) this.calendar.clone();
     }
 
+    /**
+     * Gets the {@link com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar} which does the date
+     * arithmetic of this instance. It uses the time zone and the week settings of the current calendar.
+     *
+     * @return the current date engine
+     */
+    public EpochDayCalendar getDateEngine() {
+        return this.dateEngine;
+    }
+
     /**
      * Sets a new {@link java.util.Calendar} to be used by this instance.
      * By default the calendar that is used is {@link java.util.GregorianCalendar}.
@@ -1679,7 +2126,7 @@ public class RadCalendarView extends View implements
     public void setCalendar(Calendar calendar) {
         if (this.calendar != calendar) {
             this.calendar = (Calendar) calendar.clone();
-            this.workCalendar = (Calendar) calendar.clone();
+            this.dateEngine = EpochDayCalendar.from(this.calendar);
             this.calendarAdapter.setCalendar(this.calendar);
             this.setDisplayDate(this.calendar.getTimeInMillis());
 
@@ -1699,7 +2146,7 @@ public class RadCalendarView extends View implements
 
         this.locale = Locale.getDefault();
         this.calendar = Calendar.getInstance(this.locale);
-        this.workCalendar = Calendar.getInstance(this.locale);
+        this.dateEngine = EpochDayCalendar.from(this.calendar);
         CalendarTools.setLocale(this.locale);
 
         this.setClickable(true);
@@ -1707,8 +2154,8 @@ public class RadCalendarView extends View implements
 
         this.eventAdapter = new EventAdapter(this);
         this.calendarAdapter = new CalendarAdapter(this);
-        setScrollManager(new CalendarScrollManager(this));
         this.cellDecorationsLayer = new CellDecorationsLayer(this);
+        setScrollManager(new CalendarScrollManager(this));
 
         this.title = this.calendarAdapter.getTitleCell(this.displayDate, this.displayMode);
 
@@ -1723,7 +2170,7 @@ public class RadCalendarView extends View implements
         setSelectionManager(new CalendarSelectionManager(this));
         this.selectionManager.setSelectionMode(this.selectionMode);
 
-        this.dateToCell = new Hashtable<Long, List<CalendarDayCell>>();
+        this.dateToCell = new DayCellIndex<CalendarDayCell>();
 
         this.generateCalendarDayNameElements();
 
@@ -1752,8 +2199,14 @@ public class RadCalendarView extends View implements
      * @param force if forced the fragments will be updated disregarding their current state.
      */
     public void updateFragments(boolean force) {
-        for (List<CalendarDayCell> list : this.dateToCell.values())
-            list.clear();
+        this.dateToCell.clear();
+        this.lastRebuiltCellsCount = 0;
+        this.snapshotCache.invalidate();
+        this.cellDecorationsLayer.invalidate();
+
+        if (!force) {
+            reuseFragmentsForDisplayDate();
+        }
 
         if (this.displayMode == CalendarDisplayMode.Month) {
             updateFragmentMonthMode(this.scrollManager.currentFragment(), this.displayDate, force);
@@ -1772,6 +2225,7 @@ public class RadCalendarView extends View implements
             this.selectionManager.syncSelectedCellsWithDates();
         }
 
+        this.scrollManager.invalidateGridLines();
         this.scrollManager.onDateChanged();
     }
 
@@ -1866,7 +2320,8 @@ public class RadCalendarView extends View implements
      *                      update will be enough.
      */
     protected void updateFragmentMonthMode(CalendarFragment fragment, long dateToDisplay, boolean force) {
-        if (!force && fragment.getDisplayMode() == this.displayMode && fragment.getDisplayDate() == dateToDisplay) {
+        if (!force && fragmentDisplaysPeriodOf(fragment, dateToDisplay)) {
+            fragment.setDisplayDate(dateToDisplay);
             updateDateToCellsForFragment(fragment);
             updateFragmentIsFromCurrentMonth(fragment);
             updateFragmentCustomizations(fragment);
@@ -1874,10 +2329,11 @@ public class RadCalendarView extends View implements
             return;
         }
 
-        this.workCalendar.setTimeInMillis(CalendarTools.getFirstDisplayDate(dateToDisplay));
+        long firstDisplayDay = this.dateEngine.getFirstDisplayDay(this.dateEngine.toEpochDay(dateToDisplay));
+        List<List<Event>> fragmentEvents = getEventsForFragment(fragment, firstDisplayDay, CalendarTools.WEEKS_IN_A_MONTH);
 
         for (int week = 0; week < CalendarTools.WEEKS_IN_A_MONTH; week++) {
-            updateWeek(fragment.rows().get(week));
+            updateWeek(fragment.rows().get(week), fragmentEvents, firstDisplayDay, week * CalendarTools.DAYS_IN_A_WEEK);
         }
 
         fragment.setDisplayDate(dateToDisplay);
@@ -1886,45 +2342,70 @@ public class RadCalendarView extends View implements
         updateFragmentCustomizations(fragment);
     }
 
-    private void updateWeek(CalendarRow currentWeek) {
+    /**
+     * Gets the events for all dates displayed by the first weeks of a fragment with a single query
+     * to the event adapter. The event lists of the fragment cells are reused to hold the result.
+     *
+     * @param fragment         the fragment that will display the events.
+     * @param firstDisplayDay the epoch day of the first date displayed by the fragment.
+     * @param weeksCount      the number of weeks displayed by the fragment.
+     * @return the events for each date, or <code>null</code> if the event adapter has no events.
+     */
+    private List<List<Event>> getEventsForFragment(CalendarFragment fragment, long firstDisplayDay, int weeksCount) {
+        if (!this.eventAdapter.hasEvents()) {
+            return null;
+        }
+
+        this.fragmentEvents.clear();
+        for (int week = 0; week < weeksCount; week++) {
+            CalendarRow row = fragment.rows().get(week);
+            for (int day = 0; day < CalendarTools.DAYS_IN_A_WEEK; day++) {
+                List<Event> cellEvents = ((CalendarDayCell) row.getCell(day + 1)).getEvents();
+                this.fragmentEvents.add(cellEvents != null ? cellEvents : new ArrayList<Event>());
+            }
+        }
+
+        this.eventAdapter.getEventsForRange(this.dateEngine.getDayStart(firstDisplayDay),
+                this.dateEngine.getDayStart(firstDisplayDay + weeksCount * CalendarTools.DAYS_IN_A_WEEK), this.fragmentEvents);
+
+        return this.fragmentEvents;
+    }
+
+    private void updateWeek(CalendarRow currentWeek, List<List<Event>> fragmentEvents, long firstDisplayDay, int firstDayIndex) {
+        long weekStart = firstDisplayDay + firstDayIndex;
         CalendarDayCell currentCell = (CalendarDayCell) currentWeek.getCell(CalendarRow.WEEK_NUMBER_CELL_INDEX);
         if (this.weekNumbersDisplayMode == WeekNumbersDisplayMode.Block) {
-            calendarAdapter.updateWeekNumberCell(currentCell, this.workCalendar.get(Calendar.WEEK_OF_YEAR));
+            calendarAdapter.updateWeekNumberCell(currentCell, this.dateEngine.getWeekOfYear(weekStart));
         }
 
         currentCell.setVisibility(this.weekNumbersDisplayMode == WeekNumbersDisplayMode.Block ? ElementVisibility.Visible : ElementVisibility.Gone);
 
-        List<CalendarDayCell> dateToCells;
+        this.lastRebuiltCellsCount += CalendarTools.DAYS_IN_A_WEEK;
+        this.rebuiltCellsCount += CalendarTools.DAYS_IN_A_WEEK;
 
-        for (int day = 0; day < CalendarTools.DAYS_IN_A_WEEK; day++, this.workCalendar.add(Calendar.DAY_OF_YEAR, 1)) {
+        for (int day = 0; day < CalendarTools.DAYS_IN_A_WEEK; day++) {
             currentCell = (CalendarDayCell) currentWeek.getCell(day + 1);
 
             currentCell.setVisibility(ElementVisibility.Visible);
 
-            this.calendarAdapter.updateDateCell(currentCell, this.workCalendar.getTimeInMillis(),
-                    this.eventAdapter.getEventsForDate(this.workCalendar.getTimeInMillis()),
+            long time = this.dateEngine.getDayStart(weekStart + day);
+            this.calendarAdapter.updateDateCell(currentCell, time,
+                    fragmentEvents != null ? fragmentEvents.get(firstDayIndex + day) : null,
                     day == 0 && this.weekNumbersDisplayMode == WeekNumbersDisplayMode.Inline);
 
-            long time = this.workCalendar.getTimeInMillis();
-            dateToCells = this.dateToCell.get(time);
-            if (dateToCells == null) {
-                dateToCells = new ArrayList<CalendarDayCell>();
-                this.dateToCell.put(time, dateToCells);
-            }
-
             validateDisabledDate(currentCell, time);
 
-            dateToCells.add(currentCell);
+            this.dateToCell.add(weekStart + day, currentCell);
             currentCell.setDate(time);
         }
     }
 
     private void updateFragmentIsFromCurrentMonth(CalendarFragment fragment) {
-        int currentMonth = calendar.get(Calendar.MONTH);
+        int currentMonth = EpochDayCalendar.getMonth(this.dateEngine.toEpochDay(this.calendar.getTimeInMillis()));
         for (CalendarRow row : fragment.rows())
             for (CalendarCell cell : row.cells) {
-                workCalendar.setTimeInMillis(cell.getDate());
-                ((CalendarDayCell) cell).setIsFromCurrentMonth(workCalendar.get(Calendar.MONTH) == currentMonth);
+                int month = EpochDayCalendar.getMonth(this.dateEngine.toEpochDay(cell.getDate()));
+                ((CalendarDayCell) cell).setIsFromCurrentMonth(month == currentMonth);
             }
     }
 
@@ -1963,7 +2444,8 @@ public class RadCalendarView extends View implements
      *                      update will be enough.
      */
     protected void updateFragmentWeekMode(CalendarFragment fragment, long dateToDisplay, boolean force) {
-        if (!force && fragment.getDisplayMode() == this.displayMode && fragment.getDisplayDate() == dateToDisplay) {
+        if (!force && fragmentDisplaysPeriodOf(fragment, dateToDisplay)) {
+            fragment.setDisplayDate(dateToDisplay);
             updateDateToCellsForFragment(fragment);
             updateFragmentIsFromCurrentMonth(fragment);
             updateFragmentCustomizations(fragment);
@@ -1971,8 +2453,9 @@ public class RadCalendarView extends View implements
             return;
         }
 
-        this.workCalendar.setTimeInMillis(CalendarTools.getDateStart(CalendarTools.getFirstDateOfWeekWith(dateToDisplay)));
-        updateWeek(fragment.rows().get(0));
+        long firstDisplayDay = this.dateEngine.getFirstDayOfWeek(this.dateEngine.toEpochDay(dateToDisplay));
+        List<List<Event>> fragmentEvents = getEventsForFragment(fragment, firstDisplayDay, 1);
+        updateWeek(fragment.rows().get(0), fragmentEvents, firstDisplayDay, 0);
 
         fragment.setDisplayDate(dateToDisplay);
         fragment.setDisplayMode(this.displayMode);
@@ -1998,28 +2481,25 @@ public class RadCalendarView extends View implements
      *                      update will be enough.
      */
     protected void updateFragmentYearMode(CalendarFragment fragment, long dateToDisplay, boolean force) {
-        if (!force && fragment.getDisplayMode() == this.displayMode && fragment.getDisplayDate() == dateToDisplay) {
+        if (!force && fragmentDisplaysPeriodOf(fragment, dateToDisplay)) {
+            fragment.setDisplayDate(dateToDisplay);
             updateFragmentCustomizations(fragment);
 
             return;
         }
 
-        this.workCalendar.setTimeInMillis(dateToDisplay);
-        this.workCalendar.set(Calendar.MONTH, Calendar.JANUARY);
-        this.workCalendar.set(Calendar.DAY_OF_MONTH, 1);
-        this.workCalendar.set(Calendar.HOUR, 0);
-        this.workCalendar.set(Calendar.MINUTE, 0);
-        this.workCalendar.set(Calendar.SECOND, 0);
-        this.workCalendar.set(Calendar.MILLISECOND, 0);
-        this.workCalendar.set(Calendar.AM_PM, 0);
+        long month = EpochDayCalendar.getFirstDayOfYear(this.dateEngine.toEpochDay(dateToDisplay));
 
         for (int i = 0; i < fragment.rows().size(); i++) {
             CalendarRow row = fragment.rows().get(i);
 
             for (int j = 0; j < row.cellsCount(); j++) {
-                this.calendarAdapter.updateCalendarMonthCell((CalendarMonthCell) row.getCell(j), this.workCalendar.getTimeInMillis());
-                this.workCalendar.add(Calendar.MONTH, 1);
+                this.calendarAdapter.updateCalendarMonthCell((CalendarMonthCell) row.getCell(j), this.dateEngine.getDayStart(month));
+                month = EpochDayCalendar.addMonths(month, 1);
             }
+
+            this.lastRebuiltCellsCount += row.cellsCount();
+            this.rebuiltCellsCount += row.cellsCount();
         }
 
         fragment.setDisplayDate(dateToDisplay);
@@ -2177,8 +2657,7 @@ public class RadCalendarView extends View implements
     }
 
     private int getCurrentMonth() {
-        this.workCalendar.setTimeInMillis(this.displayDate);
-        return this.workCalendar.get(Calendar.MONTH);
+        return EpochDayCalendar.getMonth(this.dateEngine.toEpochDay(this.displayDate));
     }
 
     private void animateYearToMonth() {
@@ -2256,18 +2735,51 @@ public class RadCalendarView extends View implements
         this.scrollManager.setActiveDate(this.displayDate);
     }
 
+    /**
+     * Rotates the fragments of the scroll manager when the display date moved to the period of the next or the
+     * previous fragment without scrolling, so that only the newly exposed fragment has to be rebuilt.
+     */
+    private void reuseFragmentsForDisplayDate() {
+        if (fragmentDisplaysPeriodOf(this.scrollManager.currentFragment(), this.displayDate)) {
+            return;
+        }
+
+        if (fragmentDisplaysPeriodOf(this.scrollManager.nextFragment(), this.displayDate)) {
+            this.scrollManager.shiftFragments(true);
+        } else if (fragmentDisplaysPeriodOf(this.scrollManager.previousFragment(), this.displayDate)) {
+            this.scrollManager.shiftFragments(false);
+        }
+    }
+
+    /**
+     * Checks whether a fragment already displays the month, week or year, according to the current display mode,
+     * which contains the provided date.
+     */
+    private boolean fragmentDisplaysPeriodOf(CalendarFragment fragment, long date) {
+        if (fragment.getDisplayMode() != this.displayMode) {
+            return false;
+        }
+
+        long fragmentDay = this.dateEngine.toEpochDay(fragment.getDisplayDate());
+        long day = this.dateEngine.toEpochDay(date);
+        switch (this.displayMode) {
+            case Month:
+                return EpochDayCalendar.getFirstDayOfMonth(fragmentDay) == EpochDayCalendar.getFirstDayOfMonth(day);
+            case Week:
+                return this.dateEngine.getFirstDayOfWeek(fragmentDay) == this.dateEngine.getFirstDayOfWeek(day);
+            case Year:
+                return EpochDayCalendar.getFirstDayOfYear(fragmentDay) == EpochDayCalendar.getFirstDayOfYear(day);
+            default:
+                return false;
+        }
+    }
+
     private void updateDateToCellsForFragment(CalendarFragment fragment) {
         for (int row = 0, rowsCount = fragment.rows().size(); row < rowsCount; row++) {
             CalendarRow currentRow = fragment.rows().get(row);
             for (int cell = 1, cellsCount = currentRow.cellsCount(); cell < cellsCount; cell++) {
                 CalendarDayCell currentCell = (CalendarDayCell) currentRow.getCell(cell);
-                List<CalendarDayCell> dateToCells = this.dateToCell.get(currentCell.getDate());
-                if (dateToCells == null) {
-                    dateToCells = new ArrayList<CalendarDayCell>();
-                    this.dateToCell.put(currentCell.getDate(), dateToCells);
-                }
-
-                dateToCells.add(currentCell);
+                this.dateToCell.add(this.dateEngine.toEpochDay(currentCell.getDate()), currentCell);
             }
         }
     }
@@ -2350,47 +2862,70 @@ public class RadCalendarView extends View implements
      * @see #setOnSelectedDatesChangedListener(OnSelectedDatesChangedListener)
      */
     public static class SelectionContext {
-        List<Long> oldSelection;
-        List<Long> newSelection;
-        List<Long> datesAdded;
-        List<Long> datesRemoved;
+        final DayIntervalSet oldSelection = new DayIntervalSet();
+        final DayIntervalSet newSelection = new DayIntervalSet();
+        final DayIntervalSet datesAdded = new DayIntervalSet();
+        final DayIntervalSet datesRemoved = new DayIntervalSet();
+        private final EpochDayCalendar dateEngine;
 
         /**
          * Creates a new SelectionContext instance.
          */
         public SelectionContext() {
-            oldSelection = new ArrayList<Long>();
-            newSelection = new ArrayList<Long>();
-            datesAdded = new ArrayList<Long>();
-            datesRemoved = new ArrayList<Long>();
+            this(CalendarTools.getDateEngine());
+        }
+
+        SelectionContext(EpochDayCalendar dateEngine) {
+            this.dateEngine = dateEngine;
         }
 
         /**
          * Returns the old selection.
          */
         public List<Long> oldSelection() {
-            return oldSelection;
+            return oldSelection.asDateList(this.dateEngine);
         }
 
         /**
          * Returns the new selection.
          */
         public List<Long> newSelection() {
-            return newSelection;
+            return newSelection.asDateList(this.dateEngine);
         }
 
         /**
          * Returns the dates that are currently added to the selection.
          */
         public List<Long> datesAdded() {
-            return datesAdded;
+            return datesAdded.asDateList(this.dateEngine);
         }
 
         /**
          * Returns the dates that are currently removed from the selection.
          */
         public List<Long> datesRemoved() {
-            return datesRemoved;
+            return datesRemoved.asDateList(this.dateEngine);
+        }
+
+        /**
+         * Returns the new selection as ranges of consecutive dates.
+         */
+        public List<DateRange> newSelectionRanges() {
+            return newSelection.asRangeList(this.dateEngine);
+        }
+
+        /**
+         * Returns the ranges of consecutive dates that are currently added to the selection.
+         */
+        public List<DateRange> rangesAdded() {
+            return datesAdded.asRangeList(this.dateEngine);
+        }
+
+        /**
+         * Returns the ranges of consecutive dates that are currently removed from the selection.
+         */
+        public List<DateRange> rangesRemoved() {
+            return datesRemoved.asRangeList(this.dateEngine);
         }
     }
 }
@@ -0,0 +1,193 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache which holds how many characters of an event title fit in a given space
+ * when drawn with a given text size and typeface. Cache misses are resolved with a binary
+ * search over the advances of the title characters instead of measuring the title once per removed character.
+ */
+class ClampedTitleCache {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final LinkedHashMap<TitleKey, ClampedTitle> entries;
+    private final TitleKey lookupKey = new TitleKey();
+    private float[] widths = new float[64];
+    private int capacity;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Creates a new instance of the {@link com.commusoft.diary.diarytrials.DiarySource.events.ClampedTitleCache} class.
+     *
+     * @param capacity the max number of titles that will be cached
+     */
+    ClampedTitleCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<TitleKey, ClampedTitle>(16, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TitleKey, ClampedTitle> eldest) {
+                return size() > ClampedTitleCache.this.capacity;
+            }
+        };
+    }
+
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity should not be negative.");
+        }
+
+        this.capacity = capacity;
+        trimToCapacity();
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    long getHitCount() {
+        return this.hitCount;
+    }
+
+    long getMissCount() {
+        return this.missCount;
+    }
+
+    void clear() {
+        this.entries.clear();
+        this.hitCount = 0;
+        this.missCount = 0;
+    }
+
+    /**
+     * Gets the clamped representation of the provided title, calculating it if it is not cached.
+     *
+     * @param title          the event title
+     * @param availableSpace the space in which the title should fit
+     * @param paint          the paint which will draw the title
+     * @return the clamped title
+     */
+    ClampedTitle get(String title, int availableSpace, Paint paint) {
+        this.lookupKey.set(title, availableSpace, paint.getTextSize(), paint.getTypeface());
+        ClampedTitle result = this.entries.get(this.lookupKey);
+        if (result != null) {
+            this.hitCount++;
+            return result;
+        }
+
+        this.missCount++;
+        result = calculate(title, availableSpace, paint);
+        if (this.capacity > 0) {
+            TitleKey key = new TitleKey();
+            key.set(title, availableSpace, paint.getTextSize(), paint.getTypeface());
+            this.entries.put(key, result);
+        }
+        return result;
+    }
+
+    private ClampedTitle calculate(String title, int availableSpace, Paint paint) {
+        int length = title.length();
+        if (this.widths.length < length) {
+            this.widths = new float[Math.max(length, this.widths.length * 2)];
+        }
+
+        paint.getTextWidths(title, 0, length, this.widths);
+        for (int i = 1; i < length; i++) {
+            this.widths[i] += this.widths[i - 1];
+        }
+
+        // Find the longest prefix which fits in the available space.
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.widths[middle - 1] <= availableSpace) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        // The advances of the separate characters may slightly differ from the measured text,
+        // so the result is corrected in order to stay consistent with what is drawn.
+        int visibleLength = low;
+        float visibleWidth = paint.measureText(title, 0, visibleLength);
+        while (visibleWidth > availableSpace && visibleLength > 0) {
+            visibleLength--;
+            visibleWidth = paint.measureText(title, 0, visibleLength);
+        }
+
+        if (visibleLength < length - 1) {
+            return new ClampedTitle(visibleLength, visibleWidth);
+        }
+        return new ClampedTitle(length, paint.measureText(title, 0, length));
+    }
+
+    private void trimToCapacity() {
+        while (this.entries.size() > this.capacity) {
+            this.entries.remove(this.entries.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Holds the number of visible characters of a title and their width.
+     */
+    static class ClampedTitle {
+        final int length;
+        final float width;
+
+        ClampedTitle(int length, float width) {
+            this.length = length;
+            this.width = width;
+        }
+    }
+
+    private static class TitleKey {
+        private String title;
+        private int availableSpace;
+        private float textSize;
+        private Typeface typeface;
+        private int hashCode;
+
+        void set(String title, int availableSpace, float textSize, Typeface typeface) {
+            this.title = title;
+            this.availableSpace = availableSpace;
+            this.textSize = textSize;
+            this.typeface = typeface;
+
+            int result = title.hashCode();
+            result = 31 * result + availableSpace;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof TitleKey))
+                return false;
+
+            TitleKey second = (TitleKey) o;
+            return this.availableSpace == second.availableSpace &&
+                    this.textSize == second.textSize &&
+                    this.typeface == second.typeface &&
+                    this.title.equals(second.title);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
@@ -1,21 +1,30 @@
 package com.commusoft.diary.diarytrials.DiarySource.events;
 
-import com.commusoft.diary.diarytrials.DiarySource.CalendarTools;
+import com.commusoft.diary.diarytrials.DiarySource.DayIntervalSet;
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
 import com.commusoft.diary.diarytrials.DiarySource.RadCalendarView;
 
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Default adapter for events displayed by {@link com.commusoft.diary.diarytrials.DiarySource.RadCalendarView}.
+ * The events are kept either in a list or, for very large diaries, in an {@link EventStore}.
  */
 public class EventAdapter {
 
     private final RadCalendarView owner;
     private List<com.commusoft.diary.diarytrials.DiarySource.events.Event> events;
-    private Calendar calendar;
+    private EventStore store;
     private EventRenderer renderer;
+    private final EventDayIndex index = new EventDayIndex();
+    private boolean indexInvalid;
+    private int batchDepth;
+    private boolean batchDataChanged;
+    private final DayIntervalSet batchChangedDays = new DayIntervalSet();
 
     /**
      * Creates a new instance of the {@link com.telerik.widget.calendar.events.EventAdapter} class.
@@ -34,9 +43,9 @@ public class EventAdapter {
      */
     public EventAdapter(RadCalendarView owner, List<com.commusoft.diary.diarytrials.DiarySource.events.Event> events) {
         this.owner = owner;
-        this.calendar = owner.getCalendar();
         this.events = events;
         this.renderer = new EventRenderer(owner.getContext());
+        this.index.rebuild(events);
     }
 
     /**
@@ -46,42 +55,346 @@ public class EventAdapter {
      * @return list of event for the provided date
      */
     public List<com.commusoft.diary.diarytrials.DiarySource.events.Event> getEventsForDate(long date) {
-        if (this.events == null) {
+        if (!hasEvents()) {
             return null;
         }
 
-        long dateStart = CalendarTools.getDateStart(date);
-        calendar.setTimeInMillis(dateStart);
-        calendar.add(Calendar.DATE, 1);
-        long dateEnd = calendar.getTimeInMillis();
-
         List<com.commusoft.diary.diarytrials.DiarySource.events.Event> eventsForDate = new ArrayList<com.commusoft.diary.diarytrials.DiarySource.events.Event>();
-        for (com.commusoft.diary.diarytrials.DiarySource.events.Event event : this.events) {
-            if (event == null) {
-                continue;
-            }
+        ensureIndex();
+        this.index.getEventsForDate(this.owner.getDateEngine(), date, eventsForDate);
+        return eventsForDate;
+    }
+
+    /**
+     * Gets the events that should be displayed for each of the dates in the provided range.
+     * The result contains one list per date, starting with the date that contains <code>from</code>,
+     * and each list holds the same events in the same order as the result of
+     * {@link #getEventsForDate(long)} for that date.
+     *
+     * @param from the first date of the range
+     * @param to   the end of the range, exclusive
+     * @return list of the events for each date in the range
+     */
+    public List<List<com.commusoft.diary.diarytrials.DiarySource.events.Event>> getEventsForRange(long from, long to) {
+        if (!hasEvents()) {
+            return null;
+        }
+
+        List<List<com.commusoft.diary.diarytrials.DiarySource.events.Event>> eventsForRange = new ArrayList<List<com.commusoft.diary.diarytrials.DiarySource.events.Event>>();
+        getEventsForRange(from, to, eventsForRange);
+        return eventsForRange;
+    }
+
+    /**
+     * Populates the provided lists with the events that should be displayed for each of the dates
+     * in the provided range in a single pass over the events. The lists that are already
+     * present in <code>eventsForRange</code> are cleared and reused, missing lists are created
+     * and lists for dates outside the range are removed.
+     *
+     * @param from           the first date of the range
+     * @param to             the end of the range, exclusive
+     * @param eventsForRange the list that will receive one list of events per date in the range
+     * @return the number of dates in the range
+     */
+    public int getEventsForRange(long from, long to, List<List<com.commusoft.diary.diarytrials.DiarySource.events.Event>> eventsForRange) {
+        ensureIndex();
+        return this.index.getEventsForRange(this.owner.getDateEngine(), from, to, eventsForRange);
+    }
+
+    /**
+     * Begins a batch of changes. Until the matching {@link #endBatch()} the changes made through this
+     * adapter only record the dates they affect, so that the index is updated and the calendar is
+     * redrawn once for the whole batch. Batches can be nested.
+     */
+    public void beginBatch() {
+        this.batchDepth++;
+    }
+
+    /**
+     * Ends a batch of changes. When the outermost batch ends the index is rebuilt if it was changed and
+     * the calendar updates the cells of all dates affected by the batch at once.
+     */
+    public void endBatch() {
+        if (this.batchDepth == 0) {
+            throw new IllegalStateException("endBatch should be called after beginBatch.");
+        }
+
+        if (--this.batchDepth > 0) {
+            return;
+        }
 
-            if (eventShouldBeVisible(event, dateStart, dateEnd)) {
-                eventsForDate.add(event);
+        ensureIndex();
+
+        try {
+            if (this.batchDataChanged) {
+                this.owner.notifyDataChanged();
+            } else if (!this.batchChangedDays.isEmpty()) {
+                this.owner.notifyDaysChanged(this.batchChangedDays);
             }
+        } finally {
+            this.batchDataChanged = false;
+            this.batchChangedDays.clear();
         }
-        return eventsForDate;
     }
 
     /**
-     * Adds an event to the collection of elements.
+     * Gets a value indicating whether a batch of changes was begun and not ended yet.
+     *
+     * @return <code>true</code> if a batch is in progress, <code>false</code> otherwise
+     */
+    public boolean isBatchInProgress() {
+        return this.batchDepth > 0;
+    }
+
+    /**
+     * Adds an event to the collection of elements. If the events are kept in an {@link EventStore}, the
+     * store keeps a copy of the event, so later changes of the provided event are not displayed. Use
+     * {@link #addStoredEvent(Event)} to get the view of the copy, which can be passed to
+     * {@link #updateEvent(Event, long, long, boolean)} and {@link #removeEvent(Event)}.
      *
      * @param event the event to be added.
      */
     public void addEvent(com.commusoft.diary.diarytrials.DiarySource.events.Event event) {
+        if (this.store != null) {
+            if (event != null) {
+                addStoredEvent(event);
+            }
+            return;
+        }
+
+        if (this.batchDepth > 0) {
+            this.events.add(event);
+            this.indexInvalid = true;
+            addChangedDays(event);
+            return;
+        }
+
+        ensureIndex();
         this.events.add(event);
-        this.owner.notifyDataChanged();
+        this.index.add(event);
+        if (event != null) {
+            this.owner.notifyEventInserted(event);
+        }
+    }
+
+    /**
+     * Adds a copy of an event to the event store of this adapter. The added event is reported with the
+     * view of its copy.
+     *
+     * @param event the event to be added.
+     * @return the view of the copy of the event in the store
+     * @throws java.lang.IllegalStateException If the events of this adapter are not kept in an {@link EventStore}
+     */
+    public EventStore.StoredJob addStoredEvent(com.commusoft.diary.diarytrials.DiarySource.events.Event event) {
+        if (this.store == null) {
+            throw new IllegalStateException("addStoredEvent should be called after setEventStore.");
+        }
+        if (event == null) {
+            throw new NullPointerException("event");
+        }
+
+        EventStore.StoredJob storedEvent = this.store.add(event);
+        if (this.batchDepth > 0) {
+            addChangedDays(storedEvent);
+        } else {
+            this.owner.notifyEventInserted(storedEvent);
+        }
+        return storedEvent;
+    }
+
+    /**
+     * Adds events to the collection of elements as a single batch.
+     *
+     * @param events the events to be added.
+     */
+    public void addEvents(Collection<? extends com.commusoft.diary.diarytrials.DiarySource.events.Event> events) {
+        beginBatch();
+        try {
+            for (com.commusoft.diary.diarytrials.DiarySource.events.Event event : events) {
+                addEvent(event);
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Removes an event from the collection of elements. If the events are kept in an {@link EventStore},
+     * the event should be a view of the store, such as an event returned for a date or by
+     * {@link #addStoredEvent(Event)}.
+     *
+     * @param event the event to be removed.
+     * @return <code>true</code> if the event was removed, <code>false</code> if it was not found.
+     * @throws java.lang.IllegalArgumentException If the events are kept in a store and the event is not a view of it
+     */
+    public boolean removeEvent(com.commusoft.diary.diarytrials.DiarySource.events.Event event) {
+        if (this.store != null) {
+            checkStoredEvent(event);
+            if (!this.store.remove(event)) {
+                return false;
+            }
+        } else {
+            if (this.events == null || !this.events.remove(event)) {
+                return false;
+            }
+            this.indexInvalid = true;
+        }
+
+        if (this.batchDepth > 0) {
+            addChangedDays(event);
+            return true;
+        }
+
+        ensureIndex();
+        if (event != null) {
+            this.owner.notifyEventRemoved(event);
+        }
+        return true;
     }
 
     /**
-     * Gets the list of all events handled by this adapter.
+     * Removes all occurrences of the provided events from the collection of elements as a single batch.
+     * The events are removed in a single pass over the collection. If the events are kept in an
+     * {@link EventStore}, all of them should be views of the store.
      *
-     * @return list of all events
+     * @param events the events to be removed.
+     * @return <code>true</code> if any event was removed, <code>false</code> otherwise.
+     * @throws java.lang.IllegalArgumentException If the events are kept in a store and an event is not a view of it
+     */
+    public boolean removeEvents(Collection<? extends com.commusoft.diary.diarytrials.DiarySource.events.Event> events) {
+        if (this.store != null) {
+            return removeStoredEvents(events);
+        }
+
+        if (this.events == null || events.isEmpty()) {
+            return false;
+        }
+
+        Set<com.commusoft.diary.diarytrials.DiarySource.events.Event> removedEvents = new HashSet<com.commusoft.diary.diarytrials.DiarySource.events.Event>(events);
+        List<com.commusoft.diary.diarytrials.DiarySource.events.Event> keptEvents = new ArrayList<com.commusoft.diary.diarytrials.DiarySource.events.Event>(this.events.size());
+        boolean removed = false;
+
+        beginBatch();
+        try {
+            for (com.commusoft.diary.diarytrials.DiarySource.events.Event event : this.events) {
+                if (removedEvents.contains(event)) {
+                    addChangedDays(event);
+                    removed = true;
+                } else {
+                    keptEvents.add(event);
+                }
+            }
+
+            if (removed) {
+                this.events.clear();
+                this.events.addAll(keptEvents);
+                this.indexInvalid = true;
+            }
+        } finally {
+            endBatch();
+        }
+
+        return removed;
+    }
+
+    private boolean removeStoredEvents(Collection<? extends com.commusoft.diary.diarytrials.DiarySource.events.Event> events) {
+        for (com.commusoft.diary.diarytrials.DiarySource.events.Event event : events) {
+            checkStoredEvent(event);
+        }
+
+        boolean removed = false;
+
+        beginBatch();
+        try {
+            for (com.commusoft.diary.diarytrials.DiarySource.events.Event event : events) {
+                if (this.store.remove(event)) {
+                    addChangedDays(event);
+                    removed = true;
+                }
+            }
+        } finally {
+            endBatch();
+        }
+
+        return removed;
+    }
+
+    /**
+     * Moves an event of the collection to a new period and updates the dates it was displayed for
+     * and the dates it will be displayed for. If the events are kept in an {@link EventStore}, the
+     * event should be a view of the store, such as an event returned for a date or by
+     * {@link #addStoredEvent(Event)}, since the store does not follow the event passed to
+     * {@link #addEvent(Event)}.
+     *
+     * @param event     the event to be moved.
+     * @param startTime the new start of the event.
+     * @param endTime   the new end of the event.
+     * @param allDay    whether the event will be an all day event.
+     * @throws java.lang.IllegalArgumentException If the start date is after the end date or if they are the same
+     *                                            or if the event is not one of the events of this adapter
+     */
+    public void updateEvent(com.commusoft.diary.diarytrials.DiarySource.events.Event event, long startTime, long endTime, boolean allDay) {
+        if (startTime >= endTime) {
+            throw new IllegalArgumentException("endTime should be after startTime.");
+        }
+        if (this.store != null) {
+            checkStoredEvent(event);
+            int row = ((EventStore.StoredJob) event).getRow();
+            if (row >= this.store.getRowsCount() || this.store.isRemoved(row)) {
+                throw new IllegalArgumentException("event should not be removed from the event store.");
+            }
+        } else if (this.events == null || !this.events.contains(event)) {
+            throw new IllegalArgumentException("event should be one of the events of this adapter.");
+        }
+
+        beginBatch();
+        try {
+            addChangedDays(event);
+
+            // The order keeps the start of the event before its end after each step.
+            if (startTime < event.getEndTime()) {
+                event.setStartTime(startTime);
+                event.setEndTime(endTime);
+            } else {
+                event.setEndTime(endTime);
+                event.setStartTime(startTime);
+            }
+            event.setAllDay(allDay);
+
+            addChangedDays(event);
+            this.indexInvalid = true;
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Rebuilds the index used to find the events for a date. The index follows the changes made
+     * through {@link #addEvent(Event)}, {@link #removeEvent(Event)}, {@link #updateEvent(Event, long, long, boolean)}
+     * and {@link #setEvents(java.util.List)}. Of the changes made directly to the list returned by
+     * {@link #getEvents()}, only events appended to its end are followed. This method should be called
+     * after any other change of that list, such as removing, replacing or inserting events, and after
+     * the start, the end or the all day state of an event that is already in the adapter is changed.
+     */
+    public void invalidateIndex() {
+        this.index.rebuild(this.events);
+        this.indexInvalid = false;
+    }
+
+    /**
+     * Gets a value indicating whether this adapter has a list or a store of events.
+     *
+     * @return <code>true</code> if the adapter has events to display, <code>false</code> otherwise
+     */
+    public boolean hasEvents() {
+        return this.events != null || this.store != null;
+    }
+
+    /**
+     * Gets the list of all events handled by this adapter. Events can be appended to the list directly,
+     * but other changes of the list should be followed by a call to {@link #invalidateIndex()}.
+     *
+     * @return list of all events or <code>null</code> if the events are kept in an {@link EventStore}
      */
     public List<com.commusoft.diary.diarytrials.DiarySource.events.Event> getEvents() {
         return events;
@@ -94,6 +407,50 @@ public class EventAdapter {
      */
     public void setEvents(List<com.commusoft.diary.diarytrials.DiarySource.events.Event> events) {
         this.events = events;
+        this.store = null;
+        this.index.setStore(null);
+        if (this.batchDepth > 0) {
+            this.indexInvalid = true;
+            this.batchDataChanged = true;
+            return;
+        }
+
+        this.index.rebuild(events);
+        this.indexInvalid = false;
+        this.owner.notifyDataChanged();
+    }
+
+    /**
+     * Gets the store of all events handled by this adapter.
+     *
+     * @return the store of all events or <code>null</code> if the events are kept in a list
+     */
+    public EventStore getEventStore() {
+        return this.store;
+    }
+
+    /**
+     * Sets a store which holds all events handled by this adapter instead of a list. The events returned
+     * for a date are lightweight views of the store's rows and {@link #addEvent(Event)} adds a copy of
+     * the provided event to the store, whose view is returned by {@link #addStoredEvent(Event)}. Only
+     * views of the store can be updated or removed through this adapter. The events of the store can also be changed through the store
+     * and its views, followed by a call to {@link #invalidateIndex()} or one of the notifications of the
+     * calendar.
+     *
+     * @param store the store of all events
+     */
+    public void setEventStore(EventStore store) {
+        this.events = null;
+        this.store = store;
+        this.index.setStore(store);
+        if (this.batchDepth > 0) {
+            this.indexInvalid = true;
+            this.batchDataChanged = true;
+            return;
+        }
+
+        this.index.rebuild(null);
+        this.indexInvalid = false;
         this.owner.notifyDataChanged();
     }
 
@@ -117,13 +474,33 @@ public class EventAdapter {
         this.renderer = renderer;
     }
 
-    private boolean eventShouldBeVisible(com.commusoft.diary.diarytrials.DiarySource.events.Event event, long dateStart, long dateEnd) {
+    private void ensureIndex() {
+        if (this.indexInvalid || (this.events != null && this.events.size() != this.index.getIndexedSize())) {
+            this.index.rebuild(this.events);
+            this.indexInvalid = false;
+        }
+    }
 
-        if (event.isAllDay() && event.getStartTime() >= dateStart && event.getStartTime() < dateEnd) {
-            return true;
-        } else if (!event.isAllDay() && dateStart < event.getEndTime() && dateEnd > event.getStartTime()) {
-            return true;
+    /**
+     * Checks that an event is a view of the event store of this adapter.
+     */
+    private void checkStoredEvent(com.commusoft.diary.diarytrials.DiarySource.events.Event event) {
+        if (!(event instanceof EventStore.StoredJob) || ((EventStore.StoredJob) event).getStore() != this.store) {
+            throw new IllegalArgumentException("event should be a view of the event store of this adapter.");
+        }
+    }
+
+    /**
+     * Records the days on which an event is displayed as changed by the current batch.
+     */
+    private void addChangedDays(com.commusoft.diary.diarytrials.DiarySource.events.Event event) {
+        if (event == null) {
+            return;
         }
-        return false;
+
+        EpochDayCalendar dateEngine = this.owner.getDateEngine();
+        long firstDay = dateEngine.toEpochDay(event.getStartTime());
+        long lastDay = event.isAllDay() ? firstDay : dateEngine.toEpochDay(event.getEndTime() - 1);
+        this.batchChangedDays.addRange(firstDay, lastDay);
     }
 }
@@ -10,8 +10,6 @@ import android.util.TypedValue;
 import com.commusoft.diary.diarytrials.DiarySource.CalendarDayCell;
 import com.telerik.android.common.Util;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -21,10 +19,21 @@ public class EventRenderer {
 
     private static final int TICKS_IN_A_DAY = 84600000;
     private static final int DEFAULT_EVENT_TEXT_SIZE_SP = 9;
+    private static final int PRECOMPUTED_ADDITIONAL_EVENTS_TEXTS_COUNT = 32;
+    private static final String DUMMY_TEXT = "Dummy text";
+    private static final String ELLIPSIS = "...";
+    private static final int DEFAULT_TITLE_CACHE_CAPACITY = 512;
 
     private final Paint eventPaint;
     private EventRenderMode eventRenderMode;
 
+    private final Rect drawTextRect = new Rect();
+    private final Rect drawSurface = new Rect();
+    private String[] additionalEventsTexts;
+    private int dummyTextHeight = -1;
+    private float clampedTitleWidth;
+    private final ClampedTitleCache titleCache = new ClampedTitleCache(DEFAULT_TITLE_CACHE_CAPACITY);
+
     /**
      * Creates a new instance of the {@link com.commusoft.diary.diarytrials.DiarySource.events.EventRenderer} class.
      *
@@ -36,6 +45,11 @@ public class EventRenderer {
         this.eventPaint.setTextSize(Util.getDimen(TypedValue.COMPLEX_UNIT_SP, DEFAULT_EVENT_TEXT_SIZE_SP));
 
         this.eventRenderMode = EventRenderMode.Shape_And_Text;
+
+        this.additionalEventsTexts = new String[PRECOMPUTED_ADDITIONAL_EVENTS_TEXTS_COUNT];
+        for (int i = 0; i < PRECOMPUTED_ADDITIONAL_EVENTS_TEXTS_COUNT; i++) {
+            this.additionalEventsTexts[i] = String.format("+%d", i);
+        }
     }
 
     /**
@@ -94,6 +108,61 @@ public class EventRenderer {
      */
     public void setEventTextSize(float eventTextSize) {
         this.eventPaint.setTextSize(eventTextSize);
+        this.dummyTextHeight = -1;
+    }
+
+    /**
+     * Gets the max number of clamped event titles that are cached by this renderer.
+     *
+     * @return the current capacity of the title cache
+     */
+    public int getTitleCacheCapacity() {
+        return this.titleCache.getCapacity();
+    }
+
+    /**
+     * Sets the max number of clamped event titles that will be cached by this renderer.
+     * When the capacity is exceeded the least recently used titles are removed from the cache.
+     *
+     * @param capacity the new capacity of the title cache
+     * @throws java.lang.IllegalArgumentException If the capacity is negative
+     */
+    public void setTitleCacheCapacity(int capacity) {
+        this.titleCache.setCapacity(capacity);
+    }
+
+    /**
+     * Gets the number of clamped event titles that are currently cached.
+     *
+     * @return the current size of the title cache
+     */
+    public int getTitleCacheSize() {
+        return this.titleCache.size();
+    }
+
+    /**
+     * Gets the number of times a clamped event title was found in the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getTitleCacheHitCount() {
+        return this.titleCache.getHitCount();
+    }
+
+    /**
+     * Gets the number of times a clamped event title had to be calculated.
+     *
+     * @return the number of cache misses
+     */
+    public long getTitleCacheMissCount() {
+        return this.titleCache.getMissCount();
+    }
+
+    /**
+     * Removes all titles from the title cache and resets its counters.
+     */
+    public void clearTitleCache() {
+        this.titleCache.clear();
     }
 
     private void drawEventsInModeText(Canvas canvas, CalendarDayCell cell) {
@@ -103,7 +172,8 @@ public class EventRenderer {
 
         int padding = cell.getPaddingRight() / 4;
 
-        Rect drawTextRect = new Rect();
+        Rect drawTextRect = this.drawTextRect;
+        drawTextRect.setEmpty();
         if (cell.getText() != null) {
             String text = cell.getText();
             cell.getTextPaint().getTextBounds(text, 0, text.length(), drawTextRect);
@@ -112,7 +182,8 @@ public class EventRenderer {
         int spacingForDateVertical = width < height ? drawTextRect.height() + cell.getPaddingBottom() : 0;
         int spacingForDateHorizontal = width > height ? drawTextRect.width() + cell.getPaddingLeft() : 0;
 
-        Rect drawSurface = new Rect(
+        Rect drawSurface = this.drawSurface;
+        drawSurface.set(
                 padding,
                 (padding + spacingForDateVertical),
                 (width - padding - spacingForDateHorizontal),
@@ -124,13 +195,13 @@ public class EventRenderer {
 
         int currentVerticalOffset = 2 * padding;
 
-        String dummyText = "Dummy text";
-        this.eventPaint.getTextBounds(dummyText, 0, dummyText.length(), drawTextRect);
-        int generalEventHeight = drawTextRect.height() + padding;
+        int generalEventHeight = getDummyTextHeight() + padding;
 
-        int remainingEventsCount = cell.getEvents().size();
+        List<com.commusoft.diary.diarytrials.DiarySource.events.Event> eventList = cell.getEvents();
+        int remainingEventsCount = eventList.size();
 
-        for (com.commusoft.diary.diarytrials.DiarySource.events.Event event : cell.getEvents()) {
+        for (int i = 0, count = eventList.size(); i < count; i++) {
+            com.commusoft.diary.diarytrials.DiarySource.events.Event event = eventList.get(i);
 
             String eventTitle = event.getTitle();
             int color = event.getEventColor();
@@ -147,18 +218,18 @@ public class EventRenderer {
 
             if (canDrawEvent(generalEventHeight - padding, spaceForEvent, currentVerticalOffset, padding, eventsToDraw)) {
                 if (event.isAllDay()) {
-                    eventTitle = getClampedEventTitle(eventTitle, drawSurface.width() - 3 * padding);
-                    this.drawTextWithBackground(canvas, eventTitle, cell.getLeft(), (cell.getTop() + drawSurface.bottom - generalEventHeight), padding, Color.WHITE, color, width, generalEventHeight + padding, drawTextRect);
+                    int titleLength = getClampedEventTitleLength(eventTitle, drawSurface.width() - 3 * padding);
+                    this.drawTextWithBackground(canvas, eventTitle, titleLength, cell.getLeft(), (cell.getTop() + drawSurface.bottom - generalEventHeight), padding, Color.WHITE, color, width, generalEventHeight + padding, drawTextRect);
                     drawSurface.bottom -= generalEventHeight + padding;
                 } else {
-                    eventTitle = getClampedEventTitle(eventTitle, drawSurface.width() - generalEventHeight - 3 * padding);
-                    this.drawTextWithShape(canvas, eventTitle, (cell.getLeft() + drawSurface.left), (cell.getTop() + drawSurface.top + currentVerticalOffset), padding, color, color, 0, drawTextRect);
+                    int titleLength = getClampedEventTitleLength(eventTitle, drawSurface.width() - generalEventHeight - 3 * padding);
+                    this.drawTextWithShape(canvas, eventTitle, titleLength, (cell.getLeft() + drawSurface.left), (cell.getTop() + drawSurface.top + currentVerticalOffset), padding, color, color, 0, drawTextRect);
                     currentVerticalOffset += generalEventHeight + padding;
                 }
                 remainingEventsCount--;
             } else {
                 this.eventPaint.setColor(Color.GRAY);
-                String additionalEventsText = String.format("+%d", remainingEventsCount);
+                String additionalEventsText = getAdditionalEventsText(remainingEventsCount);
                 double additionalTextLeft = drawSurface.left + padding;
                 double additionalTextBottom = drawSurface.bottom - padding;
                 canvas.drawText(additionalEventsText, (float) (cell.getLeft() + additionalTextLeft), (float) (cell.getTop() + additionalTextBottom), this.eventPaint);
@@ -175,7 +246,8 @@ public class EventRenderer {
         int padding = cell.getPaddingRight() / 4;
         int offset = cell.getPaddingRight();
 
-        Rect drawTextRect = new Rect();
+        Rect drawTextRect = this.drawTextRect;
+        drawTextRect.setEmpty();
         if (cell.getText() != null) {
             String text = cell.getText();
             cell.getTextPaint().getTextBounds(text, 0, text.length(), drawTextRect);
@@ -184,7 +256,8 @@ public class EventRenderer {
         int spacingForDateVertical = width < height ? drawTextRect.height() + cell.getPaddingBottom() : 0;
         int spacingForDateHorizontal = width > height ? drawTextRect.width() + cell.getPaddingLeft() : 0;
 
-        Rect drawSurface = new Rect(
+        Rect drawSurface = this.drawSurface;
+        drawSurface.set(
                 offset,
                 (offset + spacingForDateVertical),
                 (width - offset - spacingForDateHorizontal),
@@ -192,13 +265,13 @@ public class EventRenderer {
 
         int currentVerticalOffset = padding;
 
-        String dummyText = "Dummy text";
-        this.eventPaint.getTextBounds(dummyText, 0, dummyText.length(), drawTextRect);
-        int shapeSize = drawTextRect.height() + padding;
+        int shapeSize = getDummyTextHeight() + padding;
 
-        int remainingEventsCount = cell.getEvents().size();
+        List<com.commusoft.diary.diarytrials.DiarySource.events.Event> eventList = cell.getEvents();
+        int remainingEventsCount = eventList.size();
 
-        for (com.commusoft.diary.diarytrials.DiarySource.events.Event event : cell.getEvents()) {
+        for (int i = 0, count = eventList.size(); i < count; i++) {
+            com.commusoft.diary.diarytrials.DiarySource.events.Event event = eventList.get(i);
             int color = event.getEventColor();
             this.eventPaint.setColor(color);
 
@@ -208,19 +281,19 @@ public class EventRenderer {
 
             if (canDrawEvent(shapeSize, drawSurface.height(), currentVerticalOffset, padding, remainingEventsCount)) {
                 if (event.isAllDay()) {
-                    eventTitle = getClampedEventTitle(eventTitle, drawSurface.width() - 3 * padding);
-                    this.drawTextWithBackground(canvas, eventTitle, (cell.getLeft() + drawSurface.left), (cell.getTop() + drawSurface.top + currentVerticalOffset), padding / 2, Color.WHITE, color, drawSurface.width(), shapeSize, drawTextRect);
+                    int titleLength = getClampedEventTitleLength(eventTitle, drawSurface.width() - 3 * padding);
+                    this.drawTextWithBackground(canvas, eventTitle, titleLength, (cell.getLeft() + drawSurface.left), (cell.getTop() + drawSurface.top + currentVerticalOffset), padding / 2, Color.WHITE, color, drawSurface.width(), shapeSize, drawTextRect);
                     currentVerticalOffset += shapeSize + padding;
                 } else {
-                    eventTitle = getClampedEventTitle(eventTitle, drawSurface.width() - shapeSize - 3 * padding);
+                    int titleLength = getClampedEventTitleLength(eventTitle, drawSurface.width() - shapeSize - 3 * padding);
                     int textColor = Color.BLACK;
-                    this.drawTextWithShape(canvas, eventTitle, (cell.getLeft() + drawSurface.left), (cell.getTop() + drawSurface.top + currentVerticalOffset), padding, textColor, color, shapeSize, drawTextRect);
+                    this.drawTextWithShape(canvas, eventTitle, titleLength, (cell.getLeft() + drawSurface.left), (cell.getTop() + drawSurface.top + currentVerticalOffset), padding, textColor, color, shapeSize, drawTextRect);
                     currentVerticalOffset += shapeSize + padding;
                 }
                 remainingEventsCount--;
             } else {
                 this.eventPaint.setColor(Color.GRAY);
-                String additionalEventsText = String.format("+%d", remainingEventsCount);
+                String additionalEventsText = getAdditionalEventsText(remainingEventsCount);
                 int additionalTextLeft = drawSurface.left;
                 int additionalTextBottom = drawSurface.bottom;
                 canvas.drawText(additionalEventsText, (float) (cell.getLeft() + additionalTextLeft), (float) (cell.getTop() + additionalTextBottom), this.eventPaint);
@@ -239,18 +312,13 @@ public class EventRenderer {
 
         double totalSpace = cell.getHeight() - 2 * offset;
 
-        Long dateStart = cell.getDate();
+        long dateStart = cell.getDate();
 
-        List<com.commusoft.diary.diarytrials.DiarySource.events.Event> eventList = cell.getEvents();
-        Collections.sort(eventList, new Comparator<com.commusoft.diary.diarytrials.DiarySource.events.Event>() {
-            @Override
-            public int compare(com.commusoft.diary.diarytrials.DiarySource.events.Event event, com.commusoft.diary.diarytrials.DiarySource.events.Event event2) {
-                return (event.getStartTime() < event2.getStartTime()) ? -1 : (event.getStartTime() > event2.getStartTime()) ? 1 : 0;
-            }
-        });
+        List<com.commusoft.diary.diarytrials.DiarySource.events.Event> eventList = cell.getEventsSortedByStartTime();
 
         int endOfLastShape = 0;
-        for (com.commusoft.diary.diarytrials.DiarySource.events.Event currentEvent : eventList) {
+        for (int i = 0, count = eventList.size(); i < count; i++) {
+            com.commusoft.diary.diarytrials.DiarySource.events.Event currentEvent = eventList.get(i);
             int color = currentEvent.getEventColor();
             this.eventPaint.setColor(color);
 
@@ -292,22 +360,33 @@ public class EventRenderer {
         }
     }
 
-    private void drawTextWithShape(Canvas canvas, String text, int left, int top, int padding, int foreground, int shapeColor, int shapeSize, Rect drawRect) {
+    private void drawTextWithShape(Canvas canvas, String text, int textLength, int left, int top, int padding, int foreground, int shapeColor, int shapeSize, Rect drawRect) {
         this.eventPaint.setColor(shapeColor);
         if (shapeSize > 0) {
             canvas.drawRect((float) left, (float) top, (float) (left + shapeSize), (float) (top + shapeSize), this.eventPaint);
         }
         this.eventPaint.setColor(foreground);
-        canvas.drawText(text, (float) (left - drawRect.left + padding + shapeSize), (float) (top - drawRect.top + padding), this.eventPaint);
+        this.drawEventTitle(canvas, text, textLength, (float) (left - drawRect.left + padding + shapeSize), (float) (top - drawRect.top + padding));
     }
 
-    private void drawTextWithBackground(Canvas canvas, String text, int left, int top, int padding, int foreground, int background, int backgroundWidth, int shapeSize, Rect drawRect) {
+    private void drawTextWithBackground(Canvas canvas, String text, int textLength, int left, int top, int padding, int foreground, int background, int backgroundWidth, int shapeSize, Rect drawRect) {
         this.eventPaint.setColor(background);
         double rectRight = backgroundWidth != 0 ? backgroundWidth + left : drawRect.width() + left + 4 * padding;
         canvas.drawRect((float) left, (float) top, (float) rectRight, (float) (top + shapeSize), this.eventPaint);
 
         this.eventPaint.setColor(foreground);
-        canvas.drawText(text, (float) (left - drawRect.left + 2 * padding), (float) (top - drawRect.top + padding), this.eventPaint);
+        this.drawEventTitle(canvas, text, textLength, (float) (left - drawRect.left + 2 * padding), (float) (top - drawRect.top + padding));
+    }
+
+    /**
+     * Draws the first characters of the title followed by an ellipsis if the title is clamped.
+     * The clamped title is not stored in a new string in order to keep the drawing free of allocations.
+     */
+    private void drawEventTitle(Canvas canvas, String title, int titleLength, float x, float y) {
+        canvas.drawText(title, 0, titleLength, x, y, this.eventPaint);
+        if (titleLength < title.length()) {
+            canvas.drawText(ELLIPSIS, x + this.clampedTitleWidth, y, this.eventPaint);
+        }
     }
 
     private boolean canDrawEvent(int height, int drawSurfaceHeight, int offset, int padding, int remainingEventsCount) {
@@ -317,17 +396,39 @@ public class EventRenderer {
         return offset + height < drawSurfaceHeight;
     }
 
-    private String getClampedEventTitle(String originalString, int availableSpace) {
-        int lastVisibleChar = originalString.length();
-        float textWidth = this.eventPaint.measureText(originalString, 0, lastVisibleChar);
-        while (textWidth > availableSpace && lastVisibleChar > 0) {
-            lastVisibleChar--;
-            textWidth = this.eventPaint.measureText(originalString, 0, lastVisibleChar);
+    private int getDummyTextHeight() {
+        if (this.dummyTextHeight < 0) {
+            this.eventPaint.getTextBounds(DUMMY_TEXT, 0, DUMMY_TEXT.length(), this.drawTextRect);
+            this.dummyTextHeight = this.drawTextRect.height();
+        }
+
+        return this.dummyTextHeight;
+    }
+
+    private String getAdditionalEventsText(int remainingEventsCount) {
+        if (remainingEventsCount >= this.additionalEventsTexts.length) {
+            String[] additionalEventsTexts = new String[remainingEventsCount * 2];
+            System.arraycopy(this.additionalEventsTexts, 0, additionalEventsTexts, 0, this.additionalEventsTexts.length);
+            this.additionalEventsTexts = additionalEventsTexts;
         }
 
-        if (lastVisibleChar < originalString.length() - 1) {
-            return String.format("%s...", originalString.substring(0, lastVisibleChar));
+        String text = this.additionalEventsTexts[remainingEventsCount];
+        if (text == null) {
+            text = String.format("+%d", remainingEventsCount);
+            this.additionalEventsTexts[remainingEventsCount] = text;
         }
-        return originalString;
+
+        return text;
+    }
+
+    /**
+     * Gets the number of characters of the title that will be drawn in the available space.
+     * If the title does not fit, the visible characters are followed by an ellipsis whose
+     * position is stored in {@link #clampedTitleWidth}.
+     */
+    private int getClampedEventTitleLength(String originalString, int availableSpace) {
+        ClampedTitleCache.ClampedTitle clampedTitle = this.titleCache.get(originalString, availableSpace, this.eventPaint);
+        this.clampedTitleWidth = clampedTitle.width;
+        return clampedTitle.length;
     }
 }
@@ -0,0 +1,60 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+import com.commusoft.diary.diarytrials.DiarySource.events.DiaryJob;
+import com.commusoft.diary.diarytrials.DiarySource.events.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible diaries which resemble the schedules of engineers: mostly jobs of half an hour
+ * to four hours during the working day, some installs which run for several days and some all day events.
+ * Like the titles of real jobs, which name a few kinds of work and a limited set of customers, the titles
+ * repeat, but each event holds its own copy of its title as if it was parsed from a response of the server.
+ */
+final class BenchmarkEvents {
+
+    static final long FIRST_DAY = EpochDayCalendar.toEpochDay(2014, 0, 1);
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final int TITLES_COUNT = 2000;
+
+    private BenchmarkEvents() {
+    }
+
+    /**
+     * Generates the events of a diary.
+     *
+     * @param dateEngine  the engine which finds the starts of the days
+     * @param eventsCount the number of events
+     * @param daysCount   the number of days, starting from {@link #FIRST_DAY}, over which the events are spread
+     * @param seed        the seed of the random numbers
+     * @return the events in random order
+     */
+    static List<Event> generate(EpochDayCalendar dateEngine, int eventsCount, int daysCount, long seed) {
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<Event>(eventsCount);
+        for (int i = 0; i < eventsCount; i++) {
+            long dayStart = dateEngine.getDayStart(FIRST_DAY + random.nextInt(daysCount));
+            int kind = random.nextInt(100);
+            DiaryJob job;
+            if (kind < 5) {
+                job = new DiaryJob("All day " + i % TITLES_COUNT, dayStart, dayStart + EpochDayCalendar.MILLIS_PER_DAY, i);
+                job.setAllDay(true);
+            } else if (kind < 10) {
+                long start = dayStart + (7 * 60 + random.nextInt(4 * 60)) * MILLIS_PER_MINUTE;
+                long end = start + (1 + random.nextInt(4)) * EpochDayCalendar.MILLIS_PER_DAY + random.nextInt(8 * 60) * MILLIS_PER_MINUTE;
+                job = new DiaryJob("Install " + i % TITLES_COUNT, start, end, i);
+            } else {
+                long start = dayStart + (7 * 60 + random.nextInt(11 * 60)) * MILLIS_PER_MINUTE;
+                long end = start + (30 + random.nextInt(210)) * MILLIS_PER_MINUTE;
+                job = new DiaryJob("Job " + i % TITLES_COUNT, start, end, i);
+            }
+            events.add(job);
+        }
+
+        return events;
+    }
+}
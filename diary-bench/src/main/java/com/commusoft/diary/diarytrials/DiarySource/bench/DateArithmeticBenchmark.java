@@ -0,0 +1,125 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the date arithmetic of {@link EpochDayCalendar} with the same operations on a
+ * {@link java.util.Calendar}, which the calendar used before, for times spread over two centuries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateArithmeticBenchmark {
+
+    private static final int TIMES_COUNT = 1024;
+
+    private EpochDayCalendar dateEngine;
+    private Calendar calendar;
+    private final long[] times = new long[TIMES_COUNT];
+    private final long[] days = new long[TIMES_COUNT];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/London");
+        this.dateEngine = new EpochDayCalendar(timeZone, Calendar.MONDAY, 4);
+        this.calendar = Calendar.getInstance(timeZone);
+        this.calendar.setFirstDayOfWeek(Calendar.MONDAY);
+        this.calendar.setMinimalDaysInFirstWeek(4);
+
+        Random random = new Random(42);
+        long firstTime = this.dateEngine.getDayStart(EpochDayCalendar.toEpochDay(1950, 0, 1));
+        long lastTime = this.dateEngine.getDayStart(EpochDayCalendar.toEpochDay(2150, 0, 1));
+        for (int i = 0; i < TIMES_COUNT; i++) {
+            this.times[i] = firstTime + (long) (random.nextDouble() * (lastTime - firstTime));
+            this.days[i] = this.dateEngine.toEpochDay(this.times[i]);
+        }
+    }
+
+    @Benchmark
+    public long dateStart() {
+        return this.dateEngine.getDateStart(nextTime());
+    }
+
+    @Benchmark
+    public long dateStartByCalendar() {
+        this.calendar.setTimeInMillis(nextTime());
+        this.calendar.set(Calendar.HOUR_OF_DAY, 0);
+        this.calendar.set(Calendar.MINUTE, 0);
+        this.calendar.set(Calendar.SECOND, 0);
+        this.calendar.set(Calendar.MILLISECOND, 0);
+        return this.calendar.getTimeInMillis();
+    }
+
+    @Benchmark
+    public int yearMonthDay() {
+        long day = nextDay();
+        return EpochDayCalendar.getYear(day) * 10000 + EpochDayCalendar.getMonth(day) * 100 + EpochDayCalendar.getDayOfMonth(day);
+    }
+
+    @Benchmark
+    public int yearMonthDayByCalendar() {
+        this.calendar.setTimeInMillis(nextTime());
+        return this.calendar.get(Calendar.YEAR) * 10000 + this.calendar.get(Calendar.MONTH) * 100 + this.calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    @Benchmark
+    public long firstDateOfNextMonth() {
+        long day = EpochDayCalendar.addMonths(EpochDayCalendar.getFirstDayOfMonth(nextDay()), 1);
+        return this.dateEngine.getDayStart(day);
+    }
+
+    @Benchmark
+    public long firstDateOfNextMonthByCalendar() {
+        this.calendar.setTimeInMillis(nextTime());
+        this.calendar.set(Calendar.DAY_OF_MONTH, 1);
+        this.calendar.add(Calendar.MONTH, 1);
+        this.calendar.set(Calendar.HOUR_OF_DAY, 0);
+        this.calendar.set(Calendar.MINUTE, 0);
+        this.calendar.set(Calendar.SECOND, 0);
+        this.calendar.set(Calendar.MILLISECOND, 0);
+        return this.calendar.getTimeInMillis();
+    }
+
+    @Benchmark
+    public int weekOfYear() {
+        return this.dateEngine.getWeekOfYear(nextDay());
+    }
+
+    @Benchmark
+    public int weekOfYearByCalendar() {
+        this.calendar.setTimeInMillis(nextTime());
+        return this.calendar.get(Calendar.WEEK_OF_YEAR);
+    }
+
+    private long nextTime() {
+        long time = this.times[this.next];
+        this.next = (this.next + 1) & (TIMES_COUNT - 1);
+        return time;
+    }
+
+    private long nextDay() {
+        long day = this.days[this.next];
+        this.next = (this.next + 1) & (TIMES_COUNT - 1);
+        return day;
+    }
+}
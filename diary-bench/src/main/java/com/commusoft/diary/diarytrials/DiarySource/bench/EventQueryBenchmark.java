@@ -0,0 +1,114 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+import com.commusoft.diary.diarytrials.DiarySource.events.Event;
+import com.commusoft.diary.diarytrials.DiarySource.events.EventDayIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queries which the calendar runs for each date it displays: the events of a single date,
+ * the events of each date of a month view and the rebuild of the index after the events are replaced.
+ * The scan over all events is the algorithm the index replaced and serves as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventQueryBenchmark {
+
+    private static final int DAYS_COUNT = 3 * 365;
+    private static final int MONTH_VIEW_DAYS_COUNT = 42;
+    private static final int QUERIES_COUNT = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int eventsCount;
+
+    private EpochDayCalendar dateEngine;
+    private List<Event> events;
+    private final EventDayIndex index = new EventDayIndex();
+    private final EventDayIndex rebuiltIndex = new EventDayIndex();
+    private final long[] queryDays = new long[QUERIES_COUNT];
+    private int nextQuery;
+    private final List<Event> dayEvents = new ArrayList<Event>();
+    private final List<List<Event>> rangeEvents = new ArrayList<List<Event>>();
+
+    @Setup
+    public void setUp() {
+        this.dateEngine = new EpochDayCalendar(TimeZone.getTimeZone("Europe/London"), Calendar.MONDAY, 4);
+        this.events = BenchmarkEvents.generate(this.dateEngine, this.eventsCount, DAYS_COUNT, 42);
+        this.index.rebuild(this.events);
+
+        Random random = new Random(7);
+        for (int i = 0; i < QUERIES_COUNT; i++) {
+            this.queryDays[i] = BenchmarkEvents.FIRST_DAY + random.nextInt(DAYS_COUNT);
+        }
+    }
+
+    @Benchmark
+    public List<Event> eventsForDate() {
+        this.dayEvents.clear();
+        this.index.getEventsForDate(this.dateEngine, this.dateEngine.getDayStart(nextQueryDay()), this.dayEvents);
+        return this.dayEvents;
+    }
+
+    @Benchmark
+    public List<Event> eventsForDateByScan() {
+        long day = nextQueryDay();
+        long dateStart = this.dateEngine.getDayStart(day);
+        long dateEnd = this.dateEngine.getDayStart(day + 1);
+
+        this.dayEvents.clear();
+        for (int i = 0, count = this.events.size(); i < count; i++) {
+            Event event = this.events.get(i);
+            if (event.isAllDay()) {
+                if (event.getStartTime() >= dateStart && event.getStartTime() < dateEnd) {
+                    this.dayEvents.add(event);
+                }
+            } else if (event.getStartTime() < dateEnd && event.getEndTime() > dateStart) {
+                this.dayEvents.add(event);
+            }
+        }
+        return this.dayEvents;
+    }
+
+    @Benchmark
+    public List<List<Event>> eventsForMonthView() {
+        long firstDay = nextQueryDay();
+        this.index.getEventsForRange(this.dateEngine, this.dateEngine.getDayStart(firstDay),
+                this.dateEngine.getDayStart(firstDay + MONTH_VIEW_DAYS_COUNT), this.rangeEvents);
+        return this.rangeEvents;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public EventDayIndex rebuildIndex() {
+        this.rebuiltIndex.rebuild(this.events);
+        return this.rebuiltIndex;
+    }
+
+    private long nextQueryDay() {
+        long day = this.queryDays[this.nextQuery];
+        this.nextQuery = (this.nextQuery + 1) & (QUERIES_COUNT - 1);
+        return day;
+    }
+}
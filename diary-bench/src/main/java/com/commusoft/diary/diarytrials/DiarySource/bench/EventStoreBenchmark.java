@@ -0,0 +1,125 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+import com.commusoft.diary.diarytrials.DiarySource.events.Event;
+import com.commusoft.diary.diarytrials.DiarySource.events.EventDayIndex;
+import com.commusoft.diary.diarytrials.DiarySource.events.EventStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the queries of the calendar over the same diary kept in a list of events and in an
+ * {@link EventStore}, read through views of its rows and through a cursor. The heap footprint of both
+ * representations is measured by {@link EventStoreFootprint}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventStoreBenchmark {
+
+    private static final int DAYS_COUNT = 3 * 365;
+    private static final int MONTH_VIEW_DAYS_COUNT = 42;
+    private static final int QUERIES_COUNT = 1024;
+
+    @Param({"10000", "200000", "1000000"})
+    public int eventsCount;
+
+    private EpochDayCalendar dateEngine;
+    private final EventDayIndex listIndex = new EventDayIndex();
+    private final EventStore store = new EventStore();
+    private final EventDayIndex storeIndex = new EventDayIndex();
+    private final EventStore.Cursor cursor = new EventStore.Cursor();
+    private final long[] queryDays = new long[QUERIES_COUNT];
+    private int nextQuery;
+    private final List<Event> dayEvents = new ArrayList<Event>();
+    private final List<List<Event>> rangeEvents = new ArrayList<List<Event>>();
+
+    @Setup
+    public void setUp() {
+        this.dateEngine = new EpochDayCalendar(TimeZone.getTimeZone("Europe/London"), Calendar.MONDAY, 4);
+        List<Event> events = BenchmarkEvents.generate(this.dateEngine, this.eventsCount, DAYS_COUNT, 42);
+        this.listIndex.rebuild(events);
+
+        this.store.clear();
+        for (int i = 0, count = events.size(); i < count; i++) {
+            this.store.add(events.get(i));
+        }
+        this.storeIndex.setStore(this.store);
+
+        Random random = new Random(7);
+        for (int i = 0; i < QUERIES_COUNT; i++) {
+            this.queryDays[i] = BenchmarkEvents.FIRST_DAY + random.nextInt(DAYS_COUNT);
+        }
+    }
+
+    @Benchmark
+    public List<Event> eventsForDateFromList() {
+        this.dayEvents.clear();
+        this.listIndex.getEventsForDate(this.dateEngine, this.dateEngine.getDayStart(nextQueryDay()), this.dayEvents);
+        return this.dayEvents;
+    }
+
+    @Benchmark
+    public List<Event> eventsForDateFromStore() {
+        this.dayEvents.clear();
+        this.storeIndex.getEventsForDate(this.dateEngine, this.dateEngine.getDayStart(nextQueryDay()), this.dayEvents);
+        return this.dayEvents;
+    }
+
+    /**
+     * Reads the events of a date the way a renderer would, without creating views.
+     */
+    @Benchmark
+    public long eventsForDateFromStoreCursor() {
+        long day = nextQueryDay();
+        this.store.query(this.dateEngine.getDayStart(day), this.dateEngine.getDayStart(day + 1), this.cursor);
+
+        long checksum = 0;
+        while (this.cursor.moveToNext()) {
+            checksum += this.cursor.getStartTime() + this.cursor.getEventColor() + this.cursor.getTitle().length();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public List<List<Event>> eventsForMonthViewFromList() {
+        long firstDay = nextQueryDay();
+        this.listIndex.getEventsForRange(this.dateEngine, this.dateEngine.getDayStart(firstDay),
+                this.dateEngine.getDayStart(firstDay + MONTH_VIEW_DAYS_COUNT), this.rangeEvents);
+        return this.rangeEvents;
+    }
+
+    @Benchmark
+    public List<List<Event>> eventsForMonthViewFromStore() {
+        long firstDay = nextQueryDay();
+        this.storeIndex.getEventsForRange(this.dateEngine, this.dateEngine.getDayStart(firstDay),
+                this.dateEngine.getDayStart(firstDay + MONTH_VIEW_DAYS_COUNT), this.rangeEvents);
+        return this.rangeEvents;
+    }
+
+    private long nextQueryDay() {
+        long day = this.queryDays[this.nextQuery];
+        this.nextQuery = (this.nextQuery + 1) & (QUERIES_COUNT - 1);
+        return day;
+    }
+}
@@ -0,0 +1,101 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+import com.commusoft.diary.diarytrials.DiarySource.events.Event;
+import com.commusoft.diary.diarytrials.DiarySource.events.EventDayIndex;
+import com.commusoft.diary.diarytrials.DiarySource.events.EventStore;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Measures the heap retained by a diary kept in a list of events and in an {@link EventStore}, each with
+ * the index the calendar queries. JMH measures time rather than retained memory, so the footprint is
+ * measured by comparing the used heap after full garbage collections.
+ * <p/>
+ * Run with <code>./gradlew :diary-bench:footprint -PeventsCounts="10000 200000"</code>.
+ */
+public final class EventStoreFootprint {
+
+    private static final int DAYS_COUNT = 3 * 365;
+    private static final int[] DEFAULT_EVENTS_COUNTS = {10000, 200000, 1000000};
+
+    private EventStoreFootprint() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] eventsCounts = DEFAULT_EVENTS_COUNTS;
+        if (args.length > 0) {
+            eventsCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                eventsCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        EpochDayCalendar dateEngine = new EpochDayCalendar(TimeZone.getTimeZone("Europe/London"), Calendar.MONDAY, 4);
+        System.out.println(String.format("%10s %14s %14s %8s", "events", "list (bytes)", "store (bytes)", "ratio"));
+        for (int eventsCount : eventsCounts) {
+            long listBytes = measureList(dateEngine, eventsCount);
+            long storeBytes = measureStore(dateEngine, eventsCount);
+            System.out.println(String.format("%10d %14d %14d %8.2f", eventsCount, listBytes, storeBytes,
+                    (double) listBytes / storeBytes));
+        }
+    }
+
+    private static long measureList(EpochDayCalendar dateEngine, int eventsCount) throws InterruptedException {
+        long baseline = usedHeap();
+        List<Event> events = BenchmarkEvents.generate(dateEngine, eventsCount, DAYS_COUNT, 42);
+        EventDayIndex index = new EventDayIndex();
+        index.rebuild(events);
+        query(dateEngine, index);
+
+        long used = usedHeap() - baseline;
+        // Keeps the diary reachable until the heap is measured.
+        if (events.size() != index.getIndexedSize()) {
+            throw new IllegalStateException("The index should contain all events.");
+        }
+        return used;
+    }
+
+    private static long measureStore(EpochDayCalendar dateEngine, int eventsCount) throws InterruptedException {
+        long baseline = usedHeap();
+        EventStore store = new EventStore(eventsCount);
+        List<Event> events = BenchmarkEvents.generate(dateEngine, eventsCount, DAYS_COUNT, 42);
+        for (int i = 0; i < eventsCount; i++) {
+            store.add(events.get(i));
+        }
+        events = null;
+
+        EventDayIndex index = new EventDayIndex();
+        index.setStore(store);
+        query(dateEngine, index);
+
+        long used = usedHeap() - baseline;
+        // Keeps the diary reachable until the heap is measured.
+        if (store.size() != eventsCount) {
+            throw new IllegalStateException("The store should contain all events.");
+        }
+        return used;
+    }
+
+    /**
+     * Runs a query so that the lazily built parts of the index are included in the footprint.
+     */
+    private static void query(EpochDayCalendar dateEngine, EventDayIndex index) {
+        List<Event> result = new ArrayList<Event>();
+        index.getEventsForDate(dateEngine, dateEngine.getDayStart(BenchmarkEvents.FIRST_DAY), result);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,90 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The collision group and column assignment which DailyView used before
+ * {@link com.commusoft.diary.diarytrials.DiarySource.EventOverlapLayout}, kept as the baseline of
+ * {@link OverlapLayoutBenchmark}. Events are grouped by a scan over all members of all previous groups
+ * and the events of a group are placed in the first column whose last event they do not overlap.
+ * The events are expected in the order of their start.
+ */
+final class LegacyOverlapLayout {
+
+    private int[] columns = new int[0];
+    private int[] columnsCounts = new int[0];
+
+    void layout(long[] starts, long[] ends, int count) {
+        if (this.columns.length < count) {
+            this.columns = new int[count];
+            this.columnsCounts = new int[count];
+        }
+
+        List<List<Integer>> collisionGroups = new ArrayList<List<Integer>>();
+        for (int event = 0; event < count; event++) {
+            boolean isPlaced = false;
+            outerLoop:
+            for (List<Integer> collisionGroup : collisionGroups) {
+                for (Integer groupEvent : collisionGroup) {
+                    if (collide(starts, ends, groupEvent, event)) {
+                        collisionGroup.add(event);
+                        isPlaced = true;
+                        break outerLoop;
+                    }
+                }
+            }
+            if (!isPlaced) {
+                List<Integer> newGroup = new ArrayList<Integer>();
+                newGroup.add(event);
+                collisionGroups.add(newGroup);
+            }
+        }
+
+        for (List<Integer> collisionGroup : collisionGroups) {
+            expandEventsToMaxWidth(starts, ends, collisionGroup);
+        }
+    }
+
+    int getColumn(int event) {
+        return this.columns[event];
+    }
+
+    int getColumnsCount(int event) {
+        return this.columnsCounts[event];
+    }
+
+    private void expandEventsToMaxWidth(long[] starts, long[] ends, List<Integer> collisionGroup) {
+        List<List<Integer>> groupColumns = new ArrayList<List<Integer>>();
+        groupColumns.add(new ArrayList<Integer>());
+        for (Integer event : collisionGroup) {
+            boolean isPlaced = false;
+            for (List<Integer> column : groupColumns) {
+                if (column.size() == 0) {
+                    column.add(event);
+                    isPlaced = true;
+                } else if (!collide(starts, ends, event, column.get(column.size() - 1))) {
+                    column.add(event);
+                    isPlaced = true;
+                    break;
+                }
+            }
+            if (!isPlaced) {
+                List<Integer> newColumn = new ArrayList<Integer>();
+                newColumn.add(event);
+                groupColumns.add(newColumn);
+            }
+        }
+
+        for (int j = 0; j < groupColumns.size(); j++) {
+            for (Integer event : groupColumns.get(j)) {
+                this.columns[event] = j;
+                this.columnsCounts[event] = groupColumns.size();
+            }
+        }
+    }
+
+    private static boolean collide(long[] starts, long[] ends, int event1, int event2) {
+        return !(starts[event1] >= ends[event2] || ends[event1] <= starts[event2]);
+    }
+}
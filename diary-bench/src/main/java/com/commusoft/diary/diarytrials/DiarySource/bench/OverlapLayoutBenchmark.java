@@ -0,0 +1,84 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import com.commusoft.diary.diarytrials.DiarySource.EventOverlapLayout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the sweep line layout of the overlapping events of a day with the quadratic layout it
+ * replaced, for days with up to a thousand jobs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlapLayoutBenchmark {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    @Param({"10", "100", "1000"})
+    public int eventsPerDay;
+
+    private long[] starts;
+    private long[] ends;
+    private final EventOverlapLayout sweepLineLayout = new EventOverlapLayout();
+    private final LegacyOverlapLayout legacyLayout = new LegacyOverlapLayout();
+
+    @Setup
+    public void setUp() {
+        // DailyView sorts the events of a day by their start and then by their end before the layout.
+        Random random = new Random(42);
+        long[] minutes = new long[this.eventsPerDay];
+        for (int i = 0; i < this.eventsPerDay; i++) {
+            long start = 7 * 60 + random.nextInt(11 * 60);
+            long duration = 30 + random.nextInt(210);
+            minutes[i] = start << 16 | duration;
+        }
+        Arrays.sort(minutes);
+
+        this.starts = new long[this.eventsPerDay];
+        this.ends = new long[this.eventsPerDay];
+        for (int i = 0; i < this.eventsPerDay; i++) {
+            long start = minutes[i] >>> 16;
+            this.starts[i] = start * MILLIS_PER_MINUTE;
+            this.ends[i] = (start + (minutes[i] & 0xFFFF)) * MILLIS_PER_MINUTE;
+        }
+
+        this.sweepLineLayout.layout(this.starts, this.ends, this.eventsPerDay);
+        this.legacyLayout.layout(this.starts, this.ends, this.eventsPerDay);
+        for (int i = 0; i < this.eventsPerDay; i++) {
+            if (this.sweepLineLayout.getColumn(i) != this.legacyLayout.getColumn(i) ||
+                    this.sweepLineLayout.getColumnsCount(i) != this.legacyLayout.getColumnsCount(i)) {
+                throw new IllegalStateException("The layouts differ for event " + i + ".");
+            }
+        }
+    }
+
+    @Benchmark
+    public EventOverlapLayout sweepLine() {
+        this.sweepLineLayout.layout(this.starts, this.ends, this.eventsPerDay);
+        return this.sweepLineLayout;
+    }
+
+    @Benchmark
+    public Object legacy() {
+        this.legacyLayout.layout(this.starts, this.ends, this.eventsPerDay);
+        return this.legacyLayout;
+    }
+}
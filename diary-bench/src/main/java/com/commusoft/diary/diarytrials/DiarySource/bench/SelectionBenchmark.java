@@ -0,0 +1,107 @@
+package com.commusoft.diary.diarytrials.DiarySource.bench;
+
+import com.commusoft.diary.diarytrials.DiarySource.DayIntervalSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the operations on the selected days of the calendar: the test of a date while the cells are
+ * populated, the toggle of a tapped date, the selection of a dragged range, the difference between the
+ * old and the new selection which is reported to the listener and the access to a date by its position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectionBenchmark {
+
+    private static final int QUERIES_COUNT = 1024;
+    private static final int DRAGGED_RANGE_DAYS_COUNT = 90;
+
+    @Param({"10", "1000", "100000"})
+    public int intervalsCount;
+
+    private final DayIntervalSet selection = new DayIntervalSet();
+    private final DayIntervalSet newSelection = new DayIntervalSet();
+    private final DayIntervalSet difference = new DayIntervalSet();
+    private long lastDay;
+    private final long[] queryDays = new long[QUERIES_COUNT];
+    private final long[] queryIndices = new long[QUERIES_COUNT];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long day = BenchmarkEvents.FIRST_DAY;
+        for (int i = 0; i < this.intervalsCount; i++) {
+            long length = 1 + random.nextInt(14);
+            this.selection.addRange(day, day + length - 1);
+            day += length + 1 + random.nextInt(14);
+        }
+        this.lastDay = day;
+
+        for (int i = 0; i < QUERIES_COUNT; i++) {
+            this.queryDays[i] = BenchmarkEvents.FIRST_DAY + (long) (random.nextDouble() * (this.lastDay - BenchmarkEvents.FIRST_DAY));
+            this.queryIndices[i] = (long) (random.nextDouble() * this.selection.getDaysCount());
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return this.selection.contains(nextDay());
+    }
+
+    @Benchmark
+    public boolean toggleDay() {
+        long day = nextDay();
+        if (this.selection.contains(day)) {
+            return this.selection.remove(day) && this.selection.add(day);
+        }
+        return this.selection.add(day) && this.selection.remove(day);
+    }
+
+    @Benchmark
+    public DayIntervalSet selectDraggedRange() {
+        long firstDay = nextDay();
+        this.newSelection.set(this.selection);
+        this.newSelection.addRange(firstDay, firstDay + DRAGGED_RANGE_DAYS_COUNT - 1);
+        return this.newSelection;
+    }
+
+    @Benchmark
+    public DayIntervalSet selectionDifference() {
+        long firstDay = nextDay();
+        this.newSelection.set(this.selection);
+        this.newSelection.addRange(firstDay, firstDay + DRAGGED_RANGE_DAYS_COUNT - 1);
+        this.difference.setDifference(this.newSelection, this.selection);
+        return this.difference;
+    }
+
+    @Benchmark
+    public long dayAt() {
+        long index = this.queryIndices[this.next];
+        this.next = (this.next + 1) & (QUERIES_COUNT - 1);
+        return this.selection.getDay(index);
+    }
+
+    private long nextDay() {
+        long day = this.queryDays[this.next];
+        this.next = (this.next + 1) & (QUERIES_COUNT - 1);
+        return day;
+    }
+}
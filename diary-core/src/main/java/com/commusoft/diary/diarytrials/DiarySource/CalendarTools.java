@@ -0,0 +1,195 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * Contains methods which ease life while working with dates. The methods do not share any
+ * mutable state, so they can be used from any thread. The dates they return are the starts of the
+ * resulting days according to the {@link com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar}
+ * of the current locale.
+ */
+public class CalendarTools {
+
+    static final int MAX_DAYS_IN_A_MONTH = 31;
+
+    static final int DAYS_IN_A_WEEK = 7;
+    static final int WEEKS_IN_A_MONTH = 6;
+
+    private static volatile LocaleData localeData = new LocaleData(Locale.getDefault());
+
+    static void setLocale(Locale locale) {
+        localeData = new LocaleData(locale);
+    }
+
+    /**
+     * Gets the {@link com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar} which is used by
+     * the methods of this class. It uses the default time zone and the week settings of the current locale.
+     *
+     * @return the date engine
+     */
+    public static EpochDayCalendar getDateEngine() {
+        return localeData.engine;
+    }
+
+    /**
+     * Gets a {@link java.lang.Long} that represents the start of the date
+     * that contains the provided time.
+     *
+     * @param date the date
+     * @return the start of the date
+     */
+    public static long getDateStart(long date) {
+        return localeData.engine.getDateStart(date);
+    }
+
+    /**
+     * Gets a {@link java.lang.Long} that represents the first date in the month
+     * that contains the provided date.
+     *
+     * @param date the date
+     * @return the first date of the month that contains the display date
+     */
+    public static long getFirstDateInMonth(long date) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(EpochDayCalendar.getFirstDayOfMonth(engine.toEpochDay(date)));
+    }
+
+    /**
+     * Gets the Sunday of the week that contains the provided date.
+     *
+     * @param date the date
+     * @return the Sunday of the week
+     */
+    public static long getFirstDateInWeek(long date) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(engine.getDayOfWeekInWeek(engine.toEpochDay(date), Calendar.SUNDAY));
+    }
+
+    public static long getFirstDateInYear(long date) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(EpochDayCalendar.getFirstDayOfYear(engine.toEpochDay(date)));
+    }
+
+    public static long getFirstMonthInYear(long date) {
+        return getFirstDateInYear(date);
+    }
+
+    /**
+     * Calculates a new date value based on the given first day to display and the current display mode of the calendar.
+     *
+     * @param valueIncreases     the new value will be bigger if <code>true</code> and smaller if <code>false</code>
+     * @param firstDateToDisplay the date from which to calculate the new value.
+     * @return the new value
+     */
+    public static long calculateNewValue(boolean valueIncreases, long firstDateToDisplay, CalendarDisplayMode displayMode) {
+        EpochDayCalendar engine = localeData.engine;
+        long day = engine.toEpochDay(firstDateToDisplay);
+        switch (displayMode) {
+            case Week:
+                day += valueIncreases ? DAYS_IN_A_WEEK : -DAYS_IN_A_WEEK;
+                break;
+            case Month:
+                day = EpochDayCalendar.addMonths(day, valueIncreases ? 1 : -1);
+                break;
+            case Year:
+                day = EpochDayCalendar.addMonths(day, valueIncreases ? 12 : -12);
+                break;
+        }
+
+        return engine.getDayStart(day);
+    }
+
+    /**
+     * Gets a {@link java.lang.Long} that represents the first date that should be displayed
+     * in a month that contains the displayed date in accordance with the specified calendar.
+     * For example, if the display date is Tuesday, 1st of February and according to the
+     * specified calendar the first day of the week is Sunday, the returned value will be the
+     * date that was on Sunday on the week that contains the displayed date.
+     * In the example, that is 30th of January.
+     *
+     * @param displayDate the display date
+     * @return the first date that will be visible on a
+     * calendar that shows the specified display date
+     */
+    public static long getFirstDisplayDate(long displayDate) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(engine.getFirstDisplayDay(engine.toEpochDay(displayDate)));
+    }
+
+    /**
+     * Gets a {@link java.lang.Long} representing the first date of the week that contains the
+     * specified displayed date in accordance with the specified calendar.
+     * For example, if the display date is Tuesday, 1st of February and according to the
+     * specified calendar the first day of the week is Sunday, the returned value will be the
+     * date that was on Sunday on the week that contains the displayed date.
+     * In the example, that is 30th of January.
+     *
+     * @param date the date
+     * @return the first date of the week that contains the provided date
+     */
+    public static long getFirstDateOfWeekWith(long date) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(engine.getFirstDayOfWeek(engine.toEpochDay(date)));
+    }
+
+    /**
+     * Gets a {@link java.lang.String} which represent the short name of the day with the
+     * specified index in accordance with the first day of the week
+     * determined by the locale and in the language that it represents.
+     * For example, if the locale is en, this means that the language is english and the
+     * first day of the week is Sunday (index 1). If the value of day is 1, the return value will
+     * be Sun. If the value of day is 2, the return value will be Mon, etc.
+     *
+     * @param day the index of the day of the week
+     * @return string that represent the short name of the day with the specified index
+     * in accordance with the locale
+     */
+    public static String getShortDayName(int day) {
+        return localeData.shortDayNames[day - Calendar.SUNDAY];
+    }
+
+    public static long getLastDateInMonth(long displayDate) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(EpochDayCalendar.getLastDayOfMonth(engine.toEpochDay(displayDate)));
+    }
+
+    /**
+     * Gets the Saturday of the week that contains the provided date.
+     *
+     * @param date the date
+     * @return the Saturday of the week
+     */
+    public static long getLastDateInWeek(long date) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(engine.getDayOfWeekInWeek(engine.toEpochDay(date), Calendar.SATURDAY));
+    }
+
+    public static long getLastDateInYear(long date) {
+        EpochDayCalendar engine = localeData.engine;
+        return engine.getDayStart(EpochDayCalendar.getLastDayOfYear(engine.toEpochDay(date)));
+    }
+
+    public static long getLastMonthInYear(long displayDate) {
+        EpochDayCalendar engine = localeData.engine;
+        long day = engine.toEpochDay(displayDate);
+        return engine.getDayStart(EpochDayCalendar.toEpochDay(EpochDayCalendar.getYear(day), Calendar.DECEMBER, 1));
+    }
+
+    /**
+     * Holds everything that depends on the current locale, so that it can be replaced at once.
+     */
+    private static class LocaleData {
+        private final EpochDayCalendar engine;
+        private final String[] shortDayNames = new String[DAYS_IN_A_WEEK];
+
+        LocaleData(Locale locale) {
+            Calendar calendar = Calendar.getInstance(locale);
+            this.engine = EpochDayCalendar.from(calendar);
+            for (int day = Calendar.SUNDAY; day <= Calendar.SATURDAY; day++) {
+                calendar.set(Calendar.DAY_OF_WEEK, day);
+                this.shortDayNames[day - Calendar.SUNDAY] = calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.SHORT, locale);
+            }
+        }
+    }
+}
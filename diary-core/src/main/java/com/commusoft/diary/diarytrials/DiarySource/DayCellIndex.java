@@ -0,0 +1,157 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+/**
+ * Index of the date cells of the fragments of a <code>RadCalendarView</code> by epoch day. The cells are
+ * kept in flat arrays of slots addressed by the offset of their day from the earliest indexed day,
+ * so adding and looking up cells takes constant time and does not allocate once the index has grown
+ * to the number of displayed days. The slots after the cells of a day are always empty, so the index
+ * keeps no references to the cells which were cleared.
+ *
+ * @param <T> the type of the cells
+ */
+public final class DayCellIndex<T> {
+
+    private static final int INITIAL_DAYS_CAPACITY = 128;
+    private static final int INITIAL_SLOTS_PER_DAY = 2;
+
+    private long firstDay;
+    private int daysCount;
+    private int daysCapacity = INITIAL_DAYS_CAPACITY;
+    private int slotsPerDay = INITIAL_SLOTS_PER_DAY;
+    private int[] counts = new int[INITIAL_DAYS_CAPACITY];
+    private Object[] slots = new Object[INITIAL_DAYS_CAPACITY * INITIAL_SLOTS_PER_DAY];
+
+    /**
+     * Adds a cell which displays the provided day.
+     *
+     * @param epochDay the day displayed by the cell
+     * @param cell     the cell
+     */
+    public void add(long epochDay, T cell) {
+        if (cell == null) {
+            throw new NullPointerException("cell");
+        }
+
+        if (this.daysCount == 0) {
+            this.firstDay = epochDay;
+            this.daysCount = 1;
+        } else if (epochDay < this.firstDay) {
+            prepend((int) (this.firstDay - epochDay));
+        } else if (epochDay - this.firstDay >= this.daysCount) {
+            append((int) (epochDay - this.firstDay) + 1 - this.daysCount);
+        }
+
+        int offset = (int) (epochDay - this.firstDay);
+        if (this.counts[offset] == this.slotsPerDay) {
+            resize(this.daysCapacity, this.slotsPerDay * 2, 0);
+        }
+
+        this.slots[offset * this.slotsPerDay + this.counts[offset]++] = cell;
+    }
+
+    /**
+     * Gets the earliest indexed day. Valid only while {@link #getDaysCount()} is not zero.
+     *
+     * @return the earliest indexed day
+     */
+    public long getFirstDay() {
+        return this.firstDay;
+    }
+
+    /**
+     * Gets the number of consecutive days, starting from {@link #getFirstDay()}, which are covered by the index.
+     *
+     * @return the number of days
+     */
+    public int getDaysCount() {
+        return this.daysCount;
+    }
+
+    /**
+     * Gets the number of cells which display the provided day.
+     *
+     * @param epochDay the day
+     * @return the number of cells
+     */
+    public int getCellsCount(long epochDay) {
+        long offset = epochDay - this.firstDay;
+        if (this.daysCount == 0 || offset < 0 || offset >= this.daysCount) {
+            return 0;
+        }
+
+        return this.counts[(int) offset];
+    }
+
+    /**
+     * Gets a cell which displays the provided day.
+     *
+     * @param epochDay the day
+     * @param index    the index of the cell, less than {@link #getCellsCount(long)}
+     * @return the cell
+     */
+    @SuppressWarnings("unchecked")
+    public T getCell(long epochDay, int index) {
+        if (index < 0 || index >= getCellsCount(epochDay)) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+
+        return (T) this.slots[(int) (epochDay - this.firstDay) * this.slotsPerDay + index];
+    }
+
+    /**
+     * Removes all cells from the index. The arrays are kept for the next fragments.
+     */
+    public void clear() {
+        for (int offset = 0; offset < this.daysCount; offset++) {
+            int start = offset * this.slotsPerDay;
+            for (int slot = 0; slot < this.counts[offset]; slot++) {
+                this.slots[start + slot] = null;
+            }
+            this.counts[offset] = 0;
+        }
+
+        this.daysCount = 0;
+    }
+
+    private void prepend(int days) {
+        if (this.daysCount + days > this.daysCapacity) {
+            resize(Math.max(this.daysCount + days, this.daysCapacity * 2), this.slotsPerDay, days);
+        } else {
+            System.arraycopy(this.counts, 0, this.counts, days, this.daysCount);
+            System.arraycopy(this.slots, 0, this.slots, days * this.slotsPerDay, this.daysCount * this.slotsPerDay);
+            for (int offset = 0; offset < days; offset++) {
+                this.counts[offset] = 0;
+            }
+            // The slots of the moved days which do not overlap with their new place.
+            int cleared = Math.min(days, this.daysCount) * this.slotsPerDay;
+            for (int slot = 0; slot < cleared; slot++) {
+                this.slots[slot] = null;
+            }
+        }
+
+        this.firstDay -= days;
+        this.daysCount += days;
+    }
+
+    private void append(int days) {
+        if (this.daysCount + days > this.daysCapacity) {
+            resize(Math.max(this.daysCount + days, this.daysCapacity * 2), this.slotsPerDay, 0);
+        }
+
+        this.daysCount += days;
+    }
+
+    private void resize(int daysCapacity, int slotsPerDay, int shift) {
+        int[] counts = new int[daysCapacity];
+        Object[] slots = new Object[daysCapacity * slotsPerDay];
+        for (int offset = 0; offset < this.daysCount; offset++) {
+            counts[offset + shift] = this.counts[offset];
+            System.arraycopy(this.slots, offset * this.slotsPerDay, slots, (offset + shift) * slotsPerDay, this.counts[offset]);
+        }
+
+        this.counts = counts;
+        this.slots = slots;
+        this.daysCapacity = daysCapacity;
+        this.slotsPerDay = slotsPerDay;
+    }
+}
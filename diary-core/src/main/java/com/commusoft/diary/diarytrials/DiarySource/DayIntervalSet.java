@@ -0,0 +1,409 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of epoch days kept as a sorted list of disjoint, non-adjacent intervals of consecutive days.
+ * A range of any length takes a single interval, membership is tested with a binary search and
+ * the days can be read through lazy {@link List} views without materialising one entry per day.
+ */
+public final class DayIntervalSet {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] firstDays = new long[INITIAL_CAPACITY];
+    private long[] lastDays = new long[INITIAL_CAPACITY];
+    private int intervalsCount;
+    private long[] daysBefore = new long[INITIAL_CAPACITY];
+    private boolean daysBeforeValid = true;
+    private long daysCount;
+
+    /**
+     * Gets a value indicating whether the set contains no days.
+     *
+     * @return <code>true</code> if the set is empty, <code>false</code> otherwise
+     */
+    public boolean isEmpty() {
+        return this.intervalsCount == 0;
+    }
+
+    /**
+     * Gets the number of days in the set.
+     *
+     * @return the number of days
+     */
+    public long getDaysCount() {
+        return this.daysCount;
+    }
+
+    /**
+     * Gets the number of intervals the days of the set are grouped in.
+     *
+     * @return the number of intervals
+     */
+    public int getIntervalsCount() {
+        return this.intervalsCount;
+    }
+
+    /**
+     * Gets the first day of an interval.
+     *
+     * @param index the index of the interval
+     * @return the first day of the interval
+     */
+    public long getIntervalFirstDay(int index) {
+        checkIntervalIndex(index);
+        return this.firstDays[index];
+    }
+
+    /**
+     * Gets the last day of an interval.
+     *
+     * @param index the index of the interval
+     * @return the last day of the interval
+     */
+    public long getIntervalLastDay(int index) {
+        checkIntervalIndex(index);
+        return this.lastDays[index];
+    }
+
+    /**
+     * Gets the index of the first interval which ends on or after the provided day.
+     *
+     * @param epochDay the day
+     * @return the index of the interval or {@link #getIntervalsCount()} if all intervals end before the day
+     */
+    public int findInterval(long epochDay) {
+        int low = 0;
+        int high = this.intervalsCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.lastDays[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Gets a value indicating whether the set contains the provided day.
+     *
+     * @param epochDay the day
+     * @return <code>true</code> if the day is in the set, <code>false</code> otherwise
+     */
+    public boolean contains(long epochDay) {
+        int index = findInterval(epochDay);
+        return index < this.intervalsCount && this.firstDays[index] <= epochDay;
+    }
+
+    /**
+     * Gets a day by its position in the ascending order of the days in the set.
+     *
+     * @param index the position of the day
+     * @return the day
+     */
+    public long getDay(long index) {
+        if (index < 0 || index >= this.daysCount) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+
+        updateDaysBefore();
+
+        int low = 0;
+        int high = this.intervalsCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.daysBefore[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return this.firstDays[low] + (index - this.daysBefore[low]);
+    }
+
+    /**
+     * Adds a day to the set.
+     *
+     * @param epochDay the day
+     * @return <code>true</code> if the set has changed, <code>false</code> otherwise
+     */
+    public boolean add(long epochDay) {
+        return addRange(epochDay, epochDay);
+    }
+
+    /**
+     * Adds a range of consecutive days to the set.
+     *
+     * @param firstDay the first day of the range
+     * @param lastDay  the last day of the range
+     * @return <code>true</code> if the set has changed, <code>false</code> otherwise
+     */
+    public boolean addRange(long firstDay, long lastDay) {
+        checkRange(firstDay, lastDay);
+
+        // The intervals which overlap or touch the range are merged with it.
+        int first = findInterval(firstDay - 1);
+        int last = findInterval(lastDay + 1);
+        if (last == this.intervalsCount || this.firstDays[last] > lastDay + 1) {
+            last--;
+        }
+
+        if (first > last) {
+            replace(first, first, 1);
+            this.firstDays[first] = firstDay;
+            this.lastDays[first] = lastDay;
+            this.daysCount += lastDay - firstDay + 1;
+            return true;
+        }
+
+        if (first == last && this.firstDays[first] <= firstDay && this.lastDays[first] >= lastDay) {
+            return false;
+        }
+
+        long mergedFirst = Math.min(firstDay, this.firstDays[first]);
+        long mergedLast = Math.max(lastDay, this.lastDays[last]);
+        for (int i = first; i <= last; i++) {
+            this.daysCount -= this.lastDays[i] - this.firstDays[i] + 1;
+        }
+
+        replace(first, last + 1, 1);
+        this.firstDays[first] = mergedFirst;
+        this.lastDays[first] = mergedLast;
+        this.daysCount += mergedLast - mergedFirst + 1;
+        return true;
+    }
+
+    /**
+     * Removes a day from the set.
+     *
+     * @param epochDay the day
+     * @return <code>true</code> if the set has changed, <code>false</code> otherwise
+     */
+    public boolean remove(long epochDay) {
+        return removeRange(epochDay, epochDay);
+    }
+
+    /**
+     * Removes a range of consecutive days from the set.
+     *
+     * @param firstDay the first day of the range
+     * @param lastDay  the last day of the range
+     * @return <code>true</code> if the set has changed, <code>false</code> otherwise
+     */
+    public boolean removeRange(long firstDay, long lastDay) {
+        checkRange(firstDay, lastDay);
+
+        int first = findInterval(firstDay);
+        int last = findInterval(lastDay);
+        if (last == this.intervalsCount || this.firstDays[last] > lastDay) {
+            last--;
+        }
+
+        if (first > last) {
+            return false;
+        }
+
+        boolean keepHead = this.firstDays[first] < firstDay;
+        boolean keepTail = this.lastDays[last] > lastDay;
+        long headFirst = this.firstDays[first];
+        long tailLast = this.lastDays[last];
+        for (int i = first; i <= last; i++) {
+            this.daysCount -= this.lastDays[i] - this.firstDays[i] + 1;
+        }
+
+        replace(first, last + 1, (keepHead ? 1 : 0) + (keepTail ? 1 : 0));
+        int index = first;
+        if (keepHead) {
+            this.firstDays[index] = headFirst;
+            this.lastDays[index] = firstDay - 1;
+            this.daysCount += firstDay - headFirst;
+            index++;
+        }
+        if (keepTail) {
+            this.firstDays[index] = lastDay + 1;
+            this.lastDays[index] = tailLast;
+            this.daysCount += tailLast - lastDay;
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes all days from the set.
+     */
+    public void clear() {
+        this.intervalsCount = 0;
+        this.daysCount = 0;
+        this.daysBeforeValid = true;
+    }
+
+    /**
+     * Replaces the days of the set with the days of another set.
+     *
+     * @param other the set to copy
+     */
+    public void set(DayIntervalSet other) {
+        if (other == null) {
+            throw new NullPointerException("other");
+        }
+
+        if (other == this) {
+            return;
+        }
+
+        ensureCapacity(other.intervalsCount);
+        System.arraycopy(other.firstDays, 0, this.firstDays, 0, other.intervalsCount);
+        System.arraycopy(other.lastDays, 0, this.lastDays, 0, other.intervalsCount);
+        this.intervalsCount = other.intervalsCount;
+        this.daysCount = other.daysCount;
+        this.daysBeforeValid = false;
+    }
+
+    /**
+     * Replaces the days of the set with the days of a set which are not in another set.
+     *
+     * @param minuend    the set whose days are kept
+     * @param subtrahend the set whose days are removed
+     */
+    public void setDifference(DayIntervalSet minuend, DayIntervalSet subtrahend) {
+        if (minuend == this || subtrahend == this) {
+            throw new IllegalArgumentException("the difference should be stored in a separate set.");
+        }
+
+        clear();
+
+        int j = 0;
+        for (int i = 0; i < minuend.intervalsCount; i++) {
+            long first = minuend.firstDays[i];
+            long last = minuend.lastDays[i];
+
+            while (j < subtrahend.intervalsCount && subtrahend.lastDays[j] < first) {
+                j++;
+            }
+
+            int k = j;
+            while (first <= last && k < subtrahend.intervalsCount && subtrahend.firstDays[k] <= last) {
+                if (subtrahend.firstDays[k] > first) {
+                    append(first, subtrahend.firstDays[k] - 1);
+                }
+                first = Math.max(first, subtrahend.lastDays[k] + 1);
+                k++;
+            }
+
+            if (first <= last) {
+                append(first, last);
+            }
+        }
+    }
+
+    /**
+     * Gets a lazy read-only view of the days of the set as the start times of the dates in ascending order.
+     * The view reflects the later changes of the set.
+     *
+     * @param dateEngine the engine which converts the days to times
+     * @return the view
+     */
+    public List<Long> asDateList(final EpochDayCalendar dateEngine) {
+        return new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return dateEngine.getDayStart(getDay(index));
+            }
+
+            @Override
+            public int size() {
+                return (int) Math.min(daysCount, Integer.MAX_VALUE);
+            }
+        };
+    }
+
+    /**
+     * Gets a lazy read-only view of the intervals of the set as ranges of the start times of their first
+     * and last dates. The view reflects the later changes of the set.
+     *
+     * @param dateEngine the engine which converts the days to times
+     * @return the view
+     */
+    public List<DateRange> asRangeList(final EpochDayCalendar dateEngine) {
+        return new AbstractList<DateRange>() {
+            @Override
+            public DateRange get(int index) {
+                return new DateRange(dateEngine.getDayStart(getIntervalFirstDay(index)),
+                        dateEngine.getDayStart(getIntervalLastDay(index)));
+            }
+
+            @Override
+            public int size() {
+                return intervalsCount;
+            }
+        };
+    }
+
+    private void append(long firstDay, long lastDay) {
+        ensureCapacity(this.intervalsCount + 1);
+        this.firstDays[this.intervalsCount] = firstDay;
+        this.lastDays[this.intervalsCount] = lastDay;
+        this.intervalsCount++;
+        this.daysCount += lastDay - firstDay + 1;
+        this.daysBeforeValid = false;
+    }
+
+    /**
+     * Replaces the intervals from the start index inclusive to the end index exclusive with the provided
+     * number of intervals, which are to be set by the caller.
+     */
+    private void replace(int start, int end, int count) {
+        int newIntervalsCount = this.intervalsCount - (end - start) + count;
+        ensureCapacity(newIntervalsCount);
+
+        int tail = this.intervalsCount - end;
+        System.arraycopy(this.firstDays, end, this.firstDays, start + count, tail);
+        System.arraycopy(this.lastDays, end, this.lastDays, start + count, tail);
+        this.intervalsCount = newIntervalsCount;
+        this.daysBeforeValid = false;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (this.firstDays.length >= capacity) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, this.firstDays.length * 2);
+        this.firstDays = Arrays.copyOf(this.firstDays, newCapacity);
+        this.lastDays = Arrays.copyOf(this.lastDays, newCapacity);
+        this.daysBefore = new long[newCapacity];
+    }
+
+    private void updateDaysBefore() {
+        if (this.daysBeforeValid) {
+            return;
+        }
+
+        long days = 0;
+        for (int i = 0; i < this.intervalsCount; i++) {
+            this.daysBefore[i] = days;
+            days += this.lastDays[i] - this.firstDays[i] + 1;
+        }
+
+        this.daysBeforeValid = true;
+    }
+
+    private void checkIntervalIndex(int index) {
+        if (index < 0 || index >= this.intervalsCount) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+    }
+
+    private static void checkRange(long firstDay, long lastDay) {
+        if (firstDay > lastDay) {
+            throw new IllegalArgumentException("firstDay should not be after lastDay.");
+        }
+    }
+}
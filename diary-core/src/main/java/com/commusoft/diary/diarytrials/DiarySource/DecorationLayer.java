@@ -0,0 +1,160 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import java.util.Arrays;
+
+/**
+ * Holds the decoration segments of a single layer of <code>CellDecorationsLayer</code> as the coordinates expected by
+ * <code>Canvas.drawLines(float[], int, int, Paint)</code> along with an open addressing hash table, which maps
+ * the packed key of each segment to its index. Toggling a segment which is already held removes it.
+ */
+final class DecorationLayer {
+
+    static final int POINTS_PER_SEGMENT = 4;
+
+    private static final int COORDINATE_BITS = 21;
+    private static final int MAX_COORDINATE = (1 << (COORDINATE_BITS - 1)) - 1;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+    private static final long VERTICAL_FLAG = 1L << (3 * COORDINATE_BITS);
+
+    private float[] points = new float[16 * POINTS_PER_SEGMENT];
+    private long[] segmentKeys = new long[16];
+    private int segmentsCount;
+    private long[] tableKeys = new long[32];
+    // The index of the segment plus one, zero marks an empty slot.
+    private int[] tableIndices = new int[32];
+
+    float[] getPoints() {
+        return this.points;
+    }
+
+    int getSegmentsCount() {
+        return this.segmentsCount;
+    }
+
+    long getSegmentKey(int index) {
+        return this.segmentKeys[index];
+    }
+
+    void clear() {
+        if (this.segmentsCount == 0) {
+            return;
+        }
+
+        this.segmentsCount = 0;
+        Arrays.fill(this.tableIndices, 0);
+    }
+
+    void toggleVerticalSegment(int x, int startY, int endY) {
+        toggleSegment(packSegment(true, x, startY, endY), x, startY, x, endY);
+    }
+
+    void toggleHorizontalSegment(int y, int startX, int endX) {
+        toggleSegment(packSegment(false, y, startX, endX), startX, y, endX, y);
+    }
+
+    static long packSegment(boolean vertical, int position, int start, int end) {
+        checkCoordinate(position);
+        checkCoordinate(start);
+        checkCoordinate(end);
+
+        return (vertical ? VERTICAL_FLAG : 0) |
+                ((position & COORDINATE_MASK) << (2 * COORDINATE_BITS)) |
+                ((start & COORDINATE_MASK) << COORDINATE_BITS) |
+                (end & COORDINATE_MASK);
+    }
+
+    private static void checkCoordinate(int value) {
+        if (value > MAX_COORDINATE || value < -MAX_COORDINATE) {
+            throw new IllegalArgumentException("decoration coordinates should be between " + -MAX_COORDINATE + " and " + MAX_COORDINATE + ".");
+        }
+    }
+
+    private void toggleSegment(long key, int startX, int startY, int endX, int endY) {
+        int slot = findSlot(key);
+        if (this.tableIndices[slot] != 0) {
+            removeSegment(slot);
+            return;
+        }
+
+        if ((this.segmentsCount + 1) * 2 > this.tableKeys.length) {
+            growTable();
+            slot = findSlot(key);
+        }
+
+        if (this.segmentsCount == this.segmentKeys.length) {
+            this.segmentKeys = Arrays.copyOf(this.segmentKeys, this.segmentKeys.length * 2);
+            this.points = Arrays.copyOf(this.points, this.points.length * 2);
+        }
+
+        int offset = this.segmentsCount * POINTS_PER_SEGMENT;
+        this.points[offset] = startX;
+        this.points[offset + 1] = startY;
+        this.points[offset + 2] = endX;
+        this.points[offset + 3] = endY;
+        this.segmentKeys[this.segmentsCount] = key;
+
+        this.tableKeys[slot] = key;
+        this.tableIndices[slot] = ++this.segmentsCount;
+    }
+
+    private void removeSegment(int slot) {
+        int index = this.tableIndices[slot] - 1;
+        deleteSlot(slot);
+
+        int last = --this.segmentsCount;
+        if (index == last) {
+            return;
+        }
+
+        // Moves the last segment into the freed place to keep the points packed.
+        System.arraycopy(this.points, last * POINTS_PER_SEGMENT, this.points, index * POINTS_PER_SEGMENT, POINTS_PER_SEGMENT);
+        this.segmentKeys[index] = this.segmentKeys[last];
+        this.tableIndices[findSlot(this.segmentKeys[index])] = index + 1;
+    }
+
+    private int findSlot(long key) {
+        int mask = this.tableKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.tableIndices[slot] != 0 && this.tableKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void deleteSlot(int slot) {
+        int mask = this.tableKeys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (this.tableIndices[next] != 0) {
+            int home = hash(this.tableKeys[next]) & mask;
+            // Shifts back the entries whose probe sequence passes through the hole.
+            boolean reachable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (reachable) {
+                this.tableKeys[hole] = this.tableKeys[next];
+                this.tableIndices[hole] = this.tableIndices[next];
+                hole = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        this.tableIndices[hole] = 0;
+    }
+
+    private void growTable() {
+        int capacity = this.tableKeys.length * 2;
+        this.tableKeys = new long[capacity];
+        this.tableIndices = new int[capacity];
+        for (int i = 0; i < this.segmentsCount; i++) {
+            int slot = findSlot(this.segmentKeys[i]);
+            this.tableKeys[slot] = this.segmentKeys[i];
+            this.tableIndices[slot] = i + 1;
+        }
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
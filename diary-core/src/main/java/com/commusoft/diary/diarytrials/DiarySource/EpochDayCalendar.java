@@ -0,0 +1,457 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Immutable and thread-safe date arithmetic based on epoch days - the number of days since
+ * 1 January 1970 in the local time of a time zone. The conversions between epoch days and
+ * {@link java.lang.Long} times use a table with the offset transitions of the time zone which is
+ * calculated once per year and shared afterwards, so none of the methods allocate memory or lock
+ * after the first use of a year. The months are numbered from <code>0</code> and the days of the
+ * week use the values of {@link java.util.Calendar#DAY_OF_WEEK}, so that the results can be
+ * used in place of the results of a {@link java.util.Calendar}.
+ */
+public final class EpochDayCalendar {
+
+    /**
+     * The number of milliseconds in a day without offset transitions.
+     */
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static final int FIRST_TABLE_YEAR = 1900;
+    private static final int LAST_TABLE_YEAR = 2199;
+    private static final int DAYS_IN_A_WEEK = 7;
+    private static final int MONTHS_IN_A_YEAR = 12;
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    private static final int DAYS_FROM_0000_TO_1970 = 719468;
+    private static final int DAYS_IN_400_YEARS = 146097;
+
+    private final TimeZone timeZone;
+    private final int firstDayOfWeek;
+    private final int minimalDaysInFirstWeek;
+    private final OffsetTable[] offsetTables = new OffsetTable[LAST_TABLE_YEAR - FIRST_TABLE_YEAR + 1];
+
+    /**
+     * Creates a new instance of the {@link com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar} class.
+     *
+     * @param timeZone               the time zone whose local time defines the days
+     * @param firstDayOfWeek         the first day of the week as a {@link java.util.Calendar#DAY_OF_WEEK} value
+     * @param minimalDaysInFirstWeek the minimal number of days of the first week of a year
+     */
+    public EpochDayCalendar(TimeZone timeZone, int firstDayOfWeek, int minimalDaysInFirstWeek) {
+        if (timeZone == null) {
+            throw new NullPointerException("timeZone");
+        }
+        if (firstDayOfWeek < Calendar.SUNDAY || firstDayOfWeek > Calendar.SATURDAY) {
+            throw new IllegalArgumentException("firstDayOfWeek should be a value between Calendar.SUNDAY and Calendar.SATURDAY.");
+        }
+        if (minimalDaysInFirstWeek < 1 || minimalDaysInFirstWeek > DAYS_IN_A_WEEK) {
+            throw new IllegalArgumentException("minimalDaysInFirstWeek should be a value between 1 and 7.");
+        }
+
+        this.timeZone = (TimeZone) timeZone.clone();
+        this.firstDayOfWeek = firstDayOfWeek;
+        this.minimalDaysInFirstWeek = minimalDaysInFirstWeek;
+    }
+
+    /**
+     * Creates a new instance which uses the time zone and the week settings of the provided calendar.
+     *
+     * @param calendar the calendar
+     * @return the new instance
+     */
+    public static EpochDayCalendar from(Calendar calendar) {
+        return new EpochDayCalendar(calendar.getTimeZone(), calendar.getFirstDayOfWeek(), calendar.getMinimalDaysInFirstWeek());
+    }
+
+    /**
+     * Gets a copy of the time zone whose local time defines the days.
+     *
+     * @return the time zone
+     */
+    public TimeZone getTimeZone() {
+        return (TimeZone) this.timeZone.clone();
+    }
+
+    public int getFirstDayOfWeek() {
+        return this.firstDayOfWeek;
+    }
+
+    public int getMinimalDaysInFirstWeek() {
+        return this.minimalDaysInFirstWeek;
+    }
+
+    /**
+     * Gets the offset of the local time from UTC at the provided time.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @return the offset in milliseconds
+     */
+    public int getOffset(long time) {
+        int year = getYear(floorDiv(time, MILLIS_PER_DAY));
+        if (year < FIRST_TABLE_YEAR || year > LAST_TABLE_YEAR) {
+            return this.timeZone.getOffset(time);
+        }
+
+        OffsetTable table = this.offsetTables[year - FIRST_TABLE_YEAR];
+        if (table == null) {
+            // Racing threads may calculate the same table, but it is immutable, so any of the results can be used.
+            table = new OffsetTable(this.timeZone, year);
+            this.offsetTables[year - FIRST_TABLE_YEAR] = table;
+        }
+
+        return table.getOffset(time);
+    }
+
+    /**
+     * Gets the epoch day that contains the provided time.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @return the epoch day
+     */
+    public long toEpochDay(long time) {
+        return floorDiv(time + getOffset(time), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Gets the time at which the provided epoch day starts. If the local midnight is skipped by
+     * an offset transition, the day starts at the transition. If the local midnight occurs twice,
+     * the day starts at the later occurrence, the same as with {@link java.util.Calendar}.
+     *
+     * @param epochDay the epoch day
+     * @return the start of the day in milliseconds since the epoch
+     */
+    public long getDayStart(long epochDay) {
+        long localTime = epochDay * MILLIS_PER_DAY;
+        int offsetBefore = getOffset(localTime - MILLIS_PER_DAY);
+        int offsetAfter = getOffset(localTime + MILLIS_PER_DAY);
+        if (offsetBefore == offsetAfter) {
+            return localTime - offsetBefore;
+        }
+
+        long timeAfter = localTime - offsetAfter;
+        if (getOffset(timeAfter) == offsetAfter) {
+            return timeAfter;
+        }
+
+        long timeBefore = localTime - offsetBefore;
+        if (getOffset(timeBefore) == offsetBefore) {
+            return timeBefore;
+        }
+
+        // The local midnight falls in a gap, so the day starts right after the transition.
+        return localTime - Math.min(offsetBefore, offsetAfter);
+    }
+
+    /**
+     * Gets the start of the day that contains the provided time.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @return the start of the day in milliseconds since the epoch
+     */
+    public long getDateStart(long time) {
+        return getDayStart(toEpochDay(time));
+    }
+
+    /**
+     * Gets the epoch day of a date.
+     *
+     * @param year       the year
+     * @param month      the month, starting from <code>0</code>
+     * @param dayOfMonth the day of the month, starting from <code>1</code>
+     * @return the epoch day
+     */
+    public static long toEpochDay(int year, int month, int dayOfMonth) {
+        int y = month < 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        int yearOfEra = (int) (y - era * 400);
+        int shiftedMonth = month < 2 ? month + 10 : month - 2;
+        int dayOfYear = (153 * shiftedMonth + 2) / 5 + dayOfMonth - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_IN_400_YEARS + dayOfEra - DAYS_FROM_0000_TO_1970;
+    }
+
+    /**
+     * Gets the year of an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the year
+     */
+    public static int getYear(long epochDay) {
+        long shiftedDay = epochDay + DAYS_FROM_0000_TO_1970;
+        long era = floorDiv(shiftedDay, DAYS_IN_400_YEARS);
+        int dayOfEra = (int) (shiftedDay - era * DAYS_IN_400_YEARS);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        return (int) (yearOfEra + era * 400) + (shiftedMonth >= 10 ? 1 : 0);
+    }
+
+    /**
+     * Gets the month of an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the month, starting from <code>0</code>
+     */
+    public static int getMonth(long epochDay) {
+        int shiftedMonth = (5 * getShiftedDayOfYear(epochDay) + 2) / 153;
+        return shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10;
+    }
+
+    /**
+     * Gets the day of the month of an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the day of the month, starting from <code>1</code>
+     */
+    public static int getDayOfMonth(long epochDay) {
+        int dayOfYear = getShiftedDayOfYear(epochDay);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        return dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    }
+
+    /**
+     * Gets the day of the week of an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the day of the week as a {@link java.util.Calendar#DAY_OF_WEEK} value
+     */
+    public static int getDayOfWeek(long epochDay) {
+        // 1 January 1970 was a Thursday.
+        return (int) floorMod(epochDay + 4, DAYS_IN_A_WEEK) + Calendar.SUNDAY;
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Gets the number of days in a month.
+     *
+     * @param year  the year
+     * @param month the month, starting from <code>0</code>
+     * @return the number of days
+     */
+    public static int getDaysInMonth(int year, int month) {
+        switch (month) {
+            case Calendar.FEBRUARY:
+                return isLeapYear(year) ? 29 : 28;
+            case Calendar.APRIL:
+            case Calendar.JUNE:
+            case Calendar.SEPTEMBER:
+            case Calendar.NOVEMBER:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Gets the first day of the month that contains an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the epoch day of the first day of the month
+     */
+    public static long getFirstDayOfMonth(long epochDay) {
+        return epochDay - getDayOfMonth(epochDay) + 1;
+    }
+
+    /**
+     * Gets the last day of the month that contains an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the epoch day of the last day of the month
+     */
+    public static long getLastDayOfMonth(long epochDay) {
+        int year = getYear(epochDay);
+        int month = getMonth(epochDay);
+        return toEpochDay(year, month, getDaysInMonth(year, month));
+    }
+
+    /**
+     * Gets the first day of the year that contains an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the epoch day of the first day of the year
+     */
+    public static long getFirstDayOfYear(long epochDay) {
+        return toEpochDay(getYear(epochDay), Calendar.JANUARY, 1);
+    }
+
+    /**
+     * Gets the last day of the year that contains an epoch day.
+     *
+     * @param epochDay the epoch day
+     * @return the epoch day of the last day of the year
+     */
+    public static long getLastDayOfYear(long epochDay) {
+        return toEpochDay(getYear(epochDay), Calendar.DECEMBER, 31);
+    }
+
+    /**
+     * Adds months to an epoch day the way {@link java.util.Calendar#add(int, int)} does, so the day
+     * of the month is reduced if it does not exist in the resulting month.
+     *
+     * @param epochDay the epoch day
+     * @param months   the number of months to add, may be negative
+     * @return the resulting epoch day
+     */
+    public static long addMonths(long epochDay, int months) {
+        long totalMonths = getYear(epochDay) * (long) MONTHS_IN_A_YEAR + getMonth(epochDay) + months;
+        int year = (int) floorDiv(totalMonths, MONTHS_IN_A_YEAR);
+        int month = (int) floorMod(totalMonths, MONTHS_IN_A_YEAR);
+        int dayOfMonth = Math.min(getDayOfMonth(epochDay), getDaysInMonth(year, month));
+        return toEpochDay(year, month, dayOfMonth);
+    }
+
+    /**
+     * Gets the first day of the week that contains an epoch day according to the first day of
+     * the week of this instance.
+     *
+     * @param epochDay the epoch day
+     * @return the epoch day of the first day of the week
+     */
+    public long getFirstDayOfWeek(long epochDay) {
+        return epochDay - floorMod(getDayOfWeek(epochDay) - this.firstDayOfWeek, DAYS_IN_A_WEEK);
+    }
+
+    /**
+     * Gets the day of the week with the provided value that is in the same week as an epoch day,
+     * the same way as setting {@link java.util.Calendar#DAY_OF_WEEK} does.
+     *
+     * @param epochDay  the epoch day
+     * @param dayOfWeek the day of the week as a {@link java.util.Calendar#DAY_OF_WEEK} value
+     * @return the epoch day of the day of the week
+     */
+    public long getDayOfWeekInWeek(long epochDay, int dayOfWeek) {
+        return getFirstDayOfWeek(epochDay) + floorMod(dayOfWeek - this.firstDayOfWeek, DAYS_IN_A_WEEK);
+    }
+
+    /**
+     * Gets the first day displayed by a month view that shows the month containing an epoch day,
+     * which is the first day of the week that contains the first day of the month.
+     *
+     * @param epochDay the epoch day
+     * @return the epoch day of the first displayed day
+     */
+    public long getFirstDisplayDay(long epochDay) {
+        return getFirstDayOfWeek(getFirstDayOfMonth(epochDay));
+    }
+
+    /**
+     * Gets the week of the year of an epoch day the same way as {@link java.util.Calendar#WEEK_OF_YEAR}.
+     *
+     * @param epochDay the epoch day
+     * @return the week of the year, starting from <code>1</code>
+     */
+    public int getWeekOfYear(long epochDay) {
+        int year = getYear(epochDay);
+        long firstWeekStart = getFirstWeekStart(year);
+        if (epochDay < firstWeekStart) {
+            firstWeekStart = getFirstWeekStart(year - 1);
+        } else if (epochDay >= getFirstWeekStart(year + 1)) {
+            return 1;
+        }
+
+        return (int) ((epochDay - firstWeekStart) / DAYS_IN_A_WEEK) + 1;
+    }
+
+    private long getFirstWeekStart(int year) {
+        long firstDay = toEpochDay(year, Calendar.JANUARY, 1);
+        long weekStart = getFirstDayOfWeek(firstDay);
+        if (weekStart + DAYS_IN_A_WEEK - firstDay < this.minimalDaysInFirstWeek) {
+            weekStart += DAYS_IN_A_WEEK;
+        }
+        return weekStart;
+    }
+
+    private static int getShiftedDayOfYear(long epochDay) {
+        long shiftedDay = epochDay + DAYS_FROM_0000_TO_1970;
+        long era = floorDiv(shiftedDay, DAYS_IN_400_YEARS);
+        int dayOfEra = (int) (shiftedDay - era * DAYS_IN_400_YEARS);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            result--;
+        }
+        return result;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * The offset transitions of a time zone in the UTC days of a single year.
+     */
+    private static class OffsetTable {
+        private final int initialOffset;
+        private final long[] transitions;
+        private final int[] offsets;
+
+        OffsetTable(TimeZone timeZone, int year) {
+            long start = toEpochDay(year, Calendar.JANUARY, 1) * MILLIS_PER_DAY;
+            long end = toEpochDay(year + 1, Calendar.JANUARY, 1) * MILLIS_PER_DAY;
+
+            long[] transitions = new long[4];
+            int[] offsets = new int[4];
+            int count = 0;
+
+            this.initialOffset = timeZone.getOffset(start);
+            int previousOffset = this.initialOffset;
+            long previousTime = start;
+            while (previousTime < end - 1) {
+                // Some zones return to their previous offset on the same day, for example Asia/Gaza
+                // keeps the summer time for a single hour in 2037, so the offsets are sampled hourly.
+                long time = Math.min(previousTime + MILLIS_PER_HOUR, end - 1);
+                int offset = timeZone.getOffset(time);
+                if (offset != previousOffset) {
+                    // Find the first millisecond with the new offset.
+                    long low = previousTime + 1;
+                    long high = time;
+                    while (low < high) {
+                        long middle = low + (high - low) / 2;
+                        if (timeZone.getOffset(middle) == previousOffset) {
+                            low = middle + 1;
+                        } else {
+                            high = middle;
+                        }
+                    }
+
+                    if (count == transitions.length) {
+                        long[] newTransitions = new long[count * 2];
+                        int[] newOffsets = new int[count * 2];
+                        System.arraycopy(transitions, 0, newTransitions, 0, count);
+                        System.arraycopy(offsets, 0, newOffsets, 0, count);
+                        transitions = newTransitions;
+                        offsets = newOffsets;
+                    }
+
+                    transitions[count] = low;
+                    offsets[count] = timeZone.getOffset(low);
+                    previousOffset = offsets[count];
+                    count++;
+                }
+                previousTime = time;
+            }
+
+            this.transitions = new long[count];
+            this.offsets = new int[count];
+            System.arraycopy(transitions, 0, this.transitions, 0, count);
+            System.arraycopy(offsets, 0, this.offsets, 0, count);
+        }
+
+        int getOffset(long time) {
+            int offset = this.initialOffset;
+            for (int i = 0; i < this.transitions.length && this.transitions[i] <= time; i++) {
+                offset = this.offsets[i];
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+/**
+ * Calculates the columns in which overlapping events of a single day are placed by the DailyView.
+ * The events are swept in the order of their start. Each event is placed in the first column which is
+ * free at its start and the events that overlap directly or through other events form a group
+ * which shares the same number of columns. The whole layout takes O(n log n) time.
+ */
+public class EventOverlapLayout {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int count;
+    private long[] starts;
+    private long[] ends;
+
+    private int[] sorted = new int[INITIAL_CAPACITY];
+    private int[] sortBuffer = new int[INITIAL_CAPACITY];
+    private int[] columns = new int[INITIAL_CAPACITY];
+    private int[] rows = new int[INITIAL_CAPACITY];
+    private int[] columnsCounts = new int[INITIAL_CAPACITY];
+    private int[] order = new int[INITIAL_CAPACITY];
+
+    private long[] activeEnds = new long[INITIAL_CAPACITY];
+    private int[] activeColumns = new int[INITIAL_CAPACITY];
+    private int activeCount;
+    private int[] freeColumns = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int[] columnSizes = new int[INITIAL_CAPACITY];
+    private int[] counters = new int[INITIAL_CAPACITY];
+
+    /**
+     * Calculates the layout of the provided events. The start and the end of the event with
+     * index <code>i</code> are <code>starts[i]</code> and <code>ends[i]</code>.
+     *
+     * @param starts the starts of the events
+     * @param ends   the ends of the events
+     * @param count  the number of events
+     */
+    public void layout(long[] starts, long[] ends, int count) {
+        this.starts = starts;
+        this.ends = ends;
+        this.count = count;
+        ensureCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            this.sorted[i] = i;
+        }
+        sort(0, count);
+
+        this.activeCount = 0;
+        this.freeCount = 0;
+        int groupStart = 0;
+        int columnsUsed = 0;
+        for (int position = 0; position < count; position++) {
+            int event = this.sorted[position];
+            long start = starts[event];
+
+            // Release the columns of the events which end before the current starts.
+            while (this.activeCount > 0 && this.activeEnds[0] <= start) {
+                pushFreeColumn(popActiveColumn());
+            }
+
+            // Nothing is active, so the current event does not overlap with the previous group.
+            if (this.activeCount == 0 && position > groupStart) {
+                finishGroup(groupStart, position, columnsUsed);
+                groupStart = position;
+                columnsUsed = 0;
+                this.freeCount = 0;
+            }
+
+            int column;
+            if (this.freeCount > 0) {
+                column = popFreeColumn();
+            } else {
+                column = columnsUsed++;
+                this.columnSizes[column] = 0;
+            }
+
+            this.columns[event] = column;
+            this.rows[event] = this.columnSizes[column]++;
+            pushActive(ends[event], column);
+        }
+
+        if (count > 0) {
+            finishGroup(groupStart, count, columnsUsed);
+        }
+
+        this.starts = null;
+        this.ends = null;
+    }
+
+    /**
+     * Gets the number of events in the last calculated layout.
+     *
+     * @return the number of events
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the index of the column in which an event is placed.
+     *
+     * @param event the index of the event
+     * @return the column of the event
+     */
+    public int getColumn(int event) {
+        return this.columns[event];
+    }
+
+    /**
+     * Gets the number of columns shared by the group of overlapping events which contains an event.
+     *
+     * @param event the index of the event
+     * @return the number of columns in the group of the event
+     */
+    public int getColumnsCount(int event) {
+        return this.columnsCounts[event];
+    }
+
+    /**
+     * Gets the index of the event which is at the provided position in the drawing order. The
+     * events are ordered by group and inside each group by their row and then by their column.
+     *
+     * @param position the position in the drawing order
+     * @return the index of the event
+     */
+    public int getEventAt(int position) {
+        return this.order[position];
+    }
+
+    /**
+     * Stores the number of columns for the events of a group and orders them by row and column.
+     */
+    private void finishGroup(int from, int to, int columnsCount) {
+        int maxRows = 0;
+        for (int position = from; position < to; position++) {
+            int event = this.sorted[position];
+            this.columnsCounts[event] = columnsCount;
+            if (this.rows[event] + 1 > maxRows) {
+                maxRows = this.rows[event] + 1;
+            }
+        }
+
+        // Two stable counting sorts, first by column and then by row.
+        countingSort(this.sorted, this.sortBuffer, from, to, this.columns, columnsCount);
+        countingSort(this.sortBuffer, this.order, from, to, this.rows, maxRows);
+    }
+
+    private void countingSort(int[] source, int[] target, int from, int to, int[] keys, int keysCount) {
+        if (this.counters.length < keysCount + 1) {
+            this.counters = new int[Math.max(keysCount + 1, this.counters.length * 2)];
+        }
+        for (int i = 0; i <= keysCount; i++) {
+            this.counters[i] = 0;
+        }
+        for (int position = from; position < to; position++) {
+            this.counters[keys[source[position]] + 1]++;
+        }
+        for (int i = 1; i <= keysCount; i++) {
+            this.counters[i] += this.counters[i - 1];
+        }
+        for (int position = from; position < to; position++) {
+            int event = source[position];
+            target[from + this.counters[keys[event]]++] = event;
+        }
+    }
+
+    /**
+     * Stable merge sort of the event indices by start and then by end.
+     */
+    private void sort(int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(from, middle);
+        sort(middle, to);
+        if (compare(this.sorted[middle - 1], this.sorted[middle]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(this.sorted, from, this.sortBuffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(this.sortBuffer[left], this.sortBuffer[right]) <= 0)) {
+                this.sorted[i] = this.sortBuffer[left++];
+            } else {
+                this.sorted[i] = this.sortBuffer[right++];
+            }
+        }
+    }
+
+    private int compare(int event1, int event2) {
+        long start1 = this.starts[event1];
+        long start2 = this.starts[event2];
+        if (start1 != start2) {
+            return start1 < start2 ? -1 : 1;
+        }
+
+        long end1 = this.ends[event1];
+        long end2 = this.ends[event2];
+        return end1 < end2 ? -1 : (end1 > end2 ? 1 : 0);
+    }
+
+    private void pushActive(long end, int column) {
+        int index = this.activeCount++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (this.activeEnds[parent] <= end) {
+                break;
+            }
+            this.activeEnds[index] = this.activeEnds[parent];
+            this.activeColumns[index] = this.activeColumns[parent];
+            index = parent;
+        }
+        this.activeEnds[index] = end;
+        this.activeColumns[index] = column;
+    }
+
+    private int popActiveColumn() {
+        int result = this.activeColumns[0];
+        int last = --this.activeCount;
+        long end = this.activeEnds[last];
+        int column = this.activeColumns[last];
+
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && this.activeEnds[child + 1] < this.activeEnds[child]) {
+                child++;
+            }
+            if (this.activeEnds[child] >= end) {
+                break;
+            }
+            this.activeEnds[index] = this.activeEnds[child];
+            this.activeColumns[index] = this.activeColumns[child];
+            index = child;
+        }
+        this.activeEnds[index] = end;
+        this.activeColumns[index] = column;
+        return result;
+    }
+
+    private void pushFreeColumn(int column) {
+        int index = this.freeCount++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (this.freeColumns[parent] <= column) {
+                break;
+            }
+            this.freeColumns[index] = this.freeColumns[parent];
+            index = parent;
+        }
+        this.freeColumns[index] = column;
+    }
+
+    private int popFreeColumn() {
+        int result = this.freeColumns[0];
+        int last = --this.freeCount;
+        int column = this.freeColumns[last];
+
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && this.freeColumns[child + 1] < this.freeColumns[child]) {
+                child++;
+            }
+            if (this.freeColumns[child] >= column) {
+                break;
+            }
+            this.freeColumns[index] = this.freeColumns[child];
+            index = child;
+        }
+        this.freeColumns[index] = column;
+        return result;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.sorted.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, this.sorted.length * 2);
+        this.sorted = new int[newCapacity];
+        this.sortBuffer = new int[newCapacity];
+        this.columns = new int[newCapacity];
+        this.rows = new int[newCapacity];
+        this.columnsCounts = new int[newCapacity];
+        this.order = new int[newCapacity];
+        this.activeEnds = new long[newCapacity];
+        this.activeColumns = new int[newCapacity];
+        this.freeColumns = new int[newCapacity];
+        this.columnSizes = new int[newCapacity];
+    }
+}
@@ -0,0 +1,551 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+/**
+ * Measures where the time of the frames drawn by a view goes. The view times the phases of its draw pass
+ * with {@link #endPhase(int, long)} and counts its work with {@link #add(int, long)}; the time of each phase
+ * is summed over a frame and recorded in a histogram of the phase when the frame ends, so the percentiles
+ * describe whole frames. A profiler is only used from the thread which draws the view and it does not
+ * allocate while recording. Views keep no profiler while profiling is disabled, so it costs nothing then.
+ */
+public final class FrameProfiler {
+
+    private static final int DEFAULT_REPORT_INTERVAL = 60;
+
+    private final String[] phaseNames;
+    private final String[] counterNames;
+    private final Histogram[] phaseHistograms;
+    private final Histogram frameHistogram = new Histogram();
+    private final long[] phaseFrameTimes;
+    private final boolean[] phaseTouched;
+    private final long[] counterFrameValues;
+    private final long[] counterLastFrameValues;
+    private final long[] counterTotals;
+    private long nestedPhasesTime;
+    private long framesCount;
+    private int framesSinceReport;
+    private int reportInterval = DEFAULT_REPORT_INTERVAL;
+    private Listener listener;
+
+    /**
+     * Creates a new instance of the {@link FrameProfiler} class.
+     *
+     * @param phaseNames   the names of the phases, the index of a name is the id of its phase
+     * @param counterNames the names of the counters, the index of a name is the id of its counter
+     */
+    public FrameProfiler(String[] phaseNames, String[] counterNames) {
+        if (phaseNames == null)
+            throw new NullPointerException("phaseNames");
+        if (counterNames == null)
+            throw new NullPointerException("counterNames");
+
+        this.phaseNames = phaseNames.clone();
+        this.counterNames = counterNames.clone();
+        this.phaseHistograms = new Histogram[phaseNames.length];
+        for (int i = 0; i < phaseNames.length; i++)
+            this.phaseHistograms[i] = new Histogram();
+
+        this.phaseFrameTimes = new long[phaseNames.length];
+        this.phaseTouched = new boolean[phaseNames.length];
+        this.counterFrameValues = new long[counterNames.length];
+        this.counterLastFrameValues = new long[counterNames.length];
+        this.counterTotals = new long[counterNames.length];
+    }
+
+    /**
+     * Gets the listener which receives the snapshots of the statistics.
+     *
+     * @return the current listener.
+     */
+    public Listener getListener() {
+        return this.listener;
+    }
+
+    /**
+     * Sets a listener which receives a snapshot of the statistics every {@link #getReportInterval()} frames.
+     *
+     * @param listener the new listener or <code>null</code>.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the number of frames between two snapshots sent to the listener.
+     *
+     * @return the current report interval.
+     */
+    public int getReportInterval() {
+        return this.reportInterval;
+    }
+
+    /**
+     * Sets the number of frames between two snapshots sent to the listener.
+     *
+     * @param reportInterval the new report interval.
+     */
+    public void setReportInterval(int reportInterval) {
+        if (reportInterval < 1)
+            throw new IllegalArgumentException("reportInterval should be positive.");
+
+        this.reportInterval = reportInterval;
+    }
+
+    /**
+     * Gets the current time of the timers.
+     *
+     * @return the current time in nanoseconds.
+     */
+    public long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Starts a frame.
+     *
+     * @return the start time of the frame, to be passed to {@link #endFrame(long)}.
+     */
+    public long beginFrame() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time passed since the provided start time to the time of a phase in the current frame.
+     * The time of the nested phases which ended since the previous phase is not included.
+     *
+     * @param phase      the id of the phase.
+     * @param phaseStart the start time of the phase.
+     * @return the current time, which can be used as the start time of the next phase.
+     */
+    public long endPhase(int phase, long phaseStart) {
+        long now = System.nanoTime();
+        this.phaseFrameTimes[phase] += now - phaseStart - this.nestedPhasesTime;
+        this.phaseTouched[phase] = true;
+        this.nestedPhasesTime = 0;
+        return now;
+    }
+
+    /**
+     * Adds the time passed since the provided start time to the time of a phase which runs inside another
+     * phase, such as a step that is repeated for each drawn element. The time is subtracted from the phase
+     * around it when that phase ends, so the times of the phases do not overlap.
+     *
+     * @param phase      the id of the nested phase.
+     * @param phaseStart the start time of the nested phase.
+     * @return the current time.
+     */
+    public long endNestedPhase(int phase, long phaseStart) {
+        long now = System.nanoTime();
+        this.phaseFrameTimes[phase] += now - phaseStart;
+        this.phaseTouched[phase] = true;
+        this.nestedPhasesTime += now - phaseStart;
+        return now;
+    }
+
+    /**
+     * Adds a value to a counter in the current frame.
+     *
+     * @param counter the id of the counter.
+     * @param value   the value to add.
+     */
+    public void add(int counter, long value) {
+        this.counterFrameValues[counter] += value;
+    }
+
+    /**
+     * Ends the current frame, records the times of its phases and notifies the listener if a report is due.
+     *
+     * @param frameStart the start time returned by {@link #beginFrame()}.
+     */
+    public void endFrame(long frameStart) {
+        this.frameHistogram.record(System.nanoTime() - frameStart);
+
+        for (int i = 0; i < this.phaseHistograms.length; i++) {
+            if (this.phaseTouched[i]) {
+                this.phaseHistograms[i].record(this.phaseFrameTimes[i]);
+                this.phaseFrameTimes[i] = 0;
+                this.phaseTouched[i] = false;
+            }
+        }
+        this.nestedPhasesTime = 0;
+
+        for (int i = 0; i < this.counterTotals.length; i++) {
+            this.counterTotals[i] += this.counterFrameValues[i];
+            this.counterLastFrameValues[i] = this.counterFrameValues[i];
+            this.counterFrameValues[i] = 0;
+        }
+
+        this.framesCount++;
+        if (this.listener != null && ++this.framesSinceReport >= this.reportInterval) {
+            this.framesSinceReport = 0;
+            this.listener.onFrameStatistics(getSnapshot());
+        }
+    }
+
+    /**
+     * Gets a snapshot of the statistics recorded since the profiler was created or reset.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot getSnapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Forgets all recorded statistics.
+     */
+    public void reset() {
+        this.frameHistogram.clear();
+        for (int i = 0; i < this.phaseHistograms.length; i++) {
+            this.phaseHistograms[i].clear();
+            this.phaseFrameTimes[i] = 0;
+            this.phaseTouched[i] = false;
+        }
+        this.nestedPhasesTime = 0;
+
+        for (int i = 0; i < this.counterTotals.length; i++) {
+            this.counterFrameValues[i] = 0;
+            this.counterLastFrameValues[i] = 0;
+            this.counterTotals[i] = 0;
+        }
+
+        this.framesCount = 0;
+        this.framesSinceReport = 0;
+    }
+
+    /**
+     * Receives the snapshots of the statistics of a {@link FrameProfiler}.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the drawing thread after every {@link FrameProfiler#getReportInterval()} frames.
+         *
+         * @param snapshot the statistics recorded so far.
+         */
+        void onFrameStatistics(Snapshot snapshot);
+    }
+
+    /**
+     * Immutable statistics of a {@link FrameProfiler}. All times are in nanoseconds. The percentiles
+     * are accurate to about an eighth of their value.
+     */
+    public static final class Snapshot {
+
+        private static final int STATISTICS_COUNT = 6;
+        private static final int SAMPLES = 0;
+        private static final int MEAN = 1;
+        private static final int P50 = 2;
+        private static final int P95 = 3;
+        private static final int P99 = 4;
+        private static final int MAX = 5;
+
+        private final long framesCount;
+        private final String[] phaseNames;
+        private final long[] phaseStatistics;
+        private final long[] frameStatistics;
+        private final String[] counterNames;
+        private final long[] counterTotals;
+        private final long[] counterLastFrameValues;
+
+        Snapshot(FrameProfiler profiler) {
+            this.framesCount = profiler.framesCount;
+            this.phaseNames = profiler.phaseNames;
+            this.phaseStatistics = new long[profiler.phaseHistograms.length * STATISTICS_COUNT];
+            for (int i = 0; i < profiler.phaseHistograms.length; i++)
+                profiler.phaseHistograms[i].copyStatistics(this.phaseStatistics, i * STATISTICS_COUNT);
+
+            this.frameStatistics = new long[STATISTICS_COUNT];
+            profiler.frameHistogram.copyStatistics(this.frameStatistics, 0);
+            this.counterNames = profiler.counterNames;
+            this.counterTotals = profiler.counterTotals.clone();
+            this.counterLastFrameValues = profiler.counterLastFrameValues.clone();
+        }
+
+        /**
+         * Gets the number of frames recorded.
+         *
+         * @return the number of frames.
+         */
+        public long getFramesCount() {
+            return this.framesCount;
+        }
+
+        /**
+         * Gets the mean time of a frame.
+         *
+         * @return the mean time in nanoseconds.
+         */
+        public long getFrameTimeMean() {
+            return this.frameStatistics[MEAN];
+        }
+
+        /**
+         * Gets the median time of a frame.
+         *
+         * @return the 50th percentile of the frame times in nanoseconds.
+         */
+        public long getFrameTimePercentile50() {
+            return this.frameStatistics[P50];
+        }
+
+        /**
+         * Gets the time within which 95 percent of the frames were drawn.
+         *
+         * @return the 95th percentile of the frame times in nanoseconds.
+         */
+        public long getFrameTimePercentile95() {
+            return this.frameStatistics[P95];
+        }
+
+        /**
+         * Gets the time within which 99 percent of the frames were drawn.
+         *
+         * @return the 99th percentile of the frame times in nanoseconds.
+         */
+        public long getFrameTimePercentile99() {
+            return this.frameStatistics[P99];
+        }
+
+        /**
+         * Gets the time of the slowest frame.
+         *
+         * @return the longest frame time in nanoseconds.
+         */
+        public long getFrameTimeMax() {
+            return this.frameStatistics[MAX];
+        }
+
+        /**
+         * Gets the number of phases of the profiler. The ids of the phases are the numbers below it.
+         *
+         * @return the number of phases.
+         */
+        public int getPhasesCount() {
+            return this.phaseNames.length;
+        }
+
+        /**
+         * Gets the name of a phase.
+         *
+         * @param phase the id of the phase.
+         * @return the name of the phase.
+         */
+        public String getPhaseName(int phase) {
+            return this.phaseNames[phase];
+        }
+
+        /**
+         * Gets the number of frames in which a phase was executed.
+         *
+         * @param phase the id of the phase.
+         * @return the number of frames.
+         */
+        public long getPhaseSamplesCount(int phase) {
+            return this.phaseStatistics[phase * STATISTICS_COUNT + SAMPLES];
+        }
+
+        /**
+         * Gets the mean time of a phase over the frames in which it was executed.
+         *
+         * @param phase the id of the phase.
+         * @return the mean time in nanoseconds.
+         */
+        public long getPhaseTimeMean(int phase) {
+            return this.phaseStatistics[phase * STATISTICS_COUNT + MEAN];
+        }
+
+        /**
+         * Gets the median time of a phase over the frames in which it was executed.
+         *
+         * @param phase the id of the phase.
+         * @return the 50th percentile of the phase times in nanoseconds.
+         */
+        public long getPhaseTimePercentile50(int phase) {
+            return this.phaseStatistics[phase * STATISTICS_COUNT + P50];
+        }
+
+        /**
+         * Gets the time within which a phase finished in 95 percent of the frames in which it was executed.
+         *
+         * @param phase the id of the phase.
+         * @return the 95th percentile of the phase times in nanoseconds.
+         */
+        public long getPhaseTimePercentile95(int phase) {
+            return this.phaseStatistics[phase * STATISTICS_COUNT + P95];
+        }
+
+        /**
+         * Gets the time within which a phase finished in 99 percent of the frames in which it was executed.
+         *
+         * @param phase the id of the phase.
+         * @return the 99th percentile of the phase times in nanoseconds.
+         */
+        public long getPhaseTimePercentile99(int phase) {
+            return this.phaseStatistics[phase * STATISTICS_COUNT + P99];
+        }
+
+        /**
+         * Gets the longest time of a phase in a single frame.
+         *
+         * @param phase the id of the phase.
+         * @return the longest phase time in nanoseconds.
+         */
+        public long getPhaseTimeMax(int phase) {
+            return this.phaseStatistics[phase * STATISTICS_COUNT + MAX];
+        }
+
+        /**
+         * Gets the number of counters of the profiler. The ids of the counters are the numbers below it.
+         *
+         * @return the number of counters.
+         */
+        public int getCountersCount() {
+            return this.counterNames.length;
+        }
+
+        /**
+         * Gets the name of a counter.
+         *
+         * @param counter the id of the counter.
+         * @return the name of the counter.
+         */
+        public String getCounterName(int counter) {
+            return this.counterNames[counter];
+        }
+
+        /**
+         * Gets the sum of the values of a counter over all recorded frames.
+         *
+         * @param counter the id of the counter.
+         * @return the total value.
+         */
+        public long getCounterTotal(int counter) {
+            return this.counterTotals[counter];
+        }
+
+        /**
+         * Gets the value of a counter in the last recorded frame.
+         *
+         * @param counter the id of the counter.
+         * @return the value in the last frame.
+         */
+        public long getCounterLastFrameValue(int counter) {
+            return this.counterLastFrameValues[counter];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("frames: ").append(this.framesCount);
+            appendStatistics(builder, "frame", this.frameStatistics, 0);
+            for (int i = 0; i < this.phaseNames.length; i++)
+                appendStatistics(builder, this.phaseNames[i], this.phaseStatistics, i * STATISTICS_COUNT);
+
+            for (int i = 0; i < this.counterNames.length; i++) {
+                builder.append("\n").append(this.counterNames[i]).append(": total ").append(this.counterTotals[i])
+                        .append(", last frame ").append(this.counterLastFrameValues[i]);
+            }
+
+            return builder.toString();
+        }
+
+        private static void appendStatistics(StringBuilder builder, String name, long[] statistics, int offset) {
+            builder.append("\n").append(name)
+                    .append(": samples ").append(statistics[offset + SAMPLES])
+                    .append(", mean ").append(statistics[offset + MEAN] / 1000).append("us")
+                    .append(", p50 ").append(statistics[offset + P50] / 1000).append("us")
+                    .append(", p95 ").append(statistics[offset + P95] / 1000).append("us")
+                    .append(", p99 ").append(statistics[offset + P99] / 1000).append("us")
+                    .append(", max ").append(statistics[offset + MAX] / 1000).append("us");
+        }
+    }
+
+    /**
+     * Log-linear histogram of non-negative values. Each power of two is split in eight buckets, so a value
+     * is known to within an eighth of it.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final long[] buckets = new long[BUCKETS_COUNT];
+        private long count;
+        private long total;
+        private long max;
+
+        void record(long value) {
+            if (value < 0)
+                value = 0;
+
+            this.buckets[bucketOf(value)]++;
+            this.count++;
+            this.total += value;
+            if (value > this.max)
+                this.max = value;
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS_COUNT; i++)
+                this.buckets[i] = 0;
+
+            this.count = 0;
+            this.total = 0;
+            this.max = 0;
+        }
+
+        long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Gets the highest value of the bucket which holds the value at the provided percentile.
+         *
+         * @param percentile the percentile, between 0 and 100.
+         * @return the value or zero if no values were recorded.
+         */
+        long getPercentile(double percentile) {
+            if (this.count == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS_COUNT; i++) {
+                seen += this.buckets[i];
+                if (seen >= rank)
+                    return Math.min(highestValueOf(i), this.max);
+            }
+
+            return this.max;
+        }
+
+        void copyStatistics(long[] statistics, int offset) {
+            statistics[offset + Snapshot.SAMPLES] = this.count;
+            statistics[offset + Snapshot.MEAN] = this.count != 0 ? this.total / this.count : 0;
+            statistics[offset + Snapshot.P50] = getPercentile(50);
+            statistics[offset + Snapshot.P95] = getPercentile(95);
+            statistics[offset + Snapshot.P99] = getPercentile(99);
+            statistics[offset + Snapshot.MAX] = this.max;
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long highestValueOf(int bucket) {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+            return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import com.commusoft.diary.diarytrials.DiarySource.events.DiaryJob;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * The events of a month of a day view, sorted by their start, with the days on which each of them is
+ * displayed. The events of a month are the events which overlap it, so an event which started in an
+ * earlier month can be part of several months. {@link ResidentMonthEvents} displays such an event from
+ * one of them only.
+ * <p/>
+ * The events which started in an earlier month come first, because they are sorted by their start.
+ * They are kept out of the longest span of the month, so that a job which lasts for months does not
+ * make the lookups of the days of the month visit all of its events.
+ */
+final class MonthEvents {
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    final int monthKey;
+    final DiaryJob[] events;
+    final long[] firstDays;
+    final long[] lastDays;
+    final int[] startMonthKeys;
+    final long firstDay;
+    final long lastDay;
+    final int carriedOverCount;
+    final long maxSpanDays;
+
+    MonthEvents(int monthKey, DiaryJob[] events, long[] firstDays, long[] lastDays, int[] startMonthKeys) {
+        this.monthKey = monthKey;
+        this.events = events;
+        this.firstDays = firstDays;
+        this.lastDays = lastDays;
+        this.startMonthKeys = startMonthKeys;
+        long firstDay = Long.MAX_VALUE;
+        long lastDay = Long.MIN_VALUE;
+        int carriedOverCount = 0;
+        long maxSpanDays = 0;
+        for (int i = 0; i < events.length; i++) {
+            firstDay = Math.min(firstDay, firstDays[i]);
+            lastDay = Math.max(lastDay, lastDays[i]);
+            if (startMonthKeys[i] != monthKey) {
+                carriedOverCount++;
+            } else {
+                maxSpanDays = Math.max(maxSpanDays, lastDays[i] - firstDays[i]);
+            }
+        }
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+        this.carriedOverCount = carriedOverCount;
+        this.maxSpanDays = maxSpanDays;
+    }
+
+    /**
+     * Sorts the events of a month and finds the days on which each of them is displayed and the month
+     * in which each of them starts.
+     *
+     * @param monthKey the key of the month, <code>year * 12 + month</code> with a zero based month
+     * @param events   the events of the month or <code>null</code> if there are none, the list is sorted in place
+     * @param timeZone the time zone whose days the events are displayed on
+     * @return the events of the month
+     */
+    static MonthEvents create(int monthKey, List<DiaryJob> events, TimeZone timeZone) {
+        int count = events == null ? 0 : events.size();
+        DiaryJob[] sortedEvents = new DiaryJob[count];
+        long[] firstDays = new long[count];
+        long[] lastDays = new long[count];
+        int[] startMonthKeys = new int[count];
+        if (events != null) {
+            sortEvents(events);
+            long monthStart = getMonthStart(monthKey, timeZone);
+            Calendar calendar = null;
+            for (int i = 0; i < count; i++) {
+                DiaryJob event = events.get(i);
+                sortedEvents[i] = event;
+                firstDays[i] = getDayKey(event.getStartTime(), timeZone);
+                lastDays[i] = getDayKey(event.getEndTime() - 1, timeZone);
+                if (event.getStartTime() >= monthStart) {
+                    startMonthKeys[i] = monthKey;
+                    continue;
+                }
+
+                // Only the events which started in an earlier month need a calendar.
+                if (calendar == null) {
+                    calendar = Calendar.getInstance(timeZone);
+                }
+                calendar.setTimeInMillis(event.getStartTime());
+                startMonthKeys[i] = calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+            }
+        }
+        return new MonthEvents(monthKey, sortedEvents, firstDays, lastDays, startMonthKeys);
+    }
+
+    /**
+     * Gets the time when a month starts.
+     *
+     * @param monthKey the key of the month
+     * @param timeZone the time zone of the month
+     * @return the start of the first day of the month
+     */
+    static long getMonthStart(int monthKey, TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set(monthKey / 12, monthKey % 12, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Gets the day that contains a time as number of days since the epoch in a time zone.
+     *
+     * @param time     the time in milliseconds
+     * @param timeZone the time zone
+     * @return the day
+     */
+    static long getDayKey(long time, TimeZone timeZone) {
+        long localTime = time + timeZone.getOffset(time);
+        long day = localTime / DAY_IN_MILLIS;
+        if (localTime % DAY_IN_MILLIS < 0) {
+            day--;
+        }
+        return day;
+    }
+
+    /**
+     * Sorts the events by their start and the events which start at the same time by their end.
+     */
+    private static void sortEvents(List<DiaryJob> events) {
+        Collections.sort(events, new Comparator<DiaryJob>() {
+            @Override
+            public int compare(DiaryJob event1, DiaryJob event2) {
+                long start1 = event1.getStartTime();
+                long start2 = event2.getStartTime();
+                int comparator = start1 > start2 ? 1 : (start1 < start2 ? -1 : 0);
+                if (comparator == 0) {
+                    long end1 = event1.getEndTime();
+                    long end2 = event2.getEndTime();
+                    comparator = end1 > end2 ? 1 : (end1 < end2 ? -1 : 0);
+                }
+                return comparator;
+            }
+        });
+    }
+}
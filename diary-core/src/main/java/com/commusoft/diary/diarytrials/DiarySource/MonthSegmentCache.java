@@ -0,0 +1,133 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the data of whole months, keyed by <code>year * 12 + month</code>.
+ * When the cache grows above its max size the least recently used months are evicted
+ * one by one and {@link #onEvicted(int, Object)} is called for each of them.
+ *
+ * @param <T> the type of the data of a month
+ */
+class MonthSegmentCache<T> {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final LinkedHashMap<Integer, T> segments = new LinkedHashMap<Integer, T>(16, LOAD_FACTOR, true);
+    private int maxSize;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new instance of the {@link com.commusoft.diary.diarytrials.DiarySource.MonthSegmentCache} class.
+     *
+     * @param maxSize the max number of months that will be cached
+     */
+    MonthSegmentCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    int getMaxSize() {
+        return this.maxSize;
+    }
+
+    void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize should be positive.");
+        }
+
+        this.maxSize = maxSize;
+        trimToSize();
+    }
+
+    int size() {
+        return this.segments.size();
+    }
+
+    long getHitCount() {
+        return this.hitCount;
+    }
+
+    long getMissCount() {
+        return this.missCount;
+    }
+
+    long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Gets the data of a month and marks the month as the most recently used one.
+     *
+     * @param monthKey the key of the month
+     * @return the data of the month or <code>null</code> if it is not cached
+     */
+    T get(int monthKey) {
+        T segment = this.segments.get(monthKey);
+        if (segment != null) {
+            this.hitCount++;
+        } else {
+            this.missCount++;
+        }
+        return segment;
+    }
+
+    /**
+     * Checks if the data of a month is cached without marking the month as used.
+     *
+     * @param monthKey the key of the month
+     * @return <code>true</code> if the month is cached
+     */
+    boolean contains(int monthKey) {
+        return this.segments.containsKey(monthKey);
+    }
+
+    /**
+     * Caches the data of a month as the most recently used one and evicts the least recently
+     * used months if the max size is exceeded.
+     *
+     * @param monthKey the key of the month
+     * @param segment  the data of the month
+     */
+    void put(int monthKey, T segment) {
+        if (segment == null) {
+            throw new NullPointerException("segment");
+        }
+
+        T previous = this.segments.put(monthKey, segment);
+        if (previous != null && previous != segment) {
+            onEvicted(monthKey, previous);
+        }
+        trimToSize();
+    }
+
+    /**
+     * Removes all months from the cache without calling {@link #onEvicted(int, Object)}.
+     */
+    void clear() {
+        this.segments.clear();
+    }
+
+    /**
+     * Called when the data of a month is removed from the cache to make room for other months
+     * or because it was replaced.
+     *
+     * @param monthKey the key of the month
+     * @param segment  the removed data
+     */
+    protected void onEvicted(int monthKey, T segment) {
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<Integer, T>> iterator = this.segments.entrySet().iterator();
+        while (this.segments.size() > this.maxSize && iterator.hasNext()) {
+            Map.Entry<Integer, T> eldest = iterator.next();
+            iterator.remove();
+            this.evictionCount++;
+            onEvicted(eldest.getKey(), eldest.getValue());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import com.commusoft.diary.diarytrials.DiarySource.events.DiaryJob;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events of the months which are cached by a day view. An event which overlaps several resident
+ * months is displayed from the earliest of them, so that it is displayed once however many of them
+ * contain it and it is still displayed when the month in which it starts is not resident.
+ * <p/>
+ * Adding or removing a month changes which month displays the events that started before it, but
+ * all of these events overlap the month, so they are displayed between its first and last day.
+ */
+final class ResidentMonthEvents {
+
+    private final List<MonthEvents> months = new ArrayList<MonthEvents>();
+
+    int size() {
+        return this.months.size();
+    }
+
+    void add(MonthEvents month) {
+        this.months.add(month);
+    }
+
+    boolean remove(MonthEvents month) {
+        return this.months.remove(month);
+    }
+
+    void clear() {
+        this.months.clear();
+    }
+
+    /**
+     * Adds the events which are displayed on a day to a list.
+     *
+     * @param day    the day as number of days since the epoch in the time zone of the months
+     * @param result the list which will receive the events
+     */
+    void collectEvents(long day, List<DiaryJob> result) {
+        for (int m = 0; m < this.months.size(); m++) {
+            MonthEvents month = this.months.get(m);
+            if (day < month.firstDay || day > month.lastDay) {
+                continue;
+            }
+
+            for (int i = 0; i < month.carriedOverCount && month.firstDays[i] <= day; i++) {
+                if (month.lastDays[i] >= day && !isResident(month.startMonthKeys[i], month.monthKey)) {
+                    result.add(month.events[i]);
+                }
+            }
+
+            // The other events are sorted by their first day, so only the ones which started at most
+            // as many days ago as the longest of them can reach the day.
+            int first = lowerBound(month.firstDays, month.carriedOverCount, day - month.maxSpanDays);
+            for (int i = first; i < month.events.length && month.firstDays[i] <= day; i++) {
+                if (month.lastDays[i] >= day) {
+                    result.add(month.events[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if one of the months from a first month to a last month, exclusive, is resident.
+     */
+    private boolean isResident(int firstMonthKey, int lastMonthKey) {
+        for (int m = 0; m < this.months.size(); m++) {
+            int monthKey = this.months.get(m).monthKey;
+            if (monthKey >= firstMonthKey && monthKey < lastMonthKey) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the first value from an index on that is not less than the provided key.
+     */
+    private static int lowerBound(long[] values, int fromIndex, long key) {
+        int low = fromIndex;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
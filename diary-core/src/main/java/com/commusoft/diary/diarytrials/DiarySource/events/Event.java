@@ -1,12 +1,11 @@
 package com.commusoft.diary.diarytrials.DiarySource.events;
 
-import android.graphics.Color;
-
 /**
  * Data model for events displayed by {@link com.commusoft.diary.diarytrials.DiarySource.RadCalendarView}.
  */
 public class Event {
-    private static final int DEFAULT_EVENT_COLOR = Color.parseColor("#B233B5E5");
+    // #B233B5E5
+    private static final int DEFAULT_EVENT_COLOR = 0xB233B5E5;
 
     private int calendarId;
     private int eventColor;
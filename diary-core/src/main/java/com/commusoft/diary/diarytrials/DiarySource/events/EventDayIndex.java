@@ -0,0 +1,175 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the events of a list which should be displayed for a date or for each of the dates of a range.
+ * The list is indexed once and the index follows the events appended to it, so a query only visits the
+ * events which overlap the requested dates. When an {@link EventStore} is set the events are found in the
+ * store instead of the list.
+ */
+public final class EventDayIndex {
+
+    private static final int DEFAULT_RANGE_DAYS_COUNT = 42;
+
+    private final EventIntervalIndex index = new EventIntervalIndex();
+    private final List<Event> rangeEvents = new ArrayList<Event>();
+    private long[] rangeDayStarts = new long[DEFAULT_RANGE_DAYS_COUNT + 1];
+    private EventStore store;
+
+    /**
+     * Gets the store which holds the events, if the events are not kept in a list.
+     *
+     * @return the store or <code>null</code> if the indexed list holds the events
+     */
+    public EventStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Sets a store which holds the events instead of the indexed list. The store keeps its own index,
+     * so the queries return views of its events regardless of the indexed list.
+     *
+     * @param store the store or <code>null</code> to find the events in the indexed list
+     */
+    public void setStore(EventStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Gets the size of the event list at the time it was last synchronized with this index.
+     *
+     * @return the number of indexed list entries, including <code>null</code> entries
+     */
+    public int getIndexedSize() {
+        return this.index.getIndexedSize();
+    }
+
+    /**
+     * Rebuilds the index from scratch so that it contains the provided events.
+     *
+     * @param events the events to index, may be <code>null</code>
+     */
+    public void rebuild(List<Event> events) {
+        this.index.rebuild(events);
+    }
+
+    /**
+     * Adds an event which was appended to the indexed list.
+     *
+     * @param event the appended event, may be <code>null</code>
+     */
+    public void add(Event event) {
+        this.index.add(event);
+    }
+
+    /**
+     * Adds the events that should be displayed for the provided date to a list, in the order
+     * in which they were added to the event list.
+     *
+     * @param dateEngine the engine which finds the start and the end of the date
+     * @param date       the date of the events
+     * @param result     the list which will receive the events
+     */
+    public void getEventsForDate(EpochDayCalendar dateEngine, long date, List<Event> result) {
+        long day = dateEngine.toEpochDay(date);
+        query(dateEngine.getDayStart(day), dateEngine.getDayStart(day + 1), result);
+    }
+
+    /**
+     * Populates the provided lists with the events that should be displayed for each of the dates
+     * in the provided range in a single pass over the events. The lists that are already
+     * present in <code>eventsForRange</code> are cleared and reused, missing lists are created
+     * and lists for dates outside the range are removed.
+     *
+     * @param dateEngine     the engine which finds the starts of the dates
+     * @param from           the first date of the range
+     * @param to             the end of the range, exclusive
+     * @param eventsForRange the list that will receive one list of events per date in the range
+     * @return the number of dates in the range
+     */
+    public int getEventsForRange(EpochDayCalendar dateEngine, long from, long to, List<List<Event>> eventsForRange) {
+        int daysCount = calculateDayStarts(dateEngine, from, to);
+        while (eventsForRange.size() > daysCount) {
+            eventsForRange.remove(eventsForRange.size() - 1);
+        }
+        for (int i = 0; i < daysCount; i++) {
+            if (i < eventsForRange.size()) {
+                eventsForRange.get(i).clear();
+            } else {
+                eventsForRange.add(new ArrayList<Event>());
+            }
+        }
+
+        if (daysCount == 0) {
+            return daysCount;
+        }
+
+        query(this.rangeDayStarts[0], this.rangeDayStarts[daysCount], this.rangeEvents);
+
+        for (int i = 0, count = this.rangeEvents.size(); i < count; i++) {
+            Event event = this.rangeEvents.get(i);
+            int firstDay = dayIndexOf(event.getStartTime(), daysCount);
+            int lastDay = firstDay;
+            if (!event.isAllDay()) {
+                lastDay = dayIndexOf(event.getEndTime() - 1, daysCount);
+            }
+
+            for (int day = Math.max(firstDay, 0); day <= lastDay; day++) {
+                eventsForRange.get(day).add(event);
+            }
+        }
+
+        this.rangeEvents.clear();
+        return daysCount;
+    }
+
+    private void query(long periodStart, long periodEnd, List<Event> result) {
+        if (this.store != null) {
+            this.store.query(periodStart, periodEnd, result);
+        } else {
+            this.index.query(periodStart, periodEnd, result);
+        }
+    }
+
+    private int calculateDayStarts(EpochDayCalendar dateEngine, long from, long to) {
+        long day = dateEngine.toEpochDay(from);
+        long dayStart = dateEngine.getDayStart(day);
+
+        int daysCount = 0;
+        while (dayStart < to) {
+            if (daysCount + 1 == this.rangeDayStarts.length) {
+                long[] dayStarts = new long[this.rangeDayStarts.length * 2];
+                System.arraycopy(this.rangeDayStarts, 0, dayStarts, 0, this.rangeDayStarts.length);
+                this.rangeDayStarts = dayStarts;
+            }
+
+            this.rangeDayStarts[daysCount++] = dayStart;
+            dayStart = dateEngine.getDayStart(++day);
+        }
+
+        this.rangeDayStarts[daysCount] = dayStart;
+        return daysCount;
+    }
+
+    /**
+     * Returns the index of the date in the current range which contains the provided time,
+     * <code>-1</code> if the time is before the range or the last index if it is after it.
+     */
+    private int dayIndexOf(long time, int daysCount) {
+        int low = 0;
+        int high = daysCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.rangeDayStarts[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+}
@@ -0,0 +1,326 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted interval index over the events of an {@link com.commusoft.diary.diarytrials.DiarySource.events.EventDayIndex}.
+ * All day events are kept sorted by their start, while the rest of the events are kept sorted by start
+ * and augmented with the max end of each implicit subtree, so that a query for the events
+ * overlapping a period of time costs O(log n + k) instead of a full scan.
+ * The results are always reported in the order in which the events were added to the event list.
+ */
+class EventIntervalIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Event[] allDayEvents = new Event[INITIAL_CAPACITY];
+    private long[] allDayStarts = new long[INITIAL_CAPACITY];
+    private int[] allDayOrders = new int[INITIAL_CAPACITY];
+    private int allDayCount;
+
+    private Event[] timedEvents = new Event[INITIAL_CAPACITY];
+    private long[] timedStarts = new long[INITIAL_CAPACITY];
+    private long[] timedEnds = new long[INITIAL_CAPACITY];
+    private int[] timedOrders = new int[INITIAL_CAPACITY];
+    private long[] timedMaxEnds = new long[INITIAL_CAPACITY];
+    private int timedCount;
+    private boolean maxEndsInvalid;
+
+    private int nextOrder;
+    private int indexedSize;
+
+    private Event[] hitEvents = new Event[INITIAL_CAPACITY];
+    private long[] hitKeys = new long[INITIAL_CAPACITY];
+    private int hitCount;
+
+    /**
+     * Gets the size of the event list at the time it was last synchronized with this index.
+     *
+     * @return the number of indexed list entries, including <code>null</code> entries
+     */
+    int getIndexedSize() {
+        return this.indexedSize;
+    }
+
+    /**
+     * Removes all events from the index.
+     */
+    void clear() {
+        Arrays.fill(this.allDayEvents, 0, this.allDayCount, null);
+        Arrays.fill(this.timedEvents, 0, this.timedCount, null);
+        this.allDayCount = 0;
+        this.timedCount = 0;
+        this.nextOrder = 0;
+        this.indexedSize = 0;
+        this.maxEndsInvalid = false;
+    }
+
+    /**
+     * Rebuilds the index from scratch so that it contains the provided events.
+     *
+     * @param events the events to index, may be <code>null</code>
+     */
+    void rebuild(List<Event> events) {
+        clear();
+        if (events == null) {
+            return;
+        }
+
+        int size = events.size();
+        Event[] eventsByOrder = new Event[size];
+        long[] startsByOrder = new long[size];
+        int[] orders = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Event event = events.get(i);
+            eventsByOrder[i] = event;
+            if (event != null) {
+                startsByOrder[i] = event.getStartTime();
+                orders[count++] = i;
+            }
+        }
+
+        sortByStart(orders, new int[count], 0, count, startsByOrder);
+        ensureAllDayCapacity(count);
+        ensureTimedCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            int order = orders[i];
+            Event event = eventsByOrder[order];
+            if (event.isAllDay()) {
+                this.allDayEvents[this.allDayCount] = event;
+                this.allDayStarts[this.allDayCount] = event.getStartTime();
+                this.allDayOrders[this.allDayCount] = order;
+                this.allDayCount++;
+            } else {
+                this.timedEvents[this.timedCount] = event;
+                this.timedStarts[this.timedCount] = event.getStartTime();
+                this.timedEnds[this.timedCount] = event.getEndTime();
+                this.timedOrders[this.timedCount] = order;
+                this.timedCount++;
+            }
+        }
+
+        this.nextOrder = size;
+        this.indexedSize = size;
+        this.maxEndsInvalid = true;
+    }
+
+    /**
+     * Adds a single event to the index, keeping the sorted order.
+     *
+     * @param event the event that was appended to the event list
+     */
+    void add(Event event) {
+        int order = this.nextOrder++;
+        this.indexedSize++;
+        if (event == null) {
+            return;
+        }
+
+        long start = event.getStartTime();
+        if (event.isAllDay()) {
+            ensureAllDayCapacity(this.allDayCount + 1);
+            int position = upperBound(this.allDayStarts, this.allDayCount, start);
+            int moved = this.allDayCount - position;
+            System.arraycopy(this.allDayEvents, position, this.allDayEvents, position + 1, moved);
+            System.arraycopy(this.allDayStarts, position, this.allDayStarts, position + 1, moved);
+            System.arraycopy(this.allDayOrders, position, this.allDayOrders, position + 1, moved);
+            this.allDayEvents[position] = event;
+            this.allDayStarts[position] = start;
+            this.allDayOrders[position] = order;
+            this.allDayCount++;
+        } else {
+            ensureTimedCapacity(this.timedCount + 1);
+            int position = upperBound(this.timedStarts, this.timedCount, start);
+            int moved = this.timedCount - position;
+            System.arraycopy(this.timedEvents, position, this.timedEvents, position + 1, moved);
+            System.arraycopy(this.timedStarts, position, this.timedStarts, position + 1, moved);
+            System.arraycopy(this.timedEnds, position, this.timedEnds, position + 1, moved);
+            System.arraycopy(this.timedOrders, position, this.timedOrders, position + 1, moved);
+            this.timedEvents[position] = event;
+            this.timedStarts[position] = start;
+            this.timedEnds[position] = event.getEndTime();
+            this.timedOrders[position] = order;
+            this.timedCount++;
+            this.maxEndsInvalid = true;
+        }
+    }
+
+    /**
+     * Finds the events that should be visible in the period between the provided dates and adds
+     * them to the provided list in the order in which they were added to the event list.
+     * All day events are visible if they start inside the period, while the rest are visible
+     * if they overlap with it.
+     *
+     * @param periodStart the start of the period, inclusive
+     * @param periodEnd   the end of the period, exclusive
+     * @param result      the list which will receive the visible events
+     */
+    void query(long periodStart, long periodEnd, List<Event> result) {
+        this.hitCount = 0;
+
+        int allDayFirst = lowerBound(this.allDayStarts, this.allDayCount, periodStart);
+        for (int i = allDayFirst; i < this.allDayCount && this.allDayStarts[i] < periodEnd; i++) {
+            addHit(this.allDayEvents[i], this.allDayOrders[i]);
+        }
+
+        if (this.timedCount > 0) {
+            if (this.maxEndsInvalid) {
+                buildMaxEnds(0, this.timedCount);
+                this.maxEndsInvalid = false;
+            }
+            collectTimed(0, this.timedCount, periodStart, periodEnd);
+        }
+
+        if (this.hitCount > 1) {
+            Arrays.sort(this.hitKeys, 0, this.hitCount);
+        }
+
+        for (int i = 0; i < this.hitCount; i++) {
+            result.add(this.hitEvents[(int) this.hitKeys[i]]);
+        }
+
+        Arrays.fill(this.hitEvents, 0, this.hitCount, null);
+    }
+
+    private void collectTimed(int low, int high, long periodStart, long periodEnd) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.timedMaxEnds[middle] <= periodStart) {
+                return;
+            }
+
+            collectTimed(low, middle, periodStart, periodEnd);
+
+            if (this.timedStarts[middle] >= periodEnd) {
+                return;
+            }
+
+            if (this.timedEnds[middle] > periodStart) {
+                addHit(this.timedEvents[middle], this.timedOrders[middle]);
+            }
+
+            low = middle + 1;
+        }
+    }
+
+    private long buildMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+
+        int middle = (low + high) >>> 1;
+        long max = this.timedEnds[middle];
+        long leftMax = buildMaxEnds(low, middle);
+        long rightMax = buildMaxEnds(middle + 1, high);
+        if (leftMax > max) {
+            max = leftMax;
+        }
+        if (rightMax > max) {
+            max = rightMax;
+        }
+
+        this.timedMaxEnds[middle] = max;
+        return max;
+    }
+
+    private void addHit(Event event, int order) {
+        if (this.hitCount == this.hitEvents.length) {
+            int capacity = this.hitCount * 2;
+            this.hitEvents = Arrays.copyOf(this.hitEvents, capacity);
+            this.hitKeys = Arrays.copyOf(this.hitKeys, capacity);
+        }
+
+        this.hitEvents[this.hitCount] = event;
+        this.hitKeys[this.hitCount] = ((long) order << 32) | this.hitCount;
+        this.hitCount++;
+    }
+
+    private void ensureAllDayCapacity(int capacity) {
+        if (capacity <= this.allDayEvents.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, this.allDayEvents.length * 2);
+        this.allDayEvents = Arrays.copyOf(this.allDayEvents, newCapacity);
+        this.allDayStarts = Arrays.copyOf(this.allDayStarts, newCapacity);
+        this.allDayOrders = Arrays.copyOf(this.allDayOrders, newCapacity);
+    }
+
+    private void ensureTimedCapacity(int capacity) {
+        if (capacity <= this.timedEvents.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, this.timedEvents.length * 2);
+        this.timedEvents = Arrays.copyOf(this.timedEvents, newCapacity);
+        this.timedStarts = Arrays.copyOf(this.timedStarts, newCapacity);
+        this.timedEnds = Arrays.copyOf(this.timedEnds, newCapacity);
+        this.timedOrders = Arrays.copyOf(this.timedOrders, newCapacity);
+        this.timedMaxEnds = Arrays.copyOf(this.timedMaxEnds, newCapacity);
+    }
+
+    /**
+     * Stable merge sort of list positions by the start of the events at these positions,
+     * so that events with equal start keep the order they have in the list.
+     */
+    private static void sortByStart(int[] orders, int[] buffer, int low, int high, long[] startsByOrder) {
+        if (high - low < 2) {
+            return;
+        }
+
+        int middle = (low + high) >>> 1;
+        sortByStart(orders, buffer, low, middle, startsByOrder);
+        sortByStart(orders, buffer, middle, high, startsByOrder);
+        if (startsByOrder[orders[middle - 1]] <= startsByOrder[orders[middle]]) {
+            return;
+        }
+
+        System.arraycopy(orders, low, buffer, low, high - low);
+        int left = low;
+        int right = middle;
+        for (int i = low; i < high; i++) {
+            if (right >= high || (left < middle && startsByOrder[buffer[left]] <= startsByOrder[buffer[right]])) {
+                orders[i] = buffer[left++];
+            } else {
+                orders[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first value that is not less than the provided key.
+     */
+    private static int lowerBound(long[] values, int count, long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first value that is greater than the provided key.
+     */
+    private static int upperBound(long[] values, int count, long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,785 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Memory compact storage for a large number of events. Instead of one object per event the store keeps
+ * the start, the end, the color, the calendar id, the flags and the job id of its events in parallel
+ * primitive arrays and the titles in a pool where each distinct title is kept once, so that hundreds of
+ * thousands of events cost a few arrays instead of as many objects.
+ * <p/>
+ * Each event is identified by its row. The events are read either through a {@link Cursor}, which
+ * visits the rows found by a query without allocating, or through a {@link StoredJob}, a lightweight
+ * {@link DiaryJob} which reads and writes the columns of its row, so that it can be handed to the code
+ * which draws {@link Event} instances. Removed rows are only marked as removed, so the rows and the
+ * views of the other events stay valid until {@link #compact()} is called.
+ * <p/>
+ * Queries use the same rules as {@link EventDayIndex}: an all day event is found for the period that
+ * contains its start and any other event for the periods it overlaps, in the order of their rows.
+ */
+public final class EventStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte FLAG_ALL_DAY = 1;
+    private static final byte FLAG_REMOVED = 2;
+
+    private long[] starts;
+    private long[] ends;
+    private long[] jobIds;
+    private int[] colors;
+    private int[] calendarIds;
+    private int[] titleIds;
+    private byte[] flags;
+    private int rowsCount;
+    private int removedCount;
+
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private final HashMap<String, Integer> titleIdsByTitle = new HashMap<String, Integer>();
+    private int titlesCount;
+
+    // Rows sorted by start, augmented with the max end of each implicit subtree.
+    private int[] sortedRows = new int[0];
+    private long[] sortedStarts = new long[0];
+    private long[] sortedEnds = new long[0];
+    private long[] sortedMaxEnds = new long[0];
+    private int sortedCount;
+    private boolean indexInvalid;
+
+    private int[] hits = new int[INITIAL_CAPACITY];
+    private int hitCount;
+
+    /**
+     * Creates a new empty instance of the {@link com.commusoft.diary.diarytrials.DiarySource.events.EventStore} class.
+     */
+    public EventStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty instance of the {@link com.commusoft.diary.diarytrials.DiarySource.events.EventStore} class
+     * with room for the provided number of events.
+     *
+     * @param capacity the number of events that can be added before the columns grow
+     * @throws java.lang.IllegalArgumentException If the capacity is negative
+     */
+    public EventStore(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity should not be negative.");
+        }
+
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.jobIds = new long[capacity];
+        this.colors = new int[capacity];
+        this.calendarIds = new int[capacity];
+        this.titleIds = new int[capacity];
+        this.flags = new byte[capacity];
+    }
+
+    /**
+     * Gets the number of events in this store, not counting the removed ones.
+     *
+     * @return the number of events
+     */
+    public int size() {
+        return this.rowsCount - this.removedCount;
+    }
+
+    /**
+     * Gets the number of rows in this store, including the rows of removed events.
+     *
+     * @return the number of rows
+     */
+    public int getRowsCount() {
+        return this.rowsCount;
+    }
+
+    /**
+     * Gets the number of distinct titles kept by the title pool.
+     *
+     * @return the number of pooled titles
+     */
+    public int getTitlesCount() {
+        return this.titlesCount;
+    }
+
+    /**
+     * Adds an event to the store.
+     *
+     * @param title      the event's title
+     * @param startTime  the event's start date
+     * @param endTime    the event's end date
+     * @param eventColor the color of the event
+     * @param calendarId the id of the calendar that contains the event
+     * @param allDay     whether this is an all day event
+     * @param jobId      the id of the job
+     * @return the row of the new event
+     * @throws java.lang.IllegalArgumentException If the start date is after the end date or if they are the same
+     */
+    public int add(String title, long startTime, long endTime, int eventColor, int calendarId, boolean allDay, long jobId) {
+        if (startTime >= endTime) {
+            throw new IllegalArgumentException("endTime should be after startTime.");
+        }
+
+        ensureCapacity(this.rowsCount + 1);
+        int row = this.rowsCount++;
+        this.starts[row] = startTime;
+        this.ends[row] = endTime;
+        this.jobIds[row] = jobId;
+        this.colors[row] = eventColor;
+        this.calendarIds[row] = calendarId;
+        this.titleIds[row] = poolTitle(title);
+        this.flags[row] = allDay ? FLAG_ALL_DAY : 0;
+        this.indexInvalid = true;
+        return row;
+    }
+
+    /**
+     * Adds a copy of an event to the store. The store does not keep a reference to the provided event.
+     *
+     * @param event the event to copy, the id of a {@link DiaryJob} is copied as the job id
+     * @return the view of the new event
+     */
+    public StoredJob add(Event event) {
+        long jobId = event instanceof DiaryJob ? ((DiaryJob) event).getId() : 0;
+        int row = add(event.getTitle(), event.getStartTime(), event.getEndTime(),
+                event.getEventColor(), event.getCalendarId(), event.isAllDay(), jobId);
+        return new StoredJob(this, row);
+    }
+
+    /**
+     * Removes the event of a view of this store.
+     *
+     * @param event the event to remove
+     * @return <code>true</code> if the event was removed, <code>false</code> if it is not a view of this store
+     * or it was already removed
+     */
+    public boolean remove(Event event) {
+        if (!(event instanceof StoredJob) || ((StoredJob) event).store != this) {
+            return false;
+        }
+
+        int row = ((StoredJob) event).row;
+        if (row >= this.rowsCount || isRemoved(row)) {
+            return false;
+        }
+
+        removeAt(row);
+        return true;
+    }
+
+    /**
+     * Removes the event of a row. The row keeps its values until {@link #compact()} is called.
+     *
+     * @param row the row of the event
+     */
+    public void removeAt(int row) {
+        checkRow(row);
+        if (isRemoved(row)) {
+            return;
+        }
+
+        this.flags[row] |= FLAG_REMOVED;
+        this.removedCount++;
+        this.indexInvalid = true;
+    }
+
+    /**
+     * Removes all events from the store.
+     */
+    public void clear() {
+        this.rowsCount = 0;
+        this.removedCount = 0;
+        Arrays.fill(this.titles, 0, this.titlesCount, null);
+        this.titleIdsByTitle.clear();
+        this.titlesCount = 0;
+        this.indexInvalid = true;
+    }
+
+    /**
+     * Drops the rows of the removed events and the titles which are no longer used and trims
+     * the columns to the number of events. The remaining events keep their order, but their rows change,
+     * so the views and the rows obtained before this call should not be used after it.
+     */
+    public void compact() {
+        String[] oldTitles = this.titles;
+        this.titles = new String[Math.max(this.titlesCount, 1)];
+        this.titleIdsByTitle.clear();
+        this.titlesCount = 0;
+
+        int count = 0;
+        for (int row = 0; row < this.rowsCount; row++) {
+            if (isRemoved(row)) {
+                continue;
+            }
+
+            this.starts[count] = this.starts[row];
+            this.ends[count] = this.ends[row];
+            this.jobIds[count] = this.jobIds[row];
+            this.colors[count] = this.colors[row];
+            this.calendarIds[count] = this.calendarIds[row];
+            this.titleIds[count] = poolTitle(oldTitles[this.titleIds[row]]);
+            this.flags[count] = this.flags[row];
+            count++;
+        }
+
+        this.rowsCount = count;
+        this.removedCount = 0;
+        this.starts = Arrays.copyOf(this.starts, count);
+        this.ends = Arrays.copyOf(this.ends, count);
+        this.jobIds = Arrays.copyOf(this.jobIds, count);
+        this.colors = Arrays.copyOf(this.colors, count);
+        this.calendarIds = Arrays.copyOf(this.calendarIds, count);
+        this.titleIds = Arrays.copyOf(this.titleIds, count);
+        this.flags = Arrays.copyOf(this.flags, count);
+        this.titles = Arrays.copyOf(this.titles, this.titlesCount);
+        this.indexInvalid = true;
+    }
+
+    /**
+     * Gets a view of the event of a row.
+     *
+     * @param row the row of the event
+     * @return a lightweight view which reads and writes the event's row
+     */
+    public StoredJob getEvent(int row) {
+        checkRow(row);
+        return new StoredJob(this, row);
+    }
+
+    /**
+     * Gets a value indicating whether the event of a row was removed.
+     *
+     * @param row the row of the event
+     * @return <code>true</code> if the event was removed, <code>false</code> otherwise
+     */
+    public boolean isRemoved(int row) {
+        checkRow(row);
+        return (this.flags[row] & FLAG_REMOVED) != 0;
+    }
+
+    /**
+     * Returns the title of the event of a row.
+     */
+    public String getTitle(int row) {
+        checkRow(row);
+        return this.titles[this.titleIds[row]];
+    }
+
+    /**
+     * Sets the title of the event of a row.
+     */
+    public void setTitle(int row, String title) {
+        checkRow(row);
+        this.titleIds[row] = poolTitle(title);
+    }
+
+    /**
+     * Returns the start date of the event of a row.
+     */
+    public long getStartTime(int row) {
+        checkRow(row);
+        return this.starts[row];
+    }
+
+    /**
+     * Returns the end date of the event of a row.
+     */
+    public long getEndTime(int row) {
+        checkRow(row);
+        return this.ends[row];
+    }
+
+    /**
+     * Moves the event of a row to a new period.
+     *
+     * @param row       the row of the event
+     * @param startTime the new start of the event
+     * @param endTime   the new end of the event
+     * @throws java.lang.IllegalArgumentException If the start date is after the end date or if they are the same
+     */
+    public void setTimes(int row, long startTime, long endTime) {
+        checkRow(row);
+        if (startTime >= endTime) {
+            throw new IllegalArgumentException("endTime should be after startTime.");
+        }
+
+        this.starts[row] = startTime;
+        this.ends[row] = endTime;
+        this.indexInvalid = true;
+    }
+
+    /**
+     * Returns the color of the event of a row.
+     */
+    public int getEventColor(int row) {
+        checkRow(row);
+        return this.colors[row];
+    }
+
+    /**
+     * Sets the color of the event of a row.
+     */
+    public void setEventColor(int row, int eventColor) {
+        checkRow(row);
+        this.colors[row] = eventColor;
+    }
+
+    /**
+     * Returns the id of the calendar that contains the event of a row.
+     */
+    public int getCalendarId(int row) {
+        checkRow(row);
+        return this.calendarIds[row];
+    }
+
+    /**
+     * Sets the id of the calendar that contains the event of a row.
+     */
+    public void setCalendarId(int row, int calendarId) {
+        checkRow(row);
+        this.calendarIds[row] = calendarId;
+    }
+
+    /**
+     * Returns a value which indicates whether the event of a row is an all day event.
+     */
+    public boolean isAllDay(int row) {
+        checkRow(row);
+        return (this.flags[row] & FLAG_ALL_DAY) != 0;
+    }
+
+    /**
+     * Sets a value which indicates whether the event of a row is an all day event.
+     */
+    public void setAllDay(int row, boolean allDay) {
+        checkRow(row);
+        if (allDay) {
+            this.flags[row] |= FLAG_ALL_DAY;
+        } else {
+            this.flags[row] &= ~FLAG_ALL_DAY;
+        }
+        this.indexInvalid = true;
+    }
+
+    /**
+     * Returns the id of the job of a row.
+     */
+    public long getJobId(int row) {
+        checkRow(row);
+        return this.jobIds[row];
+    }
+
+    /**
+     * Sets the id of the job of a row.
+     */
+    public void setJobId(int row, long jobId) {
+        checkRow(row);
+        this.jobIds[row] = jobId;
+    }
+
+    /**
+     * Adds views of the events that should be displayed for a period to a list, in the order of their rows.
+     *
+     * @param periodStart the start of the period
+     * @param periodEnd   the end of the period, exclusive
+     * @param result      the list which will receive the views
+     */
+    public void query(long periodStart, long periodEnd, List<? super StoredJob> result) {
+        collectHits(periodStart, periodEnd);
+        for (int i = 0; i < this.hitCount; i++) {
+            result.add(new StoredJob(this, this.hits[i]));
+        }
+    }
+
+    /**
+     * Moves a cursor to the events that should be displayed for a period, in the order of their rows.
+     * The cursor is positioned before the first event and the store allocates nothing unless the cursor
+     * needs more room than it had for its previous query.
+     *
+     * @param periodStart the start of the period
+     * @param periodEnd   the end of the period, exclusive
+     * @param cursor      the cursor which will visit the events
+     */
+    public void query(long periodStart, long periodEnd, Cursor cursor) {
+        collectHits(periodStart, periodEnd);
+        if (cursor.rows.length < this.hitCount) {
+            cursor.rows = new int[this.hitCount];
+        }
+        System.arraycopy(this.hits, 0, cursor.rows, 0, this.hitCount);
+        cursor.store = this;
+        cursor.count = this.hitCount;
+        cursor.position = -1;
+    }
+
+    private void collectHits(long periodStart, long periodEnd) {
+        ensureIndex();
+        this.hitCount = 0;
+        collect(0, this.sortedCount, periodStart, periodEnd);
+        Arrays.sort(this.hits, 0, this.hitCount);
+    }
+
+    /**
+     * Visits the implicit subtree of the sorted rows between low and high.
+     */
+    private void collect(int low, int high, long periodStart, long periodEnd) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.sortedMaxEnds[middle] <= periodStart) {
+                return;
+            }
+
+            collect(low, middle, periodStart, periodEnd);
+            if (this.sortedStarts[middle] >= periodEnd) {
+                return;
+            }
+
+            if (this.sortedEnds[middle] > periodStart) {
+                if (this.hitCount == this.hits.length) {
+                    this.hits = Arrays.copyOf(this.hits, this.hitCount * 2);
+                }
+                this.hits[this.hitCount++] = this.sortedRows[middle];
+            }
+
+            low = middle + 1;
+        }
+    }
+
+    private void ensureIndex() {
+        if (!this.indexInvalid) {
+            return;
+        }
+
+        int count = this.rowsCount - this.removedCount;
+        if (this.sortedRows.length < count) {
+            this.sortedRows = new int[count];
+            this.sortedStarts = new long[count];
+            this.sortedEnds = new long[count];
+            this.sortedMaxEnds = new long[count];
+        }
+
+        int sorted = 0;
+        for (int row = 0; row < this.rowsCount; row++) {
+            if (!isRemoved(row)) {
+                this.sortedRows[sorted++] = row;
+            }
+        }
+
+        sortByStart(this.sortedRows, new int[count], 0, count, this.starts);
+
+        for (int i = 0; i < count; i++) {
+            int row = this.sortedRows[i];
+            this.sortedStarts[i] = this.starts[row];
+            // An all day event is found only for the period which contains its start,
+            // which is the same as a timed event that ends right after it starts.
+            this.sortedEnds[i] = (this.flags[row] & FLAG_ALL_DAY) != 0 ? this.starts[row] + 1 : this.ends[row];
+        }
+
+        this.sortedCount = count;
+        buildMaxEnds(0, count);
+        this.indexInvalid = false;
+    }
+
+    private long buildMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+
+        int middle = (low + high) >>> 1;
+        long max = this.sortedEnds[middle];
+        long leftMax = buildMaxEnds(low, middle);
+        long rightMax = buildMaxEnds(middle + 1, high);
+        if (leftMax > max) {
+            max = leftMax;
+        }
+        if (rightMax > max) {
+            max = rightMax;
+        }
+
+        this.sortedMaxEnds[middle] = max;
+        return max;
+    }
+
+    private int poolTitle(String title) {
+        Integer titleId = this.titleIdsByTitle.get(title);
+        if (titleId != null) {
+            return titleId;
+        }
+
+        if (this.titlesCount == this.titles.length) {
+            this.titles = Arrays.copyOf(this.titles, Math.max(this.titlesCount * 2, INITIAL_CAPACITY));
+        }
+
+        int id = this.titlesCount++;
+        this.titles[id] = title;
+        this.titleIdsByTitle.put(title, id);
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.starts.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, Math.max(this.starts.length * 2, INITIAL_CAPACITY));
+        this.starts = Arrays.copyOf(this.starts, newCapacity);
+        this.ends = Arrays.copyOf(this.ends, newCapacity);
+        this.jobIds = Arrays.copyOf(this.jobIds, newCapacity);
+        this.colors = Arrays.copyOf(this.colors, newCapacity);
+        this.calendarIds = Arrays.copyOf(this.calendarIds, newCapacity);
+        this.titleIds = Arrays.copyOf(this.titleIds, newCapacity);
+        this.flags = Arrays.copyOf(this.flags, newCapacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= this.rowsCount) {
+            throw new IndexOutOfBoundsException("row should be between 0 and " + (this.rowsCount - 1) + ".");
+        }
+    }
+
+    /**
+     * Stable merge sort of rows by their start, so that rows with equal start keep their order.
+     */
+    private static void sortByStart(int[] rows, int[] buffer, int low, int high, long[] startsByRow) {
+        if (high - low < 2) {
+            return;
+        }
+
+        int middle = (low + high) >>> 1;
+        sortByStart(rows, buffer, low, middle, startsByRow);
+        sortByStart(rows, buffer, middle, high, startsByRow);
+        if (startsByRow[rows[middle - 1]] <= startsByRow[rows[middle]]) {
+            return;
+        }
+
+        System.arraycopy(rows, low, buffer, low, high - low);
+        int left = low;
+        int right = middle;
+        for (int i = low; i < high; i++) {
+            if (right >= high || (left < middle && startsByRow[buffer[left]] <= startsByRow[buffer[right]])) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Visits the events found by a query of an {@link EventStore} without creating an object per event.
+     * A cursor can be reused for any number of queries.
+     */
+    public static final class Cursor {
+
+        private EventStore store;
+        private int[] rows = new int[INITIAL_CAPACITY];
+        private int count;
+        private int position = -1;
+
+        /**
+         * Gets the number of events found by the last query.
+         *
+         * @return the number of events
+         */
+        public int getCount() {
+            return this.count;
+        }
+
+        /**
+         * Moves the cursor to the next event.
+         *
+         * @return <code>true</code> if the cursor is on an event, <code>false</code> if there are no more events
+         */
+        public boolean moveToNext() {
+            if (this.position < this.count) {
+                this.position++;
+            }
+            return this.position < this.count;
+        }
+
+        /**
+         * Moves the cursor to an event.
+         *
+         * @param position the position of the event among the events found by the last query
+         */
+        public void moveToPosition(int position) {
+            if (position < 0 || position >= this.count) {
+                throw new IndexOutOfBoundsException("position should be between 0 and " + (this.count - 1) + ".");
+            }
+            this.position = position;
+        }
+
+        /**
+         * Gets the row of the current event.
+         *
+         * @return the row of the event in the store
+         */
+        public int getRow() {
+            if (this.position < 0 || this.position >= this.count) {
+                throw new IllegalStateException("The cursor is not on an event.");
+            }
+            return this.rows[this.position];
+        }
+
+        public String getTitle() {
+            return this.store.getTitle(getRow());
+        }
+
+        public long getStartTime() {
+            return this.store.getStartTime(getRow());
+        }
+
+        public long getEndTime() {
+            return this.store.getEndTime(getRow());
+        }
+
+        public int getEventColor() {
+            return this.store.getEventColor(getRow());
+        }
+
+        public int getCalendarId() {
+            return this.store.getCalendarId(getRow());
+        }
+
+        public boolean isAllDay() {
+            return this.store.isAllDay(getRow());
+        }
+
+        public long getJobId() {
+            return this.store.getJobId(getRow());
+        }
+
+        /**
+         * Gets a view of the current event, for the code which needs an {@link Event} instance.
+         *
+         * @return a lightweight view of the event
+         */
+        public StoredJob getEvent() {
+            return new StoredJob(this.store, getRow());
+        }
+    }
+
+    /**
+     * A {@link DiaryJob} which holds no values of its own, but reads and writes the row of an event
+     * in an {@link EventStore}. Two views of the same row are equal.
+     */
+    public static final class StoredJob extends DiaryJob {
+
+        private final EventStore store;
+        private final int row;
+
+        StoredJob(EventStore store, int row) {
+            super(null, 0, 1, 0);
+            this.store = store;
+            this.row = row;
+        }
+
+        /**
+         * Gets the store which holds this event.
+         *
+         * @return the store of the event
+         */
+        public EventStore getStore() {
+            return this.store;
+        }
+
+        /**
+         * Gets the row of this event in its store.
+         *
+         * @return the row of the event
+         */
+        public int getRow() {
+            return this.row;
+        }
+
+        @Override
+        public int getCalendarId() {
+            return this.store.getCalendarId(this.row);
+        }
+
+        @Override
+        public void setCalendarId(int calendarId) {
+            this.store.setCalendarId(this.row, calendarId);
+        }
+
+        @Override
+        public int getEventColor() {
+            return this.store.getEventColor(this.row);
+        }
+
+        @Override
+        public void setEventColor(int eventColor) {
+            this.store.setEventColor(this.row, eventColor);
+        }
+
+        @Override
+        public String getTitle() {
+            return this.store.getTitle(this.row);
+        }
+
+        @Override
+        public void setTitle(String title) {
+            this.store.setTitle(this.row, title);
+        }
+
+        @Override
+        public long getStartTime() {
+            return this.store.getStartTime(this.row);
+        }
+
+        @Override
+        public void setStartTime(long startTime) {
+            this.store.setTimes(this.row, startTime, this.store.getEndTime(this.row));
+        }
+
+        @Override
+        public long getEndTime() {
+            return this.store.getEndTime(this.row);
+        }
+
+        @Override
+        public void setEndTime(long endTime) {
+            this.store.setTimes(this.row, this.store.getStartTime(this.row), endTime);
+        }
+
+        @Override
+        public boolean isAllDay() {
+            return this.store.isAllDay(this.row);
+        }
+
+        @Override
+        public void setAllDay(boolean allDay) {
+            this.store.setAllDay(this.row, allDay);
+        }
+
+        @Override
+        public long getId() {
+            return this.store.getJobId(this.row);
+        }
+
+        @Override
+        public void setId(long id) {
+            this.store.setJobId(this.row, id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StoredJob)) {
+                return false;
+            }
+
+            StoredJob other = (StoredJob) o;
+            return this.store == other.store && this.row == other.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(this.store) + this.row;
+        }
+    }
+}
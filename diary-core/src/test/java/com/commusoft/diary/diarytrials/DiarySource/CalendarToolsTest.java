@@ -0,0 +1,77 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the results of {@link CalendarTools} against the {@link Calendar} arithmetic which it replaced.
+ */
+public class CalendarToolsTest {
+
+    @Test
+    public void datesMatchCalendar() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            for (String zone : new String[]{"Europe/London", "America/Sao_Paulo", "Asia/Beirut"}) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zone));
+                for (Locale locale : new Locale[]{Locale.US, Locale.UK}) {
+                    CalendarTools.setLocale(locale);
+                    assertDatesMatchCalendar(zone + " " + locale, Calendar.getInstance(locale));
+                }
+            }
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+            CalendarTools.setLocale(Locale.getDefault());
+        }
+    }
+
+    private static void assertDatesMatchCalendar(String message, Calendar calendar) {
+        EpochDayCalendar engine = CalendarTools.getDateEngine();
+        long firstDay = EpochDayCalendar.toEpochDay(1990, Calendar.JANUARY, 1);
+        long lastDay = EpochDayCalendar.toEpochDay(2030, Calendar.DECEMBER, 31);
+        for (long day = firstDay; day <= lastDay; day += 3) {
+            long date = engine.getDayStart(day) + 11 * 60 * 60 * 1000;
+            calendar.setTimeInMillis(date);
+            int year = calendar.get(Calendar.YEAR);
+            int month = calendar.get(Calendar.MONTH);
+            int dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
+            int daysFromWeekStart = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+            long dateStart = getDateStart(calendar, year, month, dayOfMonth);
+
+            assertEquals(message, dateStart, CalendarTools.getDateStart(date));
+            assertEquals(message, getDateStart(calendar, year, month, 1), CalendarTools.getFirstDateInMonth(date));
+            assertEquals(message, getDateStart(calendar, year, month, calendar.getActualMaximum(Calendar.DAY_OF_MONTH)),
+                    CalendarTools.getLastDateInMonth(date));
+            assertEquals(message, getDateStart(calendar, year, Calendar.JANUARY, 1), CalendarTools.getFirstDateInYear(date));
+            assertEquals(message, getDateStart(calendar, year, Calendar.DECEMBER, 1), CalendarTools.getLastMonthInYear(date));
+            assertEquals(message, getDateStart(calendar, year, month, dayOfMonth - daysFromWeekStart),
+                    CalendarTools.getFirstDateOfWeekWith(date));
+            assertEquals(message, getDateStart(calendar, year, month, dayOfMonth + 7),
+                    CalendarTools.calculateNewValue(true, dateStart, CalendarDisplayMode.Week));
+
+            for (int months = -1; months <= 1; months += 2) {
+                calendar.clear();
+                calendar.set(year, month, dayOfMonth);
+                calendar.add(Calendar.MONTH, months);
+                long expected = getDateStart(calendar, calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+                        calendar.get(Calendar.DAY_OF_MONTH));
+                assertEquals(message, expected, CalendarTools.calculateNewValue(months > 0, dateStart, CalendarDisplayMode.Month));
+            }
+        }
+    }
+
+    /**
+     * Gets the start of a date from a calendar whose fields are all reset, so that a normalized
+     * hour from a previous calculation cannot move the result.
+     */
+    private static long getDateStart(Calendar calendar, int year, int month, int dayOfMonth) {
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,109 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks {@link DayCellIndex} against a {@link TreeMap} from each day to the list of its cells.
+ */
+public class DayCellIndexTest {
+
+    private static final int ROUNDS = 300;
+    private static final int OPERATIONS = 300;
+
+    @Test
+    public void addsAndClearsMatchTreeMap() {
+        Random random = new Random(13);
+        DayCellIndex<String> index = new DayCellIndex<String>();
+        for (int round = 0; round < ROUNDS; round++) {
+            TreeMap<Long, List<String>> reference = new TreeMap<Long, List<String>>();
+            // Some rounds span more days than the initial capacity, so that prepending grows the index.
+            long origin = random.nextInt(1000) - 500;
+            int span = random.nextBoolean() ? 40 : 600;
+            for (int i = 0; i < OPERATIONS; i++) {
+                long day = origin + random.nextInt(span) - span / 2;
+                // Several cells on the same days double the slots of each day.
+                int cells = random.nextInt(10) == 0 ? 1 + random.nextInt(6) : 1;
+                for (int cell = 0; cell < cells; cell++) {
+                    String value = day + ":" + i + ":" + cell;
+                    index.add(day, value);
+                    List<String> dayCells = reference.get(day);
+                    if (dayCells == null) {
+                        dayCells = new ArrayList<String>();
+                        reference.put(day, dayCells);
+                    }
+                    dayCells.add(value);
+                }
+
+                if (i % 25 == 0) {
+                    assertSameCells(reference, index);
+                }
+            }
+
+            assertSameCells(reference, index);
+            index.clear();
+            assertEquals(0, index.getDaysCount());
+            assertEquals(0, index.getCellsCount(origin));
+        }
+    }
+
+    @Test
+    public void prependingKeepsTheCellsOfLaterDays() {
+        DayCellIndex<String> index = new DayCellIndex<String>();
+        index.add(100, "a");
+        index.add(100, "b");
+        index.add(100, "c");
+        index.add(99, "d");
+        index.add(-200, "e");
+
+        assertEquals(-200, index.getFirstDay());
+        assertEquals(301, index.getDaysCount());
+        assertEquals(3, index.getCellsCount(100));
+        assertEquals("c", index.getCell(100, 2));
+        assertEquals("d", index.getCell(99, 0));
+        assertEquals(0, index.getCellsCount(0));
+    }
+
+    @Test
+    public void clearedIndexForgetsTheDaysOfItsCells() {
+        DayCellIndex<String> index = new DayCellIndex<String>();
+        index.add(10, "a");
+        index.add(12, "b");
+        index.clear();
+        index.add(11, "c");
+
+        assertEquals(11, index.getFirstDay());
+        assertEquals(1, index.getDaysCount());
+        assertEquals(0, index.getCellsCount(10));
+        assertEquals(0, index.getCellsCount(12));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void cellsBeyondTheCountAreRejected() {
+        DayCellIndex<String> index = new DayCellIndex<String>();
+        index.add(10, "a");
+        index.getCell(10, 1);
+    }
+
+    private static void assertSameCells(TreeMap<Long, List<String>> reference, DayCellIndex<String> index) {
+        assertEquals("first day", (long) reference.firstKey(), index.getFirstDay());
+        assertEquals("days count", reference.lastKey() - reference.firstKey() + 1, index.getDaysCount());
+        for (long day = index.getFirstDay() - 1; day <= index.getFirstDay() + index.getDaysCount(); day++) {
+            List<String> cells = reference.get(day);
+            assertEquals("cells of day " + day, cells == null ? 0 : cells.size(), index.getCellsCount(day));
+        }
+        for (Map.Entry<Long, List<String>> entry : reference.entrySet()) {
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                assertSame("cell " + i + " of day " + entry.getKey(), entry.getValue().get(i), index.getCell(entry.getKey(), i));
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link DayIntervalSet} against a {@link TreeSet} with one entry per day.
+ */
+public class DayIntervalSetTest {
+
+    private static final int ROUNDS = 500;
+    private static final int OPERATIONS = 60;
+
+    @Test
+    public void addAndRemoveRangesMatchTreeSet() {
+        Random random = new Random(3);
+        for (int round = 0; round < ROUNDS; round++) {
+            DayIntervalSet set = new DayIntervalSet();
+            TreeSet<Long> reference = new TreeSet<Long>();
+            for (int i = 0; i < OPERATIONS; i++) {
+                long firstDay = random.nextInt(200) - 50;
+                long lastDay = firstDay + random.nextInt(random.nextBoolean() ? 3 : 30);
+                boolean add = random.nextInt(3) > 0;
+
+                boolean changed = add ? set.addRange(firstDay, lastDay) : set.removeRange(firstDay, lastDay);
+                boolean referenceChanged = false;
+                for (long day = firstDay; day <= lastDay; day++) {
+                    referenceChanged |= add ? reference.add(day) : reference.remove(day);
+                }
+
+                assertEquals("changed", referenceChanged, changed);
+                assertSameDays(reference, set);
+            }
+        }
+    }
+
+    @Test
+    public void singleDaysMatchTreeSet() {
+        Random random = new Random(5);
+        DayIntervalSet set = new DayIntervalSet();
+        TreeSet<Long> reference = new TreeSet<Long>();
+        for (int i = 0; i < 5000; i++) {
+            long day = random.nextInt(300);
+            if (random.nextBoolean()) {
+                assertEquals(reference.add(day), set.add(day));
+            } else {
+                assertEquals(reference.remove(day), set.remove(day));
+            }
+        }
+        assertSameDays(reference, set);
+    }
+
+    @Test
+    public void differenceMatchesTreeSet() {
+        Random random = new Random(7);
+        for (int round = 0; round < ROUNDS; round++) {
+            DayIntervalSet minuend = randomSet(random);
+            DayIntervalSet subtrahend = randomSet(random);
+
+            DayIntervalSet difference = new DayIntervalSet();
+            difference.setDifference(minuend, subtrahend);
+
+            TreeSet<Long> reference = toTreeSet(minuend);
+            reference.removeAll(toTreeSet(subtrahend));
+            assertSameDays(reference, difference);
+        }
+    }
+
+    @Test
+    public void setCopiesAnotherSet() {
+        DayIntervalSet set = randomSet(new Random(11));
+        DayIntervalSet copy = new DayIntervalSet();
+        copy.add(1000);
+        copy.set(set);
+
+        assertSameDays(toTreeSet(set), copy);
+    }
+
+    @Test
+    public void viewsFollowTheSet() {
+        EpochDayCalendar dateEngine = new EpochDayCalendar(TimeZone.getTimeZone("Europe/London"), Calendar.MONDAY, 4);
+        DayIntervalSet set = new DayIntervalSet();
+        List<Long> dates = set.asDateList(dateEngine);
+        List<DateRange> ranges = set.asRangeList(dateEngine);
+
+        set.addRange(10, 12);
+        set.add(20);
+
+        assertEquals(4, dates.size());
+        assertEquals(dateEngine.getDayStart(11), (long) dates.get(1));
+        assertEquals(dateEngine.getDayStart(20), (long) dates.get(3));
+        assertEquals(2, ranges.size());
+        assertEquals(dateEngine.getDayStart(10), ranges.get(0).getStart());
+        assertEquals(dateEngine.getDayStart(12), ranges.get(0).getEnd());
+    }
+
+    @Test
+    public void longRangeTakesOneInterval() {
+        DayIntervalSet set = new DayIntervalSet();
+        set.addRange(0, 10 * 365);
+
+        assertEquals(1, set.getIntervalsCount());
+        assertEquals(10 * 365 + 1, set.getDaysCount());
+        assertTrue(set.contains(1234));
+        assertFalse(set.contains(10 * 365 + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reversedRangeIsRejected() {
+        new DayIntervalSet().addRange(5, 4);
+    }
+
+    private static DayIntervalSet randomSet(Random random) {
+        DayIntervalSet set = new DayIntervalSet();
+        for (int i = 0; i < 20; i++) {
+            long firstDay = random.nextInt(200) - 50;
+            set.addRange(firstDay, firstDay + random.nextInt(10));
+        }
+        return set;
+    }
+
+    private static TreeSet<Long> toTreeSet(DayIntervalSet set) {
+        TreeSet<Long> days = new TreeSet<Long>();
+        for (long i = 0; i < set.getDaysCount(); i++) {
+            days.add(set.getDay(i));
+        }
+        return days;
+    }
+
+    private static void assertSameDays(TreeSet<Long> reference, DayIntervalSet set) {
+        assertEquals("days count", reference.size(), set.getDaysCount());
+        assertEquals(reference.isEmpty(), set.isEmpty());
+
+        long index = 0;
+        for (long day : reference) {
+            assertEquals("day " + index, day, set.getDay(index++));
+        }
+
+        for (long day = -60; day < 260; day++) {
+            assertEquals("contains " + day, reference.contains(day), set.contains(day));
+        }
+
+        for (int i = 0; i < set.getIntervalsCount(); i++) {
+            assertTrue(set.getIntervalFirstDay(i) <= set.getIntervalLastDay(i));
+            if (i > 0) {
+                assertTrue("intervals should be disjoint and not adjacent",
+                        set.getIntervalFirstDay(i) > set.getIntervalLastDay(i - 1) + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link DecorationLayer} against a {@link HashMap} from the key of each segment to its points.
+ */
+public class DecorationLayerTest {
+
+    private static final int ROUNDS = 300;
+    private static final int OPERATIONS = 400;
+
+    @Test
+    public void togglesAndClearsMatchHashMap() {
+        Random random = new Random(11);
+        for (int round = 0; round < ROUNDS; round++) {
+            DecorationLayer layer = new DecorationLayer();
+            Map<Long, float[]> reference = new HashMap<Long, float[]>();
+            // Few distinct coordinates, so that most toggles remove a segment which is held.
+            int coordinates = 2 + random.nextInt(round % 3 == 0 ? 40 : 8);
+            for (int i = 0; i < OPERATIONS; i++) {
+                if (random.nextInt(150) == 0) {
+                    layer.clear();
+                    reference.clear();
+                    assertSameSegments(reference, layer);
+                    continue;
+                }
+
+                boolean vertical = random.nextBoolean();
+                int position = (random.nextInt(coordinates) - coordinates / 2) * 10;
+                int start = random.nextInt(coordinates) * 10;
+                int end = start + 10;
+                long key = DecorationLayer.packSegment(vertical, position, start, end);
+                if (vertical) {
+                    layer.toggleVerticalSegment(position, start, end);
+                    toggle(reference, key, new float[]{position, start, position, end});
+                } else {
+                    layer.toggleHorizontalSegment(position, start, end);
+                    toggle(reference, key, new float[]{start, position, end, position});
+                }
+                assertSameSegments(reference, layer);
+            }
+        }
+    }
+
+    @Test
+    public void cellsOfTheSameLayerShareTheirBorders() {
+        DecorationLayer layer = new DecorationLayer();
+        toggleCell(layer, 0, 0, 10, 10);
+        toggleCell(layer, 10, 0, 20, 10);
+        assertEquals(6, layer.getSegmentsCount());
+
+        toggleCell(layer, 0, 0, 10, 10);
+        assertEquals(4, layer.getSegmentsCount());
+
+        toggleCell(layer, 10, 0, 20, 10);
+        assertEquals(0, layer.getSegmentsCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void coordinatesOutOfRangeAreRejected() {
+        new DecorationLayer().toggleHorizontalSegment(1 << 20, 0, 10);
+    }
+
+    private static void toggleCell(DecorationLayer layer, int left, int top, int right, int bottom) {
+        layer.toggleVerticalSegment(left, top, bottom);
+        layer.toggleHorizontalSegment(top, left, right);
+        layer.toggleVerticalSegment(right, top, bottom);
+        layer.toggleHorizontalSegment(bottom, left, right);
+    }
+
+    private static void toggle(Map<Long, float[]> reference, long key, float[] points) {
+        if (reference.remove(key) == null) {
+            reference.put(key, points);
+        }
+    }
+
+    private static void assertSameSegments(Map<Long, float[]> reference, DecorationLayer layer) {
+        assertEquals("segments count", reference.size(), layer.getSegmentsCount());
+        float[] points = layer.getPoints();
+        Set<Long> keys = new HashSet<Long>();
+        for (int i = 0; i < layer.getSegmentsCount(); i++) {
+            long key = layer.getSegmentKey(i);
+            assertTrue("segment " + i + " should not be held", reference.containsKey(key));
+            assertTrue("segment " + i + " is held twice", keys.add(key));
+            int offset = i * DecorationLayer.POINTS_PER_SEGMENT;
+            assertArrayEquals("points of segment " + i, reference.get(key),
+                    Arrays.copyOfRange(points, offset, offset + DecorationLayer.POINTS_PER_SEGMENT), 0f);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link EpochDayCalendar} against a {@link GregorianCalendar} with the same time zone and week
+ * settings. The zones include offset transitions at midnight, half-hour offsets and zones which moved
+ * across the date line.
+ */
+public class EpochDayCalendarTest {
+
+    private static final String[] ZONES = {
+            "UTC", "Europe/London", "Europe/Sofia", "America/New_York", "America/Sao_Paulo", "America/Havana",
+            "America/Santiago", "America/St_Johns", "America/Asuncion", "Asia/Beirut", "Asia/Gaza", "Asia/Tehran",
+            "Asia/Kolkata", "Africa/Cairo", "Australia/Lord_Howe", "Pacific/Apia", "Pacific/Kiritimati"
+    };
+
+    private static final long FIRST_DAY = EpochDayCalendar.toEpochDay(1950, Calendar.JANUARY, 1);
+    private static final long LAST_DAY = EpochDayCalendar.toEpochDay(2059, Calendar.DECEMBER, 31);
+
+    /**
+     * The day which was skipped when Samoa moved to the other side of the date line.
+     */
+    private static final long APIA_SKIPPED_DAY = EpochDayCalendar.toEpochDay(2011, Calendar.DECEMBER, 30);
+
+    /**
+     * The day which was skipped when the Line Islands moved to the other side of the date line.
+     */
+    private static final long KIRITIMATI_SKIPPED_DAY = EpochDayCalendar.toEpochDay(1994, Calendar.DECEMBER, 31);
+
+    @Test
+    public void daysMatchCalendar() {
+        Random random = new Random(1);
+        for (String zone : ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            GregorianCalendar calendar = new GregorianCalendar(timeZone);
+            EpochDayCalendar engine = EpochDayCalendar.from(calendar);
+            long skippedDay = getSkippedDay(zone);
+
+            for (long day = FIRST_DAY; day <= LAST_DAY; day++) {
+                if (day == skippedDay) {
+                    continue;
+                }
+
+                int year = EpochDayCalendar.getYear(day);
+                int month = EpochDayCalendar.getMonth(day);
+                int dayOfMonth = EpochDayCalendar.getDayOfMonth(day);
+                calendar.clear();
+                calendar.set(year, month, dayOfMonth);
+                long dayStart = calendar.getTimeInMillis();
+
+                String message = zone + " " + year + "-" + (month + 1) + "-" + dayOfMonth;
+                assertEquals(message, dayStart, engine.getDayStart(day));
+                assertEquals(message, day, engine.toEpochDay(dayStart));
+                assertEquals(message, calendar.get(Calendar.DAY_OF_WEEK), EpochDayCalendar.getDayOfWeek(day));
+                assertEquals(message, calendar.getActualMaximum(Calendar.DAY_OF_MONTH), EpochDayCalendar.getDaysInMonth(year, month));
+
+                long time = dayStart + (long) (random.nextDouble() * (engine.getDayStart(day + 1) - dayStart));
+                assertSameDay(zone, calendar, engine, time);
+            }
+        }
+    }
+
+    @Test
+    public void dstBoundariesMatchCalendar() {
+        for (String zone : ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            GregorianCalendar calendar = new GregorianCalendar(timeZone);
+            EpochDayCalendar engine = EpochDayCalendar.from(calendar);
+
+            // Every hour of the span, so that every transition is checked from both sides.
+            long end = engine.getDayStart(LAST_DAY + 1);
+            int previousOffset = timeZone.getOffset(engine.getDayStart(FIRST_DAY));
+            for (long time = engine.getDayStart(FIRST_DAY); time < end; time += 60 * 60 * 1000) {
+                int offset = timeZone.getOffset(time);
+                assertEquals(zone + " " + time, offset, engine.getOffset(time));
+                if (offset != previousOffset) {
+                    assertSameDay(zone, calendar, engine, time - 1);
+                    assertSameDay(zone, calendar, engine, time);
+                    previousOffset = offset;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void weeksMatchCalendar() {
+        for (String zone : new String[]{"UTC", "America/Sao_Paulo", "Asia/Beirut"}) {
+            for (int firstDayOfWeek = Calendar.SUNDAY; firstDayOfWeek <= Calendar.SATURDAY; firstDayOfWeek++) {
+                for (int minimalDays = 1; minimalDays <= 7; minimalDays += 3) {
+                    GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone(zone));
+                    calendar.setFirstDayOfWeek(firstDayOfWeek);
+                    calendar.setMinimalDaysInFirstWeek(minimalDays);
+                    EpochDayCalendar engine = EpochDayCalendar.from(calendar);
+
+                    for (long day = FIRST_DAY; day <= LAST_DAY; day += 5) {
+                        calendar.setTimeInMillis(engine.getDayStart(day));
+                        String message = zone + " " + firstDayOfWeek + "/" + minimalDays + " day " + day;
+                        assertEquals(message, calendar.get(Calendar.WEEK_OF_YEAR), engine.getWeekOfYear(day));
+
+                        int dayOfWeek = Calendar.SUNDAY + (int) (day % 7);
+                        calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
+                        assertEquals(message, engine.toEpochDay(calendar.getTimeInMillis()), engine.getDayOfWeekInWeek(day, dayOfWeek));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void addMonthsMatchesCalendar() {
+        Random random = new Random(2);
+        GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        EpochDayCalendar engine = EpochDayCalendar.from(calendar);
+        for (long day = FIRST_DAY; day <= LAST_DAY; day++) {
+            int months = random.nextInt(41) - 20;
+            calendar.setTimeInMillis(engine.getDayStart(day));
+            calendar.add(Calendar.MONTH, months);
+
+            assertEquals("day " + day + " + " + months, engine.toEpochDay(calendar.getTimeInMillis()), EpochDayCalendar.addMonths(day, months));
+        }
+    }
+
+    /**
+     * A date which a zone skipped has no start. The engine starts it at the start of the next day and
+     * {@link Calendar} moves it to the next day, so these are the only days on which the results of the
+     * engine differ from the ones of {@link Calendar}.
+     */
+    @Test
+    public void skippedDaysStartWithTheNextDay() {
+        assertSkippedDay("Pacific/Apia", APIA_SKIPPED_DAY);
+        assertSkippedDay("Pacific/Kiritimati", KIRITIMATI_SKIPPED_DAY);
+    }
+
+    private static void assertSkippedDay(String zone, long skippedDay) {
+        GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone(zone));
+        EpochDayCalendar engine = EpochDayCalendar.from(calendar);
+        calendar.clear();
+        calendar.set(EpochDayCalendar.getYear(skippedDay), EpochDayCalendar.getMonth(skippedDay),
+                EpochDayCalendar.getDayOfMonth(skippedDay));
+
+        assertEquals(calendar.getTimeInMillis(), engine.getDayStart(skippedDay));
+        assertEquals(engine.getDayStart(skippedDay + 1), engine.getDayStart(skippedDay));
+        assertEquals(skippedDay + 1, engine.toEpochDay(engine.getDayStart(skippedDay)));
+        assertEquals(EpochDayCalendar.getDayOfMonth(skippedDay + 1), calendar.get(Calendar.DAY_OF_MONTH));
+        assertEquals(skippedDay - 1, engine.toEpochDay(engine.getDayStart(skippedDay) - 1));
+    }
+
+    private static long getSkippedDay(String zone) {
+        if (zone.equals("Pacific/Apia")) {
+            return APIA_SKIPPED_DAY;
+        }
+        if (zone.equals("Pacific/Kiritimati")) {
+            return KIRITIMATI_SKIPPED_DAY;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static void assertSameDay(String zone, Calendar calendar, EpochDayCalendar engine, long time) {
+        calendar.setTimeInMillis(time);
+        long day = EpochDayCalendar.toEpochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+                calendar.get(Calendar.DAY_OF_MONTH));
+        assertEquals(zone + " " + time, day, engine.toEpochDay(time));
+
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        assertEquals(zone + " " + time, calendar.getTimeInMillis(), engine.getDateStart(time));
+    }
+}
@@ -0,0 +1,102 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link EventOverlapLayout} places the events of a day in the same columns as the
+ * {@link LegacyOverlapLayout} which it replaced.
+ */
+public class EventOverlapLayoutTest {
+
+    @Test
+    public void separateEventsTakeTheWholeWidth() {
+        EventOverlapLayout layout = new EventOverlapLayout();
+        layout.layout(new long[]{0, 60, 120}, new long[]{60, 120, 180}, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, layout.getColumn(i));
+            assertEquals(1, layout.getColumnsCount(i));
+        }
+    }
+
+    @Test
+    public void overlappingEventsShareTheWidth() {
+        EventOverlapLayout layout = new EventOverlapLayout();
+        layout.layout(new long[]{0, 10, 20, 100}, new long[]{60, 70, 30, 110}, 4);
+
+        assertEquals(0, layout.getColumn(0));
+        assertEquals(1, layout.getColumn(1));
+        assertEquals(2, layout.getColumn(2));
+        assertEquals(3, layout.getColumnsCount(0));
+        assertEquals(3, layout.getColumnsCount(2));
+        assertEquals(1, layout.getColumnsCount(3));
+    }
+
+    @Test
+    public void matchesLegacyLayout() {
+        Random random = new Random(42);
+        EventOverlapLayout layout = new EventOverlapLayout();
+        LegacyOverlapLayout legacyLayout = new LegacyOverlapLayout();
+        for (int round = 0; round < 2000; round++) {
+            int count = random.nextInt(round % 10 == 0 ? 200 : 20);
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            randomDay(random, starts, ends, count);
+
+            layout.layout(starts, ends, count);
+            legacyLayout.layout(starts, ends, count);
+
+            assertEquals(count, layout.getCount());
+            for (int i = 0; i < count; i++) {
+                assertEquals("column of event " + i, legacyLayout.getColumn(i), layout.getColumn(i));
+                assertEquals("columns of event " + i, legacyLayout.getColumnsCount(i), layout.getColumnsCount(i));
+            }
+            assertDrawingOrderIsPermutation(layout, count);
+        }
+    }
+
+    @Test
+    public void reusedLayoutForgetsPreviousEvents() {
+        EventOverlapLayout layout = new EventOverlapLayout();
+        layout.layout(new long[]{0, 0, 0}, new long[]{10, 10, 10}, 3);
+        layout.layout(new long[]{0}, new long[]{10}, 1);
+
+        assertEquals(1, layout.getCount());
+        assertEquals(0, layout.getColumn(0));
+        assertEquals(1, layout.getColumnsCount(0));
+    }
+
+    /**
+     * Generates the events of a day sorted by their start and then by their end, as DailyView sorted them
+     * for the legacy layout. The starts are rounded to quarters of an hour so that many events start together.
+     */
+    private static void randomDay(Random random, long[] starts, long[] ends, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = 15 * random.nextInt(96);
+            long duration = 5 + random.nextInt(random.nextInt(10) == 0 ? 600 : 120);
+            keys[i] = start << 16 | duration;
+        }
+        Arrays.sort(keys);
+
+        for (int i = 0; i < count; i++) {
+            starts[i] = keys[i] >>> 16;
+            ends[i] = starts[i] + (keys[i] & 0xFFFF);
+        }
+    }
+
+    private static void assertDrawingOrderIsPermutation(EventOverlapLayout layout, int count) {
+        boolean[] seen = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int event = layout.getEventAt(i);
+            assertTrue("event " + event + " is drawn twice", !seen[event]);
+            seen[event] = true;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameProfilerTest {
+
+    @Test
+    public void bucketsCoverConsecutiveValues() {
+        for (long value = 1; value < 1 << 20; value++) {
+            int bucket = FrameProfiler.Histogram.bucketOf(value);
+            assertTrue("value " + value, value <= FrameProfiler.Histogram.highestValueOf(bucket));
+            assertTrue("value " + value, value > FrameProfiler.Histogram.highestValueOf(bucket - 1));
+        }
+        assertEquals(0, FrameProfiler.Histogram.bucketOf(0));
+        FrameProfiler.Histogram.bucketOf(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void percentilesAreWithinAnEighthOfExactValues() {
+        Random random = new Random(1);
+        FrameProfiler.Histogram histogram = new FrameProfiler.Histogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (Math.abs(random.nextGaussian()) * 1e6);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 95, 99, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long value = histogram.getPercentile(percentile);
+            assertTrue("p" + percentile + " " + value + " below " + exact, value >= exact);
+            assertTrue("p" + percentile + " " + value + " above " + exact, value <= exact + exact / 8 + 1);
+        }
+        assertEquals(values[values.length - 1], histogram.getPercentile(100));
+    }
+
+    @Test
+    public void phasesAreSummedPerFrameAndReported() {
+        FrameProfiler profiler = new FrameProfiler(new String[]{"a", "b"}, new String[]{"c"});
+        final int[] reports = {0};
+        profiler.setReportInterval(10);
+        profiler.setListener(new FrameProfiler.Listener() {
+            @Override
+            public void onFrameStatistics(FrameProfiler.Snapshot snapshot) {
+                reports[0]++;
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            long frameStart = profiler.beginFrame();
+            long phaseStart = profiler.endPhase(0, profiler.now());
+            phaseStart = profiler.endPhase(0, phaseStart);
+            if (i % 2 == 0) {
+                profiler.endPhase(1, phaseStart);
+            }
+            profiler.add(0, 3);
+            profiler.endFrame(frameStart);
+        }
+
+        FrameProfiler.Snapshot snapshot = profiler.getSnapshot();
+        assertEquals(10, reports[0]);
+        assertEquals(100, snapshot.getFramesCount());
+        assertEquals(100, snapshot.getPhaseSamplesCount(0));
+        assertEquals(50, snapshot.getPhaseSamplesCount(1));
+        assertEquals(300, snapshot.getCounterTotal(0));
+        assertEquals(3, snapshot.getCounterLastFrameValue(0));
+
+        profiler.reset();
+        assertEquals(0, profiler.getSnapshot().getFramesCount());
+        assertEquals(0, profiler.getSnapshot().getCounterTotal(0));
+    }
+
+    @Test
+    public void nestedPhasesAreNotCountedInTheirParent() {
+        FrameProfiler profiler = new FrameProfiler(new String[]{"parent", "nested"}, new String[0]);
+        for (int i = 0; i < 10; i++) {
+            long frameStart = profiler.beginFrame();
+            for (int j = 0; j < 5; j++) {
+                long nestedStart = profiler.now();
+                while (profiler.now() - nestedStart < 200000) {
+                    // Busy wait, so that the nested phase takes a known time.
+                }
+                profiler.endNestedPhase(1, nestedStart);
+            }
+            profiler.endPhase(0, frameStart);
+            profiler.endFrame(frameStart);
+        }
+
+        FrameProfiler.Snapshot snapshot = profiler.getSnapshot();
+        assertEquals(10, snapshot.getPhaseSamplesCount(1));
+        assertTrue(snapshot.getPhaseTimeMean(1) >= 5 * 200000);
+        assertTrue("parent " + snapshot.getPhaseTimeMean(0), snapshot.getPhaseTimeMean(0) < snapshot.getPhaseTimeMean(1) / 2);
+    }
+}
@@ -0,0 +1,200 @@
+package com.commusoft.diary.diarytrials.DiarySource;
+
+import com.commusoft.diary.diarytrials.DiarySource.events.DiaryJob;
+import com.commusoft.diary.diarytrials.DiarySource.events.EventStore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link ResidentMonthEvents} collects each event displayed on a day once, with months
+ * which hold the events of an {@link EventStore} that overlap them, the way a day view loads them.
+ */
+public class ResidentMonthEventsTest {
+
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("Europe/London");
+    private static final long HOUR_IN_MILLIS = 60 * 60 * 1000;
+    private static final int ROUNDS = 200;
+    private static final int PREFETCH_RADIUS = 1;
+
+    @Test
+    public void eventWhichStartsBeforeTheResidentMonthsIsCollectedOnce() {
+        EventStore store = new EventStore();
+        int job = store.add("Install", getTime(2015, Calendar.JANUARY, 20, 9), getTime(2015, Calendar.MARCH, 5, 17), 0, 0, false, 1);
+        int visit = store.add("Visit", getTime(2015, Calendar.MARCH, 3, 10), getTime(2015, Calendar.MARCH, 3, 11), 0, 0, false, 2);
+
+        // The months around March with a prefetch radius of one.
+        ResidentMonthEvents months = new ResidentMonthEvents();
+        for (int month = Calendar.FEBRUARY; month <= Calendar.APRIL; month++) {
+            months.add(createMonth(store, getMonthKey(2015, month)));
+        }
+
+        assertRows(months, getDay(2015, Calendar.MARCH, 3), job, visit);
+        assertRows(months, getDay(2015, Calendar.MARCH, 5), job);
+        assertRows(months, getDay(2015, Calendar.FEBRUARY, 10), job);
+        assertRows(months, getDay(2015, Calendar.MARCH, 6));
+    }
+
+    @Test
+    public void eventIsCollectedFromTheEarliestResidentMonth() {
+        EventStore store = new EventStore();
+        int job = store.add("Install", getTime(2015, Calendar.JANUARY, 20, 9), getTime(2015, Calendar.MARCH, 5, 17), 0, 0, false, 1);
+        long day = getDay(2015, Calendar.MARCH, 3);
+
+        ResidentMonthEvents months = new ResidentMonthEvents();
+        MonthEvents march = createMonth(store, getMonthKey(2015, Calendar.MARCH));
+        months.add(march);
+        assertRows(months, day, job);
+
+        MonthEvents january = createMonth(store, getMonthKey(2015, Calendar.JANUARY));
+        months.add(january);
+        assertRows(months, day, job);
+
+        months.add(createMonth(store, getMonthKey(2015, Calendar.FEBRUARY)));
+        months.remove(january);
+        assertRows(months, day, job);
+
+        months.remove(march);
+        assertRows(months, day, job);
+    }
+
+    @Test
+    public void jobLongerThanThePrefetchWindowIsCollectedOnceOnEachOfItsDays() {
+        // A month load returns the events which overlap the month, like a listener of the day view.
+        final DiaryJob job = new DiaryJob("Install", getTime(2015, Calendar.JANUARY, 10, 9), getTime(2015, Calendar.JULY, 20, 17), 1);
+        final ResidentMonthEvents months = new ResidentMonthEvents();
+        MonthSegmentCache<MonthEvents> cache = new MonthSegmentCache<MonthEvents>(2 * PREFETCH_RADIUS + 2) {
+            @Override
+            protected void onEvicted(int monthKey, MonthEvents segment) {
+                months.remove(segment);
+            }
+        };
+
+        long jobFirstDay = MonthEvents.getDayKey(job.getStartTime(), TIME_ZONE);
+        long jobLastDay = MonthEvents.getDayKey(job.getEndTime(), TIME_ZONE);
+        for (int viewedMonthKey = getMonthKey(2015, Calendar.JANUARY); viewedMonthKey <= getMonthKey(2015, Calendar.AUGUST); viewedMonthKey++) {
+            for (int monthKey = viewedMonthKey - PREFETCH_RADIUS; monthKey <= viewedMonthKey + PREFETCH_RADIUS; monthKey++) {
+                if (cache.get(monthKey) == null) {
+                    long monthStart = MonthEvents.getMonthStart(monthKey, TIME_ZONE);
+                    long monthEnd = MonthEvents.getMonthStart(monthKey + 1, TIME_ZONE);
+                    List<DiaryJob> events = new ArrayList<DiaryJob>();
+                    if (job.getStartTime() < monthEnd && job.getEndTime() > monthStart) {
+                        events.add(job);
+                    }
+                    MonthEvents month = MonthEvents.create(monthKey, events, TIME_ZONE);
+                    months.add(month);
+                    cache.put(monthKey, month);
+                }
+            }
+
+            long firstDay = MonthEvents.getDayKey(MonthEvents.getMonthStart(viewedMonthKey, TIME_ZONE), TIME_ZONE);
+            long lastDay = MonthEvents.getDayKey(MonthEvents.getMonthStart(viewedMonthKey + 1, TIME_ZONE), TIME_ZONE);
+            for (long day = firstDay; day < lastDay; day++) {
+                List<DiaryJob> events = new ArrayList<DiaryJob>();
+                months.collectEvents(day, events);
+                assertEquals("events of day " + day, day >= jobFirstDay && day <= jobLastDay ? 1 : 0, events.size());
+            }
+        }
+    }
+
+    @Test
+    public void eventsMatchTheStoreForAnyResidentMonths() {
+        Random random = new Random(7);
+        int firstMonthKey = getMonthKey(2015, Calendar.JANUARY);
+        for (int round = 0; round < ROUNDS; round++) {
+            EventStore store = new EventStore();
+            long periodStart = MonthEvents.getMonthStart(firstMonthKey, TIME_ZONE);
+            for (int i = 0; i < 40; i++) {
+                long start = periodStart + random.nextInt(365 * 24) * HOUR_IN_MILLIS;
+                long length = random.nextBoolean() ? 1 + random.nextInt(12) : 1 + random.nextInt(150 * 24);
+                store.add("Job", start, start + length * HOUR_IN_MILLIS, 0, 0, random.nextInt(8) == 0, i);
+            }
+
+            ResidentMonthEvents months = new ResidentMonthEvents();
+            List<MonthEvents> residentMonths = new ArrayList<MonthEvents>();
+            for (int monthKey = firstMonthKey; monthKey < firstMonthKey + 12; monthKey++) {
+                if (random.nextInt(3) == 0) {
+                    MonthEvents month = createMonth(store, monthKey);
+                    months.add(month);
+                    residentMonths.add(month);
+                }
+            }
+
+            long firstDay = MonthEvents.getDayKey(periodStart, TIME_ZONE);
+            for (long day = firstDay; day < firstDay + 365 + 150; day++) {
+                assertEquals("events of day " + day, getExpectedRows(residentMonths, day), getRows(months, day));
+            }
+        }
+    }
+
+    /**
+     * Finds the rows of the events which at least one of the months displays on a day, each of them once.
+     */
+    private static Map<Integer, Integer> getExpectedRows(List<MonthEvents> months, long day) {
+        Map<Integer, Integer> rows = new HashMap<Integer, Integer>();
+        for (MonthEvents month : months) {
+            for (int i = 0; i < month.events.length; i++) {
+                if (month.firstDays[i] <= day && month.lastDays[i] >= day) {
+                    rows.put(((EventStore.StoredJob) month.events[i]).getRow(), 1);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Counts how many times the events of each row are collected for a day.
+     */
+    private static Map<Integer, Integer> getRows(ResidentMonthEvents months, long day) {
+        List<DiaryJob> events = new ArrayList<DiaryJob>();
+        months.collectEvents(day, events);
+        Map<Integer, Integer> rows = new HashMap<Integer, Integer>();
+        for (DiaryJob event : events) {
+            int row = ((EventStore.StoredJob) event).getRow();
+            Integer count = rows.get(row);
+            rows.put(row, count == null ? 1 : count + 1);
+        }
+        return rows;
+    }
+
+    private static void assertRows(ResidentMonthEvents months, long day, int... expectedRows) {
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int row : expectedRows) {
+            expected.put(row, 1);
+        }
+        assertEquals("events of day " + day, expected, getRows(months, day));
+    }
+
+    /**
+     * Creates the events of a month from the events of a store which overlap it.
+     */
+    private static MonthEvents createMonth(EventStore store, int monthKey) {
+        List<DiaryJob> events = new ArrayList<DiaryJob>();
+        store.query(MonthEvents.getMonthStart(monthKey, TIME_ZONE), MonthEvents.getMonthStart(monthKey + 1, TIME_ZONE), events);
+        return MonthEvents.create(monthKey, events, TIME_ZONE);
+    }
+
+    private static int getMonthKey(int year, int month) {
+        return year * 12 + month;
+    }
+
+    private static long getDay(int year, int month, int dayOfMonth) {
+        return MonthEvents.getDayKey(getTime(year, month, dayOfMonth, 12), TIME_ZONE);
+    }
+
+    private static long getTime(int year, int month, int dayOfMonth, int hourOfDay) {
+        Calendar calendar = Calendar.getInstance(TIME_ZONE);
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth, hourOfDay, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,87 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventDayIndexTest {
+
+    private final EpochDayCalendar dateEngine = new EpochDayCalendar(TimeZone.getTimeZone("Europe/London"), Calendar.MONDAY, 4);
+
+    @Test
+    public void eventsForDateMatchScan() {
+        List<Event> events = TestEvents.generate(this.dateEngine, 3000, new Random(1));
+        EventDayIndex index = new EventDayIndex();
+        index.rebuild(events);
+
+        List<Event> result = new ArrayList<Event>();
+        for (long day = TestEvents.FIRST_DAY - 2; day < TestEvents.FIRST_DAY + TestEvents.DAYS_COUNT + 2; day++) {
+            // Any time of the date finds the events of the whole date.
+            long date = this.dateEngine.getDayStart(day) + 13 * 60 * 60 * 1000;
+            result.clear();
+            index.getEventsForDate(this.dateEngine, date, result);
+            assertEquals("day " + day, scanDay(events, day), result);
+        }
+    }
+
+    @Test
+    public void eventsForRangeMatchEventsForEachDate() {
+        List<Event> events = TestEvents.generate(this.dateEngine, 3000, new Random(2));
+        EventDayIndex index = new EventDayIndex();
+        index.rebuild(events);
+
+        List<List<Event>> eventsForRange = new ArrayList<List<Event>>();
+        for (long firstDay = TestEvents.FIRST_DAY - 10; firstDay < TestEvents.FIRST_DAY + TestEvents.DAYS_COUNT; firstDay += 7) {
+            int daysCount = 1 + (int) (firstDay % 60 + 60) % 60;
+            int count = index.getEventsForRange(this.dateEngine, this.dateEngine.getDayStart(firstDay),
+                    this.dateEngine.getDayStart(firstDay + daysCount), eventsForRange);
+
+            assertEquals(daysCount, count);
+            assertEquals(daysCount, eventsForRange.size());
+            for (int i = 0; i < daysCount; i++) {
+                assertEquals("day " + (firstDay + i), scanDay(events, firstDay + i), eventsForRange.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void appendedEventsAreFound() {
+        List<Event> events = TestEvents.generate(this.dateEngine, 1000, new Random(3));
+        EventDayIndex index = new EventDayIndex();
+        index.rebuild(events.subList(0, 10));
+        for (int i = 10; i < events.size(); i++) {
+            index.add(events.get(i));
+        }
+
+        assertEquals(events.size(), index.getIndexedSize());
+        List<Event> result = new ArrayList<Event>();
+        for (long day = TestEvents.FIRST_DAY; day < TestEvents.FIRST_DAY + TestEvents.DAYS_COUNT; day++) {
+            result.clear();
+            index.getEventsForDate(this.dateEngine, this.dateEngine.getDayStart(day), result);
+            assertEquals("day " + day, scanDay(events, day), result);
+        }
+    }
+
+    @Test
+    public void emptyRangeHasNoDates() {
+        EventDayIndex index = new EventDayIndex();
+        List<List<Event>> eventsForRange = new ArrayList<List<Event>>();
+        eventsForRange.add(new ArrayList<Event>());
+
+        long dayStart = this.dateEngine.getDayStart(TestEvents.FIRST_DAY);
+        assertEquals(0, index.getEventsForRange(this.dateEngine, dayStart, dayStart, eventsForRange));
+        assertEquals(0, eventsForRange.size());
+    }
+
+    private List<Event> scanDay(List<Event> events, long day) {
+        return TestEvents.scan(events, this.dateEngine.getDayStart(day), this.dateEngine.getDayStart(day + 1));
+    }
+}
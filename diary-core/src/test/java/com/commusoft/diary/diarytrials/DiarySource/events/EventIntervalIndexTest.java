@@ -0,0 +1,70 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventIntervalIndexTest {
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    private final EpochDayCalendar dateEngine = new EpochDayCalendar(TimeZone.getTimeZone("Europe/London"), Calendar.MONDAY, 4);
+
+    @Test
+    public void queriesMatchScan() {
+        Random random = new Random(1);
+        List<Event> events = TestEvents.generate(this.dateEngine, 3000, random);
+        EventIntervalIndex index = new EventIntervalIndex();
+        index.rebuild(events);
+
+        assertEquals(events.size(), index.getIndexedSize());
+        assertQueriesMatchScan(index, events, random);
+    }
+
+    @Test
+    public void appendedEventsMatchScan() {
+        Random random = new Random(2);
+        List<Event> events = TestEvents.generate(this.dateEngine, 2000, random);
+        EventIntervalIndex index = new EventIntervalIndex();
+        index.rebuild(events.subList(0, 500));
+        for (int i = 500; i < events.size(); i++) {
+            index.add(events.get(i));
+        }
+
+        assertEquals(events.size(), index.getIndexedSize());
+        assertQueriesMatchScan(index, events, random);
+    }
+
+    @Test
+    public void clearForgetsEvents() {
+        EventIntervalIndex index = new EventIntervalIndex();
+        index.rebuild(TestEvents.generate(this.dateEngine, 100, new Random(3)));
+        index.clear();
+
+        List<Event> result = new ArrayList<Event>();
+        index.query(Long.MIN_VALUE, Long.MAX_VALUE, result);
+        assertEquals(0, index.getIndexedSize());
+        assertEquals(0, result.size());
+    }
+
+    private void assertQueriesMatchScan(EventIntervalIndex index, List<Event> events, Random random) {
+        List<Event> result = new ArrayList<Event>();
+        for (int i = 0; i < 1000; i++) {
+            long periodStart = this.dateEngine.getDayStart(TestEvents.FIRST_DAY - 5 + random.nextInt(TestEvents.DAYS_COUNT + 10))
+                    + random.nextInt(48) * MILLIS_PER_HOUR / 2;
+            long periodEnd = periodStart + 1 + random.nextInt(random.nextBoolean() ? 1000 : 100000) * 60 * 1000L;
+
+            result.clear();
+            index.query(periodStart, periodEnd, result);
+            assertEquals("period " + periodStart + "-" + periodEnd, TestEvents.scan(events, periodStart, periodEnd), result);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that an {@link EventStore} finds the same events as an {@link EventDayIndex} over a list of
+ * the same events.
+ */
+public class EventStoreTest {
+
+    private final EpochDayCalendar dateEngine = new EpochDayCalendar(TimeZone.getTimeZone("Europe/London"), Calendar.MONDAY, 4);
+    private List<Event> events;
+    private EventStore store;
+
+    @Before
+    public void setUp() {
+        this.events = new ArrayList<Event>();
+        for (Event event : TestEvents.generate(this.dateEngine, 3000, new Random(1))) {
+            if (event != null) {
+                this.events.add(event);
+            }
+        }
+
+        this.store = new EventStore();
+        for (Event event : this.events) {
+            this.store.add(event);
+        }
+    }
+
+    @Test
+    public void queriesMatchListIndex() {
+        assertEquals(this.events.size(), this.store.size());
+        assertSameEvents();
+    }
+
+    @Test
+    public void removedEventsAreNotFound() {
+        List<Event> kept = new ArrayList<Event>();
+        for (int row = 0; row < this.events.size(); row++) {
+            if (row % 7 == 0) {
+                assertTrue(this.store.remove(this.store.getEvent(row)));
+            } else {
+                kept.add(this.events.get(row));
+            }
+        }
+        this.events = kept;
+
+        assertEquals(kept.size(), this.store.size());
+        assertFalse(this.store.remove(this.store.getEvent(0)));
+        assertSameEvents();
+    }
+
+    @Test
+    public void changesThroughViewsAreFound() {
+        long dayStart = this.dateEngine.getDayStart(TestEvents.FIRST_DAY + 20);
+        for (int row = 0; row < this.events.size(); row += 11) {
+            EventStore.StoredJob view = this.store.getEvent(row);
+            Event event = this.events.get(row);
+            long start = dayStart + row * 60 * 1000L;
+
+            // Moving the end first keeps the start before the end.
+            view.setEndTime(start + 90 * 60 * 1000L + TestEvents.DAYS_COUNT * EpochDayCalendar.MILLIS_PER_DAY);
+            view.setStartTime(start);
+            view.setEndTime(start + 90 * 60 * 1000L);
+            view.setAllDay(row % 2 == 0);
+            view.setTitle("Moved");
+            event.setEndTime(start + 90 * 60 * 1000L + TestEvents.DAYS_COUNT * EpochDayCalendar.MILLIS_PER_DAY);
+            event.setStartTime(start);
+            event.setEndTime(start + 90 * 60 * 1000L);
+            event.setAllDay(row % 2 == 0);
+            event.setTitle("Moved");
+        }
+
+        assertSameEvents();
+    }
+
+    @Test
+    public void compactKeepsOrderAndDropsUnusedTitles() {
+        List<Event> kept = new ArrayList<Event>();
+        for (int row = 0; row < this.events.size(); row++) {
+            if (this.events.get(row).getTitle().equals("Job 0")) {
+                this.store.removeAt(row);
+            } else {
+                kept.add(this.events.get(row));
+            }
+        }
+        this.events = kept;
+        int titlesCount = this.store.getTitlesCount();
+
+        this.store.compact();
+
+        assertEquals(kept.size(), this.store.getRowsCount());
+        assertEquals(titlesCount - 1, this.store.getTitlesCount());
+        assertSameEvents();
+    }
+
+    @Test
+    public void titlesArePooled() {
+        assertEquals(50, this.store.getTitlesCount());
+        assertTrue(this.store.getTitle(0) == this.store.getTitle(indexOfTitle(this.store.getTitle(0), 1)));
+    }
+
+    @Test
+    public void cursorVisitsTheEventsOfTheViews() {
+        long periodStart = this.dateEngine.getDayStart(TestEvents.FIRST_DAY + 30);
+        long periodEnd = this.dateEngine.getDayStart(TestEvents.FIRST_DAY + 33);
+        List<Event> views = new ArrayList<Event>();
+        this.store.query(periodStart, periodEnd, views);
+
+        EventStore.Cursor cursor = new EventStore.Cursor();
+        this.store.query(periodStart, periodEnd, cursor);
+        assertEquals(views.size(), cursor.getCount());
+        for (Event view : views) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(((EventStore.StoredJob) view).getRow(), cursor.getRow());
+            assertEquals(view.getStartTime(), cursor.getStartTime());
+            assertEquals(view.getEndTime(), cursor.getEndTime());
+            assertEquals(view.getTitle(), cursor.getTitle());
+            assertEquals(view, cursor.getEvent());
+        }
+        assertFalse(cursor.moveToNext());
+    }
+
+    @Test
+    public void viewsOfTheSameRowAreEqual() {
+        assertEquals(this.store.getEvent(5), this.store.getEvent(5));
+        assertEquals(this.store.getEvent(5).hashCode(), this.store.getEvent(5).hashCode());
+        assertFalse(this.store.getEvent(5).equals(this.store.getEvent(6)));
+        assertFalse(new EventStore().remove(this.store.getEvent(5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reversedTimesAreRejected() {
+        this.store.getEvent(0).setEndTime(this.store.getStartTime(0));
+    }
+
+    private int indexOfTitle(String title, int from) {
+        for (int row = from; row < this.store.getRowsCount(); row++) {
+            if (this.store.getTitle(row).equals(title)) {
+                return row;
+            }
+        }
+        throw new AssertionError(title);
+    }
+
+    private void assertSameEvents() {
+        EventDayIndex listIndex = new EventDayIndex();
+        listIndex.rebuild(this.events);
+        EventDayIndex storeIndex = new EventDayIndex();
+        storeIndex.setStore(this.store);
+
+        List<List<Event>> listEvents = new ArrayList<List<Event>>();
+        List<List<Event>> storeEvents = new ArrayList<List<Event>>();
+        for (long firstDay = TestEvents.FIRST_DAY - 3; firstDay < TestEvents.FIRST_DAY + TestEvents.DAYS_COUNT; firstDay += 3) {
+            long from = this.dateEngine.getDayStart(firstDay);
+            long to = this.dateEngine.getDayStart(firstDay + 42);
+            listIndex.getEventsForRange(this.dateEngine, from, to, listEvents);
+            storeIndex.getEventsForRange(this.dateEngine, from, to, storeEvents);
+
+            assertEquals(listEvents.size(), storeEvents.size());
+            for (int day = 0; day < listEvents.size(); day++) {
+                List<Event> expected = listEvents.get(day);
+                List<Event> actual = storeEvents.get(day);
+                assertEquals("events of day " + (firstDay + day), expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertSameEvent(expected.get(i), actual.get(i));
+                }
+            }
+        }
+    }
+
+    private static void assertSameEvent(Event expected, Event actual) {
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getEndTime(), actual.getEndTime());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getEventColor(), actual.getEventColor());
+        assertEquals(expected.getCalendarId(), actual.getCalendarId());
+        assertEquals(expected.isAllDay(), actual.isAllDay());
+        assertEquals(((DiaryJob) expected).getId(), ((DiaryJob) actual).getId());
+    }
+}
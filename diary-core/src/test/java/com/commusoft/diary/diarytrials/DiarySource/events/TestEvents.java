@@ -0,0 +1,67 @@
+package com.commusoft.diary.diarytrials.DiarySource.events;
+
+import com.commusoft.diary.diarytrials.DiarySource.EpochDayCalendar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random diaries and finds their events by a scan over all of them, which is the reference
+ * model of the event indexes.
+ */
+final class TestEvents {
+
+    static final long FIRST_DAY = EpochDayCalendar.toEpochDay(2015, 0, 1);
+    static final int DAYS_COUNT = 200;
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    private TestEvents() {
+    }
+
+    /**
+     * Generates short jobs, jobs which run for several days and all day events. Some of the events
+     * start at midnight and some of the list entries are <code>null</code>.
+     */
+    static List<Event> generate(EpochDayCalendar dateEngine, int count, Random random) {
+        List<Event> events = new ArrayList<Event>(count);
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(50) == 0) {
+                events.add(null);
+                continue;
+            }
+
+            long dayStart = dateEngine.getDayStart(FIRST_DAY + random.nextInt(DAYS_COUNT));
+            long start = random.nextInt(8) == 0 ? dayStart : dayStart + random.nextInt(24 * 4) * MILLIS_PER_HOUR / 4;
+            long end = start + (random.nextInt(10) == 0 ? 1 + random.nextInt(100) : 1 + random.nextInt(8)) * MILLIS_PER_HOUR / 2;
+            DiaryJob job = new DiaryJob("Job " + random.nextInt(50), start, end, i);
+            job.setAllDay(random.nextInt(15) == 0);
+            job.setEventColor(random.nextInt());
+            job.setCalendarId(random.nextInt(3));
+            events.add(job);
+        }
+        return events;
+    }
+
+    /**
+     * Finds the events which should be displayed in a period by a scan over all events.
+     */
+    static List<Event> scan(List<Event> events, long periodStart, long periodEnd) {
+        List<Event> result = new ArrayList<Event>();
+        for (Event event : events) {
+            if (event == null) {
+                continue;
+            }
+
+            long start = event.getStartTime();
+            boolean visible = event.isAllDay()
+                    ? start >= periodStart && start < periodEnd
+                    : start < periodEnd && event.getEndTime() > periodStart;
+            if (visible) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}